@@ -17,7 +17,12 @@
 
 package com.soeima.resources;
 
+import com.soeima.resources.util.IOUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implements an abstract {@link PathItem} that is to be used as a base class for all {@link PathItem} types.
@@ -76,6 +81,66 @@ public abstract class AbstractPathItem implements PathItem {
         return findResources(name, recursionType, -1);
     }
 
+    /**
+     * @see  PathItem#findResources(Collection, RecursionType)
+     */
+    @Override public Map<String, List<Resource>> findResources(Collection<String> names, RecursionType recursionType) {
+        ResourceBatch batch = new ResourceBatch(names, recursionType);
+        findResources(batch);
+        return batch.getResources();
+    }
+
+    /**
+     * Finds the resources requested by the given <code>batch</code>. By default each name is looked up on its own, so
+     * path items that can look up all of the names in a single pass override this method.
+     *
+     * @param  batch  The names of the resources to find, which collects the resources found.
+     */
+    protected void findResources(ResourceBatch batch) {
+
+        for (String name : batch.getNames()) {
+            batch.addAll(name, findResources(name, batch.getRecursionType(), -1));
+        }
+    }
+
+    /**
+     * Visits each resource found by {@link #findResources(ResourceFilter, RecursionType)} by opening it on its own, so
+     * path items that can read all of their resources in a single pass override this method.
+     *
+     * @see  PathItem#scan(ResourceFilter, RecursionType, ResourceVisitor)
+     */
+    @Override public void scan(ResourceFilter filter, RecursionType recursionType, ResourceVisitor visitor) {
+
+        for (Resource resource : findResources(filter, recursionType)) {
+            InputStream is = resource.getInputStream();
+
+            if (is == null) {
+                continue;
+            }
+
+            try {
+                visitor.visit(resource, is);
+            }
+            catch (IOException e) {
+                throw new ResourceException(e);
+            }
+            finally {
+                IOUtil.close(is);
+            }
+        }
+    }
+
+    /**
+     * Returns all of the resources accepted by the given <code>filter</code> according to the given <code>
+     * recursionType</code>.
+     *
+     * @param   filter         The filter criteria used to select the resources.
+     * @param   recursionType  The recursion type used to find the resources.
+     *
+     * @return  A list of resources or an empty list if none are accepted.
+     */
+    protected abstract List<Resource> findResources(ResourceFilter filter, RecursionType recursionType);
+
     /**
      * Returns a list of resources for the given resource <code>name</code>.
      *
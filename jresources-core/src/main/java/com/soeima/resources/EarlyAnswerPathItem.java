@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+/**
+ * A {@link PathItem} that can answer a lookup of a single resource while it is still reading the names of its
+ * resources, rather than once it has read them all. The {@link ResourceLoader} turns this on for the path items it
+ * creates when {@link ResourceLoader#setEarlyAnswers(boolean) asked to}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public interface EarlyAnswerPathItem extends PathItem {
+
+    /**
+     * Sets whether a lookup of a single resource on this path item, while its resources have not been read yet,
+     * returns as soon as the reading reaches the resource, rather than once all of them have been read. The rest of
+     * the resources are then read in the background.
+     *
+     * @param  earlyAnswers  <code>true</code> to answer the first lookups early; <code>false</code> otherwise.
+     */
+    void setEarlyAnswers(boolean earlyAnswers);
+
+    /**
+     * Returns whether the first lookups of a single resource are answered while the resources are still being read.
+     *
+     * @return  <code>true</code> if the first lookups are answered early; <code>false</code> otherwise.
+     */
+    boolean isEarlyAnswers();
+} // end interface EarlyAnswerPathItem
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+/**
+ * A {@link PathItem} that knows the names of all of its resources once it has been indexed, and publishes them as a
+ * {@link ResourceNameFilter}. The {@link ResourceFinder} skips the path items whose filter rules out the resource it
+ * looks for.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public interface IndexedPathItem extends PathItem {
+
+    /**
+     * Returns the filter of the names of the resources of this path item. This method must not perform any
+     * input/output, and must only return a filter that is known to be up to date.
+     *
+     * @return  The filter or <code>null</code> if this path item has not been indexed yet.
+     */
+    ResourceNameFilter getNameFilter();
+
+    /**
+     * Reads the names of the resources of this path item, unless they have been read already, so that {@link
+     * #getNameFilter()} publishes a filter from then on. This method is safe to call from any thread, which lets the
+     * indexing start in the background before the first lookup.
+     *
+     * @throws  ResourceException  If the names cannot be read.
+     */
+    void index();
+} // end interface IndexedPathItem
@@ -0,0 +1,690 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+import com.soeima.resources.file.FilePathItem;
+import com.soeima.resources.pack.Pack;
+import com.soeima.resources.pack.PackWriter;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A snapshot of the search paths of a {@link ResourceLoader} along with the merged index of their resources, so that a
+ * new loader can answer its lookups without opening the path items that do not hold the requested resources.
+ *
+ * <p>The snapshot is stored as a {@link Pack} whose entries are not resources: each entry is named after a resource
+ * and holds the positions, in search order, of the path items containing it. Another entry per base name serves the
+ * recursive lookups, and a last entry describes the search paths themselves. The lookups are thus answered straight
+ * from the mapped snapshot.</p>
+ *
+ * <p>Each local file or directory is stamped when the snapshot is taken, and the path item is only trusted to match
+ * the snapshot if its stamp is the same when it is first involved in a lookup. The stamp of a file is its modification
+ * time and length, while the stamp of a directory covers the modification times of all of its subdirectories, which
+ * change whenever resources are added or removed. Other path items, or those whose stamp has changed, are always
+ * looked up directly.</p>
+ *
+ * <p>The lookups may be performed concurrently: each path item is created, and checked against its stamp, a single
+ * time.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class LoaderSnapshot implements Closeable {
+
+    /** The name of the entry describing the search paths, which cannot be the name of a resource. */
+    private static final String PathsEntry = "\u0000paths";
+
+    /** The prefix of the names of the entries serving recursive lookups, which are named after the base names. */
+    private static final String BaseNamePrefix = "\u0001";
+
+    /** The version of the format of the search paths entry. */
+    private static final int Version = 1;
+
+    /** The kind of path items that are never trusted to match the snapshot. */
+    private static final int Volatile = 0;
+
+    /** The kind of path items backed by a local file. */
+    private static final int LocalFile = 1;
+
+    /** The kind of path items backed by a local directory. */
+    private static final int LocalDirectory = 2;
+
+    /** A path item whose stamp has not been checked yet. */
+    private static final int Unchecked = 0;
+
+    /** A path item that matches the snapshot. */
+    private static final int Current = 1;
+
+    /** A path item that does not match the snapshot. */
+    private static final int Stale = 2;
+
+    /** Accepts every resource. */
+    private static final ResourceFilter AllResources = new ResourceFilter() {
+
+        /**
+         * @see  ResourceFilter#accept(String)
+         */
+        @Override public boolean accept(String name) {
+            return true;
+        }
+    };
+
+    /** The mapped snapshot. */
+    private Pack pack;
+
+    /** The search paths in order. */
+    private List<String> paths;
+
+    /** The recursion type of the loader. */
+    private RecursionType recursionType;
+
+    /** The stamp of each path item when the snapshot was taken, which also guards the creation of the item. */
+    private Stamp[] stamps;
+
+    /** Whether each path item has been checked against its stamp. */
+    private AtomicIntegerArray states;
+
+    /** The path items created so far. */
+    private AtomicReferenceArray<PathItem> pathItems;
+
+    /**
+     * Creates a new {@link LoaderSnapshot} object.
+     *
+     * @param  pack  The mapped snapshot.
+     */
+    private LoaderSnapshot(Pack pack) {
+        this.pack = pack;
+    }
+
+    /**
+     * Maps the snapshot stored in the given <code>file</code>.
+     *
+     * @param   file  The snapshot file.
+     *
+     * @return  The snapshot.
+     *
+     * @throws  IOException  If the file cannot be mapped or is not a loader snapshot.
+     */
+    public static LoaderSnapshot open(File file) throws IOException {
+        Pack pack = Pack.open(file);
+
+        try {
+            int index = pack.indexOf(PathsEntry);
+
+            if (index < 0) {
+                throw new IOException("Not a loader snapshot=" + file);
+            }
+
+            LoaderSnapshot snapshot = new LoaderSnapshot(pack);
+            snapshot.readPaths(new DataInputStream(new ByteArrayInputStream(pack.getBytes(index))));
+            return snapshot;
+        }
+        catch (IOException e) {
+            pack.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the search paths entry.
+     *
+     * @param   is  The contents of the entry.
+     *
+     * @throws  IOException  If the entry is not well formed.
+     */
+    private void readPaths(DataInputStream is) throws IOException {
+
+        if (is.readInt() != Version) {
+            throw new IOException("Unsupported loader snapshot=" + pack.getFile());
+        }
+
+        try {
+            recursionType = RecursionType.valueOf(is.readUTF());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("Malformed loader snapshot=" + pack.getFile());
+        }
+
+        int size = is.readInt();
+        paths = new ArrayList<String>(size);
+        stamps = new Stamp[size];
+
+        for (int i = 0; i < size; i++) {
+            paths.add(is.readUTF());
+            stamps[i] = new Stamp(is.readByte(), is.readUTF(), is.readLong(), is.readLong());
+        }
+
+        states = new AtomicIntegerArray(size);
+        pathItems = new AtomicReferenceArray<PathItem>(size);
+    }
+
+    /**
+     * Writes a snapshot of the given search paths and of their resources to the given <code>file</code>.
+     *
+     * @param   file           The snapshot file, which is overwritten.
+     * @param   paths          The search paths in order.
+     * @param   pathItems      The path items of the search paths.
+     * @param   recursionType  The recursion type of the loader.
+     *
+     * @throws  IOException  If the snapshot cannot be written.
+     */
+    public static void write(File file, List<String> paths, List<PathItem> pathItems, RecursionType recursionType)
+        throws IOException {
+        Map<String, List<Integer>> locations = new LinkedHashMap<String, List<Integer>>();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(Version);
+        dos.writeUTF(recursionType.name());
+        dos.writeInt(paths.size());
+
+        for (int i = 0; i < paths.size(); i++) {
+            Stamp stamp = Stamp.of(pathItems.get(i));
+            dos.writeUTF(paths.get(i));
+            dos.writeByte(stamp.getKind());
+            dos.writeUTF(stamp.getFile());
+            dos.writeLong(stamp.getModified());
+            dos.writeLong(stamp.getLength());
+
+            // The resources of the volatile path items would not be trusted anyway.
+            if (stamp.getKind() == Volatile) {
+                continue;
+            }
+
+            for (String name : list(pathItems.get(i))) {
+                addLocation(locations, name, i);
+                addLocation(locations, BaseNamePrefix + getBaseName(name), i);
+            }
+        }
+
+        dos.flush();
+
+        PackWriter writer = new PackWriter(file);
+        boolean written = false;
+
+        try {
+
+            // The locations are read straight from the mapping, and most resources share the same ones.
+            writer.setCompress(false);
+            writer.setDeduplicate(true);
+            writer.add(PathsEntry, os.toByteArray());
+
+            for (Map.Entry<String, List<Integer>> entry : locations.entrySet()) {
+                ByteBuffer buffer = ByteBuffer.allocate(entry.getValue().size() * 4);
+
+                for (int position : entry.getValue()) {
+                    buffer.putInt(position);
+                }
+
+                writer.add(entry.getKey(), buffer.array());
+            }
+
+            writer.close();
+            written = true;
+        }
+        finally {
+
+            // Do not leave an incomplete snapshot behind.
+            if (!written) {
+                IOUtil.close(writer);
+                file.delete();
+            }
+        }
+    } // end method write
+
+    /**
+     * Returns the names of all of the resources of the given <code>pathItem</code>.
+     *
+     * @param   pathItem  The path item.
+     *
+     * @return  The names of the resources relative to the path item.
+     */
+    private static List<String> list(final PathItem pathItem) {
+        final List<String> names = new ArrayList<String>();
+
+        if (pathItem instanceof AbstractPathItem) {
+
+            for (Resource resource : ((AbstractPathItem)pathItem).findResources(AllResources, RecursionType.Recursive)) {
+                names.add(PathItems.getRelativeName(pathItem, resource));
+            }
+
+            return names;
+        }
+
+        pathItem.scan(AllResources, RecursionType.Recursive, new ResourceVisitor() {
+
+                /**
+                 * @see  ResourceVisitor#visit(Resource, InputStream)
+                 */
+                @Override public void visit(Resource resource, InputStream is) {
+                    names.add(PathItems.getRelativeName(pathItem, resource));
+                }
+            });
+        return names;
+    }
+
+    /**
+     * Records that the path item at the given <code>position</code> holds the resource with the given <code>
+     * name</code>.
+     *
+     * @param  locations  The positions of the path items holding each resource.
+     * @param  name       The name of the entry.
+     * @param  position   The position of the path item, which is never lower than those recorded so far.
+     */
+    private static void addLocation(Map<String, List<Integer>> locations, String name, int position) {
+        List<Integer> positions = locations.get(name);
+
+        if (positions == null) {
+            positions = new ArrayList<Integer>(1);
+            locations.put(name, positions);
+        }
+
+        if (positions.isEmpty() || (positions.get(positions.size() - 1) != position)) {
+            positions.add(position);
+        }
+    }
+
+    /**
+     * Returns the base name of the given normalized <code>name</code>.
+     *
+     * @param   name  The normalized name of a resource.
+     *
+     * @return  The part of the name after its last slash.
+     */
+    private static String getBaseName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns the search paths in order.
+     *
+     * @return  An immutable list of paths.
+     */
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Returns the recursion type of the loader.
+     *
+     * @return  The recursion type.
+     */
+    public RecursionType getRecursionType() {
+        return recursionType;
+    }
+
+    /**
+     * Returns the path items of all of the search paths, creating those that have not been created yet.
+     *
+     * @return  The path items in order.
+     */
+    public List<PathItem> getPathItems() {
+        List<PathItem> all = new ArrayList<PathItem>(paths.size());
+
+        for (int i = 0; i < paths.size(); i++) {
+            all.add(getPathItem(i));
+        }
+
+        return all;
+    }
+
+    /**
+     * Returns the path item at the given <code>position</code>, creating it if required.
+     *
+     * @param   position  The position of the path item.
+     *
+     * @return  The path item.
+     */
+    private PathItem getPathItem(int position) {
+        PathItem pathItem = pathItems.get(position);
+
+        if (pathItem == null) {
+
+            // Concurrent lookups must not each create, and open, their own path item.
+            synchronized (stamps[position]) {
+                pathItem = pathItems.get(position);
+
+                if (pathItem == null) {
+                    pathItem = PathItems.newPathItem(paths.get(position));
+                    pathItems.set(position, pathItem);
+                }
+            }
+        }
+
+        return pathItem;
+    }
+
+    /**
+     * Returns the first resource with the given <code>name</code>.
+     *
+     * @param   name           The name of the resource.
+     * @param   recursionType  The recursion type used to find the resource.
+     *
+     * @return  The resource or <code>null</code> if it cannot be found.
+     *
+     * @see     ResourceFinder#find(String)
+     */
+    public Resource find(String name, RecursionType recursionType) {
+        name = Paths.normalize(name, '/');
+
+        int index = indexOf(name, recursionType);
+
+        for (int i = 0; i < paths.size(); i++) {
+
+            if (isCurrent(i) && !contains(index, i)) {
+                continue;
+            }
+
+            Resource resource = getPathItem(i).findResource(name, recursionType);
+
+            if (resource != null) {
+                return resource;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns all of the resources with the given <code>name</code>.
+     *
+     * @param   name           The name of the resources.
+     * @param   recursionType  The recursion type used to find the resources.
+     *
+     * @return  The resources in search order or an empty list if none can be found.
+     *
+     * @see     ResourceFinder#findAll(String)
+     */
+    public List<Resource> findAll(String name, RecursionType recursionType) {
+        name = Paths.normalize(name, '/');
+
+        int index = indexOf(name, recursionType);
+        List<Resource> resources = new ArrayList<Resource>();
+
+        for (int i = 0; i < paths.size(); i++) {
+
+            if (!isCurrent(i) || contains(index, i)) {
+                resources.addAll(getPathItem(i).findResources(name, recursionType));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * Returns the index of the entry holding the locations of the resources with the given <code>name</code>.
+     *
+     * @param   name           The normalized name of the resources.
+     * @param   recursionType  The recursion type used to find the resources.
+     *
+     * @return  The index of the entry or <code>-1</code> if no trusted path item holds such resources.
+     */
+    private int indexOf(String name, RecursionType recursionType) {
+        name = Paths.stripLeadingSlash(name);
+        return pack.indexOf((recursionType == RecursionType.Recursive) ? (BaseNamePrefix + getBaseName(name)) : name);
+    }
+
+    /**
+     * Returns <code>true</code> if the entry at the given <code>index</code> lists the path item at the given <code>
+     * position</code>.
+     *
+     * @param   index     The index of the entry or <code>-1</code> if there is no such entry.
+     * @param   position  The position of the path item.
+     *
+     * @return  <code>true</code> if the path item is listed; <code>false</code> otherwise.
+     */
+    private boolean contains(int index, int position) {
+
+        if (index < 0) {
+            return false;
+        }
+
+        try {
+            ByteBuffer buffer = pack.getBuffer(index);
+
+            for (int i = 0; i < buffer.limit(); i += 4) {
+
+                if (buffer.getInt(i) == position) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the path item at the given <code>position</code> matches the snapshot, checking its
+     * stamp the first time.
+     *
+     * @param   position  The position of the path item.
+     *
+     * @return  <code>true</code> if the path item matches the snapshot; <code>false</code> otherwise.
+     */
+    private boolean isCurrent(int position) {
+        int state = states.get(position);
+
+        if (state == Unchecked) {
+
+            synchronized (stamps[position]) {
+                state = states.get(position);
+
+                if (state == Unchecked) {
+                    state = stamps[position].isCurrent() ? Current : Stale;
+                    states.set(position, state);
+                }
+            }
+        }
+
+        return state == Current;
+    }
+
+    /**
+     * Unmaps the snapshot, which must not be used for lookups anymore.
+     *
+     * @see  Closeable#close()
+     */
+    @Override public void close() throws IOException {
+        pack.close();
+    }
+
+    /**
+     * The stamp of a path item, which changes whenever the local file or directory backing it changes.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private static class Stamp {
+
+        /** The kind of path item. */
+        private int kind;
+
+        /** The local file or directory backing the path item or an empty string for a volatile path item. */
+        private String file;
+
+        /** The modification time of the file or the latest modification time of the directories. */
+        private long modified;
+
+        /** The length of the file or the number of directories. */
+        private long length;
+
+        /**
+         * Creates a new {@link Stamp} object.
+         *
+         * @param  kind      The kind of path item.
+         * @param  file      The local file or directory backing the path item.
+         * @param  modified  The modification time of the file or the latest modification time of the directories.
+         * @param  length    The length of the file or the number of directories.
+         */
+        public Stamp(int kind, String file, long modified, long length) {
+            this.kind = kind;
+            this.file = file;
+            this.modified = modified;
+            this.length = length;
+        }
+
+        /**
+         * Returns the current stamp of the given <code>pathItem</code>.
+         *
+         * @param   pathItem  The path item.
+         *
+         * @return  The stamp of the path item.
+         */
+        public static Stamp of(PathItem pathItem) {
+            File file = new File(pathItem.getPath());
+
+            if ((pathItem instanceof FilePathItem) && file.isDirectory()) {
+                return of(LocalDirectory, file);
+            }
+
+            if (!(pathItem instanceof NullPathItem) && file.isFile()) {
+                return of(LocalFile, file);
+            }
+
+            return new Stamp(Volatile, "", 0, 0);
+        }
+
+        /**
+         * Returns the current stamp of the given local <code>file</code>.
+         *
+         * @param   kind  The kind of path item backed by the file.
+         * @param   file  The local file or directory.
+         *
+         * @return  The stamp of the file.
+         */
+        private static Stamp of(int kind, File file) {
+
+            if (kind == LocalFile) {
+                return new Stamp(kind, file.getPath(), file.lastModified(), file.length());
+            }
+
+            long[] tree = new long[2];
+            stampTree(file, tree);
+            return new Stamp(kind, file.getPath(), tree[0], tree[1]);
+        }
+
+        /**
+         * Returns <code>true</code> if the local file or directory has not changed since this stamp was taken.
+         *
+         * @return  <code>true</code> if the path item still matches this stamp; <code>false</code> otherwise.
+         */
+        public boolean isCurrent() {
+            return (kind != Volatile) && equals(of(kind, new File(file)));
+        }
+
+        /**
+         * Accumulates the latest modification time and the number of the given <code>directory</code> and of its
+         * subdirectories.
+         *
+         * @param  directory  The directory.
+         * @param  tree       The latest modification time and the number of directories so far.
+         */
+        private static void stampTree(File directory, long[] tree) {
+            tree[0] = Math.max(tree[0], directory.lastModified());
+            tree[1]++;
+
+            File[] files = directory.listFiles();
+
+            if (files == null) {
+                return;
+            }
+
+            for (File file : files) {
+
+                if (file.isDirectory()) {
+                    stampTree(file, tree);
+                }
+            }
+        }
+
+        /**
+         * Returns the kind of path item.
+         *
+         * @return  The kind of path item.
+         */
+        public int getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the local file or directory backing the path item.
+         *
+         * @return  The path of the file or an empty string for a volatile path item.
+         */
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the modification time of the file or the latest modification time of the directories.
+         *
+         * @return  The modification time.
+         */
+        public long getModified() {
+            return modified;
+        }
+
+        /**
+         * Returns the length of the file or the number of directories.
+         *
+         * @return  The length or the number of directories.
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * @see  Object#equals(Object)
+         */
+        @Override public boolean equals(Object object) {
+
+            if (!(object instanceof Stamp)) {
+                return false;
+            }
+
+            Stamp stamp = (Stamp)object;
+            return (kind == stamp.kind) && file.equals(stamp.file) && (modified == stamp.modified)
+                && (length == stamp.length);
+        }
+
+        /**
+         * @see  Object#hashCode()
+         */
+        @Override public int hashCode() {
+            return (int)(modified ^ (modified >>> 32)) ^ (int)length;
+        }
+    } // end class Stamp
+} // end class LoaderSnapshot
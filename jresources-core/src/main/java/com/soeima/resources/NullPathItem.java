@@ -19,7 +19,9 @@ package com.soeima.resources;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implements a <code>null</code> {@link PathItem}, where all methods simply return <code>null</code>.
@@ -52,6 +54,13 @@ public class NullPathItem implements PathItem {
         return null;
     }
 
+    /**
+     * @see  PathItem#findResources(Collection, RecursionType)
+     */
+    @Override public Map<String, List<Resource>> findResources(Collection<String> names, RecursionType recursionType) {
+        return null;
+    }
+
     /**
      * @see  PathItem#findResourcesForExtension(String, RecursionType)
      */
@@ -59,6 +68,12 @@ public class NullPathItem implements PathItem {
         return null;
     }
 
+    /**
+     * @see  PathItem#scan(ResourceFilter, RecursionType, ResourceVisitor)
+     */
+    @Override public void scan(ResourceFilter filter, RecursionType recursionType, ResourceVisitor visitor) {
+    }
+
     /**
      * @see  PathItem#getInputStream(String)
      */
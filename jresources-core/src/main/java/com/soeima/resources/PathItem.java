@@ -19,7 +19,9 @@ package com.soeima.resources;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A path item represents a specific path and contains one or more resources.
@@ -49,6 +51,18 @@ public interface PathItem {
      */
     List<Resource> findResources(String name, RecursionType recursionType);
 
+    /**
+     * Finds the resources with each of the given <code>names</code> according to the given <code>recursionType</code>,
+     * going over the resources of this path item at most once for the whole batch where possible.
+     *
+     * @param   names          The names of the resources to find.
+     * @param   recursionType  The recursion type used to find the resources.
+     *
+     * @return  The requested {@link Resource}s according to their name, with an empty list for each name that cannot
+     *          be found.
+     */
+    Map<String, List<Resource>> findResources(Collection<String> names, RecursionType recursionType);
+
     /**
      * Finds the resources with the given <code>extension</code> according to the given <code>recursionType</code>.
      *
@@ -59,6 +73,19 @@ public interface PathItem {
      */
     List<Resource> findResourcesForExtension(String extension, RecursionType recursionType);
 
+    /**
+     * Hands the contents of each resource accepted by the given <code>filter</code> to the given <code>visitor</code>,
+     * according to the given <code>recursionType</code>. Path items backed by a sequential archive visit all of the
+     * resources in a single forward pass over the archive.
+     *
+     * @param   filter         The filter criteria used to select the resources to visit.
+     * @param   recursionType  The recursion type used to find the resources.
+     * @param   visitor        The visitor to which the resources are handed.
+     *
+     * @throws  ResourceException  If the resources cannot be read or the <code>visitor</code> fails.
+     */
+    void scan(ResourceFilter filter, RecursionType recursionType, ResourceVisitor visitor);
+
     /**
      * Returns the input stream for the given <code>name</code>.
      *
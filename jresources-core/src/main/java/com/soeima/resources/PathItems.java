@@ -22,6 +22,8 @@ import com.soeima.resources.util.Paths;
 import com.soeima.resources.util.ReflectionUtil;
 import com.soeima.resources.util.Strings;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -119,6 +121,33 @@ public class PathItems {
         return pathItem;
     } // end method newPathItem
 
+    /**
+     * Returns the name of the given <code>resource</code> relative to the given <code>pathItem</code>, i.e., the name
+     * under which the path item finds the resource, based on their respective <tt>URI</tt>s.
+     *
+     * @param   pathItem  The path item containing the resource.
+     * @param   resource  The resource.
+     *
+     * @return  The decoded relative name, separated by <code>/</code> and without a leading slash.
+     *
+     * @throws  ResourceException  If the resource does not lie below the path item.
+     */
+    public static String getRelativeName(PathItem pathItem, Resource resource) {
+        String root = pathItem.getURI().toASCIIString();
+        String uri = resource.getURI().toASCIIString();
+
+        if (!uri.startsWith(root)) {
+            throw new ResourceException("Resource=" + uri + " not within=" + root);
+        }
+
+        try {
+            return Paths.stripLeadingSlash(new URI(Paths.leadingSlash(uri.substring(root.length()), '/')).getPath());
+        }
+        catch (URISyntaxException e) {
+            throw new ResourceException(e);
+        }
+    }
+
     /**
      * Finds a {@link PathItem} for the given <code>path</code>.
      *
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+import com.soeima.resources.util.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the resources found for many names at once, so that a path item can look them all up in a single pass over
+ * its resources. Each resource met during the pass is {@link #matches(String) matched} against all of the requested
+ * names at once, with a hash lookup of each of the suffixes of its name when the lookup is recursive.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ResourceBatch {
+
+    /** The recursion type used to find the resources. */
+    private RecursionType recursionType;
+
+    /** The resources found according to the requested names, in the order in which the names were requested. */
+    private Map<String, List<Resource>> resources;
+
+    /** The requested names according to their normalized form. */
+    private Map<String, List<String>> keys;
+
+    /**
+     * Creates a new {@link ResourceBatch} object.
+     *
+     * @param  names          The names of the resources to find.
+     * @param  recursionType  The recursion type used to find the resources.
+     */
+    public ResourceBatch(Collection<String> names, RecursionType recursionType) {
+        this.recursionType = recursionType;
+        resources = new LinkedHashMap<String, List<Resource>>();
+        keys = new HashMap<String, List<String>>();
+
+        for (String name : names) {
+
+            if ((name == null) || name.isEmpty() || resources.containsKey(name)) {
+                continue;
+            }
+
+            resources.put(name, new ArrayList<Resource>());
+
+            String key = toKey(name);
+            List<String> sharing = keys.get(key);
+
+            if (sharing == null) {
+                sharing = new ArrayList<String>(1);
+                keys.put(key, sharing);
+            }
+
+            sharing.add(name);
+        }
+    }
+
+    /**
+     * Returns the key under which the given <code>name</code> is matched, which ignores a leading slash.
+     *
+     * @param   name  The name.
+     *
+     * @return  The normalized name without a leading slash.
+     */
+    private static String toKey(String name) {
+        return Paths.stripLeadingSlash(Paths.normalize(name, '/'));
+    }
+
+    /**
+     * Returns the recursion type used to find the resources.
+     *
+     * @return  The recursion type.
+     */
+    public RecursionType getRecursionType() {
+        return recursionType;
+    }
+
+    /**
+     * Returns the names of the resources to find.
+     *
+     * @return  The distinct requested names, in the order in which they were requested.
+     */
+    public Collection<String> getNames() {
+        return Collections.unmodifiableSet(resources.keySet());
+    }
+
+    /**
+     * Returns the requested names that the resource with the given <code>resourceName</code> matches.
+     *
+     * @param   resourceName  The name of a resource, relative to its path item.
+     *
+     * @return  The matching requested names or an empty list if the resource matches none of them.
+     */
+    private List<String> getMatches(String resourceName) {
+        String key = toKey(resourceName);
+
+        if (recursionType == RecursionType.NonRecursive) {
+            List<String> names = keys.get(key);
+            return (names == null) ? Collections.<String>emptyList() : names;
+        }
+
+        List<String> matches = Collections.emptyList();
+
+        // A recursive lookup matches every suffix of the name that starts after a slash.
+        for (int start = 0; start >= 0;) {
+            List<String> names = keys.get(key.substring(start));
+
+            if (names != null) {
+
+                if (matches.isEmpty()) {
+                    matches = new ArrayList<String>();
+                }
+
+                matches.addAll(names);
+            }
+
+            int slash = key.indexOf('/', start);
+            start = (slash < 0) ? -1 : (slash + 1);
+        }
+
+        return matches;
+    } // end method getMatches
+
+    /**
+     * Returns <code>true</code> if the resource with the given <code>resourceName</code> matches any of the requested
+     * names.
+     *
+     * @param   resourceName  The name of a resource, relative to its path item.
+     *
+     * @return  <code>true</code> if the resource is to be {@link #add(String, Resource) added}; <code>false</code>
+     *          otherwise.
+     */
+    public boolean matches(String resourceName) {
+        return !getMatches(resourceName).isEmpty();
+    }
+
+    /**
+     * Adds the given <code>resource</code> to the resources found for every requested name it matches.
+     *
+     * @param  resourceName  The name of the resource, relative to its path item.
+     * @param  resource      The resource.
+     */
+    public void add(String resourceName, Resource resource) {
+
+        for (String name : getMatches(resourceName)) {
+            resources.get(name).add(resource);
+        }
+    }
+
+    /**
+     * Adds the given <code>found</code> resources to those found for the requested <code>name</code>.
+     *
+     * @param  name   One of the requested names.
+     * @param  found  The resources found for the name.
+     */
+    public void addAll(String name, List<Resource> found) {
+        List<Resource> list = resources.get(name);
+
+        if ((list != null) && (found != null)) {
+            list.addAll(found);
+        }
+    }
+
+    /**
+     * Returns the resources found so far.
+     *
+     * @return  The resources found according to the requested names, with an empty list for the names that have not
+     *          been found.
+     */
+    public Map<String, List<Resource>> getResources() {
+        return resources;
+    }
+} // end class ResourceBatch
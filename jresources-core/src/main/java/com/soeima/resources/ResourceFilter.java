@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+/**
+ * Instances that implement this interface are used to select resources according to their name.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public interface ResourceFilter {
+
+    /**
+     * Returns <code>true</code> if the resource with the given <code>name</code> is accepted.
+     *
+     * @param   name  The name of the resource, relative to its path item.
+     *
+     * @return  <code>true</code> if the resource is accepted; <code>false</code> otherwise.
+     */
+    boolean accept(String name);
+}
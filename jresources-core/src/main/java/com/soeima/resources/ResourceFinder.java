@@ -19,7 +19,19 @@ package com.soeima.resources;
 
 import com.soeima.resources.util.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The resource finder is used to find resources.
@@ -35,12 +47,24 @@ public class ResourceFinder {
     /** The recursion type to use when finding resources. */
     private RecursionType recursionType;
 
+    /** The number of lookups skipped because the name filter of a path item ruled them out. */
+    private AtomicLong filterSkips;
+
+    /** The number of lookups let through by the name filter of a path item that found nothing. */
+    private AtomicLong falsePositives;
+
+    /** The indexing of the path items still running in the background, according to the path items. */
+    private Map<PathItem, Future<?>> indexing;
+
     /**
      * Creates a new {@link ResourceFinder} object.
      */
     public ResourceFinder() {
         pathItems = new ArrayList<PathItem>();
         recursionType = RecursionType.NonRecursive;
+        filterSkips = new AtomicLong();
+        falsePositives = new AtomicLong();
+        indexing = Collections.synchronizedMap(new IdentityHashMap<PathItem, Future<?>>());
     }
 
     /**
@@ -79,6 +103,7 @@ public class ResourceFinder {
      */
     public void removePath(PathItem pathItem) {
         pathItems.remove(pathItem);
+        cancel(indexing.remove(pathItem));
     }
 
     /**
@@ -87,10 +112,158 @@ public class ResourceFinder {
      * @param  pathItems  The path items to add.
      */
     public void setPaths(List<PathItem> pathItems) {
+
+        for (Future<?> future : getIndexing()) {
+            cancel(future);
+        }
+
+        indexing.clear();
         this.pathItems.clear();
         this.pathItems.addAll(pathItems);
     }
 
+    /**
+     * Starts reading the names of the resources of the given <code>pathItem</code> on the given <code>executor</code>,
+     * provided it is an {@link IndexedPathItem}. A lookup that reaches the path item before its indexing completes
+     * waits for it, while the lookups answered by the path items before it never do.
+     *
+     * @param  pathItem  The path item to index, which is normally one of the search paths.
+     * @param  executor  The executor running the indexing.
+     */
+    public void index(final PathItem pathItem, ExecutorService executor) {
+
+        if (!(pathItem instanceof IndexedPathItem)) {
+            return;
+        }
+
+        indexing.put(pathItem, executor.submit(new Runnable() {
+
+                    /**
+                     * @see  Runnable#run()
+                     */
+                    @Override public void run() {
+                        ((IndexedPathItem)pathItem).index();
+                    }
+                }));
+    }
+
+    /**
+     * Returns <code>true</code> if none of the path items is still being indexed in the background.
+     *
+     * @return  <code>true</code> if the background indexing is complete; <code>false</code> otherwise.
+     */
+    public boolean isIndexed() {
+
+        for (Future<?> future : getIndexing()) {
+
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Waits for the background indexing of all of the path items to complete. The path items whose indexing fails
+     * count as indexed: they are indexed again by the first lookup that reaches them, which reports the failure.
+     *
+     * @param   timeout  The maximum time to wait.
+     * @param   unit     The unit of the <code>timeout</code>.
+     *
+     * @return  <code>true</code> if the indexing is complete; <code>false</code> if the <code>timeout</code> elapsed.
+     *
+     * @throws  InterruptedException  If the current thread is interrupted while waiting.
+     */
+    public boolean awaitIndexed(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        long nanos = unit.toNanos(timeout);
+
+        for (Future<?> future : getIndexing()) {
+
+            try {
+                future.get(Math.max(0, nanos - (System.nanoTime() - start)), TimeUnit.NANOSECONDS);
+            }
+            catch (ExecutionException e) {
+                // The lookups index the path item again.
+            }
+            catch (CancellationException e) {
+                // The path item has been removed.
+            }
+            catch (TimeoutException e) {
+                return false;
+            }
+        }
+
+        return true;
+    } // end method awaitIndexed
+
+    /**
+     * Waits for the background indexing of the given <code>pathItem</code>, if any, to complete.
+     *
+     * @param  pathItem  The path item about to be looked up.
+     */
+    private void await(PathItem pathItem) {
+        Future<?> future = indexing.get(pathItem);
+
+        if (future == null) {
+            return;
+        }
+
+        try {
+            future.get();
+        }
+        catch (InterruptedException e) {
+
+            // The lookup indexes the path item itself, and the indexing is left for a later lookup to wait on.
+            Thread.currentThread().interrupt();
+            return;
+        }
+        catch (ExecutionException e) {
+            // The lookup indexes the path item again and reports the failure.
+        }
+        catch (CancellationException e) {
+            // The lookup indexes the path item itself.
+        }
+
+        indexing.remove(pathItem);
+    } // end method await
+
+    /**
+     * Returns the background indexing of the path items started so far.
+     *
+     * @return  A copy of the futures of the indexing.
+     */
+    private List<Future<?>> getIndexing() {
+
+        synchronized (indexing) {
+            return new ArrayList<Future<?>>(indexing.values());
+        }
+    }
+
+    /**
+     * Cancels the given background indexing, unless it is <code>null</code>. A running indexing is left to complete
+     * rather than interrupted, since an interrupted read could leave the path item indexed with only part of its
+     * resources.
+     *
+     * @param  future  The future of the indexing or <code>null</code>.
+     */
+    private static void cancel(Future<?> future) {
+
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the path items in search order.
+     *
+     * @return  An immutable list of path items.
+     */
+    public List<PathItem> getPathItems() {
+        return Collections.unmodifiableList(pathItems);
+    }
+
     /**
      * Returns a resource for the given <code>name</code>.
      *
@@ -102,15 +275,28 @@ public class ResourceFinder {
         name = Paths.normalize(name, '/');
 
         for (PathItem pathItem : pathItems) {
+            await(pathItem);
+
+            ResourceNameFilter filter = getNameFilter(pathItem);
+
+            if ((filter != null) && !filter.mightContain(name, recursionType)) {
+                filterSkips.incrementAndGet();
+                continue;
+            }
+
             Resource resource = pathItem.findResource(name, recursionType);
 
             if (resource != null) {
                 return resource;
             }
+
+            if (filter != null) {
+                falsePositives.incrementAndGet();
+            }
         }
 
         return null;
-    }
+    } // end method find
 
     /**
      * Returns a list of resources that match the given resource <code>name</code>.
@@ -125,12 +311,88 @@ public class ResourceFinder {
         List<Resource> resources = new ArrayList<Resource>();
 
         for (PathItem pathItem : pathItems) {
-            resources.addAll(pathItem.findResources(name, recursionType));
+            await(pathItem);
+
+            ResourceNameFilter filter = getNameFilter(pathItem);
+
+            if ((filter != null) && !filter.mightContain(name, recursionType)) {
+                filterSkips.incrementAndGet();
+                continue;
+            }
+
+            List<Resource> found = pathItem.findResources(name, recursionType);
+
+            if ((filter != null) && found.isEmpty()) {
+                falsePositives.incrementAndGet();
+            }
+
+            resources.addAll(found);
         }
 
         return resources;
     }
 
+    /**
+     * Returns the resources that match each of the given resource <code>names</code>. Each path item is asked for all
+     * of the names at once, so that it can go over its resources a single time for the whole batch.
+     *
+     * @param   names  The names of the resources to find.
+     *
+     * @return  The {@link Resource}s that match each name, in the order of the path items, according to the names in
+     *          the order in which they are given. A name that cannot be found is mapped to an empty list.
+     */
+    public Map<String, List<Resource>> findAll(Collection<String> names) {
+        Map<String, List<Resource>> resources = new LinkedHashMap<String, List<Resource>>();
+
+        for (String name : names) {
+            resources.put(name, new ArrayList<Resource>());
+        }
+
+        for (PathItem pathItem : pathItems) {
+            await(pathItem);
+
+            ResourceNameFilter filter = getNameFilter(pathItem);
+            List<String> candidates = new ArrayList<String>();
+
+            for (String name : resources.keySet()) {
+                String normalized = Paths.normalize(name, '/');
+
+                if ((filter != null) && !filter.mightContain(normalized, recursionType)) {
+                    filterSkips.incrementAndGet();
+                    continue;
+                }
+
+                candidates.add(normalized);
+            }
+
+            if (candidates.isEmpty()) {
+                continue;
+            }
+
+            Map<String, List<Resource>> found = pathItem.findResources(candidates, recursionType);
+
+            if (found == null) {
+                continue;
+            }
+
+            for (Map.Entry<String, List<Resource>> entry : resources.entrySet()) {
+                List<Resource> matches = found.get(Paths.normalize(entry.getKey(), '/'));
+
+                if (matches == null) {
+                    continue;
+                }
+
+                if ((filter != null) && matches.isEmpty()) {
+                    falsePositives.incrementAndGet();
+                }
+
+                entry.getValue().addAll(matches);
+            }
+        } // end for
+
+        return resources;
+    } // end method findAll
+
     /**
      * Returns a list of resources that match the given file <code>extension</code>.
      *
@@ -144,9 +406,67 @@ public class ResourceFinder {
         List<Resource> resources = new ArrayList<Resource>();
 
         for (PathItem pathItem : pathItems) {
+            await(pathItem);
             resources.addAll(pathItem.findResourcesForExtension(extension, recursionType));
         }
 
         return resources;
     }
+
+    /**
+     * Hands the contents of every resource accepted by the given <code>filter</code> to the given <code>visitor</code>,
+     * path item by path item.
+     *
+     * @param  filter   The filter criteria used to select the resources to visit.
+     * @param  visitor  The visitor to which the resources are handed.
+     */
+    public void scan(ResourceFilter filter, ResourceVisitor visitor) {
+
+        for (PathItem pathItem : pathItems) {
+            await(pathItem);
+            pathItem.scan(filter, recursionType, visitor);
+        }
+    }
+
+    /**
+     * Returns the name filter published by the given <code>pathItem</code>.
+     *
+     * @param   pathItem  The path item.
+     *
+     * @return  The name filter or <code>null</code> if the path item does not publish one.
+     */
+    private static ResourceNameFilter getNameFilter(PathItem pathItem) {
+        return (pathItem instanceof IndexedPathItem) ? ((IndexedPathItem)pathItem).getNameFilter() : null;
+    }
+
+    /**
+     * Returns the number of lookups of a path item that have been skipped because its name filter ruled them out.
+     *
+     * @return  The number of skipped lookups.
+     */
+    public long getFilterSkips() {
+        return filterSkips.get();
+    }
+
+    /**
+     * Returns the number of lookups of a path item that its name filter let through but that found nothing.
+     *
+     * @return  The number of false positives.
+     */
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    /**
+     * Returns the observed rate at which the name filters of the path items let through lookups of resources that do
+     * not exist, i.e., the ratio of {@link #getFalsePositives() false positives} to all lookups of missing resources
+     * that were filtered.
+     *
+     * @return  The false positive rate or <code>0</code> if no lookup of a missing resource has been filtered yet.
+     */
+    public double getFalsePositiveRate() {
+        long positives = falsePositives.get();
+        long negatives = positives + filterSkips.get();
+        return (negatives == 0) ? 0 : ((double)positives / negatives);
+    }
 } // end class ResourceFinder
@@ -17,8 +17,19 @@
 
 package com.soeima.resources;
 
+import com.soeima.resources.util.DaemonThreadFactory;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The resource loader loads {@link Resource}s.
@@ -30,14 +41,96 @@ import java.util.List;
  */
 public class ResourceLoader {
 
+    /** Indexes the search paths in the background. */
+    private static final ExecutorService indexer =
+        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                     new DaemonThreadFactory("jresources-index"));
+
     /** Performs the actual resource search. */
     private ResourceFinder finder;
 
+    /** The search paths, in the same order as the path items of the {@link #finder}. */
+    private List<String> paths;
+
+    /**
+     * The snapshot this resource loader has been restored from, which answers the lookups until the search paths are
+     * needed as a whole, or <code>null</code>.
+     */
+    private LoaderSnapshot snapshot;
+
+    /** Whether the search paths are indexed in the background as soon as they are added. */
+    private boolean eagerIndexing;
+
+    /** Whether the first lookups of a single resource are answered while the search paths are still being read. */
+    private boolean earlyAnswers;
+
     /**
      * Creates a new {@link ResourceLoader} object.
      */
     public ResourceLoader() {
         finder = new ResourceFinder();
+        paths = new ArrayList<String>();
+    }
+
+    /**
+     * Restores a resource loader from the snapshot stored in the given <code>file</code> by {@link #snapshot(File)}.
+     * The search paths are only opened once a lookup involves them, and a lookup skips the local files and directories
+     * that, according to the snapshot, do not hold the requested resource, provided they have not changed since the
+     * snapshot was taken.
+     *
+     * @param   file  The snapshot file.
+     *
+     * @return  A new resource loader with the search paths and the recursion type of the snapshot.
+     *
+     * @throws  ResourceException  If the file cannot be read or is not a snapshot.
+     */
+    public static ResourceLoader fromSnapshot(File file) {
+        ResourceLoader loader = new ResourceLoader();
+
+        try {
+            loader.snapshot = LoaderSnapshot.open(file);
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+
+        loader.paths.addAll(loader.snapshot.getPaths());
+        loader.finder.setRecursionType(loader.snapshot.getRecursionType());
+        return loader;
+    }
+
+    /**
+     * Stores the search paths of this resource loader, along with the merged index of all of their resources and the
+     * stamps of the local files and directories backing them, into the given <code>file</code>.
+     *
+     * @param   file  The snapshot file, which is overwritten.
+     *
+     * @throws  ResourceException  If the resources cannot be listed or the snapshot cannot be written.
+     *
+     * @see     #fromSnapshot(File)
+     */
+    public void snapshot(File file) {
+        releaseSnapshot();
+
+        try {
+            LoaderSnapshot.write(file, paths, finder.getPathItems(), finder.getRecursionType());
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * Hands the path items created so far by the snapshot over to the {@link #finder}, creating the others, and stops
+     * answering lookups from the snapshot.
+     */
+    private void releaseSnapshot() {
+
+        if (snapshot != null) {
+            finder.setPaths(snapshot.getPathItems());
+            IOUtil.close(snapshot);
+            snapshot = null;
+        }
     }
 
     /**
@@ -46,7 +139,15 @@ public class ResourceLoader {
      * @param  path  The path to add.
      */
     public void addPath(String path) {
-        finder.addPath(PathItems.newPathItem(path));
+        releaseSnapshot();
+
+        PathItem pathItem = newPathItem(path);
+        finder.addPath(pathItem);
+        paths.add(path);
+
+        if (eagerIndexing) {
+            finder.index(pathItem, indexer);
+        }
     }
 
     /**
@@ -55,7 +156,17 @@ public class ResourceLoader {
      * @param  path  The path to remove.
      */
     public void removePath(String path) {
-        finder.removePath(PathItems.newPathItem(path));
+        releaseSnapshot();
+
+        int index = paths.indexOf(path);
+
+        if (index < 0) {
+            finder.removePath(PathItems.newPathItem(path));
+            return;
+        }
+
+        finder.removePath(finder.getPathItems().get(index));
+        paths.remove(index);
     }
 
     /**
@@ -64,13 +175,124 @@ public class ResourceLoader {
      * @param  paths  The new search paths.
      */
     public void setPaths(List<String> paths) {
+        releaseSnapshot();
+
         List<PathItem> pathItems = new ArrayList<PathItem>();
 
         for (String path : paths) {
-            pathItems.add(PathItems.newPathItem(path));
+            pathItems.add(newPathItem(path));
         }
 
         finder.setPaths(pathItems);
+        this.paths = new ArrayList<String>(paths);
+
+        if (eagerIndexing) {
+
+            for (PathItem pathItem : pathItems) {
+                finder.index(pathItem, indexer);
+            }
+        }
+    }
+
+    /**
+     * Sets whether the paths added from now on by {@link #addPath(String)} and {@link #setPaths(List)} are indexed in
+     * the background right away, rather than by the first lookup that involves them. This takes the cost of reading
+     * the entries of an archive off the first request, while a lookup only waits for the paths it actually reaches
+     * that are not indexed yet.
+     *
+     * @param  eagerIndexing  <code>true</code> to index the paths in the background; <code>false</code> otherwise.
+     *
+     * @see    #awaitIndexed(long, TimeUnit)
+     */
+    public void setEagerIndexing(boolean eagerIndexing) {
+        this.eagerIndexing = eagerIndexing;
+    }
+
+    /**
+     * Returns whether the paths are indexed in the background as soon as they are added.
+     *
+     * <p>By default this method returns <code>false</code>.</p>
+     *
+     * @return  <code>true</code> if the paths are indexed in the background; <code>false</code> otherwise.
+     */
+    public boolean isEagerIndexing() {
+        return eagerIndexing;
+    }
+
+    /**
+     * Sets whether, on the paths added from now on by {@link #addPath(String)} and {@link #setPaths(List)}, the first
+     * lookup of a single resource returns as soon as the reading of the path reaches the resource, rather than once the
+     * whole path has been read. This only applies to the paths that are {@link EarlyAnswerPathItem}s, such as archives,
+     * which then finish reading their resources in the background.
+     *
+     * @param  earlyAnswers  <code>true</code> to answer the first lookups early; <code>false</code> otherwise.
+     */
+    public void setEarlyAnswers(boolean earlyAnswers) {
+        this.earlyAnswers = earlyAnswers;
+    }
+
+    /**
+     * Returns whether the first lookups of a single resource are answered while the paths are still being read.
+     *
+     * <p>By default this method returns <code>false</code>.</p>
+     *
+     * @return  <code>true</code> if the first lookups are answered early; <code>false</code> otherwise.
+     */
+    public boolean isEarlyAnswers() {
+        return earlyAnswers;
+    }
+
+    /**
+     * Creates the path item of the given search <code>path</code>, answering its first lookups early if required.
+     *
+     * @param   path  The search path.
+     *
+     * @return  The new path item.
+     */
+    PathItem newPathItem(String path) {
+        PathItem pathItem = PathItems.newPathItem(path);
+
+        if (earlyAnswers && (pathItem instanceof EarlyAnswerPathItem)) {
+            ((EarlyAnswerPathItem)pathItem).setEarlyAnswers(true);
+        }
+
+        return pathItem;
+    }
+
+    /**
+     * Returns <code>true</code> if none of the search paths is still being indexed in the background.
+     *
+     * @return  <code>true</code> if the background indexing is complete; <code>false</code> otherwise.
+     */
+    public boolean isIndexed() {
+        return finder.isIndexed();
+    }
+
+    /**
+     * Waits for the background indexing of the search paths to complete.
+     *
+     * @throws  InterruptedException  If the current thread is interrupted while waiting.
+     *
+     * @see     #setEagerIndexing(boolean)
+     */
+    public void awaitIndexed() throws InterruptedException {
+        finder.awaitIndexed(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Waits at most for the given <code>timeout</code> for the background indexing of the search paths to complete.
+     *
+     * @param   timeout  The maximum time to wait.
+     * @param   unit     The unit of the <code>timeout</code>.
+     *
+     * @return  <code>true</code> if the indexing is complete; <code>false</code> if the <code>timeout</code> elapsed.
+     *
+     * @throws  InterruptedException  If the current thread is interrupted while waiting.
+     *
+     * @see     ResourceFinder#awaitIndexed(long, TimeUnit)
+     */
+    public boolean awaitIndexed(long timeout, TimeUnit unit) throws InterruptedException {
+        return finder.awaitIndexed(timeout, unit);
     }
 
     /**
@@ -103,7 +325,7 @@ public class ResourceLoader {
      * @return  A {@link Resource} for the given <code>resourceName</code> or <code>null</code> if one cannot be found.
      */
     public Resource getResource(String resourceName) {
-        return finder.find(resourceName);
+        return (snapshot != null) ? snapshot.find(resourceName, getRecursionType()) : finder.find(resourceName);
     }
 
     /**
@@ -114,7 +336,33 @@ public class ResourceLoader {
      * @return  A list of resources for the given <code>resourceName</code> or an empty list if there aren't any.
      */
     public List<Resource> getResources(String resourceName) {
-        return finder.findAll(resourceName);
+        return (snapshot != null) ? snapshot.findAll(resourceName, getRecursionType()) : finder.findAll(resourceName);
+    }
+
+    /**
+     * Returns all of the resources that share each of the given <code>resourceNames</code>. Looking up many names at
+     * once is much faster than looking them up one by one, since each path item goes over its resources a single time
+     * for the whole batch.
+     *
+     * @param   resourceNames  The names of the resources to locate.
+     *
+     * @return  The resources for each of the given names, in the order in which the names are given, with an empty list
+     *          for the names that cannot be found.
+     */
+    public Map<String, List<Resource>> getResources(Collection<String> resourceNames) {
+
+        if (snapshot == null) {
+            return finder.findAll(resourceNames);
+        }
+
+        // The snapshot tells which path items to involve for each name, which beats a pass over all of them.
+        Map<String, List<Resource>> resources = new LinkedHashMap<String, List<Resource>>();
+
+        for (String resourceName : resourceNames) {
+            resources.put(resourceName, snapshot.findAll(resourceName, getRecursionType()));
+        }
+
+        return resources;
     }
 
     /**
@@ -125,6 +373,58 @@ public class ResourceLoader {
      * @return  A list of resources for the given <code>extension</code> or an empty list if there aren't any.
      */
     public List<Resource> getResourcesForExtension(String extension) {
+        releaseSnapshot();
         return finder.findForExtension(extension);
     }
+
+    /**
+     * Hands the contents of every resource accepted by the given <code>filter</code> to the given <code>visitor</code>.
+     * Unlike reading each resource returned by {@link #getResourcesForExtension(String)}, which may reopen and scan a
+     * sequential archive once per resource, this reads such an archive a single time.
+     *
+     * @param   filter   The filter criteria used to select the resources to visit.
+     * @param   visitor  The visitor to which the resources are handed.
+     *
+     * @throws  ResourceException  If the resources cannot be read or the <code>visitor</code> fails.
+     */
+    public void scan(ResourceFilter filter, ResourceVisitor visitor) {
+        releaseSnapshot();
+        finder.scan(filter, visitor);
+    }
+
+    /**
+     * Hands the contents of every resource that has the given file <code>extension</code> to the given <code>
+     * visitor</code>.
+     *
+     * @param   extension  The extension.
+     * @param   visitor    The visitor to which the resources are handed.
+     *
+     * @throws  ResourceException  If the resources cannot be read or the <code>visitor</code> fails.
+     *
+     * @see     #scan(ResourceFilter, ResourceVisitor)
+     */
+    public void scanForExtension(final String extension, ResourceVisitor visitor) {
+        releaseSnapshot();
+        finder.scan(new ResourceFilter() {
+
+                /**
+                 * @see  ResourceFilter#accept(String)
+                 */
+                @Override public boolean accept(String name) {
+                    return Paths.isExtension(name, extension);
+                }
+            }, visitor);
+    }
+
+    /**
+     * Returns the observed rate at which the name filters of the path items let through lookups of resources that do
+     * not exist.
+     *
+     * @return  The false positive rate.
+     *
+     * @see     ResourceFinder#getFalsePositiveRate()
+     */
+    public double getFalsePositiveRate() {
+        return finder.getFalsePositiveRate();
+    }
 } // end class ResourceLoader
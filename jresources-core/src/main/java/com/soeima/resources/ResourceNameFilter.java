@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.soeima.resources.util.Paths;
+import java.util.Collection;
+
+/**
+ * A compact summary of the resource names held by a path item, which tells whether a resource may be found there. The
+ * summary is a Bloom filter of both the full names and the base names, so it never misses a resource that exists but
+ * may report, with a small probability, one that does not.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ResourceNameFilter {
+
+    /** The default probability of reporting a resource that does not exist. */
+    public static final double DefaultFalsePositiveRate = 0.01;
+
+    /** The filter of the full and base names. */
+    private BloomFilter<CharSequence> filter;
+
+    /**
+     * Creates a new {@link ResourceNameFilter} object with the {@link #DefaultFalsePositiveRate}.
+     *
+     * @param  names  The names of the resources.
+     */
+    public ResourceNameFilter(Collection<String> names) {
+        this(names, DefaultFalsePositiveRate);
+    }
+
+    /**
+     * Creates a new {@link ResourceNameFilter} object.
+     *
+     * @param  names              The names of the resources.
+     * @param  falsePositiveRate  The probability of reporting a resource that does not exist.
+     */
+    public ResourceNameFilter(Collection<String> names, double falsePositiveRate) {
+        filter = BloomFilter.create(Funnels.stringFunnel(), Math.max(1, names.size() * 2), falsePositiveRate);
+
+        for (String name : names) {
+            String normalized = normalize(name);
+            filter.put(normalized);
+            filter.put(getBaseName(normalized));
+        }
+    }
+
+    /**
+     * Returns <code>false</code> if the resource with the given <code>name</code> is certainly not among the names of
+     * this filter. A recursive lookup matches any name that ends with the given one, so only its base name is checked.
+     *
+     * @param   name           The name of the resource to find.
+     * @param   recursionType  The recursion type used to find the resource.
+     *
+     * @return  <code>true</code> if the resource may exist; <code>false</code> if it does not.
+     */
+    public boolean mightContain(String name, RecursionType recursionType) {
+        String normalized = normalize(name);
+        return filter.mightContain((recursionType == RecursionType.Recursive) ? getBaseName(normalized) : normalized);
+    }
+
+    /**
+     * Returns the probability that {@link #mightContain(String, RecursionType)} reports a resource that does not
+     * exist, given the number of names in this filter.
+     *
+     * @return  The expected false positive rate.
+     */
+    public double getExpectedFalsePositiveRate() {
+        return filter.expectedFpp();
+    }
+
+    /**
+     * Normalizes the given resource <code>name</code>.
+     *
+     * @param   name  The name of a resource.
+     *
+     * @return  The name with forward slashes and without a leading slash.
+     */
+    private static String normalize(String name) {
+        return Paths.stripLeadingSlash(Paths.normalize(name, '/'));
+    }
+
+    /**
+     * Returns the base name of the given normalized <code>name</code>.
+     *
+     * @param   name  The normalized name of a resource.
+     *
+     * @return  The part of the name after its last slash.
+     */
+    private static String getBaseName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+} // end class ResourceNameFilter
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Instances that implement this interface are handed the contents of each resource visited by a scan.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ * @see      ResourceLoader#scan(ResourceFilter, ResourceVisitor)
+ */
+public interface ResourceVisitor {
+
+    /**
+     * Visits the given <code>resource</code>.
+     *
+     * <p>The input stream is only valid until this method returns, since a path item that scans its resources in a
+     * single pass moves on to the next resource afterwards. It does not need to be closed.</p>
+     *
+     * @param   resource  The visited resource.
+     * @param   is        The contents of the resource.
+     *
+     * @throws  IOException  If the contents of the resource cannot be processed.
+     */
+    void visit(Resource resource, InputStream is) throws IOException;
+}
@@ -18,15 +18,24 @@
 package com.soeima.resources.archive.cache;
 
 import com.soeima.resources.AbstractPathItem;
+import com.soeima.resources.EarlyAnswerPathItem;
+import com.soeima.resources.IndexedPathItem;
 import com.soeima.resources.PathItem;
 import com.soeima.resources.RecursionType;
 import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceBatch;
 import com.soeima.resources.ResourceException;
+import com.soeima.resources.ResourceFilter;
+import com.soeima.resources.ResourceNameFilter;
+import com.soeima.resources.ResourceVisitor;
 import com.soeima.resources.util.Paths;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -36,7 +45,8 @@ import java.util.List;
  * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
  * @version  2013/04/15
  */
-public abstract class AbstractArchivePathItem extends AbstractPathItem {
+public abstract class AbstractArchivePathItem extends AbstractPathItem implements IndexedPathItem,
+                                                                                  EarlyAnswerPathItem {
 
     /** The path or <tt>URL</tt> to the <tt>Jar</tt>. */
     private String url;
@@ -44,6 +54,9 @@ public abstract class AbstractArchivePathItem extends AbstractPathItem {
     /** The backing <tt>Jar</tt> archive cache. */
     private ArchiveCache cache;
 
+    /** Whether the first lookup of a single resource is answered while the entries are still being read. */
+    private boolean earlyAnswers;
+
     /**
      * Creates a new {@link AbstractArchivePathItem} object.
      *
@@ -55,6 +68,38 @@ public abstract class AbstractArchivePathItem extends AbstractPathItem {
         url = toURL(path);
     }
 
+    /**
+     * Creates a new {@link AbstractArchivePathItem} object backed by the given <code>archive</code> rather than by one
+     * created through {@link #newArchive(String)}.
+     *
+     * @param  path     The backing path.
+     * @param  archive  The backing archive.
+     */
+    protected AbstractArchivePathItem(String path, Archive archive) {
+        super(path);
+        cache = new ArchiveCache(archive);
+        url = toURL(path);
+    }
+
+    /**
+     * The entries of the archive are read by a pass that goes on in the background.
+     *
+     * @see  EarlyAnswerPathItem#setEarlyAnswers(boolean)
+     * @see  ArchiveCache#find(ResourceFilter)
+     */
+    @Override public void setEarlyAnswers(boolean earlyAnswers) {
+        this.earlyAnswers = earlyAnswers;
+    }
+
+    /**
+     * By default this method returns <code>false</code>.
+     *
+     * @see  EarlyAnswerPathItem#isEarlyAnswers()
+     */
+    @Override public boolean isEarlyAnswers() {
+        return earlyAnswers;
+    }
+
     /**
      * Creates a new archive for the given <code>path</code>.
      *
@@ -87,23 +132,119 @@ public abstract class AbstractArchivePathItem extends AbstractPathItem {
      */
     @Override public List<Resource> findResourcesForExtension(final String extension,
                                                               final RecursionType recursionType) {
-        return findResources(new ArchiveEntryFilter() {
+        return findResources(new ResourceFilter() {
+
+                /**
+                 * @see  ResourceFilter#accept(String)
+                 */
+                @Override public boolean accept(String entryName) {
+                    return Paths.isExtension(entryName, extension);
+                }
+            }, recursionType);
+    }
+
+    /**
+     * @see  AbstractPathItem#findResources(ResourceFilter, RecursionType)
+     */
+    @Override protected List<Resource> findResources(final ResourceFilter filter, final RecursionType recursionType) {
+        return findResources(new ResourceFilter() {
 
                 /**
-                 * @see  ArchiveEntryFilter#accept(String)
+                 * @see  ResourceFilter#accept(String)
                  */
                 @Override public boolean accept(String entryName) {
+                    return isVisible(entryName, recursionType) && filter.accept(entryName);
+                }
+            }, -1);
+    }
+
+    /**
+     * Reads the archive in a single pass and hands each accepted entry to the <code>visitor</code> while the archive is
+     * positioned on it.
+     *
+     * @see  PathItem#scan(ResourceFilter, RecursionType, ResourceVisitor)
+     */
+    @Override public void scan(final ResourceFilter filter, final RecursionType recursionType,
+                               final ResourceVisitor visitor) {
+
+        try {
+            cache.scan(new ArchiveVisitor() {
 
-                    if (recursionType == RecursionType.NonRecursive) {
+                    /**
+                     * @see  ArchiveVisitor#visit(ArchiveEntry, InputStream)
+                     */
+                    @Override public void visit(ArchiveEntry entry, InputStream is) throws IOException {
+                        String entryName = entry.getName();
 
-                        if (!Paths.getParentPath(entryName).isEmpty()) {
-                            return false;
+                        if (isVisible(entryName, recursionType) && filter.accept(entryName)) {
+                            visitor.visit(newResource(entryName), is);
                         }
                     }
+                });
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+    }
 
-                    return Paths.isExtension(entryName, extension);
-                }
-            }, -1);
+    /**
+     * Reads the whole contents of each of the given <code>resources</code> at once. This is much faster than reading
+     * the resources one by one: a sequential archive is read a single time for all of them, while the entries of an
+     * archive that supports random access are inflated concurrently.
+     *
+     * @param   resources  The resources to read, which are normally found through this path item. The resources of
+     *                     other path items are read on their own.
+     *
+     * @return  The contents of each resource, in the order of the given <code>resources</code>, with <code>null</code>
+     *          for the resources that no longer exist.
+     *
+     * @throws  ResourceException  If the resources cannot be read.
+     */
+    public List<byte[]> readAll(Collection<Resource> resources) {
+        byte[][] contents = new byte[resources.size()][];
+        List<String> entryNames = new ArrayList<String>();
+        List<Integer> positions = new ArrayList<Integer>();
+        int i = 0;
+
+        for (Resource resource : resources) {
+
+            if ((resource instanceof AbstractArchiveResource)
+                    && ((AbstractArchiveResource)resource).isContainedIn(this)) {
+                entryNames.add(((AbstractArchiveResource)resource).getEntryName());
+                positions.add(i);
+            }
+            else {
+                contents[i] = resource.getBytes();
+            }
+
+            i++;
+        }
+
+        try {
+            List<byte[]> read = cache.readAll(entryNames);
+
+            for (int j = 0; j < read.size(); j++) {
+                contents[positions.get(j)] = read.get(j);
+            }
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+
+        return Arrays.asList(contents);
+    } // end method readAll
+
+    /**
+     * Returns <code>true</code> if the entry with the given <code>entryName</code> can be found according to the given
+     * <code>recursionType</code>, i.e., a non-recursive lookup only finds the entries at the root of the archive.
+     *
+     * @param   entryName      The name of the entry.
+     * @param   recursionType  The recursion type.
+     *
+     * @return  <code>true</code> if the entry can be found; <code>false</code> otherwise.
+     */
+    private static boolean isVisible(String entryName, RecursionType recursionType) {
+        return (recursionType == RecursionType.Recursive) || Paths.getParentPath(entryName).isEmpty();
     }
 
     /**
@@ -113,6 +254,22 @@ public abstract class AbstractArchivePathItem extends AbstractPathItem {
         return cache.getInputStream(name);
     }
 
+    /**
+     * The archive is indexed once its entries have been read by the first lookup.
+     *
+     * @see  IndexedPathItem#getNameFilter()
+     */
+    @Override public ResourceNameFilter getNameFilter() {
+        return cache.getNameFilter();
+    }
+
+    /**
+     * @see  IndexedPathItem#index()
+     */
+    @Override public void index() {
+        cache.getEntries();
+    }
+
     /**
      * @see  PathItem#getURI()
      */
@@ -130,16 +287,45 @@ public abstract class AbstractArchivePathItem extends AbstractPathItem {
      * @see  PathItem#findResources(String, RecursionType)
      */
     @Override protected List<Resource> findResources(final String name, final RecursionType recursionType, int amount) {
-        return findResources(new ArchiveEntryFilter() {
+        ResourceFilter filter = new ResourceFilter() {
 
-                /**
-                 * @see  JarEntryFilter#accept(String)
-                 */
-                @Override public boolean accept(String entryName) {
-                    return (recursionType == RecursionType.Recursive) ? Paths.endsWithNormalized(entryName, name)
-                                                                      : Paths.equalsNormalized(entryName, name);
-                }
-            }, amount);
+            /**
+             * @see  ResourceFilter#accept(String)
+             */
+            @Override public boolean accept(String entryName) {
+                return (recursionType == RecursionType.Recursive) ? Paths.endsWithNormalized(entryName, name)
+                                                                  : Paths.equalsNormalized(entryName, name);
+            }
+        };
+
+        if (!earlyAnswers || (amount != 1)) {
+            return findResources(filter, amount);
+        }
+
+        List<Resource> resources = new ArrayList<Resource>();
+        ArchiveEntry entry = cache.find(filter);
+
+        if (entry != null) {
+            resources.add(newResource(entry.getName()));
+        }
+
+        return resources;
+    } // end method findResources
+
+    /**
+     * Matches every entry of the archive against all of the requested names in a single pass.
+     *
+     * @see  AbstractPathItem#findResources(ResourceBatch)
+     */
+    @Override protected void findResources(ResourceBatch batch) {
+
+        for (Iterator<ArchiveEntry> entryIt = cache.getEntries(); entryIt.hasNext();) {
+            ArchiveEntry entry = entryIt.next();
+
+            if (!entry.isDirectory() && batch.matches(entry.getName())) {
+                batch.add(entry.getName(), newResource(entry.getName()));
+            }
+        }
     }
 
     /**
@@ -152,7 +338,7 @@ public abstract class AbstractArchivePathItem extends AbstractPathItem {
      *
      * @return  A list of {@link Resource}s or an empty list if none are found.
      */
-    private List<Resource> findResources(ArchiveEntryFilter filter, int amount) {
+    private List<Resource> findResources(ResourceFilter filter, int amount) {
         List<Resource> resources = new ArrayList<Resource>();
 
         for (Iterator<ArchiveEntry> entryIt = cache.getEntries(); entryIt.hasNext();) {
@@ -175,22 +361,4 @@ public abstract class AbstractArchivePathItem extends AbstractPathItem {
 
         return resources;
     } // end method findResources
-
-    /**
-     * Instances that implement this interface are used to filter archive entries.
-     *
-     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
-     * @version  $Revision$, 2012/09/29
-     */
-    private static interface ArchiveEntryFilter {
-
-        /**
-         * Returns <code>true</code> if the given <code>entryName</code> is valid.
-         *
-         * @param   entryName  The entry name to check.
-         *
-         * @return  <code>true</code> if the <code>entryName</code> is valid; <code>false</code> otherwise.
-         */
-        boolean accept(String entryName);
-    }
 } // end class AbstractArchivePathItem
@@ -43,6 +43,27 @@ public abstract class AbstractArchiveResource extends AbstractResource {
         super(pathItem, name);
     }
 
+    /**
+     * Returns the name of the archive entry backing this resource.
+     *
+     * @return  The name of the archive entry.
+     */
+    String getEntryName() {
+        return getName();
+    }
+
+    /**
+     * Returns <code>true</code> if this resource is contained in the given <code>pathItem</code>.
+     *
+     * @param   pathItem  The path item to check.
+     *
+     * @return  <code>true</code> if this resource is contained in the <code>pathItem</code>; <code>false</code>
+     *          otherwise.
+     */
+    boolean isContainedIn(PathItem pathItem) {
+        return getPathItem() == pathItem;
+    }
+
     /**
      * @see  Resource#getPath()
      */
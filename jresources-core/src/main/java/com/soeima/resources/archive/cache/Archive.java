@@ -18,8 +18,10 @@
 package com.soeima.resources.archive.cache;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Provides an interface for all archive types. If an extension wishes to use the archive cache, it must implement this
@@ -81,4 +83,27 @@ public interface Archive extends Closeable {
      *          exist.
      */
     InputStream getInputStream(ArchiveEntry entry);
+
+    /**
+     * Hands each entry of this archive, other than directories, to the given <code>visitor</code> along with its
+     * contents, in the order in which the entries are stored. A sequential archive is read in a single forward pass,
+     * rather than being reopened and skipped ahead for each entry as {@link #getInputStream(ArchiveEntry)} does.
+     *
+     * @param   visitor  The visitor to which the entries are handed.
+     *
+     * @throws  IOException  If the archive cannot be read or the <code>visitor</code> fails.
+     */
+    void scan(ArchiveVisitor visitor) throws IOException;
+
+    /**
+     * Reads the whole contents of each of the given <code>entries</code>, going over the archive as few times as its
+     * format allows.
+     *
+     * @param   entries  The entries to read, which must belong to this archive.
+     *
+     * @return  The contents of each entry, in the order of the given <code>entries</code>.
+     *
+     * @throws  IOException  If any of the entries cannot be read.
+     */
+    List<byte[]> readAll(List<ArchiveEntry> entries) throws IOException;
 } // end interface Archive
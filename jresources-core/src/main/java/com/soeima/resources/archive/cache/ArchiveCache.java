@@ -17,12 +17,25 @@
 
 package com.soeima.resources.archive.cache;
 
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.ResourceFilter;
+import com.soeima.resources.ResourceNameFilter;
+import com.soeima.resources.util.DaemonThreadFactory;
 import com.soeima.resources.util.IOUtil;
 import com.soeima.resources.util.collections.ReferenceValueMap;
 import com.soeima.resources.util.collections.ReferenceValueMap.ReferenceType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Implements an archive cache. The archive cache provides a cache for a single archive.
@@ -35,12 +48,37 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class ArchiveCache {
 
+    /** Finishes reading the entries of the archives whose first lookup has been answered early. */
+    private static final ExecutorService indexer =
+        Executors.newCachedThreadPool(new DaemonThreadFactory("jresources-archive-index"));
+
     /** The archive being cached. */
     private Archive archive;
 
     /** Cache the archive entries according to their respective names. */
     private ConcurrentMap<String, ArchiveEntry> cache;
 
+    /** The filter of the names of the archive entries or <code>null</code> if they have not been read yet. */
+    private volatile ResourceNameFilter nameFilter;
+
+    /**
+     * The names of the cached entries, other than directories, in the order in which they are stored in the archive,
+     * so that a lookup on a warm cache finds the same entry as a lookup made while the entries are being read.
+     */
+    private List<String> names = new ArrayList<String>();
+
+    /**
+     * The entries read so far by the pass started by {@link #find(ResourceFilter)}, or <code>null</code> if no such
+     * pass is in progress. The pass, along with the fields below, is guarded by the {@link #cache}.
+     */
+    private volatile List<ArchiveEntry> streamed;
+
+    /** The filters of the lookups waiting on the pass in progress. */
+    private List<ResourceFilter> wanted;
+
+    /** The contents of the entries read by the pass in progress on behalf of the lookups that matched them. */
+    private Map<String, byte[]> early;
+
     /**
      * Creates a new {@link ArchiveCache} object.
      *
@@ -63,19 +101,246 @@ public class ArchiveCache {
         }
 
         synchronized (cache) {
+            awaitPass();
 
             if (cache.isEmpty()) {
+                load(archive.getEntries());
+            }
+
+            return cache.values().iterator();
+        }
+    }
+
+    /**
+     * Returns the first entry, other than a directory, accepted by the given <code>filter</code>.
+     *
+     * <p>If the entries have not been read yet, they are read by a pass that goes on in the background, and the entry
+     * is returned as soon as the pass reaches it rather than once the whole archive has been read. The contents of the
+     * entry are kept while the pass is in progress, so that reading it does not have to wait for the pass either.</p>
+     *
+     * @param   filter  The filter criteria used to match the entry.
+     *
+     * @return  The first matching entry or <code>null</code> if there is none or the archive cannot be opened.
+     *
+     * @throws  ResourceException  If the current thread is interrupted while waiting for the pass.
+     */
+    public ArchiveEntry find(ResourceFilter filter) {
+
+        if (!archive.isOpen() && !archive.open()) {
+            return null;
+        }
+
+        synchronized (cache) {
+
+            if ((streamed == null) && !cache.isEmpty()) {
+
+                for (String name : names) {
+                    ArchiveEntry entry = filter.accept(name) ? cache.get(name) : null;
 
-                for (Iterator<ArchiveEntry> entryIt = archive.getEntries(); entryIt.hasNext();) {
-                    ArchiveEntry entry = entryIt.next();
-                    cache.put(entry.getName(), entry);
+                    if (entry != null) {
+                        return entry;
+                    }
                 }
+
+                return null;
             }
 
-            return cache.values().iterator();
+            if (streamed == null) {
+                streamed = new ArrayList<ArchiveEntry>();
+                wanted = new ArrayList<ResourceFilter>();
+                early = new HashMap<String, byte[]>();
+                indexer.execute(new Runnable() {
+
+                        /**
+                         * @see  Runnable#run()
+                         */
+                        @Override public void run() {
+                            stream();
+                        }
+                    });
+            }
+
+            List<ArchiveEntry> entries = streamed;
+            List<ResourceFilter> filters = wanted;
+            filters.add(filter);
+
+            try {
+
+                for (int checked = 0;; cache.wait()) {
+
+                    for (; checked < entries.size(); checked++) {
+                        ArchiveEntry entry = entries.get(checked);
+
+                        if (!entry.isDirectory() && filter.accept(entry.getName())) {
+                            return entry;
+                        }
+                    }
+
+                    // The pass is over and none of its entries matches.
+                    if (streamed != entries) {
+                        return null;
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ResourceException(e);
+            }
+            finally {
+                filters.remove(filter);
+            }
+        } // end synchronized
+    } // end method find
+
+    /**
+     * Reads all of the entries of the archive for the pass started by {@link #find(ResourceFilter)}, handing each one
+     * over to the waiting lookups as soon as it is read, then stores them in the cache.
+     */
+    private void stream() {
+        List<ArchiveEntry> entries = streamed;
+        boolean complete = false;
+
+        try {
+
+            for (Iterator<ArchiveEntry> entryIt = archive.getEntries(); entryIt.hasNext();) {
+                ArchiveEntry entry = entryIt.next();
+
+                // The archive is positioned on the entry, so a wanted entry is read right away.
+                byte[] contents = isWanted(entry) ? read(entry) : null;
+
+                synchronized (cache) {
+                    entries.add(entry);
+
+                    if (contents != null) {
+                        early.put(entry.getName(), contents);
+                    }
+
+                    cache.notifyAll();
+                }
+            }
+
+            complete = true;
+        }
+        finally {
+
+            synchronized (cache) {
+
+                if (complete && cache.isEmpty()) {
+                    load(entries.iterator());
+                }
+
+                streamed = null;
+                wanted = null;
+                early = null;
+                cache.notifyAll();
+            }
+        }
+    } // end method stream
+
+    /**
+     * Returns <code>true</code> if a lookup waiting on the pass in progress matches the given <code>entry</code>.
+     *
+     * @param   entry  The entry just read by the pass.
+     *
+     * @return  <code>true</code> if the entry is wanted; <code>false</code> otherwise.
+     */
+    private boolean isWanted(ArchiveEntry entry) {
+
+        if (entry.isDirectory()) {
+            return false;
+        }
+
+        synchronized (cache) {
+
+            for (ResourceFilter filter : wanted) {
+
+                if (filter.accept(entry.getName())) {
+                    return true;
+                }
+            }
+
+            return false;
         }
     }
 
+    /**
+     * Reads the whole contents of the given <code>entry</code>, which the archive is positioned on.
+     *
+     * @param   entry  The entry.
+     *
+     * @return  The contents or <code>null</code> if they cannot be read, in which case the entry is read from the
+     *          archive once the pass completes.
+     */
+    private static byte[] read(ArchiveEntry entry) {
+        InputStream is = entry.getInputStream();
+
+        if (is == null) {
+            return null;
+        }
+
+        try {
+            return IOUtil.toByteArray(is);
+        }
+        catch (IOException e) {
+            return null;
+        }
+        finally {
+            IOUtil.close(is);
+        }
+    }
+
+    /**
+     * Waits for the pass started by {@link #find(ResourceFilter)}, if any, to complete. The caller must hold the lock
+     * of the {@link #cache}.
+     *
+     * @throws  ResourceException  If the current thread is interrupted while waiting.
+     */
+    private void awaitPass() {
+
+        try {
+
+            while (streamed != null) {
+                cache.wait();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * Stores the given archive <code>entries</code> in the cache and builds the filter of their names. The caller must
+     * hold the lock of the {@link #cache}.
+     *
+     * @param  entries  The entries of the archive.
+     */
+    private void load(Iterator<ArchiveEntry> entries) {
+        names = new ArrayList<String>();
+
+        while (entries.hasNext()) {
+            ArchiveEntry entry = entries.next();
+            cache.put(entry.getName(), entry);
+
+            if (!entry.isDirectory()) {
+                names.add(entry.getName());
+            }
+        }
+
+        if (archive.isOpen()) {
+            nameFilter = new ResourceNameFilter(names);
+        }
+    }
+
+    /**
+     * Returns the filter of the names of the archive entries, which is built when the entries are first read.
+     *
+     * @return  The filter or <code>null</code> if the entries have not been read yet.
+     */
+    public ResourceNameFilter getNameFilter() {
+        return nameFilter;
+    }
+
     /**
      * Returns an input stream for the given entry <code>name</code>.
      *
@@ -88,10 +353,112 @@ public class ArchiveCache {
      *          exist or if the backing archive has been closed.
      */
     public InputStream getInputStream(String entryName) {
+
+        if (streamed != null) {
+
+            synchronized (cache) {
+                byte[] contents = (early != null) ? early.get(entryName) : null;
+
+                if (contents != null) {
+                    return new ByteArrayInputStream(contents);
+                }
+
+                // The archive cannot be read while the pass is positioned on another entry.
+                awaitPass();
+            }
+        }
+
         ArchiveEntry entry = cache.get(entryName);
         return (archive.isOpen() && (entry != null)) ? archive.getInputStream(entry) : null;
     }
 
+    /**
+     * Reads the whole contents of the entries with the given <code>entryNames</code> at once.
+     *
+     * @param   entryNames  The names of the entries to read.
+     *
+     * @return  The contents of each entry, in the order of the given <code>entryNames</code>, with <code>null</code>
+     *          for the entries that do not exist.
+     *
+     * @throws  IOException  If the entries cannot be read.
+     *
+     * @see     Archive#readAll(List)
+     */
+    public List<byte[]> readAll(List<String> entryNames) throws IOException {
+
+        // Reads the entries first if required.
+        getEntries();
+
+        List<ArchiveEntry> entries = new ArrayList<ArchiveEntry>();
+        List<Integer> positions = new ArrayList<Integer>();
+
+        for (int i = 0; i < entryNames.size(); i++) {
+            ArchiveEntry entry = cache.get(entryNames.get(i));
+
+            if ((entry != null) && !entry.isDirectory()) {
+                entries.add(entry);
+                positions.add(i);
+            }
+        }
+
+        byte[][] contents = new byte[entryNames.size()][];
+
+        if (!entries.isEmpty() && archive.isOpen()) {
+            List<byte[]> read = archive.readAll(entries);
+
+            for (int i = 0; i < read.size(); i++) {
+                contents[positions.get(i)] = read.get(i);
+            }
+        }
+
+        return Arrays.asList(contents);
+    } // end method readAll
+
+    /**
+     * Hands each entry of the archive to the given <code>visitor</code> along with its contents.
+     *
+     * <p>A sequential archive can only be listed by reading it, so if its entries have not been read yet they are
+     * cached from the scan itself, once it completes, rather than by reading the archive a second time.</p>
+     *
+     * <p>The archive is scanned under the lock of the cache, so that no other reader moves it to another entry
+     * meanwhile.</p>
+     *
+     * @param   visitor  The visitor to which the entries are handed.
+     *
+     * @throws  IOException  If the archive cannot be opened or read, or the <code>visitor</code> fails.
+     *
+     * @see     Archive#scan(ArchiveVisitor)
+     */
+    public void scan(final ArchiveVisitor visitor) throws IOException {
+
+        if (!archive.isOpen() && !archive.open()) {
+            throw new IOException("Cannot open archive=" + archive.getPath());
+        }
+
+        synchronized (cache) {
+            awaitPass();
+
+            if (!cache.isEmpty()) {
+                archive.scan(visitor);
+                return;
+            }
+
+            final List<ArchiveEntry> entries = new ArrayList<ArchiveEntry>();
+            archive.scan(new ArchiveVisitor() {
+
+                    /**
+                     * @see  ArchiveVisitor#visit(ArchiveEntry, InputStream)
+                     */
+                    @Override public void visit(ArchiveEntry entry, InputStream is) throws IOException {
+                        entries.add(entry);
+                        visitor.visit(entry, is);
+                    }
+                });
+
+            load(entries.iterator());
+        } // end synchronized
+    } // end method scan
+
     /**
      * @see  Object#finalize()
      */
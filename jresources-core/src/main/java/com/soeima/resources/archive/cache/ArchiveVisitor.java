@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Instances that implement this interface are handed the contents of each entry visited by {@link
+ * Archive#scan(ArchiveVisitor)}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public interface ArchiveVisitor {
+
+    /**
+     * Visits the given <code>entry</code>.
+     *
+     * @param   entry  The visited entry.
+     * @param   is     The contents of the entry, which are only valid until this method returns.
+     *
+     * @throws  IOException  If the contents of the entry cannot be processed.
+     */
+    void visit(ArchiveEntry entry, InputStream is) throws IOException;
+}
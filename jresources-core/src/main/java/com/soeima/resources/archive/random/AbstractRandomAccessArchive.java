@@ -0,0 +1,252 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.archive.cache.ArchiveEntry;
+import com.soeima.resources.archive.cache.ArchiveVisitor;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Provides an abstract base class for archives read through positional reads of a {@link RandomAccessSource}, rather
+ * than by streaming the whole archive. Opening the archive only reads the parts of it describing its entries and each
+ * entry is then read on its own, which keeps the cost of using a large remote archive proportional to the entries
+ * actually read.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public abstract class AbstractRandomAccessArchive implements Archive {
+
+    /** The path to the archive. */
+    private String path;
+
+    /** The source of the archive bytes. */
+    private RandomAccessSource source;
+
+    /** The entries of the archive or <code>null</code> if the archive is not open. */
+    private volatile List<ArchiveEntry> entries;
+
+    /**
+     * Creates a new {@link AbstractRandomAccessArchive} object.
+     *
+     * @param  path    The path to the archive.
+     * @param  source  The source of the archive bytes, which is closed along with the archive.
+     */
+    public AbstractRandomAccessArchive(String path, RandomAccessSource source) {
+        this.path = path;
+        this.source = source;
+    }
+
+    /**
+     * Reads the descriptions of all of the entries of the archive.
+     *
+     * @return  The entries of the archive.
+     *
+     * @throws  IOException  If the archive cannot be read or is not well formed.
+     */
+    protected abstract List<RandomAccessEntry> readEntries() throws IOException;
+
+    /**
+     * Returns an input stream for the contents of the given <code>entry</code>.
+     *
+     * @param   entry  The entry.
+     *
+     * @return  A new input stream.
+     *
+     * @throws  IOException  If the entry cannot be read.
+     */
+    protected abstract InputStream newInputStream(RandomAccessEntry entry) throws IOException;
+
+    /**
+     * Returns the source of the archive bytes.
+     *
+     * @return  The source of the archive bytes.
+     */
+    protected RandomAccessSource getSource() {
+        return source;
+    }
+
+    /**
+     * Reads exactly <code>buffer.length</code> bytes starting at the given <code>position</code> of the source.
+     *
+     * @param   position  The position within the source of the first byte to read.
+     * @param   buffer    The buffer to fill.
+     *
+     * @throws  IOException  If the bytes cannot be read or the source ends before the <code>buffer</code> is full.
+     */
+    protected void readFully(long position, byte[] buffer) throws IOException {
+        readFully(position, buffer, buffer.length);
+    }
+
+    /**
+     * Reads exactly <code>length</code> bytes starting at the given <code>position</code> of the source into the start
+     * of the <code>buffer</code>.
+     *
+     * @param   position  The position within the source of the first byte to read.
+     * @param   buffer    The buffer to fill.
+     * @param   length    The number of bytes to read.
+     *
+     * @throws  IOException  If the bytes cannot be read or the source ends before they have all been read.
+     */
+    protected void readFully(long position, byte[] buffer, int length) throws IOException {
+
+        for (int offset = 0; offset < length;) {
+            int n = source.read(position + offset, buffer, offset, length - offset);
+
+            if (n < 0) {
+                throw new EOFException("Unexpected end of archive=" + path);
+            }
+
+            offset += n;
+        }
+    }
+
+    /**
+     * @see  Archive#getName()
+     */
+    @Override public String getName() {
+        return Paths.getBaseName(path);
+    }
+
+    /**
+     * @see  Archive#getPath()
+     */
+    @Override public String getPath() {
+        return path;
+    }
+
+    /**
+     * @see  Archive#size()
+     */
+    @Override public int size() {
+        List<ArchiveEntry> current = entries;
+        return (current == null) ? -1 : current.size();
+    }
+
+    /**
+     * @see  Archive#open()
+     */
+    @Override public synchronized boolean open() {
+
+        if (isOpen()) {
+            return true;
+        }
+
+        try {
+            entries = Collections.<ArchiveEntry>unmodifiableList(new ArrayList<ArchiveEntry>(readEntries()));
+            return true;
+        }
+        catch (IOException e) {
+            IOUtil.close(source);
+            return false;
+        }
+    }
+
+    /**
+     * @see  Archive#isOpen()
+     */
+    @Override public boolean isOpen() {
+        return entries != null;
+    }
+
+    /**
+     * @see  Archive#getEntries()
+     */
+    @Override public Iterator<ArchiveEntry> getEntries() {
+        List<ArchiveEntry> current = entries;
+        return (current == null) ? Collections.<ArchiveEntry>emptyList().iterator() : current.iterator();
+    }
+
+    /**
+     * @see  Archive#getInputStream(ArchiveEntry)
+     */
+    @Override public InputStream getInputStream(ArchiveEntry entry) {
+
+        try {
+            return newInputStream((RandomAccessEntry)entry);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Each entry is read on its own, in the order in which the entries are stored.
+     *
+     * @see  Archive#scan(ArchiveVisitor)
+     */
+    @Override public void scan(ArchiveVisitor visitor) throws IOException {
+
+        for (Iterator<ArchiveEntry> entryIt = getEntries(); entryIt.hasNext();) {
+            ArchiveEntry entry = entryIt.next();
+
+            if (entry.isDirectory()) {
+                continue;
+            }
+
+            InputStream is = newInputStream((RandomAccessEntry)entry);
+
+            try {
+                visitor.visit(entry, is);
+            }
+            finally {
+                IOUtil.close(is);
+            }
+        }
+    }
+
+    /**
+     * Each entry is read on its own, one after the other.
+     *
+     * @see  Archive#readAll(List)
+     */
+    @Override public List<byte[]> readAll(List<ArchiveEntry> entries) throws IOException {
+        List<byte[]> contents = new ArrayList<byte[]>(entries.size());
+
+        for (ArchiveEntry entry : entries) {
+            InputStream is = newInputStream((RandomAccessEntry)entry);
+
+            try {
+                contents.add(IOUtil.toByteArray(is));
+            }
+            finally {
+                IOUtil.close(is);
+            }
+        }
+
+        return contents;
+    }
+
+    /**
+     * @see  Closeable#close()
+     */
+    @Override public synchronized void close() throws IOException {
+        entries = null;
+        source.close();
+    }
+} // end class AbstractRandomAccessArchive
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams the remaining bytes of a {@link ByteBuffer}. The bytes can also be written to a channel straight from the
+ * buffer through {@link #transferTo(WritableByteChannel)}, which avoids copying them into an intermediate array when
+ * the buffer is mapped.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    /** The bytes to stream, from the buffer position up to its limit. */
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a new {@link ByteBufferInputStream} object.
+     *
+     * @param  buffer  The bytes to stream, which are consumed from the current position of the buffer.
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns a read-only view of the bytes that remain to be read.
+     *
+     * @return  The remaining bytes.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @see  InputStream#read()
+     */
+    @Override public int read() {
+        return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+    }
+
+    /**
+     * @see  InputStream#read(byte[], int, int)
+     */
+    @Override public int read(byte[] b, int off, int len) {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    /**
+     * @see  InputStream#skip(long)
+     */
+    @Override public long skip(long n) {
+        int skipped = (int)Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    /**
+     * @see  InputStream#available()
+     */
+    @Override public int available() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Writes all of the remaining bytes to the given <code>channel</code>.
+     *
+     * @param   channel  The channel to write to.
+     *
+     * @return  The number of bytes written.
+     *
+     * @throws  IOException  If the bytes cannot be written.
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        long written = 0;
+
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+
+        return written;
+    }
+
+    /**
+     * Writes all of the remaining bytes to the given output stream, <code>os</code>.
+     *
+     * @param   os  The output stream to write to.
+     *
+     * @return  The number of bytes written.
+     *
+     * @throws  IOException  If the bytes cannot be written.
+     */
+    public long transferTo(OutputStream os) throws IOException {
+        return transferTo(Channels.newChannel(os));
+    }
+} // end class ByteBufferInputStream
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link RandomAccessSource} backed by a local file. The file is opened on the first read and reopened after it has
+ * been closed, including by the interruption of a thread reading it, which closes the channel for all of its readers.
+ *
+ * <p>The whole file is mapped into memory once the first slice is requested, unless it is larger than a single
+ * mapping can hold.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public class FileSource implements MappableSource {
+
+    /** The local file. */
+    private File file;
+
+    /** The channel to the local file or <code>null</code> if it is not open. */
+    private FileChannel channel;
+
+    /** The mapping of the whole local file or <code>null</code> if it has not been mapped yet. */
+    private MappedByteBuffer mapping;
+
+    /**
+     * Creates a new {@link FileSource} object.
+     *
+     * @param  file  The local file.
+     */
+    public FileSource(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the channel to the local file, opening it if required.
+     *
+     * @return  The channel to the local file.
+     *
+     * @throws  IOException  If the file cannot be opened.
+     */
+    private synchronized FileChannel getChannel() throws IOException {
+
+        if ((channel == null) || !channel.isOpen()) {
+            channel = new RandomAccessFile(file, "r").getChannel();
+        }
+
+        return channel;
+    }
+
+    /**
+     * @see  RandomAccessSource#length()
+     */
+    @Override public long length() throws IOException {
+
+        try {
+            return getChannel().size();
+        }
+        catch (ClosedChannelException e) {
+            checkInterrupted(e);
+            return getChannel().size();
+        }
+    }
+
+    /**
+     * @see  RandomAccessSource#read(long, byte[], int, int)
+     */
+    @Override public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+
+        try {
+            return getChannel().read(ByteBuffer.wrap(buffer, offset, length), position);
+        }
+        catch (ClosedChannelException e) {
+            checkInterrupted(e);
+            return getChannel().read(ByteBuffer.wrap(buffer, offset, length), position);
+        }
+    }
+
+    /**
+     * Rethrows the given exception if the current thread has been interrupted, which is what closed the channel.
+     * Otherwise another reader has been interrupted, so the caller reads once more from a reopened channel.
+     *
+     * @param   e  The exception thrown by the channel.
+     *
+     * @throws  ClosedChannelException  If the current thread has been interrupted.
+     */
+    private static void checkInterrupted(ClosedChannelException e) throws ClosedChannelException {
+
+        if (Thread.currentThread().isInterrupted()) {
+            throw e;
+        }
+    }
+
+    /**
+     * @see  MappableSource#slice(long, long)
+     */
+    @Override public ByteBuffer slice(long position, long length) throws IOException {
+        ByteBuffer buffer = getMapping();
+
+        if (buffer == null) {
+            return null;
+        }
+
+        if ((position < 0) || (length < 0) || ((position + length) > buffer.capacity())) {
+            throw new IOException("Range=" + position + "+" + length + " exceeds file=" + file);
+        }
+
+        buffer.position((int)position);
+        buffer.limit((int)(position + length));
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a private view of the mapping of the whole local file, mapping it if required.
+     *
+     * @return  The view of the mapping or <code>null</code> if the file is too large to be mapped at once.
+     *
+     * @throws  IOException  If the file cannot be mapped.
+     */
+    private synchronized ByteBuffer getMapping() throws IOException {
+
+        if (mapping == null) {
+            long size = getChannel().size();
+
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            mapping = getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        // Each caller moves the position and limit of its own view.
+        return mapping.duplicate();
+    }
+
+    /**
+     * Closes the channel to the local file. The mapping stays valid until it is no longer referenced, including by the
+     * slices handed out so far.
+     *
+     * @see  java.io.Closeable#close()
+     */
+    @Override public synchronized void close() throws IOException {
+        mapping = null;
+
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+} // end class FileSource
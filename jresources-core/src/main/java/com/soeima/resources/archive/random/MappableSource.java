@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link RandomAccessSource} whose bytes can also be mapped into memory, so that ranges of them are served as buffers
+ * without being copied.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public interface MappableSource extends RandomAccessSource {
+
+    /**
+     * Returns a read-only buffer over <code>length</code> bytes of this source starting at the given <code>
+     * position</code>. The buffer shares the bytes of the mapping, so no bytes are copied.
+     *
+     * @param   position  The position within this source of the first byte of the buffer.
+     * @param   length    The number of bytes of the buffer.
+     *
+     * @return  The buffer or <code>null</code> if this source cannot be mapped.
+     *
+     * @throws  IOException  If the source cannot be mapped or the range exceeds its length.
+     */
+    ByteBuffer slice(long position, long length) throws IOException;
+} // end interface MappableSource
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import com.soeima.resources.archive.cache.ArchiveEntry;
+import java.io.InputStream;
+
+/**
+ * An entry of an {@link AbstractRandomAccessArchive}, which records where the entry is stored within the archive so that
+ * it can be read without reading the entries before it.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public class RandomAccessEntry implements ArchiveEntry {
+
+    /** The archive containing this entry. */
+    private AbstractRandomAccessArchive archive;
+
+    /** The name of this entry. */
+    private String name;
+
+    /** The uncompressed size of this entry. */
+    private long size;
+
+    /** The position within the archive at which this entry is stored, whose meaning depends on the archive format. */
+    private long offset;
+
+    /** The number of bytes this entry occupies within the archive. */
+    private long storedSize;
+
+    /** The compression method of this entry, whose meaning depends on the archive format. */
+    private int method;
+
+    /**
+     * Creates a new {@link RandomAccessEntry} object.
+     *
+     * @param  archive     The archive containing the entry.
+     * @param  name        The name of the entry.
+     * @param  size        The uncompressed size of the entry.
+     * @param  offset      The position within the archive at which the entry is stored.
+     * @param  storedSize  The number of bytes the entry occupies within the archive.
+     * @param  method      The compression method of the entry.
+     */
+    public RandomAccessEntry(AbstractRandomAccessArchive archive, String name, long size, long offset,
+                             long storedSize, int method) {
+        this.archive = archive;
+        this.name = name;
+        this.size = size;
+        this.offset = offset;
+        this.storedSize = storedSize;
+        this.method = method;
+    }
+
+    /**
+     * @see  ArchiveEntry#getName()
+     */
+    @Override public String getName() {
+        return name;
+    }
+
+    /**
+     * @see  ArchiveEntry#size()
+     */
+    @Override public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the position within the archive at which this entry is stored.
+     *
+     * @return  The position of this entry.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of bytes this entry occupies within the archive.
+     *
+     * @return  The stored size of this entry.
+     */
+    public long getStoredSize() {
+        return storedSize;
+    }
+
+    /**
+     * Returns the compression method of this entry.
+     *
+     * @return  The compression method of this entry.
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    /**
+     * @see  ArchiveEntry#getInputStream()
+     */
+    @Override public InputStream getInputStream() {
+        return archive.getInputStream(this);
+    }
+
+    /**
+     * @see  ArchiveEntry#isDirectory()
+     */
+    @Override public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    /**
+     * @see  Object#toString()
+     */
+    @Override public String toString() {
+        return name;
+    }
+} // end class RandomAccessEntry
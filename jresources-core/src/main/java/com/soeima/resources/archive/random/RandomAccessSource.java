@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Provides positional reads over the bytes of an archive, wherever they are stored. Implementations must allow
+ * concurrent reads at different positions.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public interface RandomAccessSource extends Closeable {
+
+    /**
+     * Returns the number of bytes in this source.
+     *
+     * @return  The length of this source.
+     *
+     * @throws  IOException  If the length cannot be determined.
+     */
+    long length() throws IOException;
+
+    /**
+     * Reads up to <code>length</code> bytes starting at the given <code>position</code> into the <code>buffer</code>.
+     *
+     * @param   position  The position within this source of the first byte to read.
+     * @param   buffer    The buffer into which the bytes are read.
+     * @param   offset    The offset within the <code>buffer</code> of the first byte read.
+     * @param   length    The maximum number of bytes to read.
+     *
+     * @return  The number of bytes read or <code>-1</code> if <code>position</code> is at or past the end of this
+     *          source.
+     *
+     * @throws  IOException  If the bytes cannot be read.
+     */
+    int read(long position, byte[] buffer, int offset, int length) throws IOException;
+} // end interface RandomAccessSource
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams a range of bytes of a {@link RandomAccessSource}, fetching them in buffer sized reads as they are consumed.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public class RangeInputStream extends InputStream {
+
+    /** The size of the reads issued to the source. */
+    private static final int BufferSize = 32768;
+
+    /** The source of the bytes. */
+    private RandomAccessSource source;
+
+    /** The position within the {@link #source} of the next byte to fetch. */
+    private long position;
+
+    /** The number of bytes that remain to be fetched from the {@link #source}. */
+    private long remaining;
+
+    /** The bytes fetched but not yet consumed. */
+    private byte[] buffer;
+
+    /** The position within the {@link #buffer} of the next byte to consume. */
+    private int start;
+
+    /** The position within the {@link #buffer} after the last byte fetched. */
+    private int end;
+
+    /**
+     * Creates a new {@link RangeInputStream} object.
+     *
+     * @param  source    The source of the bytes.
+     * @param  position  The position within the <code>source</code> of the first byte of the range.
+     * @param  length    The number of bytes in the range.
+     */
+    public RangeInputStream(RandomAccessSource source, long position, long length) {
+        this.source = source;
+        this.position = position;
+        remaining = length;
+        buffer = new byte[(int)Math.max(1, Math.min(BufferSize, length))];
+    }
+
+    /**
+     * Fetches the next bytes of the range into the {@link #buffer}, provided it has been consumed.
+     *
+     * @return  <code>true</code> if there are bytes to consume; <code>false</code> if the range has been consumed.
+     *
+     * @throws  IOException  If the bytes cannot be read or the source ends before the range does.
+     */
+    private boolean fill() throws IOException {
+
+        if (start < end) {
+            return true;
+        }
+
+        if (remaining == 0) {
+            return false;
+        }
+
+        int n = source.read(position, buffer, 0, (int)Math.min(buffer.length, remaining));
+
+        if (n < 0) {
+            throw new IOException("Unexpected end of source at position=" + position);
+        }
+
+        position += n;
+        remaining -= n;
+        start = 0;
+        end = n;
+        return true;
+    }
+
+    /**
+     * @see  InputStream#read()
+     */
+    @Override public int read() throws IOException {
+        return fill() ? (buffer[start++] & 0xff) : -1;
+    }
+
+    /**
+     * @see  InputStream#read(byte[], int, int)
+     */
+    @Override public int read(byte[] bytes, int offset, int length) throws IOException {
+
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        int n = Math.min(length, end - start);
+        System.arraycopy(buffer, start, bytes, offset, n);
+        start += n;
+        return n;
+    }
+
+    /**
+     * Skips over the bytes of the range without fetching them.
+     *
+     * @see  InputStream#skip(long)
+     */
+    @Override public long skip(long n) {
+
+        if (n <= 0) {
+            return 0;
+        }
+
+        long buffered = Math.min(n, end - start);
+        start += buffered;
+
+        long skipped = Math.min(n - buffered, remaining);
+        position += skipped;
+        remaining -= skipped;
+        return buffered + skipped;
+    }
+
+    /**
+     * @see  InputStream#available()
+     */
+    @Override public int available() {
+        return end - start;
+    }
+} // end class RangeInputStream
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import com.soeima.resources.util.ContentStore;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the bytes of the most recently read entries of an archive in memory exactly as they are stored in the archive,
+ * i.e., still compressed. A hit is then served without any input/output at the cost of decompressing the bytes again,
+ * and the memory used stays close to the compressed size of the entries rather than their full size.
+ *
+ * <p>Once the cache is full, the least recently used entries are evicted to make room for new ones. Entries larger than
+ * the whole cache are never kept.</p>
+ *
+ * <p>The bytes kept may also be interned into a {@link ContentStore} shared with other caches, so that entries which
+ * are byte-identical across archives are only held once. Each entry still counts in full against the maximum size of
+ * every cache keeping it.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class StoredEntryCache {
+
+    /** The maximum number of bytes kept. */
+    private long maxSize;
+
+    /** The number of bytes kept. */
+    private long size;
+
+    /** The stored bytes of the entries according to their offset, from the least to the most recently used. */
+    private Map<Long, byte[]> entries;
+
+    /** The store deduplicating the bytes kept or <code>null</code> if they are not deduplicated. */
+    private ContentStore contentStore;
+
+    /**
+     * Creates a new {@link StoredEntryCache} object.
+     *
+     * @param  maxSize  The maximum number of bytes to keep.
+     */
+    public StoredEntryCache(long maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Creates a new {@link StoredEntryCache} object that deduplicates the bytes it keeps.
+     *
+     * @param  maxSize       The maximum number of bytes to keep.
+     * @param  contentStore  The store deduplicating the bytes kept or <code>null</code> not to deduplicate them.
+     */
+    public StoredEntryCache(long maxSize, ContentStore contentStore) {
+        this.maxSize = maxSize;
+        this.contentStore = contentStore;
+        entries = new LinkedHashMap<Long, byte[]>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the stored bytes of the entry at the given <code>offset</code>.
+     *
+     * @param   offset  The position within the archive at which the entry is stored.
+     *
+     * @return  The stored bytes of the entry or <code>null</code> if they are not kept.
+     */
+    public synchronized byte[] get(long offset) {
+        return entries.get(offset);
+    }
+
+    /**
+     * Keeps the <code>stored</code> bytes of the entry at the given <code>offset</code>, evicting the least recently
+     * used entries if required.
+     *
+     * @param  offset  The position within the archive at which the entry is stored.
+     * @param  stored  The stored bytes of the entry, which must not be modified afterwards.
+     */
+    public void put(long offset, byte[] stored) {
+
+        if (stored.length > maxSize) {
+            return;
+        }
+
+        // Digesting the bytes is the costly part, so it is done outside of the lock.
+        keep(offset, (contentStore == null) ? stored : contentStore.intern(stored));
+    }
+
+    /**
+     * Keeps the <code>stored</code> bytes of the entry at the given <code>offset</code>, evicting the least recently
+     * used entries if required.
+     *
+     * @param  offset  The position within the archive at which the entry is stored.
+     * @param  stored  The stored bytes of the entry.
+     */
+    private synchronized void keep(long offset, byte[] stored) {
+        byte[] previous = entries.put(offset, stored);
+        size += stored.length - ((previous == null) ? 0 : previous.length);
+
+        for (Iterator<byte[]> entryIt = entries.values().iterator(); (size > maxSize) && entryIt.hasNext();) {
+            size -= entryIt.next().length;
+            entryIt.remove();
+        }
+    }
+
+    /**
+     * Returns the number of bytes kept.
+     *
+     * @return  The number of bytes kept.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the store deduplicating the bytes kept.
+     *
+     * @return  The store or <code>null</code> if the bytes kept are not deduplicated.
+     */
+    public ContentStore getContentStore() {
+        return contentStore;
+    }
+
+    /**
+     * Returns the maximum number of bytes kept.
+     *
+     * @return  The maximum number of bytes kept.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+} // end class StoredEntryCache
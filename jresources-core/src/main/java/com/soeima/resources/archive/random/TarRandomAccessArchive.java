@@ -0,0 +1,323 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A <tt>tar</tt> archive read through positional reads. Since a <tt>tar</tt> archive has no central index, opening it
+ * scans the header of each entry and skips over its contents, so only one block per entry is fetched. The <tt>
+ * ustar</tt> name prefix, <tt>GNU</tt> long names and <tt>pax</tt> path and size records are supported.
+ *
+ * <p>Only regular files and directories are listed. Links and special files are skipped.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public class TarRandomAccessArchive extends AbstractRandomAccessArchive {
+
+    /** The size of the <tt>tar</tt> blocks. */
+    private static final int BlockSize = 512;
+
+    /**
+     * Creates a new {@link TarRandomAccessArchive} object.
+     *
+     * @param  path    The path to the archive.
+     * @param  source  The source of the archive bytes, which is closed along with the archive.
+     */
+    public TarRandomAccessArchive(String path, RandomAccessSource source) {
+        super(path, source);
+    }
+
+    /**
+     * @see  AbstractRandomAccessArchive#readEntries()
+     */
+    @Override protected List<RandomAccessEntry> readEntries() throws IOException {
+        List<RandomAccessEntry> entries = new ArrayList<RandomAccessEntry>();
+        long length = getSource().length();
+        byte[] header = new byte[BlockSize];
+        String longName = null;
+        String paxPath = null;
+        long paxSize = -1;
+
+        for (long position = 0; (position + BlockSize) <= length;) {
+            readFully(position, header);
+
+            if (isZero(header)) {
+                break;
+            }
+
+            long size = getNumber(header, 124, 12);
+            char type = (char)header[156];
+            long data = position + BlockSize;
+            position = data + (((size + BlockSize) - 1) / BlockSize * BlockSize);
+
+            switch (type) {
+
+                case 'L':
+                    longName = getString(readData(data, size), 0, (int)size);
+                    continue;
+
+                case 'x':
+
+                    for (String[] record : getPaxRecords(readData(data, size))) {
+
+                        if ("path".equals(record[0])) {
+                            paxPath = record[1];
+                        }
+                        else if ("size".equals(record[0])) {
+                            paxSize = parsePaxSize(record[1]);
+                        }
+                    }
+
+                    continue;
+
+                case 'g':
+                    continue;
+
+                default:
+                    break;
+            }
+
+            String name = (paxPath != null) ? paxPath : ((longName != null) ? longName : getName(header));
+
+            if (paxSize >= 0) {
+                size = paxSize;
+                position = data + (((size + BlockSize) - 1) / BlockSize * BlockSize);
+            }
+
+            longName = null;
+            paxPath = null;
+            paxSize = -1;
+
+            if (type == '5') {
+                entries.add(new RandomAccessEntry(this, name.endsWith("/") ? name : (name + "/"), 0, data, 0, 0));
+            }
+            else if ((type == '0') || (type == '\0') || (type == '7')) {
+                entries.add(new RandomAccessEntry(this, name, size, data, size, 0));
+            }
+        } // end for
+
+        return entries;
+    } // end method readEntries
+
+    /**
+     * Reads the contents of a metadata entry.
+     *
+     * @param   position  The position of the contents.
+     * @param   size      The size of the contents.
+     *
+     * @return  The contents.
+     *
+     * @throws  IOException  If the contents cannot be read or are unreasonably large.
+     */
+    private byte[] readData(long position, long size) throws IOException {
+
+        if ((size < 0) || (size > (1 << 20))) {
+            throw new IOException("Malformed metadata entry in tar archive=" + getPath());
+        }
+
+        byte[] buffer = new byte[(int)size];
+        readFully(position, buffer);
+        return buffer;
+    }
+
+    /**
+     * Returns the name stored in the given <code>header</code>, including its <tt>ustar</tt> prefix.
+     *
+     * @param   header  The header block.
+     *
+     * @return  The name of the entry.
+     *
+     * @throws  IOException  If the name cannot be decoded.
+     */
+    private static String getName(byte[] header) throws IOException {
+        String name = getString(header, 0, 100);
+
+        if (getString(header, 257, 5).equals("ustar")) {
+            String prefix = getString(header, 345, 155);
+
+            if (prefix.length() > 0) {
+                return prefix + "/" + name;
+            }
+        }
+
+        return name;
+    }
+
+    /**
+     * Returns the <code>NUL</code> terminated string stored within the given range of the <code>buffer</code>.
+     *
+     * @param   buffer    The buffer.
+     * @param   position  The position of the string.
+     * @param   length    The maximum length of the string.
+     *
+     * @return  The string.
+     *
+     * @throws  IOException  If the string cannot be decoded.
+     */
+    private static String getString(byte[] buffer, int position, int length) throws IOException {
+        int end = position;
+
+        while ((end < (position + length)) && (buffer[end] != 0)) {
+            end++;
+        }
+
+        return new String(buffer, position, end - position, "UTF-8");
+    }
+
+    /**
+     * Returns the number stored within the given range of the <code>header</code>, either as octal digits or, for
+     * large values, as a base-256 value flagged by its leading bit.
+     *
+     * @param   header    The header block.
+     * @param   position  The position of the number.
+     * @param   length    The length of the number field.
+     *
+     * @return  The number.
+     *
+     * @throws  IOException  If the field is not a number.
+     */
+    private static long getNumber(byte[] header, int position, int length) throws IOException {
+        long value = 0;
+
+        if ((header[position] & 0x80) != 0) {
+
+            for (int i = position + 1; i < (position + length); i++) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+
+            return value;
+        }
+
+        for (int i = position; i < (position + length); i++) {
+            byte b = header[i];
+
+            if ((b == 0) || (b == ' ')) {
+
+                if (value > 0) {
+                    break;
+                }
+
+                continue;
+            }
+
+            if ((b < '0') || (b > '7')) {
+                throw new IOException("Malformed number in tar header.");
+            }
+
+            value = (value << 3) + (b - '0');
+        }
+
+        return value;
+    } // end method getNumber
+
+    /**
+     * Returns the <code>key=value</code> records of a <tt>pax</tt> extended header.
+     *
+     * @param   data  The contents of the extended header, made of <code>"length key=value\n"</code> records.
+     *
+     * @return  The keys and values of the records.
+     *
+     * @throws  IOException  If the records are not well formed.
+     */
+    private static List<String[]> getPaxRecords(byte[] data) throws IOException {
+        List<String[]> records = new ArrayList<String[]>();
+
+        for (int p = 0; p < data.length;) {
+            int space = p;
+
+            while ((space < data.length) && (data[space] != ' ')) {
+                space++;
+            }
+
+            int length;
+
+            try {
+                length = Integer.parseInt(new String(data, p, space - p, "UTF-8"));
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Malformed pax header record.");
+            }
+
+            if ((length <= (space - p)) || ((p + length) > data.length)) {
+                throw new IOException("Malformed pax header record.");
+            }
+
+            // The record excludes the length, the space and the trailing newline.
+            String record = new String(data, space + 1, (p + length) - space - 2, "UTF-8");
+            int equals = record.indexOf('=');
+
+            if (equals > 0) {
+                records.add(new String[] { record.substring(0, equals), record.substring(equals + 1) });
+            }
+
+            p += length;
+        }
+
+        return records;
+    } // end method getPaxRecords
+
+    /**
+     * Parses the value of a <tt>pax</tt> size record.
+     *
+     * @param   value  The value of the record.
+     *
+     * @return  The size.
+     *
+     * @throws  IOException  If the value is not a size.
+     */
+    private static long parsePaxSize(String value) throws IOException {
+
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed pax size=" + value);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given <code>block</code> only contains zeros, which marks the end of the archive.
+     *
+     * @param   block  The block.
+     *
+     * @return  <code>true</code> if the block is empty; <code>false</code> otherwise.
+     */
+    private static boolean isZero(byte[] block) {
+
+        for (byte b : block) {
+
+            if (b != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @see  AbstractRandomAccessArchive#newInputStream(RandomAccessEntry)
+     */
+    @Override protected InputStream newInputStream(RandomAccessEntry entry) {
+        return new RangeInputStream(getSource(), entry.getOffset(), entry.getStoredSize());
+    }
+} // end class TarRandomAccessArchive
@@ -0,0 +1,623 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.archive.cache.ArchiveEntry;
+import com.soeima.resources.util.DaemonThreadFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A <tt>ZIP</tt> or <tt>Jar</tt> archive read through positional reads. Opening the archive only fetches its central
+ * directory, which is found through the end of central directory record at the tail of the archive, and each entry is
+ * then read from its own byte range. <tt>ZIP64</tt> archives are supported.
+ *
+ * <p>Since the entries are independent of each other, the entries read in bulk through {@link #readAll(List)} are
+ * inflated concurrently.</p>
+ *
+ * <p>The entries may also be kept in memory, as stored in the archive, by a {@link StoredEntryCache}. They are then
+ * read again with a single inflate and without any input/output.</p>
+ *
+ * <p>If the source of the archive is a {@link MappableSource}, the entries that are stored as is are served as slices
+ * of the mapping of the archive, so reading them copies nothing.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public class ZipRandomAccessArchive extends AbstractRandomAccessArchive {
+
+    /** The compression method of the entries that are stored as is. */
+    public static final int Stored = 0;
+
+    /** The compression method of the deflated entries. */
+    public static final int Deflated = 8;
+
+    /** The signature of the end of central directory record. */
+    private static final int EndSignature = 0x06054b50;
+
+    /** The signature of the <tt>ZIP64</tt> end of central directory locator. */
+    private static final int Zip64LocatorSignature = 0x07064b50;
+
+    /** The signature of the <tt>ZIP64</tt> end of central directory record. */
+    private static final int Zip64EndSignature = 0x06064b50;
+
+    /** The signature of each central directory file header. */
+    private static final int CentralSignature = 0x02014b50;
+
+    /** The signature of each local file header. */
+    private static final int LocalSignature = 0x04034b50;
+
+    /** The size of the end of central directory record, without its trailing comment. */
+    private static final int EndSize = 22;
+
+    /** The maximum size of the comment trailing the end of central directory record. */
+    private static final int MaxCommentSize = 0xffff;
+
+    /** The size of each central directory file header, without its variable length fields. */
+    private static final int CentralSize = 46;
+
+    /** The size of each local file header, without its variable length fields. */
+    private static final int LocalSize = 30;
+
+    /** The identifier of the extra field holding the <tt>ZIP64</tt> sizes and offset of an entry. */
+    private static final int Zip64ExtraId = 0x0001;
+
+    /** Inflates the entries read in bulk, with one thread per processor. */
+    private static final ExecutorService executor =
+        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                     new DaemonThreadFactory("jresources-zip-inflate"));
+
+    /** The inflater of each thread, which is reused for all of the entries the thread inflates. */
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+        /**
+         * @see  ThreadLocal#initialValue()
+         */
+        @Override protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    /** Keeps the stored bytes of the entries read or <code>null</code> if they are not kept. */
+    private StoredEntryCache storedCache;
+
+    /**
+     * Creates a new {@link ZipRandomAccessArchive} object.
+     *
+     * @param  path    The path to the archive.
+     * @param  source  The source of the archive bytes, which is closed along with the archive.
+     */
+    public ZipRandomAccessArchive(String path, RandomAccessSource source) {
+        this(path, source, null);
+    }
+
+    /**
+     * Creates a new {@link ZipRandomAccessArchive} object.
+     *
+     * @param  path         The path to the archive.
+     * @param  source       The source of the archive bytes, which is closed along with the archive.
+     * @param  storedCache  Keeps the stored bytes of the entries read or <code>null</code> if they are not to be kept.
+     */
+    public ZipRandomAccessArchive(String path, RandomAccessSource source, StoredEntryCache storedCache) {
+        super(path, source);
+        this.storedCache = storedCache;
+    }
+
+    /**
+     * @see  AbstractRandomAccessArchive#readEntries()
+     */
+    @Override protected List<RandomAccessEntry> readEntries() throws IOException {
+        long length = getSource().length();
+        byte[] tail = new byte[(int)Math.min(length, EndSize + MaxCommentSize)];
+        long tailPosition = length - tail.length;
+        readFully(tailPosition, tail);
+
+        int end = tail.length - EndSize;
+
+        while ((end >= 0) && (getInt(tail, end) != EndSignature)) {
+            end--;
+        }
+
+        if (end < 0) {
+            throw new IOException("Not a ZIP archive=" + getPath());
+        }
+
+        long count = getShort(tail, end + 10);
+        long directorySize = getUnsignedInt(tail, end + 12);
+        long directoryOffset = getUnsignedInt(tail, end + 16);
+
+        if ((count == 0xffff) || (directorySize == 0xffffffffL) || (directoryOffset == 0xffffffffL)) {
+            long[] zip64 = readZip64End(tailPosition + end);
+            count = zip64[0];
+            directorySize = zip64[1];
+            directoryOffset = zip64[2];
+        }
+
+        if ((directorySize > Integer.MAX_VALUE) || ((directoryOffset + directorySize) > length)) {
+            throw new IOException("Malformed central directory in ZIP archive=" + getPath());
+        }
+
+        byte[] directory = new byte[(int)directorySize];
+        readFully(directoryOffset, directory);
+
+        List<RandomAccessEntry> entries = new ArrayList<RandomAccessEntry>();
+
+        for (int i = 0, p = 0; i < count; i++) {
+
+            if (((p + CentralSize) > directory.length) || (getInt(directory, p) != CentralSignature)) {
+                throw new IOException("Malformed central directory in ZIP archive=" + getPath());
+            }
+
+            int method = getShort(directory, p + 10);
+            long compressedSize = getUnsignedInt(directory, p + 20);
+            long size = getUnsignedInt(directory, p + 24);
+            int nameLength = getShort(directory, p + 28);
+            int extraLength = getShort(directory, p + 30);
+            int commentLength = getShort(directory, p + 32);
+            long offset = getUnsignedInt(directory, p + 42);
+            int extra = p + CentralSize + nameLength;
+
+            if ((extra + extraLength + commentLength) > directory.length) {
+                throw new IOException("Malformed central directory in ZIP archive=" + getPath());
+            }
+
+            String name = new String(directory, p + CentralSize, nameLength, "UTF-8");
+
+            // Only the values that do not fit their regular fields are stored in the ZIP64 extra field, in this order.
+            int zip64 = findExtra(directory, extra, extraLength, Zip64ExtraId);
+
+            if (zip64 >= 0) {
+
+                if (size == 0xffffffffL) {
+                    size = getLong(directory, zip64);
+                    zip64 += 8;
+                }
+
+                if (compressedSize == 0xffffffffL) {
+                    compressedSize = getLong(directory, zip64);
+                    zip64 += 8;
+                }
+
+                if (offset == 0xffffffffL) {
+                    offset = getLong(directory, zip64);
+                }
+            }
+
+            entries.add(new RandomAccessEntry(this, name, size, offset, compressedSize, method));
+            p = extra + extraLength + commentLength;
+        } // end for
+
+        return entries;
+    } // end method readEntries
+
+    /**
+     * Reads the <tt>ZIP64</tt> end of central directory record, which is located right before the regular record.
+     *
+     * @param   endPosition  The position of the regular end of central directory record.
+     *
+     * @return  The number of entries, the size of the central directory and its offset, in this order.
+     *
+     * @throws  IOException  If the record cannot be read or is not well formed.
+     */
+    private long[] readZip64End(long endPosition) throws IOException {
+        byte[] locator = new byte[20];
+
+        if (endPosition < locator.length) {
+            throw new IOException("Missing ZIP64 end of central directory in ZIP archive=" + getPath());
+        }
+
+        readFully(endPosition - locator.length, locator);
+
+        if (getInt(locator, 0) != Zip64LocatorSignature) {
+            throw new IOException("Missing ZIP64 end of central directory in ZIP archive=" + getPath());
+        }
+
+        byte[] record = new byte[56];
+        readFully(getLong(locator, 8), record);
+
+        if (getInt(record, 0) != Zip64EndSignature) {
+            throw new IOException("Malformed ZIP64 end of central directory in ZIP archive=" + getPath());
+        }
+
+        return new long[] { getLong(record, 32), getLong(record, 40), getLong(record, 48) };
+    }
+
+    /**
+     * Returns the position of the data of the extra field with the given <code>id</code>.
+     *
+     * @param   buffer  The buffer holding the extra fields.
+     * @param   start   The position within the <code>buffer</code> of the first extra field.
+     * @param   length  The total length of the extra fields.
+     * @param   id      The identifier of the extra field to find.
+     *
+     * @return  The position of the data of the extra field or <code>-1</code> if there is no such field.
+     */
+    private static int findExtra(byte[] buffer, int start, int length, int id) {
+
+        for (int p = start; (p + 4) <= (start + length); p += 4 + getShort(buffer, p + 2)) {
+
+            if (getShort(buffer, p) == id) {
+                return p + 4;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @see  AbstractRandomAccessArchive#newInputStream(RandomAccessEntry)
+     */
+    @Override protected InputStream newInputStream(RandomAccessEntry entry) throws IOException {
+        ByteBuffer buffer = getBuffer(entry);
+
+        if (buffer != null) {
+            return new ByteBufferInputStream(buffer);
+        }
+
+        // The stored bytes are kept whole, so the entry is read whole as well, unless it is too large to be kept.
+        if ((storedCache != null) && (entry.getStoredSize() <= storedCache.getMaxSize())
+                && (entry.getStoredSize() < Integer.MAX_VALUE) && (entry.size() < Integer.MAX_VALUE)) {
+            return new ByteArrayInputStream(read(entry));
+        }
+
+        InputStream is = new RangeInputStream(getSource(), getDataPosition(entry), entry.getStoredSize());
+
+        switch (entry.getMethod()) {
+
+            case Stored:
+                return is;
+
+            case Deflated:
+                return new EntryInflaterInputStream(is);
+
+            default:
+                throw new IOException("Unsupported compression method=" + entry.getMethod() + " for entry=" + entry);
+        }
+    }
+
+    /**
+     * Returns a read-only buffer over the contents of the given <code>entry</code>, which is a slice of the mapping of
+     * the archive. Only the entries that are stored as is can be served this way, and only when the source of the
+     * archive is a {@link MappableSource}.
+     *
+     * @param   entry  The entry.
+     *
+     * @return  The contents of the entry or <code>null</code> if they cannot be served from the mapping.
+     *
+     * @throws  IOException  If the local header of the entry cannot be read or the archive cannot be mapped.
+     */
+    public ByteBuffer getBuffer(ArchiveEntry entry) throws IOException {
+        RandomAccessEntry randomAccessEntry = (RandomAccessEntry)entry;
+
+        if ((randomAccessEntry.getMethod() != Stored) || !(getSource() instanceof MappableSource)) {
+            return null;
+        }
+
+        MappableSource source = (MappableSource)getSource();
+        return source.slice(getDataPosition(randomAccessEntry), randomAccessEntry.getStoredSize());
+    }
+
+    /**
+     * Returns the position of the data of the given <code>entry</code>, which follows its local header.
+     *
+     * @param   entry  The entry.
+     *
+     * @return  The position of the data of the entry.
+     *
+     * @throws  IOException  If the local header cannot be read or is not well formed.
+     */
+    private long getDataPosition(RandomAccessEntry entry) throws IOException {
+        byte[] header = new byte[LocalSize];
+        readFully(entry.getOffset(), header);
+
+        if (getInt(header, 0) != LocalSignature) {
+            throw new IOException("Malformed local header for entry=" + entry + " in ZIP archive=" + getPath());
+        }
+
+        // The variable length fields of the local header may differ from those of the central directory.
+        return entry.getOffset() + LocalSize + getShort(header, 26) + getShort(header, 28);
+    }
+
+    /**
+     * Reads the entries on the shared pool, so that as many entries are inflated at once as there are processors. The
+     * contents are still returned in the order of the given <code>entries</code>.
+     *
+     * @see  Archive#readAll(List)
+     */
+    @Override public List<byte[]> readAll(List<ArchiveEntry> entries) throws IOException {
+
+        if (entries.size() < 2) {
+            return super.readAll(entries);
+        }
+
+        List<Future<byte[]>> reads = new ArrayList<Future<byte[]>>(entries.size());
+
+        for (ArchiveEntry entry : entries) {
+            reads.add(executor.submit(new ReadTask((RandomAccessEntry)entry)));
+        }
+
+        List<byte[]> contents = new ArrayList<byte[]>(entries.size());
+
+        try {
+
+            for (Future<byte[]> read : reads) {
+                contents.add(getContents(read));
+            }
+
+            return contents;
+        }
+        finally {
+
+            // Do not leave reads of an archive that may be closed next behind.
+            for (Future<byte[]> read : reads) {
+                read.cancel(false);
+            }
+        }
+    } // end method readAll
+
+    /**
+     * Returns the result of a completed read.
+     *
+     * @param   read  The read.
+     *
+     * @return  The contents of the entry.
+     *
+     * @throws  IOException  If the entry could not be read or the current thread has been interrupted.
+     */
+    private static byte[] getContents(Future<byte[]> read) throws IOException {
+
+        try {
+            return read.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading entries.");
+        }
+        catch (ExecutionException e) {
+
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+
+            throw new IOException(e.getCause().toString());
+        }
+    }
+
+    /**
+     * Reads the whole contents of the given <code>entry</code> with a single read of its stored bytes, unless they are
+     * kept by the {@link #storedCache}, inflating them with the inflater of the current thread if required.
+     *
+     * @param   entry  The entry.
+     *
+     * @return  The contents of the entry.
+     *
+     * @throws  IOException  If the entry cannot be read or is not well formed.
+     */
+    private byte[] read(RandomAccessEntry entry) throws IOException {
+
+        if ((entry.getStoredSize() >= Integer.MAX_VALUE) || (entry.size() >= Integer.MAX_VALUE)) {
+            throw new IOException("Entry too large to read at once=" + entry);
+        }
+
+        switch (entry.getMethod()) {
+
+            case Stored:
+                byte[] stored = readStored(entry, 0);
+
+                // The kept bytes must not be handed out, since they would be modified along with the contents.
+                return (storedCache == null) ? stored : stored.clone();
+
+            case Deflated:
+
+                // The extra byte is the dummy input a raw inflater may need to detect the end of the data.
+                return inflate(entry, readStored(entry, 1));
+
+            default:
+                throw new IOException("Unsupported compression method=" + entry.getMethod() + " for entry=" + entry);
+        }
+    }
+
+    /**
+     * Returns the stored bytes of the given <code>entry</code>, reading them and keeping them in the {@link
+     * #storedCache} unless they are already kept there.
+     *
+     * @param   entry  The entry.
+     * @param   extra  The number of unused bytes to add after the stored bytes.
+     *
+     * @return  The stored bytes of the entry.
+     *
+     * @throws  IOException  If the entry cannot be read or is not well formed.
+     */
+    private byte[] readStored(RandomAccessEntry entry, int extra) throws IOException {
+        byte[] stored = (storedCache == null) ? null : storedCache.get(entry.getOffset());
+
+        if (stored == null) {
+            stored = new byte[(int)entry.getStoredSize() + extra];
+            readFully(getDataPosition(entry), stored, stored.length - extra);
+
+            if (storedCache != null) {
+                storedCache.put(entry.getOffset(), stored);
+            }
+        }
+
+        return stored;
+    }
+
+    /**
+     * Inflates the <code>stored</code> bytes of the given <code>entry</code>.
+     *
+     * @param   entry   The entry.
+     * @param   stored  The deflated bytes of the entry.
+     *
+     * @return  The inflated contents of the entry.
+     *
+     * @throws  IOException  If the entry is not well formed.
+     */
+    private static byte[] inflate(RandomAccessEntry entry, byte[] stored) throws IOException {
+        Inflater inflater = inflaters.get();
+        byte[] contents = new byte[(int)entry.size()];
+        int length = 0;
+        inflater.reset();
+        inflater.setInput(stored);
+
+        try {
+
+            while ((length < contents.length) && !inflater.finished()) {
+                int n = inflater.inflate(contents, length, contents.length - length);
+
+                if ((n == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                length += n;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Malformed data for entry=" + entry + ": " + e.getMessage());
+        }
+
+        if (length != contents.length) {
+            throw new IOException("Truncated data for entry=" + entry);
+        }
+
+        return contents;
+    }
+
+    /**
+     * Returns the little-endian unsigned 16-bit value at the given <code>position</code> of the <code>buffer</code>.
+     *
+     * @param   buffer    The buffer.
+     * @param   position  The position of the value.
+     *
+     * @return  The value.
+     */
+    private static int getShort(byte[] buffer, int position) {
+        return (buffer[position] & 0xff) | ((buffer[position + 1] & 0xff) << 8);
+    }
+
+    /**
+     * Returns the little-endian 32-bit value at the given <code>position</code> of the <code>buffer</code>.
+     *
+     * @param   buffer    The buffer.
+     * @param   position  The position of the value.
+     *
+     * @return  The value.
+     */
+    private static int getInt(byte[] buffer, int position) {
+        return getShort(buffer, position) | (getShort(buffer, position + 2) << 16);
+    }
+
+    /**
+     * Returns the little-endian unsigned 32-bit value at the given <code>position</code> of the <code>buffer</code>.
+     *
+     * @param   buffer    The buffer.
+     * @param   position  The position of the value.
+     *
+     * @return  The value.
+     */
+    private static long getUnsignedInt(byte[] buffer, int position) {
+        return getInt(buffer, position) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the little-endian 64-bit value at the given <code>position</code> of the <code>buffer</code>.
+     *
+     * @param   buffer    The buffer.
+     * @param   position  The position of the value.
+     *
+     * @return  The value.
+     */
+    private static long getLong(byte[] buffer, int position) {
+        return getUnsignedInt(buffer, position) | ((long)getInt(buffer, position + 4) << 32);
+    }
+
+    /**
+     * Inflates a deflated entry and releases its inflater once closed.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/12
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+
+        /** Indicates if this stream has been closed. */
+        private boolean closed;
+
+        /**
+         * Creates a new {@link EntryInflaterInputStream} object.
+         *
+         * @param  is  The deflated bytes of the entry.
+         */
+        public EntryInflaterInputStream(InputStream is) {
+            super(is, new Inflater(true), 8192);
+        }
+
+        /**
+         * @see  InflaterInputStream#close()
+         */
+        @Override public void close() throws IOException {
+
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    } // end class EntryInflaterInputStream
+
+    /**
+     * Reads a single entry on the shared pool.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private class ReadTask implements Callable<byte[]> {
+
+        /** The entry to read. */
+        private RandomAccessEntry entry;
+
+        /**
+         * Creates a new {@link ReadTask} object.
+         *
+         * @param  entry  The entry to read.
+         */
+        public ReadTask(RandomAccessEntry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * @see  Callable#call()
+         */
+        @Override public byte[] call() throws IOException {
+            return read(entry);
+        }
+    } // end class ReadTask
+} // end class ZipRandomAccessArchive
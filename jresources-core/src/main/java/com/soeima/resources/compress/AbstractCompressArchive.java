@@ -19,6 +19,7 @@ package com.soeima.resources.compress;
 
 import com.soeima.resources.archive.cache.Archive;
 import com.soeima.resources.archive.cache.ArchiveEntry;
+import com.soeima.resources.archive.cache.ArchiveVisitor;
 import com.soeima.resources.util.IOUtil;
 import com.soeima.resources.util.Paths;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
@@ -27,7 +28,12 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -192,6 +198,79 @@ public abstract class AbstractCompressArchive implements Archive {
         return new CompressEntryInputStream(stream);
     }
 
+    /**
+     * Reopens the archive once and hands each entry to the <code>visitor</code> while the stream is positioned on it.
+     *
+     * @see  Archive#scan(ArchiveVisitor)
+     */
+    @Override public void scan(ArchiveVisitor visitor) throws IOException {
+
+        if (!setAt(0)) {
+            throw new IOException("Cannot open archive=" + path);
+        }
+
+        ArchiveInputStream archiveStream = stream;
+        int index = 0;
+
+        for (org.apache.commons.compress.archivers.ArchiveEntry archiveEntry = archiveStream.getNextEntry();
+                 archiveEntry != null; archiveEntry = archiveStream.getNextEntry()) {
+            CompressArchiveEntry entry = new CompressArchiveEntry(archiveStream, archiveEntry, ++index);
+
+            if (!entry.isDirectory()) {
+                visitor.visit(entry, entry.getInputStream());
+            }
+        }
+    }
+
+    /**
+     * Reopens the archive once and reads the requested entries as the stream reaches them, stopping after the last one.
+     *
+     * @see  Archive#readAll(List)
+     */
+    @Override public List<byte[]> readAll(List<ArchiveEntry> entries) throws IOException {
+        Map<Integer, List<Integer>> requested = new HashMap<Integer, List<Integer>>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            Integer index = ((CompressArchiveEntry)entries.get(i)).getIndex();
+            List<Integer> positions = requested.get(index);
+
+            if (positions == null) {
+                positions = new ArrayList<Integer>(1);
+                requested.put(index, positions);
+            }
+
+            positions.add(i);
+        }
+
+        byte[][] contents = new byte[entries.size()][];
+
+        if (!requested.isEmpty() && !setAt(0)) {
+            throw new IOException("Cannot open archive=" + path);
+        }
+
+        ArchiveInputStream archiveStream = stream;
+
+        for (int index = 1; !requested.isEmpty() && (archiveStream.getNextEntry() != null); index++) {
+            List<Integer> positions = requested.remove(index);
+
+            if (positions == null) {
+                continue;
+            }
+
+            byte[] bytes = IOUtil.toByteArray(new CompressEntryInputStream(archiveStream));
+
+            for (int position : positions) {
+                contents[position] = bytes;
+            }
+        }
+
+        if (!requested.isEmpty()) {
+            throw new IOException("Missing entries=" + requested.keySet() + " in archive=" + path);
+        }
+
+        return Arrays.asList(contents);
+    } // end method readAll
+
     /**
      * Implements an iterator that wraps {@link org.apache.commons.compress.archivers.ArchiveEntry} objects into {@link
      * CompressArchiveEntry} objects.
@@ -360,5 +439,12 @@ public abstract class AbstractCompressArchive implements Archive {
         @Override public int read() throws IOException {
             return archiveStream.read();
         }
-    }
+
+        /**
+         * @see  InputStream#read(byte[], int, int)
+         */
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            return archiveStream.read(b, off, len);
+        }
+    } // end class CompressEntryInputStream
 } // end class AbstractCompressArchive
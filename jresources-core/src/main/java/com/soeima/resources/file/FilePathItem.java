@@ -21,6 +21,8 @@ import com.soeima.resources.AbstractPathItem;
 import com.soeima.resources.PathItem;
 import com.soeima.resources.RecursionType;
 import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceBatch;
+import com.soeima.resources.ResourceFilter;
 import com.soeima.resources.util.Paths;
 import com.soeima.resources.util.collections.CollectionUtil;
 import java.io.File;
@@ -31,7 +33,9 @@ import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 /**
@@ -42,6 +46,17 @@ import java.util.Stack;
  */
 public class FilePathItem extends AbstractPathItem {
 
+    /** Accepts all files and directories. */
+    private static final FileFilter AllFiles = new FileFilter() {
+
+        /**
+         * @see  FileFilter#accept(File)
+         */
+        @Override public boolean accept(File file) {
+            return true;
+        }
+    };
+
     /** The directory. */
     private File directory;
 
@@ -71,6 +86,26 @@ public class FilePathItem extends AbstractPathItem {
         return findResources(getPath(), new FileExtensionFilter(extension, recursionType), -1);
     }
 
+    /**
+     * @see  AbstractPathItem#findResources(ResourceFilter, RecursionType)
+     */
+    @Override protected List<Resource> findResources(final ResourceFilter filter, final RecursionType recursionType) {
+        return findResources(getPath(), new FileFilter() {
+
+                /**
+                 * @see  FileFilter#accept(File)
+                 */
+                @Override public boolean accept(File file) {
+
+                    if (file.isDirectory()) {
+                        return recursionType == RecursionType.Recursive;
+                    }
+
+                    return filter.accept(Paths.normalize(Paths.stripParentPath(file.getAbsolutePath(), getPath()), '/'));
+                }
+            }, -1);
+    }
+
     /**
      * @see  AbstractPathItem#findResources(String, RecursionType, int)
      */
@@ -80,6 +115,71 @@ public class FilePathItem extends AbstractPathItem {
                              amount);
     }
 
+    /**
+     * A recursive batch walks the directory tree once and matches every file against all of the requested names. As
+     * for a single lookup, a file matches a name if it has the same base name and lies anywhere below the parent
+     * directory of the name.
+     *
+     * @see  AbstractPathItem#findResources(ResourceBatch)
+     */
+    @Override protected void findResources(ResourceBatch batch) {
+
+        if (batch.getRecursionType() == RecursionType.NonRecursive) {
+            super.findResources(batch);
+            return;
+        }
+
+        Map<String, List<String>> requested = new HashMap<String, List<String>>();
+
+        for (String name : batch.getNames()) {
+            String key = toBatchKey(Paths.getParentPath(name), Paths.getBaseName(name));
+            List<String> names = requested.get(key);
+
+            if (names == null) {
+                names = new ArrayList<String>(1);
+                requested.put(key, names);
+            }
+
+            names.add(name);
+        }
+
+        for (File file : FileRetriever.getFiles(getPath(), AllFiles)) {
+            String relativePath = Paths.stripParentPath(file.getAbsolutePath(), getPath());
+            String normalized = Paths.normalize(relativePath, '/');
+            List<Resource> resource = null;
+
+            // The file lies below the root and each of the directories leading to it.
+            for (int slash = 0; slash >= 0; slash = normalized.indexOf('/', slash + 1)) {
+                List<String> names = requested.get(toBatchKey(normalized.substring(0, slash), file.getName()));
+
+                if (names == null) {
+                    continue;
+                }
+
+                if (resource == null) {
+                    resource = Collections.<Resource>singletonList(new FileResource(this, relativePath));
+                }
+
+                for (String name : names) {
+                    batch.addAll(name, resource);
+                }
+            }
+        }
+    } // end method findResources
+
+    /**
+     * Returns the key under which a name of a recursive batch is matched.
+     *
+     * @param   parentPath  The parent directory of the name, relative to this path item.
+     * @param   baseName    The base name of the name.
+     *
+     * @return  The key.
+     */
+    private static String toBatchKey(String parentPath, String baseName) {
+        String parent = Paths.stripTrailingSlash(Paths.stripLeadingSlash(Paths.normalize(parentPath, '/')));
+        return parent + "/" + baseName;
+    }
+
     /**
      * Returns a list of file resources that match the <code>filter</code> criteria. If <code>amount</code> is a
      * negative value, all matching resources are returned, otherwise only the <code>amount</code> specified is
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.index;
+
+/**
+ * A single file listed by a {@link ResourceIndex}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/11
+ */
+public class IndexEntry {
+
+    /** The path of the file relative to the indexed directory, using '/' as the separator. */
+    private String name;
+
+    /** The size of the file. */
+    private long size;
+
+    /** The modification time of the file, in milliseconds since the epoch. */
+    private long mtime;
+
+    /** The hexadecimal <tt>SHA-1</tt> digest of the file contents. */
+    private String digest;
+
+    /**
+     * Creates a new {@link IndexEntry} object.
+     *
+     * @param  name    The path of the file relative to the indexed directory, using '/' as the separator.
+     * @param  size    The size of the file.
+     * @param  mtime   The modification time of the file, in milliseconds since the epoch.
+     * @param  digest  The hexadecimal <tt>SHA-1</tt> digest of the file contents.
+     */
+    public IndexEntry(String name, long size, long mtime, String digest) {
+        this.name = name;
+        this.size = size;
+        this.mtime = mtime;
+        this.digest = digest;
+    }
+
+    /**
+     * Returns the path of the file relative to the indexed directory.
+     *
+     * @return  The relative path of the file, using '/' as the separator.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the size of the file.
+     *
+     * @return  The size of the file.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the modification time of the file.
+     *
+     * @return  The modification time of the file, in milliseconds since the epoch.
+     */
+    public long getMtime() {
+        return mtime;
+    }
+
+    /**
+     * Returns the digest of the file contents.
+     *
+     * @return  The hexadecimal <tt>SHA-1</tt> digest of the file contents.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @see  Object#equals(Object)
+     */
+    @Override public boolean equals(Object object) {
+
+        if (!(object instanceof IndexEntry)) {
+            return false;
+        }
+
+        IndexEntry entry = (IndexEntry)object;
+        return name.equals(entry.name) && (size == entry.size) && (mtime == entry.mtime)
+            && digest.equals(entry.digest);
+    }
+
+    /**
+     * @see  Object#hashCode()
+     */
+    @Override public int hashCode() {
+        return name.hashCode() ^ digest.hashCode();
+    }
+
+    /**
+     * @see  Object#toString()
+     */
+    @Override public String toString() {
+        return name;
+    }
+} // end class IndexEntry
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An index of the files found within a directory, which is published along with the directory so that remote clients
+ * can answer their lookups by downloading this single file rather than by listing the whole tree.
+ *
+ * <p>The index is stored as <tt>UTF-8</tt> text. The first line identifies the format and each following line
+ * describes one file as tab separated size, modification time in milliseconds, <tt>SHA-1</tt> digest and relative
+ * path.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/11
+ */
+public class ResourceIndex {
+
+    /** The name of the index file within the indexed directory. */
+    public static final String FileName = ".jresources.index";
+
+    /** The first line of every index file. */
+    private static final String Header = "# jresources-index 1";
+
+    /** The indexed files according to their relative path. */
+    private Map<String, IndexEntry> entries;
+
+    /**
+     * Creates a new {@link ResourceIndex} object.
+     */
+    public ResourceIndex() {
+        entries = new LinkedHashMap<String, IndexEntry>();
+    }
+
+    /**
+     * Reads an index from the given input stream. The stream is not closed.
+     *
+     * @param   is  The input stream containing the index file.
+     *
+     * @return  The index.
+     *
+     * @throws  IOException  If the index cannot be read or is not well formed.
+     */
+    public static ResourceIndex read(InputStream is) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+        ResourceIndex index = new ResourceIndex();
+
+        if (!Header.equals(reader.readLine())) {
+            throw new IOException("Not a resource index.");
+        }
+
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+
+            if (line.length() == 0) {
+                continue;
+            }
+
+            String[] fields = line.split("\t", 4);
+
+            if (fields.length != 4) {
+                throw new IOException("Malformed resource index line=" + line);
+            }
+
+            try {
+                index.add(new IndexEntry(fields[3], Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                                         fields[2]));
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Malformed resource index line=" + line);
+            }
+        }
+
+        return index;
+    } // end method read
+
+    /**
+     * Writes this index to the given output stream. The stream is flushed but not closed.
+     *
+     * @param   os  The output stream.
+     *
+     * @throws  IOException  If the index cannot be written.
+     */
+    public void write(OutputStream os) throws IOException {
+        Writer writer = new OutputStreamWriter(os, "UTF-8");
+        writer.write(Header);
+        writer.write('\n');
+
+        for (IndexEntry entry : entries.values()) {
+            writer.write(entry.getSize() + "\t" + entry.getMtime() + "\t" + entry.getDigest() + "\t"
+                         + entry.getName() + "\n");
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Adds the given <code>entry</code> to this index, replacing any entry with the same name.
+     *
+     * @param  entry  The entry to add.
+     */
+    public void add(IndexEntry entry) {
+        entries.put(entry.getName(), entry);
+    }
+
+    /**
+     * Returns the entry for the file with the given relative path.
+     *
+     * @param   name  The path of the file relative to the indexed directory, using '/' as the separator.
+     *
+     * @return  The entry or <code>null</code> if the file is not indexed.
+     */
+    public IndexEntry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Returns all of the entries of this index, in the order in which they were added.
+     *
+     * @return  The entries of this index.
+     */
+    public Collection<IndexEntry> getEntries() {
+        return Collections.unmodifiableCollection(new ArrayList<IndexEntry>(entries.values()));
+    }
+
+    /**
+     * Returns the number of files in this index.
+     *
+     * @return  The number of indexed files.
+     */
+    public int size() {
+        return entries.size();
+    }
+} // end class ResourceIndex
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.index;
+
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Strings;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Generates the {@link ResourceIndex} of a local directory and stores it as {@link ResourceIndex#FileName} within
+ * that directory, ready to be published along with it. It may also be run from the command line:
+ *
+ * <pre>
+ * java com.soeima.resources.index.ResourceIndexGenerator &lt;directory&gt;...
+ * </pre>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/11
+ */
+public class ResourceIndexGenerator {
+
+    /**
+     * Creates a new {@link ResourceIndexGenerator} object.
+     */
+    private ResourceIndexGenerator() {
+    }
+
+    /**
+     * Generates the index of each directory given on the command line.
+     *
+     * @param  args  The directories to index.
+     */
+    public static void main(String[] args) {
+
+        if (args.length == 0) {
+            System.err.println("Usage: ResourceIndexGenerator <directory>...");
+            System.exit(1);
+        }
+
+        for (String arg : args) {
+            File file = generate(new File(arg));
+            System.out.println("Generated " + file);
+        }
+    }
+
+    /**
+     * Indexes the given <code>directory</code> and writes its index file.
+     *
+     * @param   directory  The directory to index.
+     *
+     * @return  The index file.
+     *
+     * @throws  ResourceException  If the directory cannot be indexed or the index cannot be written.
+     */
+    public static File generate(File directory) {
+
+        if (!directory.isDirectory()) {
+            throw new ResourceException("Not a directory=" + directory);
+        }
+
+        ResourceIndex index = new ResourceIndex();
+        File file = new File(directory, ResourceIndex.FileName);
+        File partial = new File(directory, ResourceIndex.FileName + ".part");
+        OutputStream os = null;
+
+        try {
+            add(index, directory, "");
+            os = new BufferedOutputStream(new FileOutputStream(partial));
+            index.write(os);
+            os.close();
+            os = null;
+
+            // Publish the new index at once, so clients never download a partially written one.
+            if (!partial.renameTo(file) && (!file.delete() || !partial.renameTo(file))) {
+                throw new IOException("Cannot move index file to=" + file);
+            }
+
+            return file;
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+        finally {
+            IOUtil.close(os);
+            partial.delete();
+        }
+    } // end method generate
+
+    /**
+     * Adds the files within the given <code>directory</code> to the <code>index</code>, walking its subdirectories in
+     * name order.
+     *
+     * @param   index      The index.
+     * @param   directory  The directory to walk.
+     * @param   prefix     The relative path of the directory, ending with a slash, or an empty string for the root.
+     *
+     * @throws  IOException  If a file cannot be read.
+     */
+    private static void add(ResourceIndex index, File directory, String prefix) throws IOException {
+        File[] files = directory.listFiles();
+
+        if (files == null) {
+            throw new IOException("Cannot list directory=" + directory);
+        }
+
+        Arrays.sort(files);
+
+        for (File file : files) {
+            String name = prefix + file.getName();
+
+            if (file.isDirectory()) {
+                add(index, file, name + "/");
+            }
+            else if (!name.equals(ResourceIndex.FileName) && !name.equals(ResourceIndex.FileName + ".part")) {
+                index.add(new IndexEntry(name, file.length(), file.lastModified(), digest(file)));
+            }
+        }
+    }
+
+    /**
+     * Returns the <tt>SHA-1</tt> digest of the contents of the given <code>file</code>.
+     *
+     * @param   file  The file.
+     *
+     * @return  The hexadecimal digest.
+     *
+     * @throws  IOException  If the file cannot be read.
+     */
+    private static String digest(File file) throws IOException {
+        InputStream is = null;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[8192];
+            is = new FileInputStream(file);
+
+            for (int n = is.read(buffer); n != -1; n = is.read(buffer)) {
+                digest.update(buffer, 0, n);
+            }
+
+            return Strings.toHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new ResourceException(e);
+        }
+        finally {
+            IOUtil.close(is);
+        }
+    } // end method digest
+} // end class ResourceIndexGenerator
@@ -21,7 +21,12 @@ import com.soeima.resources.PathItem;
 import com.soeima.resources.Resource;
 import com.soeima.resources.archive.cache.AbstractArchivePathItem;
 import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.archive.random.FileSource;
+import com.soeima.resources.archive.random.StoredEntryCache;
+import com.soeima.resources.archive.random.ZipRandomAccessArchive;
+import com.soeima.resources.util.ContentStore;
 import com.soeima.resources.util.Paths;
+import java.io.File;
 import java.util.jar.JarFile;
 
 /**
@@ -44,6 +49,36 @@ public class JarPathItem extends AbstractArchivePathItem {
         super(path);
     }
 
+    /**
+     * Creates a new {@link JarPathItem} object which keeps the most recently read entries in memory, still compressed
+     * as they are stored in the archive. Reading a kept entry again then costs a single inflate and no input/output.
+     *
+     * @param  path             The path to the <tt>Jar</tt> or <tt>ZIP</tt> file.
+     * @param  storedCacheSize  The maximum number of stored bytes to keep in memory.
+     *
+     * @see    StoredEntryCache
+     */
+    public JarPathItem(String path, long storedCacheSize) {
+        super(path,
+              new ZipRandomAccessArchive(path, new FileSource(new File(path)), new StoredEntryCache(storedCacheSize)));
+    }
+
+    /**
+     * Creates a new {@link JarPathItem} object which keeps the most recently read entries in memory, as for {@link
+     * #JarPathItem(String, long)}, and keeps a single copy of the entries that are byte-identical to those kept by the
+     * other users of the given <code>contentStore</code>.
+     *
+     * @param  path             The path to the <tt>Jar</tt> or <tt>ZIP</tt> file.
+     * @param  storedCacheSize  The maximum number of stored bytes to keep in memory.
+     * @param  contentStore     The store shared by all of the path items whose entries are to be deduplicated.
+     */
+    public JarPathItem(String path, long storedCacheSize, ContentStore contentStore) {
+        super(path,
+              new ZipRandomAccessArchive(path,
+                                         new FileSource(new File(path)),
+                                         new StoredEntryCache(storedCacheSize, contentStore)));
+    }
+
     /**
      * Creates a new {@link JarPathItem} object.
      *
@@ -68,10 +103,13 @@ public class JarPathItem extends AbstractArchivePathItem {
     }
 
     /**
+     * The archive is read through its central directory, so that each entry can be read on its own rather than by
+     * streaming the archive up to it.
+     *
      * @see  AbstractArchivePathItem#newArchive(String)
      */
     @Override public Archive newArchive(String path) {
-        return new JarArchive(path);
+        return new ZipRandomAccessArchive(path, new FileSource(new File(path)));
     }
 
     /**
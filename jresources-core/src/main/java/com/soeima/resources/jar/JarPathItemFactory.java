@@ -43,6 +43,11 @@ public class JarPathItemFactory implements PathItemFactory {
             return new JarURLPathItem(path);
         }
 
+        // Archives accessed through other protocols are left to the extensions handling those protocols.
+        if (path.contains("://") && !path.startsWith("file:")) {
+            return null;
+        }
+
         if (path.endsWith(".jar") || path.endsWith(".zip")) {
             return new JarPathItem(path);
         }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.memory;
+
+import com.soeima.resources.AbstractPathItem;
+import com.soeima.resources.IndexedPathItem;
+import com.soeima.resources.PathItem;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceBatch;
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.ResourceFilter;
+import com.soeima.resources.ResourceNameFilter;
+import com.soeima.resources.util.Paths;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link PathItem} for the resources of a {@link MemoryStore}, denoted by the path <code>memory:name</code>. Placed
+ * ahead of other path items, it shadows their resources with the ones generated at runtime.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class MemoryPathItem extends AbstractPathItem implements IndexedPathItem {
+
+    /** The scheme of the paths denoting memory stores. */
+    public static final String Scheme = "memory";
+
+    /** The store holding the resources. */
+    private MemoryStore store;
+
+    /**
+     * Creates a new {@link MemoryPathItem} object.
+     *
+     * @param  path  The path of the store, i.e., <code>memory:name</code>.
+     */
+    public MemoryPathItem(String path) {
+        super(path);
+        store = MemoryStore.getStore(Paths.stripTrailingSlash(path.substring(Scheme.length() + 1)));
+    }
+
+    /**
+     * Returns the store holding the resources.
+     *
+     * @return  The store.
+     */
+    public MemoryStore getStore() {
+        return store;
+    }
+
+    /**
+     * @see  PathItem#findResourcesForExtension(String, RecursionType)
+     */
+    @Override public List<Resource> findResourcesForExtension(String extension, RecursionType recursionType) {
+        List<Resource> resources = new ArrayList<Resource>();
+
+        for (String name : store.getNames()) {
+
+            if (((recursionType == RecursionType.Recursive) || (name.indexOf('/') < 0))
+                    && Paths.isExtension(name, extension)) {
+                resources.add(new MemoryResource(this, name));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * @see  AbstractPathItem#findResources(ResourceFilter, RecursionType)
+     */
+    @Override protected List<Resource> findResources(ResourceFilter filter, RecursionType recursionType) {
+        List<Resource> resources = new ArrayList<Resource>();
+
+        for (String name : store.getNames()) {
+
+            if (((recursionType == RecursionType.Recursive) || (name.indexOf('/') < 0)) && filter.accept(name)) {
+                resources.add(new MemoryResource(this, name));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * @see  AbstractPathItem#findResources(String, RecursionType, int)
+     */
+    @Override protected List<Resource> findResources(String name, RecursionType recursionType, int amount) {
+        List<Resource> resources = new ArrayList<Resource>();
+
+        if (recursionType == RecursionType.NonRecursive) {
+
+            if ((amount != 0) && store.contains(name)) {
+                resources.add(new MemoryResource(this, Paths.stripLeadingSlash(Paths.normalize(name, '/'))));
+            }
+
+            return resources;
+        }
+
+        for (String resourceName : store.getNames()) {
+
+            if (resources.size() == amount) {
+                break;
+            }
+
+            if (Paths.endsWithNormalized(resourceName, name)) {
+                resources.add(new MemoryResource(this, resourceName));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * A recursive batch matches every resource of the store against all of the requested names in a single pass.
+     *
+     * @see  AbstractPathItem#findResources(ResourceBatch)
+     */
+    @Override protected void findResources(ResourceBatch batch) {
+
+        if (batch.getRecursionType() == RecursionType.NonRecursive) {
+            super.findResources(batch);
+            return;
+        }
+
+        for (String resourceName : store.getNames()) {
+
+            if (batch.matches(resourceName)) {
+                batch.add(resourceName, new MemoryResource(this, resourceName));
+            }
+        }
+    }
+
+    /**
+     * @see  IndexedPathItem#getNameFilter()
+     */
+    @Override public ResourceNameFilter getNameFilter() {
+        return store.getNameFilter();
+    }
+
+    /**
+     * The store keeps its names in memory, so it is always indexed.
+     *
+     * @see  IndexedPathItem#index()
+     */
+    @Override public void index() {
+    }
+
+    /**
+     * @see  PathItem#getInputStream(String)
+     */
+    @Override public InputStream getInputStream(String name) {
+        return store.getInputStream(name);
+    }
+
+    /**
+     * Returns the <tt>URI</tt> of the resource with the given <code>name</code>.
+     *
+     * @param   name  The name of the resource or an empty string for the store itself.
+     *
+     * @return  The <tt>URI</tt> of the resource.
+     *
+     * @throws  ResourceException  If the <code>name</code> cannot be part of a <tt>URI</tt>.
+     */
+    URI toURI(String name) {
+
+        try {
+            return new URI(Scheme, store.getName() + "/" + name, null);
+        }
+        catch (URISyntaxException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * @see  PathItem#getURI()
+     */
+    @Override public URI getURI() {
+        return toURI("");
+    }
+} // end class MemoryPathItem
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.memory;
+
+import com.soeima.resources.PathItem;
+import com.soeima.resources.PathItemFactory;
+
+/**
+ * Implements a {@link PathItemFactory} for {@link MemoryStore}s.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class MemoryPathItemFactory implements PathItemFactory {
+
+    /**
+     * Creates a new {@link MemoryPathItemFactory} object.
+     */
+    public MemoryPathItemFactory() {
+    }
+
+    /**
+     * @see  PathItemFactory#pathItem(String)
+     */
+    @Override public PathItem pathItem(String path) {
+        return path.startsWith(MemoryPathItem.Scheme + ":") ? new MemoryPathItem(path) : null;
+    }
+}
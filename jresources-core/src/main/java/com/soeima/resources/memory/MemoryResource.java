@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.memory;
+
+import com.soeima.resources.AbstractResource;
+import com.soeima.resources.PathItem;
+import com.soeima.resources.Resource;
+import java.net.URI;
+
+/**
+ * Implements a {@link Resource} held by a {@link MemoryStore}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class MemoryResource extends AbstractResource {
+
+    /**
+     * Creates a new {@link MemoryResource} object.
+     *
+     * @param  pathItem      The parent {@link PathItem}.
+     * @param  relativePath  The resource's relative path.
+     */
+    public MemoryResource(MemoryPathItem pathItem, String relativePath) {
+        super(pathItem, relativePath);
+    }
+
+    /**
+     * Returns a copy of the contents of this resource, taken straight from the store.
+     *
+     * @see  Resource#getBytes()
+     */
+    @Override public byte[] getBytes() {
+        return ((MemoryPathItem)getPathItem()).getStore().get(getName());
+    }
+
+    /**
+     * @see  Resource#getPath()
+     */
+    @Override public String getPath() {
+        return getURI().toASCIIString();
+    }
+
+    /**
+     * @see  Resource#getURI()
+     */
+    @Override public URI getURI() {
+        return ((MemoryPathItem)getPathItem()).toURI(getName());
+    }
+} // end class MemoryResource
@@ -0,0 +1,440 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.memory;
+
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.ResourceNameFilter;
+import com.soeima.resources.util.Paths;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds resources generated at runtime, which are served by a {@link MemoryPathItem} without touching the disk. The
+ * stores are registered by name, so the path <code>memory:name</code> denotes the store returned by {@link
+ * #getStore(String) getStore("name")}.
+ *
+ * <p>The contents of all of the resources are kept in a single byte arena, which only ever grows at its end, along
+ * with an immutable index of their names. Each change publishes a new index, so readers never take a lock and always
+ * see either all or none of the resources of a batch. Once the arena is full, the live resources are copied into a
+ * larger arena, which also reclaims the space of the replaced resources.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class MemoryStore {
+
+    /** The initial size of an arena. */
+    private static final int InitialCapacity = 4096;
+
+    /** The stores according to their name. */
+    private static final ConcurrentMap<String, MemoryStore> stores = new ConcurrentHashMap<String, MemoryStore>();
+
+    /** The name of this store. */
+    private String name;
+
+    /** The current contents of this store. */
+    private volatile Snapshot snapshot;
+
+    /** The number of bytes of the arena that have been written to. */
+    private int used;
+
+    /**
+     * Creates a new {@link MemoryStore} object.
+     *
+     * @param  name  The name of this store.
+     */
+    private MemoryStore(String name) {
+        this.name = name;
+        snapshot = new Snapshot(new byte[0], new HashMap<String, Slot>());
+    }
+
+    /**
+     * Returns the store with the given <code>name</code>, creating an empty one if required.
+     *
+     * @param   name  The name of the store.
+     *
+     * @return  The store.
+     */
+    public static MemoryStore getStore(String name) {
+        MemoryStore store = stores.get(name);
+
+        if (store == null) {
+            MemoryStore created = new MemoryStore(name);
+            store = stores.putIfAbsent(name, created);
+
+            if (store == null) {
+                store = created;
+            }
+        }
+
+        return store;
+    }
+
+    /**
+     * Returns the name of this store.
+     *
+     * @return  The name of this store.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the names of all of the resources in this store.
+     *
+     * @return  An immutable list of names in ascending order.
+     */
+    public List<String> getNames() {
+        return snapshot.getNames();
+    }
+
+    /**
+     * Returns the filter of the names of all of the resources in this store, which is built once for each change.
+     *
+     * @return  The filter.
+     */
+    public ResourceNameFilter getNameFilter() {
+        return snapshot.getNameFilter();
+    }
+
+    /**
+     * Returns <code>true</code> if this store contains a resource with the given <code>name</code>.
+     *
+     * @param   name  The name of the resource.
+     *
+     * @return  <code>true</code> if the resource exists; <code>false</code> otherwise.
+     */
+    public boolean contains(String name) {
+        return snapshot.getSlot(normalize(name)) != null;
+    }
+
+    /**
+     * Returns a copy of the contents of the resource with the given <code>name</code>.
+     *
+     * @param   name  The name of the resource.
+     *
+     * @return  The contents of the resource or <code>null</code> if there is no such resource.
+     */
+    public byte[] get(String name) {
+        Snapshot current = snapshot;
+        Slot slot = current.getSlot(normalize(name));
+
+        if (slot == null) {
+            return null;
+        }
+
+        byte[] contents = new byte[slot.getLength()];
+        System.arraycopy(current.getArena(), slot.getOffset(), contents, 0, contents.length);
+        return contents;
+    }
+
+    /**
+     * Returns the contents of the resource with the given <code>name</code>, read straight from the arena.
+     *
+     * @param   name  The name of the resource.
+     *
+     * @return  The contents of the resource or <code>null</code> if there is no such resource.
+     */
+    public InputStream getInputStream(String name) {
+        Snapshot current = snapshot;
+        Slot slot = current.getSlot(normalize(name));
+        return (slot == null) ? null : new ByteArrayInputStream(current.getArena(), slot.getOffset(), slot.getLength());
+    }
+
+    /**
+     * Adds the resource with the given <code>name</code>, replacing any resource of the same name.
+     *
+     * @param  name      The name of the resource.
+     * @param  contents  The contents of the resource, which are copied.
+     */
+    public void put(String name, byte[] contents) {
+        putAll(Collections.singletonMap(name, contents));
+    }
+
+    /**
+     * Adds all of the given <code>resources</code> at once, replacing any resources of the same names.
+     *
+     * @param  resources  The contents of the resources, which are copied, according to their names.
+     */
+    public synchronized void putAll(Map<String, byte[]> resources) {
+        update(new HashMap<String, Slot>(snapshot.getSlots()), resources);
+    }
+
+    /**
+     * Replaces all of the resources in this store with the given <code>resources</code> at once.
+     *
+     * @param  resources  The contents of the resources, which are copied, according to their names.
+     */
+    public synchronized void replace(Map<String, byte[]> resources) {
+        update(new HashMap<String, Slot>(), resources);
+    }
+
+    /**
+     * Removes the resource with the given <code>name</code>.
+     *
+     * @param   name  The name of the resource.
+     *
+     * @return  <code>true</code> if the resource has been removed; <code>false</code> if there is no such resource.
+     */
+    public synchronized boolean remove(String name) {
+        Map<String, Slot> slots = new HashMap<String, Slot>(snapshot.getSlots());
+
+        if (slots.remove(normalize(name)) == null) {
+            return false;
+        }
+
+        update(slots, Collections.<String, byte[]>emptyMap());
+        return true;
+    }
+
+    /**
+     * Removes all of the resources in this store.
+     */
+    public void clear() {
+        replace(Collections.<String, byte[]>emptyMap());
+    }
+
+    /**
+     * Appends the given <code>resources</code> to the arena and publishes the resulting snapshot. The caller must hold
+     * the lock of this store.
+     *
+     * @param   slots      The slots of the resources that are kept, which is modified.
+     * @param   resources  The contents of the resources to add according to their names.
+     *
+     * @throws  ResourceException  If the resources do not fit into a single arena.
+     */
+    private void update(Map<String, Slot> slots, Map<String, byte[]> resources) {
+        Map<String, byte[]> added = new LinkedHashMap<String, byte[]>();
+        long required = 0;
+
+        for (Map.Entry<String, byte[]> entry : resources.entrySet()) {
+            String resourceName = normalize(entry.getKey());
+            slots.remove(resourceName);
+            added.put(resourceName, entry.getValue());
+        }
+
+        for (byte[] contents : added.values()) {
+            required += contents.length;
+        }
+
+        byte[] arena = snapshot.getArena();
+
+        if ((used + required) > arena.length) {
+            long live = required;
+
+            for (Slot slot : slots.values()) {
+                live += slot.getLength();
+            }
+
+            if (live > Integer.MAX_VALUE) {
+                throw new ResourceException("Memory store=" + name + " cannot hold " + live + " bytes.");
+            }
+
+            arena = compact(arena, slots, (int)Math.min(Integer.MAX_VALUE, Math.max(InitialCapacity, live * 2)));
+        }
+
+        // Readers of older snapshots never look past the slots they know of, so the end of the arena can be written.
+        for (Map.Entry<String, byte[]> entry : added.entrySet()) {
+            byte[] contents = entry.getValue();
+            System.arraycopy(contents, 0, arena, used, contents.length);
+            slots.put(entry.getKey(), new Slot(used, contents.length));
+            used += contents.length;
+        }
+
+        snapshot = new Snapshot(arena, slots);
+    } // end method update
+
+    /**
+     * Copies the given live <code>slots</code> into a new arena, one after the other, and updates them accordingly.
+     *
+     * @param   arena     The current arena.
+     * @param   slots     The slots of the live resources, which is modified.
+     * @param   capacity  The size of the new arena.
+     *
+     * @return  The new arena.
+     */
+    private byte[] compact(byte[] arena, Map<String, Slot> slots, int capacity) {
+        byte[] compacted = new byte[capacity];
+        used = 0;
+
+        for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            System.arraycopy(arena, slot.getOffset(), compacted, used, slot.getLength());
+            entry.setValue(new Slot(used, slot.getLength()));
+            used += slot.getLength();
+        }
+
+        return compacted;
+    }
+
+    /**
+     * Normalizes the given resource <code>name</code>.
+     *
+     * @param   name  The name of a resource.
+     *
+     * @return  The name with forward slashes and without a leading slash.
+     */
+    private static String normalize(String name) {
+        return Paths.stripLeadingSlash(Paths.normalize(name, '/'));
+    }
+
+    /**
+     * The location of a resource within the arena.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private static class Slot {
+
+        /** The offset of the first byte of the resource. */
+        private final int offset;
+
+        /** The length of the resource. */
+        private final int length;
+
+        /**
+         * Creates a new {@link Slot} object.
+         *
+         * @param  offset  The offset of the first byte of the resource.
+         * @param  length  The length of the resource.
+         */
+        public Slot(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Returns the offset of the first byte of the resource.
+         *
+         * @return  The offset.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the length of the resource.
+         *
+         * @return  The length.
+         */
+        public int getLength() {
+            return length;
+        }
+    } // end class Slot
+
+    /**
+     * An immutable view of the contents of the store.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private static class Snapshot {
+
+        /** The arena holding the contents of the resources. */
+        private final byte[] arena;
+
+        /** The location of each resource within the {@link #arena} according to its name. */
+        private final Map<String, Slot> slots;
+
+        /** The names of the resources in ascending order. */
+        private final List<String> names;
+
+        /** The filter of the {@link #names} or <code>null</code> if it has not been built yet. */
+        private volatile ResourceNameFilter nameFilter;
+
+        /**
+         * Creates a new {@link Snapshot} object.
+         *
+         * @param  arena  The arena holding the contents of the resources.
+         * @param  slots  The location of each resource according to its name, which must not be modified afterwards.
+         */
+        public Snapshot(byte[] arena, Map<String, Slot> slots) {
+            this.arena = arena;
+            this.slots = Collections.unmodifiableMap(slots);
+
+            List<String> sorted = new ArrayList<String>(slots.keySet());
+            Collections.sort(sorted);
+            names = Collections.unmodifiableList(sorted);
+        }
+
+        /**
+         * Returns the arena holding the contents of the resources.
+         *
+         * @return  The arena, which must not be modified.
+         */
+        public byte[] getArena() {
+            return arena;
+        }
+
+        /**
+         * Returns the location of the resource with the given <code>name</code>.
+         *
+         * @param   name  The normalized name of the resource.
+         *
+         * @return  The location of the resource or <code>null</code> if there is no such resource.
+         */
+        public Slot getSlot(String name) {
+            return slots.get(name);
+        }
+
+        /**
+         * Returns the location of each resource according to its name.
+         *
+         * @return  An immutable map.
+         */
+        public Map<String, Slot> getSlots() {
+            return slots;
+        }
+
+        /**
+         * Returns the names of the resources.
+         *
+         * @return  An immutable list of names in ascending order.
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * Returns the filter of the names of the resources, building it first if required. Concurrent callers may
+         * each build an identical filter.
+         *
+         * @return  The filter.
+         */
+        public ResourceNameFilter getNameFilter() {
+            ResourceNameFilter filter = nameFilter;
+
+            if (filter == null) {
+                filter = new ResourceNameFilter(names);
+                nameFilter = filter;
+            }
+
+            return filter;
+        }
+    } // end class Snapshot
+} // end class MemoryStore
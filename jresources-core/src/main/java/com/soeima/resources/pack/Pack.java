@@ -0,0 +1,511 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.pack;
+
+import com.soeima.resources.archive.random.ByteBufferInputStream;
+import com.soeima.resources.archive.random.FileSource;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A resource pack, i.e., a file laid out for serving resources straight from memory. The whole pack is mapped into
+ * memory when opened and its entries are served as slices of the mapping.
+ *
+ * <p>A pack is made of:</p>
+ *
+ * <ul>
+ *   <li>A header holding the magic number, the format version, the page size, the number of entries and the position
+ *     of the index.</li>
+ *   <li>The data of the entries, each stored either as is or deflated. The data of the entries of at least a page
+ *     starts on a page boundary, while smaller entries are packed together.</li>
+ *   <li>The index: a table of the entries sorted by name, a hash table of the entries according to the hash code of
+ *     their name and the <tt>UTF-8</tt> encoded names of the entries.</li>
+ * </ul>
+ *
+ * <p>Looking up an entry by name probes the hash table and compares the name with the mapped bytes of the candidate,
+ * so it does not allocate anything.</p>
+ *
+ * <p>Packs are written by a {@link PackWriter}. This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class Pack implements Closeable {
+
+    /** The magic number starting every pack, i.e., <code>JRPK</code>. */
+    static final int Magic = 0x4a52504b;
+
+    /** The version of the format. */
+    static final int Version = 1;
+
+    /** The size of the header. */
+    static final int HeaderSize = 32;
+
+    /** The size of each entry of the entry table. */
+    static final int EntrySize = 40;
+
+    /** The method of the entries that are stored as is. */
+    public static final int Stored = 0;
+
+    /** The method of the deflated entries. */
+    public static final int Deflated = 8;
+
+    /** The inflater of each thread, which is reused for all of the entries the thread inflates. */
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+        /**
+         * @see  ThreadLocal#initialValue()
+         */
+        @Override protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    /** The pack file. */
+    private File file;
+
+    /** The source of the mapping. */
+    private FileSource source;
+
+    /** The mapping of the whole pack. */
+    private ByteBuffer buffer;
+
+    /** The number of entries. */
+    private int size;
+
+    /** The position of the entry table. */
+    private int entries;
+
+    /** The position of the hash table. */
+    private int hashes;
+
+    /** The number of slots of the hash table, which is a power of two. */
+    private int hashSize;
+
+    /** The position of the names. */
+    private int names;
+
+    /** The names of the entries in ascending order or <code>null</code> if they have not been decoded yet. */
+    private volatile List<String> nameList;
+
+    /**
+     * Creates a new {@link Pack} object.
+     *
+     * @param  file    The pack file.
+     * @param  source  The source of the mapping.
+     * @param  buffer  The mapping of the whole pack.
+     */
+    private Pack(File file, FileSource source, ByteBuffer buffer) {
+        this.file = file;
+        this.source = source;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps the given pack <code>file</code> into memory.
+     *
+     * @param   file  The pack file.
+     *
+     * @return  The pack.
+     *
+     * @throws  IOException  If the file cannot be mapped or is not a well formed pack.
+     */
+    public static Pack open(File file) throws IOException {
+        FileSource source = new FileSource(file);
+
+        try {
+            ByteBuffer buffer = source.slice(0, source.length());
+
+            if (buffer == null) {
+                throw new IOException("Pack too large to be mapped=" + file);
+            }
+
+            Pack pack = new Pack(file, source, buffer);
+            pack.readHeader();
+            return pack;
+        }
+        catch (IOException e) {
+            IOUtil.close(source);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the header and locates the index.
+     *
+     * @throws  IOException  If the pack is not well formed.
+     */
+    private void readHeader() throws IOException {
+
+        if ((buffer.capacity() < HeaderSize) || (buffer.getInt(0) != Magic)) {
+            throw new IOException("Not a pack=" + file);
+        }
+
+        if (buffer.getInt(4) != Version) {
+            throw new IOException("Unsupported version=" + buffer.getInt(4) + " of pack=" + file);
+        }
+
+        size = buffer.getInt(12);
+        long index = buffer.getLong(16);
+        hashSize = buffer.getInt(24);
+
+        // The hash table must keep a free slot for the probing of a missing name to end.
+        if ((size < 0) || (index < HeaderSize) || (hashSize <= size) || ((hashSize & (hashSize - 1)) != 0)
+                || ((index + ((long)size * EntrySize) + ((long)hashSize * 4)) > buffer.capacity())) {
+            throw new IOException("Malformed index in pack=" + file);
+        }
+
+        entries = (int)index;
+        hashes = entries + (size * EntrySize);
+        names = hashes + (hashSize * 4);
+
+        for (int i = 0; i < size; i++) {
+            int entry = entries + (i * EntrySize);
+            long end = Math.max(buffer.getLong(entry) + buffer.getLong(entry + 8),
+                                names + (long)buffer.getInt(entry + 24) + buffer.getInt(entry + 28));
+
+            if (end > buffer.capacity()) {
+                throw new IOException("Malformed entry=" + i + " in pack=" + file);
+            }
+        }
+
+        int free = 0;
+
+        for (int slot = 0; slot < hashSize; slot++) {
+            // A slot holds the index of its entry plus one, or zero if it is free.
+            int value = buffer.getInt(hashes + (slot * 4));
+
+            if ((value < 0) || (value > size)) {
+                throw new IOException("Malformed hash slot=" + slot + " in pack=" + file);
+            }
+
+            if (value == 0) {
+                free++;
+            }
+        }
+
+        if (free == 0) {
+            throw new IOException("Malformed hash table in pack=" + file);
+        }
+    } // end method readHeader
+
+    /**
+     * Returns the pack file.
+     *
+     * @return  The pack file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return  The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the names of all of the entries.
+     *
+     * @return  An immutable list of names in ascending order.
+     */
+    public List<String> getNames() {
+        List<String> current = nameList;
+
+        if (current == null) {
+            List<String> decoded = new ArrayList<String>(size);
+
+            for (int i = 0; i < size; i++) {
+                decoded.add(getName(i));
+            }
+
+            current = Collections.unmodifiableList(decoded);
+            nameList = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * Returns the name of the entry at the given <code>index</code>.
+     *
+     * @param   index  The index of the entry.
+     *
+     * @return  The name of the entry.
+     */
+    public String getName(int index) {
+        int entry = entries + (index * EntrySize);
+        byte[] name = new byte[buffer.getInt(entry + 28)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(names + buffer.getInt(entry + 24));
+        view.get(name);
+
+        try {
+            return new String(name, "UTF-8");
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+    /**
+     * Returns the index of the entry with the given <code>name</code>. Names are relative to the root of the pack and
+     * separated by <code>/</code>, although a leading slash and backslashes are tolerated.
+     *
+     * @param   name  The name of the entry.
+     *
+     * @return  The index of the entry or <code>-1</code> if there is no such entry.
+     */
+    public int indexOf(String name) {
+        int index = find(name);
+
+        if ((index < 0) && (name.startsWith("/") || (name.indexOf('\\') >= 0))) {
+            index = find(Paths.stripLeadingSlash(Paths.normalize(name, '/')));
+        }
+
+        return index;
+    }
+
+    /**
+     * Looks up the entry with exactly the given <code>name</code> in the hash table.
+     *
+     * @param   name  The name of the entry.
+     *
+     * @return  The index of the entry or <code>-1</code> if there is no such entry.
+     */
+    private int find(String name) {
+        int hash = name.hashCode();
+
+        for (int slot = hash & (hashSize - 1);; slot = (slot + 1) & (hashSize - 1)) {
+            int index = buffer.getInt(hashes + (slot * 4)) - 1;
+
+            if (index < 0) {
+                return -1;
+            }
+
+            int entry = entries + (index * EntrySize);
+
+            if ((buffer.getInt(entry + 32) == hash)
+                    && nameEquals(names + buffer.getInt(entry + 24), buffer.getInt(entry + 28), name)) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Compares the <tt>UTF-8</tt> encoded name at the given <code>position</code> with the given <code>name</code>,
+     * encoding the latter on the fly.
+     *
+     * @param   position  The position of the encoded name.
+     * @param   length    The length of the encoded name.
+     * @param   name      The name to compare.
+     *
+     * @return  <code>true</code> if both names are equal; <code>false</code> otherwise.
+     */
+    private boolean nameEquals(int position, int length, String name) {
+        int end = position + length;
+
+        for (int i = 0; i < name.length();) {
+            int c = name.codePointAt(i);
+            i += Character.charCount(c);
+
+            int count = (c < 0x80) ? 1 : ((c < 0x800) ? 2 : ((c < 0x10000) ? 3 : 4));
+
+            if ((position + count) > end) {
+                return false;
+            }
+
+            if (count == 1) {
+
+                if (buffer.get(position++) != c) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            // The leading byte holds the marker of the length along with the highest bits.
+            if (buffer.get(position++) != (byte)((0xf00 >> count) | (c >> (6 * (count - 1))))) {
+                return false;
+            }
+
+            for (int shift = 6 * (count - 2); shift >= 0; shift -= 6) {
+
+                if (buffer.get(position++) != (byte)(0x80 | ((c >> shift) & 0x3f))) {
+                    return false;
+                }
+            }
+        } // end for
+
+        return position == end;
+    } // end method nameEquals
+
+    /**
+     * Returns the uncompressed size of the entry at the given <code>index</code>.
+     *
+     * @param   index  The index of the entry.
+     *
+     * @return  The size of the entry.
+     */
+    public long getSize(int index) {
+        return buffer.getLong(entries + (index * EntrySize) + 16);
+    }
+
+    /**
+     * Returns the method of the entry at the given <code>index</code>.
+     *
+     * @param   index  The index of the entry.
+     *
+     * @return  Either {@link #Stored} or {@link #Deflated}.
+     */
+    public int getMethod(int index) {
+        return buffer.getInt(entries + (index * EntrySize) + 36);
+    }
+
+    /**
+     * Returns a read-only buffer over the stored bytes of the entry at the given <code>index</code>, which is a slice
+     * of the mapping of the pack.
+     *
+     * @param   index  The index of the entry.
+     *
+     * @return  The stored bytes of the entry.
+     */
+    private ByteBuffer getStored(int index) {
+        int entry = entries + (index * EntrySize);
+        ByteBuffer view = buffer.duplicate();
+        int position = (int)buffer.getLong(entry);
+        view.position(position);
+        view.limit(position + (int)buffer.getLong(entry + 8));
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only buffer over the contents of the entry at the given <code>index</code>. The contents of the
+     * entries stored as is are a slice of the mapping of the pack, so nothing is copied, while the deflated entries are
+     * inflated into a new buffer.
+     *
+     * @param   index  The index of the entry.
+     *
+     * @return  The contents of the entry.
+     *
+     * @throws  IOException  If the entry cannot be inflated.
+     */
+    public ByteBuffer getBuffer(int index) throws IOException {
+        return (getMethod(index) == Stored) ? getStored(index) : ByteBuffer.wrap(inflate(index)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a copy of the contents of the entry at the given <code>index</code>.
+     *
+     * @param   index  The index of the entry.
+     *
+     * @return  The contents of the entry.
+     *
+     * @throws  IOException  If the entry cannot be inflated.
+     */
+    public byte[] getBytes(int index) throws IOException {
+
+        if (getMethod(index) != Stored) {
+            return inflate(index);
+        }
+
+        ByteBuffer stored = getStored(index);
+        byte[] contents = new byte[stored.remaining()];
+        stored.get(contents);
+        return contents;
+    }
+
+    /**
+     * Returns an input stream over the contents of the entry at the given <code>index</code>.
+     *
+     * @param   index  The index of the entry.
+     *
+     * @return  A new {@link ByteBufferInputStream}.
+     *
+     * @throws  IOException  If the entry cannot be inflated.
+     */
+    public ByteBufferInputStream getInputStream(int index) throws IOException {
+        return new ByteBufferInputStream(getBuffer(index));
+    }
+
+    /**
+     * Inflates the entry at the given <code>index</code> with the inflater of the current thread.
+     *
+     * @param   index  The index of the entry.
+     *
+     * @return  The contents of the entry.
+     *
+     * @throws  IOException  If the entry is not well formed.
+     */
+    private byte[] inflate(int index) throws IOException {
+        ByteBuffer stored = getStored(index);
+        byte[] deflated = new byte[stored.remaining() + 1];
+        stored.get(deflated, 0, deflated.length - 1);
+
+        Inflater inflater = inflaters.get();
+        byte[] contents = new byte[(int)getSize(index)];
+        int length = 0;
+        inflater.reset();
+
+        // The extra byte is the dummy input a raw inflater may need to detect the end of the data.
+        inflater.setInput(deflated);
+
+        try {
+
+            while ((length < contents.length) && !inflater.finished()) {
+                int n = inflater.inflate(contents, length, contents.length - length);
+
+                if ((n == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                length += n;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Malformed data for entry=" + getName(index) + " in pack=" + file);
+        }
+
+        if (length != contents.length) {
+            throw new IOException("Truncated data for entry=" + getName(index) + " in pack=" + file);
+        }
+
+        return contents;
+    } // end method inflate
+
+    /**
+     * Closes the channel to the pack file. The mapping stays valid until it is no longer referenced.
+     *
+     * @see  Closeable#close()
+     */
+    @Override public void close() throws IOException {
+        source.close();
+    }
+} // end class Pack
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.pack;
+
+import com.soeima.resources.AbstractPathItem;
+import com.soeima.resources.IndexedPathItem;
+import com.soeima.resources.PathItem;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceBatch;
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.ResourceFilter;
+import com.soeima.resources.ResourceNameFilter;
+import com.soeima.resources.util.Paths;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements a {@link PathItem} for a {@link Pack}. The pack is mapped into memory by the first lookup, after which
+ * looking up a resource by name only probes the hash table of the pack and the resources are served as slices of the
+ * mapping.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class PackPathItem extends AbstractPathItem implements IndexedPathItem {
+
+    /** The scheme of the <tt>URL</tt>s denoting packs. */
+    public static final String Scheme = "pack";
+
+    /** The extension of the pack files. */
+    public static final String Extension = "pack";
+
+    /** The pack or <code>null</code> if it has not been mapped yet. */
+    private volatile Pack pack;
+
+    /** The filter of the names of the resources or <code>null</code> if it has not been built yet. */
+    private volatile ResourceNameFilter nameFilter;
+
+    /**
+     * Creates a new {@link PackPathItem} object.
+     *
+     * @param  path  The path to the pack file.
+     */
+    public PackPathItem(String path) {
+        super(path);
+    }
+
+    /**
+     * Returns the pack, mapping it into memory if required.
+     *
+     * @return  The pack.
+     *
+     * @throws  ResourceException  If the pack cannot be mapped.
+     */
+    public Pack getPack() {
+        Pack current = pack;
+
+        if (current == null) {
+
+            synchronized (this) {
+
+                if (pack == null) {
+
+                    try {
+                        pack = Pack.open(new File(getPath()));
+                    }
+                    catch (IOException e) {
+                        throw new ResourceException(e);
+                    }
+                }
+
+                current = pack;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * @see  PathItem#findResourcesForExtension(String, RecursionType)
+     */
+    @Override public List<Resource> findResourcesForExtension(String extension, RecursionType recursionType) {
+        List<Resource> resources = new ArrayList<Resource>();
+        Pack current = getPack();
+
+        for (int i = 0; i < current.size(); i++) {
+            String name = current.getName(i);
+
+            if (((recursionType == RecursionType.Recursive) || (name.indexOf('/') < 0))
+                    && Paths.isExtension(name, extension)) {
+                resources.add(new PackResource(this, name));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * @see  AbstractPathItem#findResources(ResourceFilter, RecursionType)
+     */
+    @Override protected List<Resource> findResources(ResourceFilter filter, RecursionType recursionType) {
+        List<Resource> resources = new ArrayList<Resource>();
+        Pack current = getPack();
+
+        for (int i = 0; i < current.size(); i++) {
+            String name = current.getName(i);
+
+            if (((recursionType == RecursionType.Recursive) || (name.indexOf('/') < 0)) && filter.accept(name)) {
+                resources.add(new PackResource(this, name));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * @see  AbstractPathItem#findResources(String, RecursionType, int)
+     */
+    @Override protected List<Resource> findResources(String name, RecursionType recursionType, int amount) {
+        List<Resource> resources = new ArrayList<Resource>();
+        Pack current = getPack();
+
+        if (recursionType == RecursionType.NonRecursive) {
+            int index = current.indexOf(name);
+
+            if ((amount != 0) && (index >= 0)) {
+                resources.add(new PackResource(this, current.getName(index)));
+            }
+
+            return resources;
+        }
+
+        for (int i = 0; (i < current.size()) && (resources.size() != amount); i++) {
+            String resourceName = current.getName(i);
+
+            if (Paths.endsWithNormalized(resourceName, name)) {
+                resources.add(new PackResource(this, resourceName));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * A recursive batch matches every resource of the pack against all of the requested names in a single pass.
+     *
+     * @see  AbstractPathItem#findResources(ResourceBatch)
+     */
+    @Override protected void findResources(ResourceBatch batch) {
+
+        if (batch.getRecursionType() == RecursionType.NonRecursive) {
+            super.findResources(batch);
+            return;
+        }
+
+        Pack current = getPack();
+
+        for (int i = 0; i < current.size(); i++) {
+            String resourceName = current.getName(i);
+
+            if (batch.matches(resourceName)) {
+                batch.add(resourceName, new PackResource(this, resourceName));
+            }
+        }
+    }
+
+    /**
+     * The pack is indexed once it has been mapped by the first lookup.
+     *
+     * @see  IndexedPathItem#getNameFilter()
+     */
+    @Override public ResourceNameFilter getNameFilter() {
+        Pack current = pack;
+
+        if ((current != null) && (nameFilter == null)) {
+            List<String> names = new ArrayList<String>(current.size());
+
+            for (int i = 0; i < current.size(); i++) {
+                names.add(current.getName(i));
+            }
+
+            nameFilter = new ResourceNameFilter(names);
+        }
+
+        return nameFilter;
+    }
+
+    /**
+     * Maps the pack and builds the filter of its names.
+     *
+     * @see  IndexedPathItem#index()
+     */
+    @Override public void index() {
+        getPack();
+        getNameFilter();
+    }
+
+    /**
+     * @see  PathItem#getInputStream(String)
+     */
+    @Override public InputStream getInputStream(String name) {
+        Pack current = getPack();
+        int index = current.indexOf(name);
+
+        try {
+            return (index < 0) ? null : current.getInputStream(index);
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * Returns a read-only buffer over the contents of the resource with the given <code>name</code>.
+     *
+     * @param   name  The name of the resource.
+     *
+     * @return  The contents of the resource or <code>null</code> if there is no such resource.
+     *
+     * @throws  ResourceException  If the resource cannot be inflated.
+     *
+     * @see     Pack#getBuffer(int)
+     */
+    public ByteBuffer getBuffer(String name) {
+        Pack current = getPack();
+        int index = current.indexOf(name);
+
+        try {
+            return (index < 0) ? null : current.getBuffer(index);
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * Returns a copy of the contents of the resource with the given <code>name</code>.
+     *
+     * @param   name  The name of the resource.
+     *
+     * @return  The contents of the resource or <code>null</code> if there is no such resource.
+     *
+     * @throws  ResourceException  If the resource cannot be inflated.
+     */
+    public byte[] getBytes(String name) {
+        Pack current = getPack();
+        int index = current.indexOf(name);
+
+        try {
+            return (index < 0) ? null : current.getBytes(index);
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * @see  PathItem#getURI()
+     */
+    @Override public URI getURI() {
+
+        try {
+            return new URI(Paths.normalize(Scheme + ":file:/" + getPath() + "!/", '/'));
+        }
+        catch (URISyntaxException e) {
+            throw new ResourceException(e);
+        }
+    }
+} // end class PackPathItem
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.pack;
+
+import com.soeima.resources.PathItem;
+import com.soeima.resources.PathItemFactory;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+
+/**
+ * Implements a {@link PathItemFactory} for {@link Pack}s, denoted either by the path of a <code>.pack</code> file or
+ * by a <code>pack:file:/path!/</code> <tt>URL</tt>.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class PackPathItemFactory implements PathItemFactory {
+
+    /**
+     * Creates a new {@link PackPathItemFactory} object.
+     */
+    public PackPathItemFactory() {
+    }
+
+    /**
+     * @see  PathItemFactory#pathItem(String)
+     */
+    @Override public PathItem pathItem(String path) {
+
+        if (path.startsWith(PackPathItem.Scheme + ":")) {
+            return new PackPathItem(Strings.substringBetween(path, ":/", "!/"));
+        }
+
+        // Packs accessed through other protocols are left to the extensions handling those protocols.
+        if (path.contains("://") && !path.startsWith("file:")) {
+            return null;
+        }
+
+        if (Paths.isExtension(path, PackPathItem.Extension)) {
+            return new PackPathItem(path);
+        }
+
+        return null;
+    }
+} // end class PackPathItemFactory
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.pack;
+
+import com.soeima.resources.AbstractResource;
+import com.soeima.resources.PathItem;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.util.Paths;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+
+/**
+ * Implements a {@link Resource} for an entry of a {@link Pack}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class PackResource extends AbstractResource {
+
+    /**
+     * Creates a new {@link PackResource} object.
+     *
+     * @param  pathItem  The parent {@link PathItem}.
+     * @param  name      The name of the entry.
+     */
+    public PackResource(PackPathItem pathItem, String name) {
+        super(pathItem, name);
+    }
+
+    /**
+     * Returns a read-only buffer over the contents of this resource, which is a slice of the mapped pack unless the
+     * entry is stored deflated.
+     *
+     * @return  The contents of this resource.
+     *
+     * @throws  ResourceException  If the resource cannot be inflated.
+     */
+    public ByteBuffer getBuffer() {
+        return ((PackPathItem)getPathItem()).getBuffer(getName());
+    }
+
+    /**
+     * Returns a copy of the contents of this resource, taken straight from the mapped pack.
+     *
+     * @see  Resource#getBytes()
+     */
+    @Override public byte[] getBytes() {
+        return ((PackPathItem)getPathItem()).getBytes(getName());
+    }
+
+    /**
+     * @see  Resource#getPath()
+     */
+    @Override public String getPath() {
+        return Paths.join(getPathItem().getPath(), getName());
+    }
+
+    /**
+     * @see  Resource#getURI()
+     */
+    @Override public URI getURI() {
+
+        try {
+            return new URI(getPathItem().getURI().toASCIIString() + getName());
+        }
+        catch (URISyntaxException e) {
+            throw new ResourceException(e);
+        }
+    }
+} // end class PackResource
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.pack;
+
+import com.soeima.resources.PathItem;
+import com.soeima.resources.PathItems;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.ResourceFilter;
+import com.soeima.resources.ResourceVisitor;
+import com.soeima.resources.util.ContentDigest;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a {@link Pack}. The data of the entries is written as they are added, while the index is written once the
+ * writer is closed, so a pack is not readable until then.
+ *
+ * <p>Each entry is deflated and stored deflated only if that saves at least an eighth of its size, since the entries
+ * stored as is are served without copying anything.</p>
+ *
+ * <p>The data of byte-identical entries may also be deduplicated, in which case it is written once and all of the
+ * entries with the same {@link ContentDigest} point at it.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class PackWriter implements Closeable {
+
+    /** The default page size, on which the data of the large entries is aligned. */
+    public static final int DefaultPageSize = 4096;
+
+    /** The alignment of the data of the entries smaller than a page. */
+    private static final int Alignment = 8;
+
+    /** The pack file being written. */
+    private RandomAccessFile raf;
+
+    /** The page size. */
+    private int pageSize;
+
+    /** The compressor of the entries. */
+    private Deflater deflater;
+
+    /** The entries added so far. */
+    private List<PackEntry> entries;
+
+    /** The names of the entries added so far. */
+    private Set<String> names;
+
+    /** Whether the entries may be stored deflated. */
+    private boolean compress;
+
+    /** The entries whose data has been written according to the digest of their contents or <code>null</code>. */
+    private Map<ContentDigest, PackEntry> digests;
+
+    /** The number of bytes that have not been written thanks to deduplication. */
+    private long savedBytes;
+
+    /**
+     * Creates a new {@link PackWriter} object with the {@link #DefaultPageSize}.
+     *
+     * @param   file  The pack file, which is overwritten.
+     *
+     * @throws  IOException  If the file cannot be created.
+     */
+    public PackWriter(File file) throws IOException {
+        this(file, DefaultPageSize);
+    }
+
+    /**
+     * Creates a new {@link PackWriter} object.
+     *
+     * @param   file      The pack file, which is overwritten.
+     * @param   pageSize  The page size, which must be a power of two.
+     *
+     * @throws  IOException  If the file cannot be created.
+     */
+    public PackWriter(File file, int pageSize) throws IOException {
+
+        if ((pageSize < Alignment) || ((pageSize & (pageSize - 1)) != 0)) {
+            throw new IllegalArgumentException("Invalid page size=" + pageSize);
+        }
+
+        this.pageSize = pageSize;
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        raf.write(new byte[Pack.HeaderSize]);
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        entries = new ArrayList<PackEntry>();
+        names = new HashSet<String>();
+        compress = true;
+    }
+
+    /**
+     * Converts the given <code>pathItem</code> into a pack holding all of its resources, named after their path
+     * relative to the path item. The pack is deleted if the conversion fails.
+     *
+     * @param   pathItem  The path item to convert.
+     * @param   file      The pack file, which is overwritten.
+     *
+     * @throws  IOException  If the pack cannot be written.
+     */
+    public static void write(PathItem pathItem, File file) throws IOException {
+        write(pathItem, file, false);
+    }
+
+    /**
+     * Converts the given <code>pathItem</code> into a pack, as for {@link #write(PathItem, File)}, optionally writing
+     * the data of byte-identical resources only once.
+     *
+     * @param   pathItem     The path item to convert.
+     * @param   file         The pack file, which is overwritten.
+     * @param   deduplicate  Whether the data of byte-identical resources is written only once.
+     *
+     * @return  The number of bytes saved by deduplication.
+     *
+     * @throws  IOException  If the pack cannot be written.
+     */
+    public static long write(final PathItem pathItem, File file, boolean deduplicate) throws IOException {
+        final PackWriter writer = new PackWriter(file);
+        writer.setDeduplicate(deduplicate);
+        boolean written = false;
+
+        try {
+            pathItem.scan(new ResourceFilter() {
+
+                    /**
+                     * @see  ResourceFilter#accept(String)
+                     */
+                    @Override public boolean accept(String name) {
+                        return true;
+                    }
+                }, RecursionType.Recursive, new ResourceVisitor() {
+
+                    /**
+                     * @see  ResourceVisitor#visit(Resource, InputStream)
+                     */
+                    @Override public void visit(Resource resource, InputStream is) throws IOException {
+                        writer.add(PathItems.getRelativeName(pathItem, resource), is);
+                    }
+                });
+            writer.close();
+            written = true;
+        }
+        catch (ResourceException e) {
+            IOException ioe = new IOException(e.toString());
+            ioe.initCause(e);
+            throw ioe;
+        }
+        finally {
+
+            // Do not leave an incomplete pack behind.
+            if (!written) {
+                IOUtil.close(writer);
+                file.delete();
+            }
+        }
+
+        return writer.getSavedBytes();
+    } // end method write
+
+    /**
+     * Sets whether the data of byte-identical entries is written only once. This only applies to the entries added
+     * afterwards.
+     *
+     * @param  deduplicate  <code>true</code> to deduplicate the data of the entries; <code>false</code> otherwise.
+     */
+    public void setDeduplicate(boolean deduplicate) {
+
+        if (!deduplicate) {
+            digests = null;
+        }
+        else if (digests == null) {
+            digests = new HashMap<ContentDigest, PackEntry>();
+        }
+    }
+
+    /**
+     * Sets whether the entries added afterwards may be stored deflated. Entries that are stored as is are always served
+     * as slices of the mapped pack.
+     *
+     * @param  compress  <code>true</code> to deflate the entries when that pays off; <code>false</code> otherwise.
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Returns the number of bytes that have not been written thanks to deduplication.
+     *
+     * @return  The number of bytes saved.
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    /**
+     * Adds an entry with the given <code>name</code> and <code>contents</code>.
+     *
+     * @param   name      The name of the entry, relative to the root of the pack.
+     * @param   contents  The contents of the entry.
+     *
+     * @throws  IOException  If an entry with the same name has already been added or the entry cannot be written.
+     */
+    public void add(String name, byte[] contents) throws IOException {
+        String normalized = Paths.stripLeadingSlash(Paths.normalize(name, '/'));
+
+        if (!names.add(normalized)) {
+            throw new IOException("Duplicate entry=" + normalized);
+        }
+
+        ContentDigest digest = (digests == null) ? null : ContentDigest.of(contents);
+        PackEntry same = (digest == null) ? null : digests.get(digest);
+
+        if (same != null) {
+            entries.add(new PackEntry(normalized, same.getOffset(), same.getStoredSize(), same.getSize(),
+                                      same.getMethod()));
+            savedBytes += same.getStoredSize();
+            return;
+        }
+
+        byte[] deflated = compress ? deflate(contents) : null;
+        boolean stored = (deflated == null) || (deflated.length > (contents.length - (contents.length / 8)));
+        byte[] data = stored ? contents : deflated;
+
+        long offset = align(raf.getFilePointer(), (data.length >= pageSize) ? pageSize : Alignment);
+        raf.write(new byte[(int)(offset - raf.getFilePointer())]);
+        raf.write(data);
+        PackEntry entry = new PackEntry(normalized, offset, data.length, contents.length,
+                                        stored ? Pack.Stored : Pack.Deflated);
+        entries.add(entry);
+
+        if (digest != null) {
+            digests.put(digest, entry);
+        }
+    }
+
+    /**
+     * Adds an entry with the given <code>name</code> and the contents read from the given input stream, which is left
+     * open.
+     *
+     * @param   name  The name of the entry, relative to the root of the pack.
+     * @param   is    The contents of the entry.
+     *
+     * @throws  IOException  If an entry with the same name has already been added or the entry cannot be written.
+     */
+    public void add(String name, InputStream is) throws IOException {
+        add(name, IOUtil.toByteArray(is));
+    }
+
+    /**
+     * Deflates the given <code>contents</code>.
+     *
+     * @param   contents  The contents of an entry.
+     *
+     * @return  The deflated contents or <code>null</code> if deflating does not pay off.
+     */
+    private byte[] deflate(byte[] contents) {
+
+        if (contents.length < Alignment) {
+            return null;
+        }
+
+        byte[] buffer = new byte[contents.length];
+        int length = 0;
+        deflater.reset();
+        deflater.setInput(contents);
+        deflater.finish();
+
+        while (!deflater.finished()) {
+
+            if (length == buffer.length) {
+                return null;
+            }
+
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        byte[] deflated = new byte[length];
+        System.arraycopy(buffer, 0, deflated, 0, length);
+        return deflated;
+    }
+
+    /**
+     * Returns the given <code>position</code> rounded up to the given <code>alignment</code>.
+     *
+     * @param   position   The position.
+     * @param   alignment  The alignment, which is a power of two.
+     *
+     * @return  The aligned position.
+     */
+    private static long align(long position, int alignment) {
+        return (position + alignment - 1) & -alignment;
+    }
+
+    /**
+     * Writes the index and the header, then closes the pack file.
+     *
+     * @see  Closeable#close()
+     */
+    @Override public void close() throws IOException {
+
+        if (raf == null) {
+            return;
+        }
+
+        try {
+            writeIndex();
+        }
+        finally {
+            deflater.end();
+            raf.close();
+            raf = null;
+        }
+    }
+
+    /**
+     * Writes the entry table, the hash table and the names after the data of the entries, then the header.
+     *
+     * @throws  IOException  If the index cannot be written.
+     */
+    private void writeIndex() throws IOException {
+        Collections.sort(entries);
+
+        int hashSize = 1;
+
+        while (hashSize < (entries.size() * 2)) {
+            hashSize <<= 1;
+        }
+
+        long index = align(raf.getFilePointer(), Alignment);
+        List<byte[]> encoded = new ArrayList<byte[]>(entries.size());
+        int namesSize = 0;
+
+        for (PackEntry entry : entries) {
+            byte[] name = entry.getName().getBytes("UTF-8");
+            encoded.add(name);
+            namesSize += name.length;
+        }
+
+        ByteBuffer buffer =
+            ByteBuffer.allocate((int)(index - raf.getFilePointer()) + (entries.size() * Pack.EntrySize)
+                                + (hashSize * 4) + namesSize);
+        buffer.position((int)(index - raf.getFilePointer()));
+
+        int nameOffset = 0;
+
+        for (int i = 0; i < entries.size(); i++) {
+            PackEntry entry = entries.get(i);
+            buffer.putLong(entry.getOffset());
+            buffer.putLong(entry.getStoredSize());
+            buffer.putLong(entry.getSize());
+            buffer.putInt(nameOffset);
+            buffer.putInt(encoded.get(i).length);
+            buffer.putInt(entry.getName().hashCode());
+            buffer.putInt(entry.getMethod());
+            nameOffset += encoded.get(i).length;
+        }
+
+        int hashes = buffer.position();
+
+        for (int i = 0; i < entries.size(); i++) {
+            int slot = entries.get(i).getName().hashCode() & (hashSize - 1);
+
+            while (buffer.getInt(hashes + (slot * 4)) != 0) {
+                slot = (slot + 1) & (hashSize - 1);
+            }
+
+            buffer.putInt(hashes + (slot * 4), i + 1);
+        }
+
+        buffer.position(hashes + (hashSize * 4));
+
+        for (byte[] name : encoded) {
+            buffer.put(name);
+        }
+
+        raf.write(buffer.array());
+
+        ByteBuffer header = ByteBuffer.allocate(Pack.HeaderSize);
+        header.putInt(Pack.Magic);
+        header.putInt(Pack.Version);
+        header.putInt(pageSize);
+        header.putInt(entries.size());
+        header.putLong(index);
+        header.putInt(hashSize);
+        raf.seek(0);
+        raf.write(header.array());
+    } // end method writeIndex
+
+    /**
+     * An entry of the pack being written.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private static class PackEntry implements Comparable<PackEntry> {
+
+        /** The name of the entry. */
+        private String name;
+
+        /** The position of the data of the entry. */
+        private long offset;
+
+        /** The size of the data of the entry. */
+        private long storedSize;
+
+        /** The uncompressed size of the entry. */
+        private long size;
+
+        /** The method of the entry. */
+        private int method;
+
+        /**
+         * Creates a new {@link PackEntry} object.
+         *
+         * @param  name        The name of the entry.
+         * @param  offset      The position of the data of the entry.
+         * @param  storedSize  The size of the data of the entry.
+         * @param  size        The uncompressed size of the entry.
+         * @param  method      The method of the entry.
+         */
+        public PackEntry(String name, long offset, long storedSize, long size, int method) {
+            this.name = name;
+            this.offset = offset;
+            this.storedSize = storedSize;
+            this.size = size;
+            this.method = method;
+        }
+
+        /**
+         * Returns the name of the entry.
+         *
+         * @return  The name of the entry.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the position of the data of the entry.
+         *
+         * @return  The position of the data of the entry.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the size of the data of the entry.
+         *
+         * @return  The size of the data of the entry.
+         */
+        public long getStoredSize() {
+            return storedSize;
+        }
+
+        /**
+         * Returns the uncompressed size of the entry.
+         *
+         * @return  The uncompressed size of the entry.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the method of the entry.
+         *
+         * @return  The method of the entry.
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * @see  Comparable#compareTo(Object)
+         */
+        @Override public int compareTo(PackEntry entry) {
+            return name.compareTo(entry.name);
+        }
+    } // end class PackEntry
+} // end class PackWriter
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The <tt>SHA-256</tt> digest of some contents, which identifies them as far as deduplication is concerned.
+ *
+ * <p>This class is immutable.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public final class ContentDigest {
+
+    /** The name of the digest algorithm. */
+    public static final String Algorithm = "SHA-256";
+
+    /** The digest of each thread, which is reused for all of the contents the thread digests. */
+    private static final ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>() {
+
+        /**
+         * @see  ThreadLocal#initialValue()
+         */
+        @Override protected MessageDigest initialValue() {
+
+            try {
+                return MessageDigest.getInstance(Algorithm);
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e.toString());
+            }
+        }
+    };
+
+    /** The bytes of the digest. */
+    private byte[] digest;
+
+    /** The hash code of the digest. */
+    private int hashCode;
+
+    /**
+     * Creates a new {@link ContentDigest} object.
+     *
+     * @param  digest  The bytes of the digest.
+     */
+    private ContentDigest(byte[] digest) {
+        this.digest = digest;
+        hashCode = Arrays.hashCode(digest);
+    }
+
+    /**
+     * Returns the digest of the given <code>contents</code>.
+     *
+     * @param   contents  The contents to digest.
+     *
+     * @return  The digest of the contents.
+     */
+    public static ContentDigest of(byte[] contents) {
+        return new ContentDigest(digests.get().digest(contents));
+    }
+
+    /**
+     * @see  Object#equals(Object)
+     */
+    @Override public boolean equals(Object object) {
+        return (object instanceof ContentDigest) && Arrays.equals(digest, ((ContentDigest)object).digest);
+    }
+
+    /**
+     * @see  Object#hashCode()
+     */
+    @Override public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Returns the digest in hexadecimal.
+     *
+     * @see  Object#toString()
+     */
+    @Override public String toString() {
+        return Strings.toHex(digest);
+    }
+} // end class ContentDigest
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.util;
+
+import com.soeima.resources.util.collections.ReferenceValueMap;
+import com.soeima.resources.util.collections.ReferenceValueMap.ReferenceType;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content-addressed store that keeps a single copy of byte-identical contents, e.g., the same license or shaded class
+ * found in several archives. Contents are keyed by their {@link ContentDigest}, and interning contents that are
+ * already held returns the copy held instead.
+ *
+ * <p>The copies are only referenced weakly, so they are released once none of their users holds them anymore. A
+ * single store is meant to be shared by all of the caches whose contents are to be deduplicated.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ContentStore {
+
+    /** The copies held according to the digest of their contents. */
+    private ConcurrentMap<ContentDigest, byte[]> contents;
+
+    /** The number of bytes that have not been held twice thanks to deduplication. */
+    private AtomicLong savedBytes;
+
+    /**
+     * Creates a new {@link ContentStore} object.
+     */
+    public ContentStore() {
+        contents = new ReferenceValueMap<ContentDigest, byte[]>(ReferenceType.Weak);
+        savedBytes = new AtomicLong();
+    }
+
+    /**
+     * Returns the copy held of the given <code>contents</code>, holding the <code>contents</code> themselves if there
+     * is no such copy yet.
+     *
+     * @param   contents  The contents, which must not be modified afterwards.
+     *
+     * @return  The copy held, which must not be modified.
+     */
+    public byte[] intern(byte[] contents) {
+        byte[] held = this.contents.putIfAbsent(ContentDigest.of(contents), contents);
+
+        if (held == null) {
+            return contents;
+        }
+
+        savedBytes.addAndGet(contents.length);
+        return held;
+    }
+
+    /**
+     * Returns the number of distinct contents held.
+     *
+     * @return  The number of distinct contents.
+     */
+    public int size() {
+        return contents.size();
+    }
+
+    /**
+     * Returns the number of bytes that deduplication has saved so far, i.e., the total size of all of the contents
+     * interned while an identical copy was already held.
+     *
+     * @return  The number of bytes saved.
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+} // end class ContentStore
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads, so that the background work of the resource loaders never prevents the virtual machine
+ * from exiting.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/07
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    /** The prefix of the thread names. */
+    private String name;
+
+    /** The number of threads created so far. */
+    private AtomicInteger count;
+
+    /**
+     * Creates a new {@link DaemonThreadFactory} object.
+     *
+     * @param  name  The prefix of the thread names.
+     */
+    public DaemonThreadFactory(String name) {
+        this.name = name;
+        count = new AtomicInteger();
+    }
+
+    /**
+     * @see  ThreadFactory#newThread(Runnable)
+     */
+    @Override public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+} // end class DaemonThreadFactory
@@ -223,4 +223,22 @@ public class Strings {
     public static String substringBetween(String string, String beginSep, String endSep) {
         return substringBefore(substringAfter(string, beginSep), endSep);
     }
+
+    /**
+     * Returns the given <code>bytes</code> in lower case hexadecimal, two digits per byte.
+     *
+     * @param   bytes  The bytes to encode.
+     *
+     * @return  The hexadecimal string.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return sb.toString();
+    }
 } // end class Strings
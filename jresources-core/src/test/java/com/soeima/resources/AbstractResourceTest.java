@@ -27,13 +27,19 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import org.junit.Test;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Provides a common infrastructure for {@link Resource} unit tests.
@@ -405,4 +411,83 @@ public abstract class AbstractResourceTest {
         assertNotNull(resources);
         assertEquals(3, resources.size());
     } // end method testRecursive
+
+    /**
+     * Tests that looking up many names at once finds the same resources as looking them up one by one.
+     */
+    @Test public void testBatch() {
+        List<String> names =
+            Arrays.asList(TEST_FILE_RESOURCE1,
+                          TEST_FILE_RESOURCE2,
+                          Paths.normalize(Paths.join("a", TEST_FILE_RESOURCE1), '/'),
+                          Paths.normalize(Paths.join("a", "a", TEST_FILE_RESOURCE2), '/'),
+                          "foo");
+
+        for (RecursionType recursionType : RecursionType.values()) {
+            ResourceLoader rl = new ResourceLoader();
+            rl.setRecursionType(recursionType);
+            rl.addPath(getResourcePath());
+
+            Map<String, List<Resource>> batch = rl.getResources(names);
+            assertEquals(names, Arrays.asList(batch.keySet().toArray()));
+
+            for (String name : names) {
+                assertEquals(toURIs(rl.getResources(name)), toURIs(batch.get(name)));
+            }
+        }
+    }
+
+    /**
+     * Tests that a scan visits the same resources, with the same contents, as a lookup by extension.
+     */
+    @Test public void testScan() {
+
+        for (RecursionType recursionType : RecursionType.values()) {
+            ResourceLoader rl = new ResourceLoader();
+            rl.setRecursionType(recursionType);
+            rl.addPath(getResourcePath());
+
+            final Map<String, String> visited = new HashMap<String, String>();
+            rl.scanForExtension("file", new ResourceVisitor() {
+
+                    /**
+                     * @see  ResourceVisitor#visit(Resource, InputStream)
+                     */
+                    @Override public void visit(Resource resource, InputStream is) throws IOException {
+                        ByteArrayOutputStream os = new ByteArrayOutputStream();
+                        byte[] buffer = new byte[64];
+
+                        for (int n = is.read(buffer); n >= 0; n = is.read(buffer)) {
+                            os.write(buffer, 0, n);
+                        }
+
+                        visited.put(resource.getURI().toASCIIString(), os.toString("UTF-8"));
+                    }
+                });
+
+            List<Resource> resources = rl.getResourcesForExtension("file");
+            assertEquals(resources.size(), visited.size());
+
+            for (Resource resource : resources) {
+                assertEquals(new String(resource.getBytes()), visited.get(resource.getURI().toASCIIString()));
+            }
+        }
+    } // end method testScan
+
+    /**
+     * Returns the <tt>URI</tt>s of the given <code>resources</code>.
+     *
+     * @param   resources  The resources.
+     *
+     * @return  The <tt>URI</tt> strings of the resources.
+     */
+    private static Set<String> toURIs(List<Resource> resources) {
+        Set<String> uris = new HashSet<String>();
+
+        for (Resource resource : resources) {
+            uris.add(resource.getURI().toASCIIString());
+        }
+
+        return uris;
+    }
 } // end class AbstractResourceTest
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+import com.soeima.resources.memory.MemoryPathItem;
+import com.soeima.resources.memory.MemoryStore;
+import com.soeima.resources.pack.PackPathItem;
+import com.soeima.resources.pack.PackWriter;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Provides unit tests for the background indexing of the search paths.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ResourceLoaderIndexingTest {
+
+    /** The name of the memory store searched first. */
+    private static final String StoreName = "loader-indexing-test";
+
+    /** The searched pack. */
+    private File pack;
+
+    /**
+     * Creates a new {@link ResourceLoaderIndexingTest} object.
+     */
+    public ResourceLoaderIndexingTest() {
+    }
+
+    /**
+     * Deletes the test files.
+     */
+    @After public void tearDown() {
+        MemoryStore.getStore(StoreName).remove("first.txt");
+
+        if (pack != null) {
+            pack.delete();
+        }
+    }
+
+    /**
+     * Tests that the paths added to a loader with eager indexing are indexed without any lookup.
+     *
+     * @throws  IOException           If the test pack cannot be written.
+     * @throws  InterruptedException  If the test is interrupted.
+     */
+    @Test public void testEagerIndexing() throws IOException, InterruptedException {
+        pack = File.createTempFile("loader-indexing", ".pack");
+
+        PackWriter writer = new PackWriter(pack);
+        writer.add("packed.txt", "packed".getBytes());
+        writer.close();
+
+        ResourceLoader rl = new ResourceLoader();
+        rl.setEagerIndexing(true);
+        rl.setPaths(Arrays.asList(pack.getPath()));
+        assertTrue(rl.awaitIndexed(10, TimeUnit.SECONDS));
+        assertTrue(rl.isIndexed());
+        assertNull(rl.getResource("missing.txt"));
+        assertArrayEquals("packed".getBytes(), rl.getResource("packed.txt").getBytes());
+
+        PackPathItem pathItem = new PackPathItem(pack.getPath());
+        ResourceFinder finder = new ResourceFinder();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            finder.addPath(pathItem);
+            finder.index(pathItem, executor);
+            assertTrue(finder.awaitIndexed(10, TimeUnit.SECONDS));
+            assertNotNull(pathItem.getNameFilter());
+            assertNull(finder.find("missing.txt"));
+            assertTrue(finder.getFilterSkips() > 0);
+        }
+        finally {
+            executor.shutdown();
+        }
+    } // end method testEagerIndexing
+
+    /**
+     * Tests that the archives added to a loader answering early answer their first lookups early.
+     *
+     * @throws  IOException  If the test archive cannot be written.
+     */
+    @Test public void testEarlyAnswers() throws IOException {
+        File jar = File.createTempFile("loader-indexing", ".jar");
+        ZipOutputStream os = new ZipOutputStream(new FileOutputStream(jar));
+
+        try {
+            os.putNextEntry(new ZipEntry("archived.txt"));
+            os.write("archived".getBytes());
+            os.close();
+
+            ResourceLoader rl = new ResourceLoader();
+            assertFalse(((EarlyAnswerPathItem)rl.newPathItem(jar.getPath())).isEarlyAnswers());
+
+            rl.setEarlyAnswers(true);
+            assertTrue(((EarlyAnswerPathItem)rl.newPathItem(jar.getPath())).isEarlyAnswers());
+
+            rl.addPath(jar.getPath());
+            assertArrayEquals("archived".getBytes(), rl.getResource("archived.txt").getBytes());
+            assertNull(rl.getResource("missing.txt"));
+        }
+        finally {
+            os.close();
+            jar.delete();
+        }
+    } // end method testEarlyAnswers
+
+    /**
+     * Tests that a lookup only waits for the indexing of the path items it reaches.
+     *
+     * @throws  InterruptedException  If the test is interrupted.
+     */
+    @Test public void testLookupsWaitForReachedPaths() throws InterruptedException {
+        MemoryStore.getStore(StoreName).put("first.txt", "first".getBytes());
+
+        final CountDownLatch release = new CountDownLatch(1);
+        PathItem slow = new MemoryPathItem(MemoryPathItem.Scheme + ":" + StoreName + "-slow") {
+
+            /**
+             * @see  IndexedPathItem#index()
+             */
+            @Override public void index() {
+
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        ResourceFinder finder = new ResourceFinder();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            finder.addPath(new MemoryPathItem(MemoryPathItem.Scheme + ":" + StoreName));
+            finder.addPath(slow);
+            finder.index(slow, executor);
+
+            // The first path answers the lookup, so the slow one is never waited for.
+            assertArrayEquals("first".getBytes(), finder.find("first.txt").getBytes());
+            assertFalse(finder.isIndexed());
+            assertFalse(finder.awaitIndexed(10, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            assertNull(finder.find("missing.txt"));
+            assertTrue(finder.isIndexed());
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    } // end method testLookupsWaitForReachedPaths
+} // end class ResourceLoaderIndexingTest
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+import com.soeima.resources.memory.MemoryPathItem;
+import com.soeima.resources.memory.MemoryStore;
+import com.soeima.resources.pack.PackWriter;
+import com.soeima.resources.util.IOUtil;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Provides unit tests for {@link ResourceLoader#snapshot(File)} and {@link ResourceLoader#fromSnapshot(File)}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ResourceLoaderSnapshotTest {
+
+    /** The name of the memory store among the search paths, which is never part of the snapshot. */
+    private static final String StoreName = "loader-snapshot-test";
+
+    /** The directory holding all of the test files. */
+    private File root;
+
+    /** The first searched directory. */
+    private File dir1;
+
+    /** The last searched directory. */
+    private File dir2;
+
+    /** The searched pack. */
+    private File pack;
+
+    /** The snapshot file. */
+    private File snapshotFile;
+
+    /**
+     * Creates a new {@link ResourceLoaderSnapshotTest} object.
+     */
+    public ResourceLoaderSnapshotTest() {
+    }
+
+    /**
+     * Creates the searched directories and pack, then takes a snapshot of a loader searching them.
+     *
+     * @throws  IOException  If the test files cannot be written.
+     */
+    @Before public void setUp() throws IOException {
+        root = File.createTempFile("loader-snapshot", "");
+        root.delete();
+        dir1 = new File(root, "dir1");
+        dir2 = new File(root, "dir2");
+        new File(dir2, "sub").mkdirs();
+        dir1.mkdirs();
+        write(new File(dir1, "one.txt"), "one");
+        write(new File(dir1, "shared.txt"), "dir1");
+        write(new File(dir2, "shared.txt"), "dir2");
+        write(new File(dir2, "sub/two.txt"), "two");
+
+        pack = new File(root, "test.pack");
+        PackWriter writer = new PackWriter(pack);
+        writer.add("packed.txt", "packed".getBytes());
+        writer.close();
+
+        snapshotFile = new File(root, "loader.snapshot");
+
+        ResourceLoader rl = new ResourceLoader();
+        rl.setPaths(Arrays.asList(dir1.getPath(), MemoryPathItem.Scheme + ":" + StoreName, pack.getPath(),
+                                  dir2.getPath()));
+        rl.snapshot(snapshotFile);
+    }
+
+    /**
+     * Deletes the test files.
+     */
+    @After public void tearDown() {
+        MemoryStore.getStore(StoreName).remove("late.txt");
+        delete(root);
+    }
+
+    /**
+     * Writes the given <code>contents</code> into the given <code>file</code>.
+     *
+     * @param   file      The file.
+     * @param   contents  The contents of the file.
+     *
+     * @throws  IOException  If the file cannot be written.
+     */
+    private static void write(File file, String contents) throws IOException {
+        FileOutputStream os = new FileOutputStream(file);
+
+        try {
+            os.write(contents.getBytes("UTF-8"));
+        }
+        finally {
+            IOUtil.close(os);
+        }
+    }
+
+    /**
+     * Recursively deletes the given <code>file</code>.
+     *
+     * @param  file  The file or directory to delete.
+     */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+
+            for (File child : files) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Tests that a restored loader finds the same resources, in the same order, as the loader it was taken from.
+     */
+    @Test public void testLookups() {
+        ResourceLoader rl = ResourceLoader.fromSnapshot(snapshotFile);
+
+        assertArrayEquals("dir1".getBytes(), rl.getResource("shared.txt").getBytes());
+        assertEquals(2, rl.getResources("shared.txt").size());
+        assertArrayEquals("dir2".getBytes(), rl.getResources("shared.txt").get(1).getBytes());
+        assertArrayEquals("packed".getBytes(), rl.getResource("/packed.txt").getBytes());
+        assertNotNull(rl.getResource("sub/two.txt"));
+        assertNull(rl.getResource("two.txt"));
+        assertNull(rl.getResource("missing.txt"));
+        assertEquals(1, rl.getResources(Arrays.asList("one.txt", "missing.txt")).get("one.txt").size());
+
+        rl.setRecursionType(RecursionType.Recursive);
+        assertArrayEquals("two".getBytes(), rl.getResource("two.txt").getBytes());
+
+        // Adding a path releases the snapshot.
+        rl.addPath(dir1.getPath());
+        assertEquals(7, rl.getResourcesForExtension(".txt").size());
+    }
+
+    /**
+     * Tests that the path items that cannot be trusted to match the snapshot are looked up directly.
+     *
+     * @throws  IOException  If the test files cannot be written.
+     */
+    @Test public void testRevalidation() throws IOException {
+        MemoryStore.getStore(StoreName).put("late.txt", "memory".getBytes());
+        write(new File(dir2, "sub/new.txt"), "new");
+
+        // Make sure the change is visible even with a coarse modification time.
+        File sub = new File(dir2, "sub");
+        sub.setLastModified(sub.lastModified() + 10000);
+
+        ResourceLoader rl = ResourceLoader.fromSnapshot(snapshotFile);
+        assertArrayEquals("memory".getBytes(), rl.getResource("late.txt").getBytes());
+        assertArrayEquals("new".getBytes(), rl.getResource("sub/new.txt").getBytes());
+        assertArrayEquals("dir1".getBytes(), rl.getResource("shared.txt").getBytes());
+    }
+
+    /**
+     * Tests that concurrent lookups on a restored loader, which create and check the path items, all find their
+     * resources.
+     *
+     * @throws  Exception  If a lookup fails.
+     */
+    @Test public void testConcurrentLookups() throws Exception {
+        final ResourceLoader rl = ResourceLoader.fromSnapshot(snapshotFile);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+
+        try {
+
+            for (int i = 0; i < threads; ++i) {
+                results.add(executor.submit(new Callable<Integer>() {
+                            public Integer call() throws Exception {
+                                start.await();
+                                assertArrayEquals("packed".getBytes(), rl.getResource("packed.txt").getBytes());
+                                assertNotNull(rl.getResource("sub/two.txt"));
+                                return rl.getResources("shared.txt").size();
+                            }
+                        }));
+            }
+
+            start.countDown();
+
+            for (Future<Integer> result : results) {
+                assertEquals(2, result.get().intValue());
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+} // end class ResourceLoaderSnapshotTest
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources;
+
+import com.soeima.resources.memory.MemoryPathItem;
+import com.soeima.resources.memory.MemoryStore;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import java.util.Arrays;
+
+/**
+ * Provides unit tests for the {@link ResourceNameFilter} and for its use by the {@link ResourceFinder}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ResourceNameFilterTest {
+
+    /**
+     * Tests that the filter never rules out an existing name.
+     */
+    @Test public void testMightContain() {
+        ResourceNameFilter filter = new ResourceNameFilter(Arrays.asList("a/b/c.txt", "d.txt"));
+
+        assertTrue(filter.mightContain("a/b/c.txt", RecursionType.NonRecursive));
+        assertTrue(filter.mightContain("/a/b/c.txt", RecursionType.NonRecursive));
+        assertTrue(filter.mightContain("d.txt", RecursionType.NonRecursive));
+        assertTrue(filter.mightContain("b/c.txt", RecursionType.Recursive));
+        assertTrue(filter.mightContain("c.txt", RecursionType.Recursive));
+        assertFalse(filter.mightContain("missing.txt", RecursionType.Recursive));
+        assertTrue(filter.getExpectedFalsePositiveRate() < 0.01);
+    }
+
+    /**
+     * Tests that the finder skips the path items whose filter rules out a name.
+     */
+    @Test public void testFinderSkips() {
+        MemoryStore store = MemoryStore.getStore("name-filter-test");
+        store.put("present.txt", "present".getBytes());
+
+        ResourceFinder finder = new ResourceFinder();
+        finder.addPath(new MemoryPathItem(MemoryPathItem.Scheme + ":name-filter-test"));
+
+        assertNotNull(finder.find("present.txt"));
+        assertNull(finder.find("missing.txt"));
+        assertEquals(1, finder.getFilterSkips());
+        assertEquals(0.0, finder.getFalsePositiveRate(), 0.0);
+    }
+} // end class ResourceNameFilterTest
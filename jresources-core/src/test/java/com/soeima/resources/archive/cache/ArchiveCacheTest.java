@@ -0,0 +1,318 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.cache;
+
+import com.soeima.resources.ResourceFilter;
+import com.soeima.resources.jar.JarArchive;
+import com.soeima.resources.util.IOUtil;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Provides unit tests for the {@link ArchiveCache} class.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ArchiveCacheTest {
+
+    /** The names of the entries of the test archive, in the order in which they are stored. */
+    private static final String[] Names = {"first.txt", "dir/second.txt", "last.txt"};
+
+    /**
+     * Creates a new {@link ArchiveCacheTest} object.
+     */
+    public ArchiveCacheTest() {
+    }
+
+    /**
+     * Tests that a lookup on a cold cache is answered, and its entry can be read, while the rest of the entries are
+     * still being read.
+     *
+     * @throws  IOException  If the test archive cannot be written or read.
+     */
+    @Test(timeout = 10000)
+    public void testEarlyAnswer() throws IOException {
+        File file = File.createTempFile("archive-cache", ".jar");
+        ZipOutputStream os = new ZipOutputStream(new FileOutputStream(file));
+
+        try {
+
+            for (String name : Names) {
+                os.putNextEntry(new ZipEntry(name));
+                os.write(name.getBytes());
+                os.closeEntry();
+            }
+
+            os.close();
+
+            CountDownLatch gate = new CountDownLatch(1);
+            ArchiveCache cache = new ArchiveCache(new GatedArchive(file.getPath(), gate));
+            ArchiveEntry entry = cache.find(new NameFilter("first.txt"));
+
+            // The reading of the archive is held right after the first entry.
+            assertEquals("first.txt", entry.getName());
+            assertArrayEquals("first.txt".getBytes(), read(cache.getInputStream("first.txt")));
+            assertNull(cache.getNameFilter());
+
+            gate.countDown();
+            assertNotNull(cache.find(new NameFilter("last.txt")));
+            assertNull(cache.find(new NameFilter("missing.txt")));
+            assertNotNull(cache.getNameFilter());
+            assertArrayEquals("last.txt".getBytes(), read(cache.getInputStream("last.txt")));
+            assertArrayEquals("first.txt".getBytes(), read(cache.getInputStream("first.txt")));
+        }
+        finally {
+            IOUtil.close(os);
+            file.delete();
+        }
+    } // end method testEarlyAnswer
+
+    /**
+     * Tests that a lookup matching several entries finds the first one stored in the archive, whether the cache is
+     * cold or warm.
+     *
+     * @throws  IOException  If the test archive cannot be written or read.
+     */
+    @Test(timeout = 10000)
+    public void testLookupOrder() throws IOException {
+        File file = File.createTempFile("archive-cache", ".jar");
+        ZipOutputStream os = new ZipOutputStream(new FileOutputStream(file));
+
+        try {
+
+            // Stored in the reverse order of their names, so that the order of a hash is unlikely to match it.
+            for (int i = 31; i >= 0; i--) {
+                os.putNextEntry(new ZipEntry("dir" + i + "/same.txt"));
+                os.write(i);
+                os.closeEntry();
+            }
+
+            os.close();
+
+            ArchiveCache cache = new ArchiveCache(new JarArchive(file.getPath()));
+            ResourceFilter filter = new ResourceFilter() {
+
+                /**
+                 * @see  ResourceFilter#accept(String)
+                 */
+                @Override public boolean accept(String entryName) {
+                    return entryName.endsWith("/same.txt");
+                }
+            };
+
+            assertEquals("dir31/same.txt", cache.find(filter).getName());
+
+            // Waits for the entries to be cached.
+            cache.getEntries();
+            assertNotNull(cache.getNameFilter());
+            assertEquals("dir31/same.txt", cache.find(filter).getName());
+        }
+        finally {
+            IOUtil.close(os);
+            file.delete();
+        }
+    } // end method testLookupOrder
+
+    /**
+     * Tests that a lookup made while a cold cache is being filled by a scan waits for the scan rather than reading the
+     * archive at the same time.
+     *
+     * @throws  Exception  If the test archive cannot be written or read.
+     */
+    @Test(timeout = 10000)
+    public void testLookupDuringScan() throws Exception {
+        File file = File.createTempFile("archive-cache", ".jar");
+        ZipOutputStream os = new ZipOutputStream(new FileOutputStream(file));
+
+        try {
+
+            for (String name : Names) {
+                os.putNextEntry(new ZipEntry(name));
+                os.write(name.getBytes());
+                os.closeEntry();
+            }
+
+            os.close();
+
+            final ArchiveCache cache = new ArchiveCache(new JarArchive(file.getPath()));
+            final ArchiveEntry[] found = new ArchiveEntry[1];
+            final Thread lookup = new Thread() {
+
+                /**
+                 * @see  Thread#run()
+                 */
+                @Override public void run() {
+                    found[0] = cache.find(new NameFilter("last.txt"));
+                }
+            };
+
+            final Thread.State[] state = new Thread.State[1];
+            cache.scan(new ArchiveVisitor() {
+
+                    /**
+                     * @see  ArchiveVisitor#visit(ArchiveEntry, InputStream)
+                     */
+                    @Override public void visit(ArchiveEntry entry, InputStream is) throws IOException {
+
+                        if (state[0] != null) {
+                            return;
+                        }
+
+                        lookup.start();
+
+                        do {
+                            Thread.yield();
+                            state[0] = lookup.getState();
+                        }
+                        while ((state[0] != Thread.State.BLOCKED) && (state[0] != Thread.State.TERMINATED));
+                    }
+                });
+
+            assertSame(Thread.State.BLOCKED, state[0]);
+            lookup.join();
+            assertEquals("last.txt", found[0].getName());
+        }
+        finally {
+            IOUtil.close(os);
+            file.delete();
+        }
+    } // end method testLookupDuringScan
+
+    /**
+     * Reads and closes the given input stream.
+     *
+     * @param   is  The input stream.
+     *
+     * @return  The contents of the stream.
+     *
+     * @throws  IOException  If the stream cannot be read.
+     */
+    private static byte[] read(InputStream is) throws IOException {
+
+        try {
+            return IOUtil.toByteArray(is);
+        }
+        finally {
+            IOUtil.close(is);
+        }
+    }
+
+    /**
+     * Accepts a single entry name.
+     */
+    private static class NameFilter implements ResourceFilter {
+
+        /** The accepted name. */
+        private String name;
+
+        /**
+         * Creates a new {@link NameFilter} object.
+         *
+         * @param  name  The accepted name.
+         */
+        public NameFilter(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @see  ResourceFilter#accept(String)
+         */
+        @Override public boolean accept(String entryName) {
+            return name.equals(entryName);
+        }
+    }
+
+    /**
+     * A sequential archive whose entries past the first one are only read once a gate is opened.
+     */
+    private static class GatedArchive extends JarArchive {
+
+        /** The gate holding the reading of the entries. */
+        private CountDownLatch gate;
+
+        /**
+         * Creates a new {@link GatedArchive} object.
+         *
+         * @param  path  The path to the archive.
+         * @param  gate  The gate holding the reading of the entries.
+         */
+        public GatedArchive(String path, CountDownLatch gate) {
+            super(path);
+            this.gate = gate;
+        }
+
+        /**
+         * @see  Archive#getEntries()
+         */
+        @Override public Iterator<ArchiveEntry> getEntries() {
+            final Iterator<ArchiveEntry> entries = super.getEntries();
+
+            return new Iterator<ArchiveEntry>() {
+
+                /** The number of entries read so far. */
+                private int count;
+
+                /**
+                 * @see  Iterator#hasNext()
+                 */
+                @Override public boolean hasNext() {
+
+                    if (count > 0) {
+
+                        try {
+                            gate.await();
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    return entries.hasNext();
+                }
+
+                /**
+                 * @see  Iterator#next()
+                 */
+                @Override public ArchiveEntry next() {
+                    count++;
+                    return entries.next();
+                }
+
+                /**
+                 * @see  Iterator#remove()
+                 */
+                @Override public void remove() {
+                    throw new UnsupportedOperationException("#remove is not supported.");
+                }
+            };
+        } // end method getEntries
+    } // end class GatedArchive
+} // end class ArchiveCacheTest
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.archive.random;
+
+import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.archive.cache.ArchiveEntry;
+import com.soeima.resources.util.ContentStore;
+import com.soeima.resources.util.IOUtil;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Provides unit tests for the {@link ZipRandomAccessArchive} and {@link TarRandomAccessArchive} classes.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public class RandomAccessArchiveTest {
+
+    /** A name longer than the 100 characters a plain <tt>tar</tt> header can hold. */
+    private static final String LongName =
+        "a/very/long/path/that/does/not/fit/within/the/name/field/of/a/tar/header/block/which/is/limited/to/"
+        + "one/hundred/characters.file";
+
+    /**
+     * Creates a new {@link RandomAccessArchiveTest} object.
+     */
+    public RandomAccessArchiveTest() {
+    }
+
+    /**
+     * Tests reading stored and deflated entries from a <tt>ZIP</tt> archive.
+     *
+     * @throws  IOException  If the test archive cannot be written or read.
+     */
+    @Test public void zip() throws IOException {
+        Map<String, byte[]> contents = newContents();
+        File file = newZip(contents);
+
+        try {
+            assertContents(contents, new ZipRandomAccessArchive(file.getPath(), new FileSource(file)));
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests reading the entries of a <tt>ZIP</tt> archive whose stored bytes are kept in memory, which must never take
+     * more than the maximum size of the cache.
+     *
+     * @throws  IOException  If the test archive cannot be written or read.
+     */
+    @Test public void zipStoredCache() throws IOException {
+        Map<String, byte[]> contents = newContents();
+        File file = newZip(contents);
+        StoredEntryCache storedCache = new StoredEntryCache(1024);
+
+        try {
+            assertContents(contents, new ZipRandomAccessArchive(file.getPath(), new FileSource(file), storedCache));
+            assertTrue(storedCache.size() > 0);
+            assertTrue(storedCache.size() <= storedCache.getMaxSize());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that the entries whose stored bytes are too large to be kept are streamed rather than read whole.
+     *
+     * @throws  IOException  If the test archive cannot be written or read.
+     */
+    @Test public void zipStoredCacheLargeEntry() throws IOException {
+        Map<String, byte[]> contents = newContents();
+        File file = newZip(contents);
+        StoredEntryCache storedCache = new StoredEntryCache(64);
+        Archive archive = new ZipRandomAccessArchive(file.getPath(), new FileSource(file), storedCache);
+        int streamed = 0;
+
+        try {
+            assertTrue(archive.open());
+
+            for (Iterator<ArchiveEntry> entryIt = archive.getEntries(); entryIt.hasNext();) {
+                RandomAccessEntry entry = (RandomAccessEntry)entryIt.next();
+
+                if (entry.isDirectory() || (entry.getStoredSize() <= storedCache.getMaxSize())) {
+                    continue;
+                }
+
+                InputStream is = archive.getInputStream(entry);
+
+                try {
+                    assertFalse(entry.getName(), is instanceof ByteArrayInputStream);
+                    assertArrayEquals(entry.getName(), contents.get(entry.getName()), IOUtil.toByteArray(is));
+                    streamed++;
+                }
+                finally {
+                    IOUtil.close(is);
+                }
+            }
+
+            assertTrue(streamed > 0);
+            assertEquals(0, storedCache.size());
+        }
+        finally {
+            IOUtil.close(archive);
+            file.delete();
+        }
+    } // end method zipStoredCacheLargeEntry
+
+    /**
+     * Tests that the stored bytes kept for two identical <tt>ZIP</tt> archives sharing a content store are only held
+     * once.
+     *
+     * @throws  IOException  If the test archives cannot be written or read.
+     */
+    @Test public void zipDeduplicated() throws IOException {
+        Map<String, byte[]> contents = newContents();
+        File file1 = newZip(contents);
+        File file2 = newZip(contents);
+        ContentStore contentStore = new ContentStore();
+        StoredEntryCache storedCache1 = new StoredEntryCache(1 << 20, contentStore);
+        StoredEntryCache storedCache2 = new StoredEntryCache(1 << 20, contentStore);
+
+        try {
+            assertContents(contents, new ZipRandomAccessArchive(file1.getPath(), new FileSource(file1), storedCache1));
+            long saved = contentStore.getSavedBytes();
+            assertContents(contents, new ZipRandomAccessArchive(file2.getPath(), new FileSource(file2), storedCache2));
+            assertTrue(storedCache2.size() > 0);
+            assertEquals(storedCache2.size(), contentStore.getSavedBytes() - saved);
+        }
+        finally {
+            file1.delete();
+            file2.delete();
+        }
+    }
+
+    /**
+     * Tests that the entries of a <tt>ZIP</tt> archive which are stored as is are served as read-only slices of the
+     * mapped archive, while the deflated ones are not.
+     *
+     * @throws  IOException  If the test archive cannot be written or read.
+     */
+    @Test public void zipMapped() throws IOException {
+        Map<String, byte[]> contents = newContents();
+        File file = newZip(contents);
+        ZipRandomAccessArchive archive = new ZipRandomAccessArchive(file.getPath(), new FileSource(file));
+
+        try {
+            assertTrue(archive.open());
+
+            for (Iterator<ArchiveEntry> entryIt = archive.getEntries(); entryIt.hasNext();) {
+                ArchiveEntry entry = entryIt.next();
+                byte[] expected = contents.get(entry.getName());
+                ByteBuffer buffer = archive.getBuffer(entry);
+
+                if (entry.isDirectory() || (expected.length >= 1024)) {
+                    assertFalse(archive.getInputStream(entry) instanceof ByteBufferInputStream);
+                    continue;
+                }
+
+                byte[] actual = new byte[buffer.remaining()];
+                buffer.get(actual);
+                assertTrue(buffer.isReadOnly());
+                assertArrayEquals(entry.getName(), expected, actual);
+
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                ByteBufferInputStream is = (ByteBufferInputStream)archive.getInputStream(entry);
+                assertEquals(expected.length, is.transferTo(os));
+                assertArrayEquals(entry.getName(), expected, os.toByteArray());
+            }
+        }
+        finally {
+            IOUtil.close(archive);
+            file.delete();
+        }
+    } // end method zipMapped
+
+    /**
+     * Tests that a file source keeps serving reads once a reader has been interrupted while reading, which closes the
+     * channel to the file.
+     *
+     * @throws  IOException  If the test archive cannot be written or read.
+     */
+    @Test public void interruptedRead() throws IOException {
+        Map<String, byte[]> contents = newContents();
+        File file = newZip(contents);
+        FileSource source = new FileSource(file);
+        byte[] buffer = new byte[16];
+
+        try {
+            Thread.currentThread().interrupt();
+
+            try {
+                source.read(0, buffer, 0, buffer.length);
+                fail("The read of an interrupted thread must fail");
+            }
+            catch (ClosedByInterruptException e) {
+            }
+            finally {
+                Thread.interrupted();
+            }
+
+            assertEquals(buffer.length, source.read(0, buffer, 0, buffer.length));
+            assertContents(contents, new ZipRandomAccessArchive(file.getPath(), source));
+        }
+        finally {
+            file.delete();
+        }
+    } // end method interruptedRead
+
+    /**
+     * Writes a <tt>ZIP</tt> archive holding the directory <code>dir/</code> along with entries with the given <code>
+     * contents</code>, both stored and deflated.
+     *
+     * @param   contents  The contents of the entries according to their names.
+     *
+     * @return  The <tt>ZIP</tt> archive.
+     *
+     * @throws  IOException  If the archive cannot be written.
+     */
+    private static File newZip(Map<String, byte[]> contents) throws IOException {
+        File file = File.createTempFile("random-access", ".zip");
+        ZipOutputStream os = new ZipOutputStream(new FileOutputStream(file));
+
+        try {
+            os.putNextEntry(new ZipEntry("dir/"));
+            os.closeEntry();
+
+            for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                ZipEntry entry = new ZipEntry(content.getKey());
+
+                // Store the small entries as is, so both compression methods are read.
+                if (content.getValue().length < 1024) {
+                    CRC32 crc = new CRC32();
+                    crc.update(content.getValue());
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(content.getValue().length);
+                    entry.setCrc(crc.getValue());
+                }
+
+                os.putNextEntry(entry);
+                os.write(content.getValue());
+                os.closeEntry();
+            }
+
+            os.setComment("A trailing comment.");
+            os.close();
+            return file;
+        }
+        finally {
+            IOUtil.close(os);
+        }
+    } // end method newZip
+
+    /**
+     * Tests reading entries, including one with a long name, from a <tt>tar</tt> archive.
+     *
+     * @throws  IOException  If the test archive cannot be written or read.
+     */
+    @Test public void tar() throws IOException {
+        Map<String, byte[]> contents = newContents();
+        File file = File.createTempFile("random-access", ".tar");
+        TarArchiveOutputStream os = new TarArchiveOutputStream(new FileOutputStream(file));
+
+        try {
+            os.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+            os.putArchiveEntry(new TarArchiveEntry("dir/"));
+            os.closeArchiveEntry();
+
+            for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                TarArchiveEntry entry = new TarArchiveEntry(content.getKey());
+                entry.setSize(content.getValue().length);
+                os.putArchiveEntry(entry);
+                os.write(content.getValue());
+                os.closeArchiveEntry();
+            }
+
+            os.close();
+            assertContents(contents, new TarRandomAccessArchive(file.getPath(), new FileSource(file)));
+        }
+        finally {
+            IOUtil.close(os);
+            file.delete();
+        }
+    } // end method tar
+
+    /**
+     * Tests that a file which is not an archive cannot be opened.
+     *
+     * @throws  IOException  If the test file cannot be written.
+     */
+    @Test public void notAnArchive() throws IOException {
+        File file = File.createTempFile("random-access", ".zip");
+        FileOutputStream os = new FileOutputStream(file);
+
+        try {
+            os.write(new byte[100]);
+            os.close();
+            assertFalse(new ZipRandomAccessArchive(file.getPath(), new FileSource(file)).open());
+        }
+        finally {
+            IOUtil.close(os);
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns the contents of the test entries according to their names.
+     *
+     * @return  The test contents.
+     */
+    private static Map<String, byte[]> newContents() {
+        Map<String, byte[]> contents = new HashMap<String, byte[]>();
+        byte[] large = new byte[100000];
+
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte)(i % 251);
+        }
+
+        contents.put("test1.file", "File with contents: test1.file".getBytes());
+        contents.put("dir/test2.file", "File with contents: test2.file".getBytes());
+        contents.put("dir/empty.file", new byte[0]);
+        contents.put("large.file", large);
+        contents.put(LongName, "File with a long name.".getBytes());
+        return contents;
+    }
+
+    /**
+     * Asserts that the given <code>archive</code> lists the directory <code>dir/</code> along with the entries with the
+     * given <code>contents</code>, and nothing else. The entries must read the same one by one and in bulk.
+     *
+     * @param   contents  The expected contents according to the entry names.
+     * @param   archive   The archive.
+     *
+     * @throws  IOException  If an entry cannot be read.
+     */
+    private static void assertContents(Map<String, byte[]> contents, Archive archive) throws IOException {
+
+        try {
+            assertTrue(archive.open());
+            assertEquals(contents.size() + 1, archive.size());
+
+            List<ArchiveEntry> files = new ArrayList<ArchiveEntry>();
+
+            for (Iterator<ArchiveEntry> entryIt = archive.getEntries(); entryIt.hasNext();) {
+                ArchiveEntry entry = entryIt.next();
+
+                if (entry.isDirectory()) {
+                    assertEquals("dir/", entry.getName());
+                    continue;
+                }
+
+                files.add(entry);
+
+                byte[] expected = contents.get(entry.getName());
+                assertNotNull(entry.getName(), expected);
+                assertEquals(expected.length, entry.size());
+
+                InputStream is = archive.getInputStream(entry);
+
+                try {
+                    assertArrayEquals(entry.getName(), expected, IOUtil.toByteArray(is));
+                }
+                finally {
+                    IOUtil.close(is);
+                }
+            }
+
+            // The contents read in bulk follow the order of the request, even when an entry is requested twice.
+            Collections.reverse(files);
+            files.add(files.get(0));
+
+            List<byte[]> read = archive.readAll(files);
+            assertEquals(files.size(), read.size());
+
+            for (int i = 0; i < files.size(); i++) {
+                assertArrayEquals(files.get(i).getName(), contents.get(files.get(i).getName()), read.get(i));
+            }
+        }
+        finally {
+            IOUtil.close(archive);
+        }
+    } // end method assertContents
+} // end class RandomAccessArchiveTest
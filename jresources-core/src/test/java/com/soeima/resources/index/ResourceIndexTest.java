@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.index;
+
+import com.soeima.resources.util.IOUtil;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Provides unit tests for the {@link ResourceIndex} and {@link ResourceIndexGenerator} classes.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/11
+ */
+public class ResourceIndexTest {
+
+    /**
+     * Creates a new {@link ResourceIndexTest} object.
+     */
+    public ResourceIndexTest() {
+    }
+
+    /**
+     * Tests that an index is read back as written.
+     *
+     * @throws  IOException  If the index cannot be written or read.
+     */
+    @Test public void readWrite() throws IOException {
+        ResourceIndex index = new ResourceIndex();
+        index.add(new IndexEntry("a/b c.file", 12, 1368230400000L, "0123456789abcdef0123456789abcdef01234567"));
+        index.add(new IndexEntry("d.file", 0, 0, "da39a3ee5e6b4b0d3255bfef95601890afd80709"));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        index.write(os);
+
+        ResourceIndex read = ResourceIndex.read(new ByteArrayInputStream(os.toByteArray()));
+        assertEquals(2, read.size());
+        assertEquals(new ArrayList<IndexEntry>(index.getEntries()), new ArrayList<IndexEntry>(read.getEntries()));
+        assertEquals(12, read.getEntry("a/b c.file").getSize());
+        assertNull(read.getEntry("b c.file"));
+    }
+
+    /**
+     * Tests that malformed index files are rejected.
+     */
+    @Test public void readMalformed() {
+
+        for (String contents : Arrays.asList("", "a\tb\n", "# jresources-index 1\n1\t2\n",
+                                             "# jresources-index 1\nx\t2\tdigest\tname\n")) {
+
+            try {
+                ResourceIndex.read(new ByteArrayInputStream(contents.getBytes()));
+                assertTrue("Accepted malformed index=" + contents, false);
+            }
+            catch (IOException e) {
+                // Expected.
+            }
+        }
+    }
+
+    /**
+     * Tests that the generated index lists every file of the directory but itself.
+     *
+     * @throws  IOException  If the test files cannot be created.
+     */
+    @Test public void generate() throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "resource-index-test");
+        File subdir = new File(dir, "a");
+        subdir.mkdirs();
+        createFile(new File(dir, "test1.file"), "File with contents: test1.file");
+        createFile(new File(subdir, "test2.file"), "");
+
+        try {
+            File file = ResourceIndexGenerator.generate(dir);
+            assertEquals(new File(dir, ResourceIndex.FileName), file);
+
+            ResourceIndex index = read(file);
+            assertEquals(2, index.size());
+            assertEquals(30, index.getEntry("test1.file").getSize());
+
+            IndexEntry entry = index.getEntry("a/test2.file");
+            assertNotNull(entry);
+            assertEquals(0, entry.getSize());
+            assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", entry.getDigest());
+
+            // The existing index must not end up indexing itself.
+            assertEquals(2, read(ResourceIndexGenerator.generate(dir)).size());
+            assertFalse(new File(dir, ResourceIndex.FileName + ".part").exists());
+        }
+        finally {
+            List<File> files = Arrays.asList(new File(subdir, "test2.file"), subdir, new File(dir, "test1.file"),
+                                             new File(dir, ResourceIndex.FileName), dir);
+
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    } // end method generate
+
+    /**
+     * Reads the given index <code>file</code>.
+     *
+     * @param   file  The index file.
+     *
+     * @return  The index.
+     *
+     * @throws  IOException  If the index cannot be read.
+     */
+    private static ResourceIndex read(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+
+        try {
+            return ResourceIndex.read(is);
+        }
+        finally {
+            IOUtil.close(is);
+        }
+    }
+
+    /**
+     * Creates the given <code>file</code> with the given <code>contents</code>.
+     *
+     * @param   file      The file to create.
+     * @param   contents  The contents of the file.
+     *
+     * @throws  IOException  If the file cannot be written.
+     */
+    private static void createFile(File file, String contents) throws IOException {
+        Writer writer = new FileWriter(file);
+
+        try {
+            writer.write(contents);
+        }
+        finally {
+            IOUtil.close(writer);
+        }
+    }
+} // end class ResourceIndexTest
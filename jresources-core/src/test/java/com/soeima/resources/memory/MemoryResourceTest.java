@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.memory;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceLoader;
+import com.soeima.resources.file.FileResource;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provides unit tests for the {@link MemoryResource}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class MemoryResourceTest extends AbstractResourceTest {
+
+    /** The name of the store holding a copy of the test directory. */
+    private static final String StoreName = "memory-resource-test";
+
+    /**
+     * Creates a new {@link MemoryResourceTest} object.
+     */
+    public MemoryResourceTest() {
+        super();
+    }
+
+    /**
+     * Copies the test directory into a memory store.
+     *
+     * @throws  IOException  If the test files cannot be read.
+     */
+    @BeforeClass public static void setUp() throws IOException {
+        AbstractResourceTest.setUp(StoreName);
+
+        Map<String, byte[]> resources = new HashMap<String, byte[]>();
+        copy(getTestDir(), "", resources);
+        MemoryStore.getStore(StoreName).replace(resources);
+    }
+
+    /**
+     * Reads the files of the given <code>directory</code>, recursively, into the <code>resources</code>.
+     *
+     * @param   directory  The directory.
+     * @param   prefix     The name of the directory relative to the test directory.
+     * @param   resources  The contents of the files according to their relative names.
+     *
+     * @throws  IOException  If a file cannot be read.
+     */
+    private static void copy(File directory, String prefix, Map<String, byte[]> resources) throws IOException {
+
+        for (File file : directory.listFiles()) {
+
+            if (file.isDirectory()) {
+                copy(file, prefix + file.getName() + "/", resources);
+                continue;
+            }
+
+            FileInputStream is = new FileInputStream(file);
+
+            try {
+                resources.put(prefix + file.getName(), IOUtil.toByteArray(is));
+            }
+            finally {
+                IOUtil.close(is);
+            }
+        }
+    }
+
+    /**
+     * @see  AbstractResourceTest#toURL(String)
+     */
+    @Override protected String toURL(String path) {
+        return path;
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return MemoryPathItem.Scheme + ":" + StoreName;
+    }
+
+    /**
+     * Tests that the resources of a memory store shadow those of the path items that follow it.
+     */
+    @Test public void testShadowing() {
+        MemoryStore overlay = MemoryStore.getStore("memory-overlay-test");
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(MemoryPathItem.Scheme + ":memory-overlay-test");
+        rl.addPath(getTestDirPath());
+
+        Resource resource = rl.getResource(TEST_FILE_RESOURCE1);
+        assertTrue(resource instanceof FileResource);
+
+        byte[] contents = "Generated contents".getBytes();
+        overlay.put(TEST_FILE_RESOURCE1, contents);
+        resource = rl.getResource(TEST_FILE_RESOURCE1);
+        assertTrue(resource instanceof MemoryResource);
+        assertArrayEquals(contents, resource.getBytes());
+
+        assertTrue(overlay.remove(TEST_FILE_RESOURCE1));
+        assertTrue(rl.getResource(TEST_FILE_RESOURCE1) instanceof FileResource);
+    }
+
+    /**
+     * Tests replacing the contents of a store at once, including across arena growth.
+     */
+    @Test public void testReplace() {
+        MemoryStore store = MemoryStore.getStore("memory-replace-test");
+        byte[] large = new byte[10000];
+        Arrays.fill(large, (byte)7);
+
+        for (int i = 0; i < 5; i++) {
+            Map<String, byte[]> resources = new HashMap<String, byte[]>();
+            resources.put("large.bin", large);
+            resources.put(Paths.join("gen", '/', "v" + i + ".txt"), ("version " + i).getBytes());
+            store.putAll(resources);
+        }
+
+        assertEquals(6, store.getNames().size());
+        assertArrayEquals(large, store.get("large.bin"));
+        assertArrayEquals("version 3".getBytes(), store.get("/gen/v3.txt"));
+
+        Map<String, byte[]> replacement = new HashMap<String, byte[]>();
+        replacement.put("only.txt", "only".getBytes());
+        store.replace(replacement);
+
+        assertEquals(Arrays.asList("only.txt"), store.getNames());
+        assertNull(store.get("large.bin"));
+        assertFalse(store.contains("gen/v0.txt"));
+        assertArrayEquals("only".getBytes(), store.get("only.txt"));
+    }
+} // end class MemoryResourceTest
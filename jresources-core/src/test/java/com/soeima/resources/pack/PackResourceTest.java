@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.pack;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceLoader;
+import com.soeima.resources.file.FilePathItem;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Provides unit tests for the {@link PackResource}.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class PackResourceTest extends AbstractResourceTest {
+
+    /** The path to the pack holding a copy of the test directory. */
+    private static String packPath;
+
+    /**
+     * Creates a new {@link PackResourceTest} object.
+     */
+    public PackResourceTest() {
+        super();
+    }
+
+    /**
+     * Converts the test directory into a pack, which is kept out of the directory itself.
+     *
+     * @throws  IOException  If the pack cannot be written.
+     */
+    @BeforeClass public static void setUp() throws IOException {
+        AbstractResourceTest.setUp("pack-resource-test");
+
+        File pack = new File(getTestDir().getParentFile(), "pack-resource-test.pack");
+        pack.deleteOnExit();
+        PackWriter.write(new FilePathItem(getTestDir()), pack);
+        packPath = pack.getAbsolutePath();
+    }
+
+    /**
+     * @see  AbstractResourceTest#toURL(String)
+     */
+    @Override protected String toURL(String path) {
+        String url =
+            Paths.isExtension(path, PackPathItem.Extension)
+            ? ("pack:file:/" + path + "!/")
+            : ("pack:file:/" + Paths.getParentPath(path) + "!/" + Paths.getBaseName(path));
+        return Paths.normalize(url, '/');
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return packPath;
+    }
+
+    /**
+     * Tests that compressible entries are stored deflated while the others are served as slices of the mapped pack.
+     *
+     * @throws  IOException  If the pack cannot be written or read.
+     */
+    @Test public void testBuffers() throws IOException {
+        byte[] random = new byte[10000];
+        new Random(17).nextBytes(random);
+
+        byte[] text = new byte[10000];
+        Arrays.fill(text, (byte)'a');
+
+        File file = File.createTempFile("pack-buffers-test", ".pack");
+        PackWriter writer = new PackWriter(file);
+
+        try {
+            writer.add("tiny", new byte[] { 1, 2, 3 });
+            writer.add("random.bin", random);
+            writer.add("dir/text.txt", text);
+            writer.close();
+
+            ResourceLoader rl = new ResourceLoader();
+            rl.addPath(file.getAbsolutePath());
+
+            Pack pack = new PackPathItem(file.getAbsolutePath()).getPack();
+            assertEquals(3, pack.size());
+            assertEquals(Arrays.asList("dir/text.txt", "random.bin", "tiny"), pack.getNames());
+            assertEquals(-1, pack.indexOf("missing"));
+            assertEquals(pack.indexOf("dir/text.txt"), pack.indexOf("/dir\\text.txt"));
+
+            int index = pack.indexOf("random.bin");
+            assertEquals(Pack.Stored, pack.getMethod(index));
+            assertTrue(pack.getBuffer(index).isDirect());
+            assertEquals(Pack.Deflated, pack.getMethod(pack.indexOf("dir/text.txt")));
+
+            Resource resource = rl.getResource("random.bin");
+            ByteBuffer buffer = ((PackResource)resource).getBuffer();
+            byte[] contents = new byte[buffer.remaining()];
+            buffer.get(contents);
+            assertArrayEquals(random, contents);
+            assertArrayEquals(text, rl.getResource("dir/text.txt").getBytes());
+            assertArrayEquals(new byte[] { 1, 2, 3 }, IOUtil.toByteArray(rl.getResource("tiny").getInputStream()));
+            IOUtil.close(pack);
+        }
+        finally {
+            IOUtil.close(writer);
+            file.delete();
+        }
+    } // end method testBuffers
+
+    /**
+     * Tests that the data of byte-identical entries is written once when deduplicating.
+     *
+     * @throws  IOException  If the pack cannot be written or read.
+     */
+    @Test public void testDeduplicate() throws IOException {
+        byte[] license = new byte[10000];
+        new Random(42).nextBytes(license);
+
+        File file = File.createTempFile("pack-dedup-test", ".pack");
+        PackWriter writer = new PackWriter(file);
+
+        try {
+            writer.setDeduplicate(true);
+            writer.add("a/LICENSE", license);
+            writer.add("b/LICENSE", license.clone());
+            writer.add("c/NOTICE", new byte[] { 1, 2, 3 });
+            writer.close();
+            assertEquals(license.length, writer.getSavedBytes());
+            assertTrue(file.length() < (2 * license.length));
+
+            PackPathItem pathItem = new PackPathItem(file.getAbsolutePath());
+            assertArrayEquals(license, pathItem.getBytes("a/LICENSE"));
+            assertArrayEquals(license, pathItem.getBytes("b/LICENSE"));
+            assertArrayEquals(new byte[] { 1, 2, 3 }, pathItem.getBytes("c/NOTICE"));
+            IOUtil.close(pathItem.getPack());
+        }
+        finally {
+            IOUtil.close(writer);
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that a pack whose hash table is corrupt is rejected when opened rather than probed endlessly or past its
+     * entries.
+     *
+     * @throws  IOException  If the test packs cannot be written.
+     */
+    @Test public void testMalformedHashTable() throws IOException {
+        File file = File.createTempFile("pack-malformed-test", ".pack");
+        PackWriter writer = new PackWriter(file);
+        byte[] contents;
+
+        try {
+            writer.add("tiny", new byte[] { 1, 2, 3 });
+            writer.close();
+            contents = IOUtil.toByteArray(new FileInputStream(file));
+        }
+        finally {
+            IOUtil.close(writer);
+            file.delete();
+        }
+
+        // A single entry is hashed in a table of two slots, which follows the table of entries.
+        int hashes = (int)ByteBuffer.wrap(contents).getLong(16) + Pack.EntrySize;
+
+        assertMalformed(contents, 24, 1);
+        assertMalformed(contents, hashes, 2);
+        assertMalformed(contents, hashes, -1);
+        assertMalformed(contents, hashes, 1, hashes + 4, 1);
+    }
+
+    /**
+     * Asserts that the given pack <code>contents</code> can no longer be opened once the given integers are written
+     * into them.
+     *
+     * @param   contents  The contents of a well formed pack.
+     * @param   ints      The positions of the integers to write, each followed by the value to write there.
+     *
+     * @throws  IOException  If the test pack cannot be written.
+     */
+    private static void assertMalformed(byte[] contents, int... ints) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(contents.clone());
+
+        for (int i = 0; i < ints.length; i += 2) {
+            buffer.putInt(ints[i], ints[i + 1]);
+        }
+
+        File file = File.createTempFile("pack-malformed-test", ".pack");
+        FileOutputStream os = new FileOutputStream(file);
+
+        try {
+            os.write(buffer.array());
+            os.close();
+
+            try {
+                IOUtil.close(Pack.open(file));
+                fail("The pack is not well formed.");
+            }
+            catch (IOException e) {
+                // Expected.
+            }
+        }
+        finally {
+            IOUtil.close(os);
+            file.delete();
+        }
+    } // end method assertMalformed
+} // end class PackResourceTest
@@ -65,4 +65,12 @@ public class StringsTest {
                                        " b"
                                    }), Strings.split("a, b", ",", true));
     }
+
+    /**
+     * Tests the {@link Strings#toHex(byte[])} method.
+     */
+    @Test public void toHex() {
+        assertEquals("", Strings.toHex(new byte[0]));
+        assertEquals("000f10a7ff", Strings.toHex(new byte[] { 0, 0x0f, 0x10, (byte)0xa7, (byte)0xff }));
+    }
 } // end class StringsTest
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.PathItem;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.archive.cache.AbstractArchivePathItem;
+import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.archive.random.TarRandomAccessArchive;
+import com.soeima.resources.archive.random.ZipRandomAccessArchive;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * A {@link PathItem} for <tt>Jar</tt>, <tt>ZIP</tt> and <tt>tar</tt> archives served by an <tt>HTTP</tt> server, which
+ * are read in place with <code>Range</code> requests rather than downloaded. Only the parts of the archive describing
+ * its entries are fetched when the archive is opened, and each resource is then read from its own byte range.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class HttpArchivePathItem extends AbstractArchivePathItem {
+
+    /**
+     * Creates a new {@link HttpArchivePathItem} object.
+     *
+     * @param  path  The <tt>HTTP URI</tt> of the archive.
+     */
+    public HttpArchivePathItem(String path) {
+        super(path);
+    }
+
+    /**
+     * Returns <code>true</code> if the given <tt>HTTP</tt> <code>path</code> denotes an archive supported by this path
+     * item.
+     *
+     * @param   path  The <tt>HTTP URI</tt>.
+     *
+     * @return  <code>true</code> if the path denotes a supported archive; <code>false</code> otherwise.
+     */
+    public static boolean isArchive(String path) {
+        return Paths.isExtension(Strings.substringBefore(path, "?"), "jar", "zip", "tar");
+    }
+
+    /**
+     * Returns the location of the archive denoted by the given <code>path</code>, without the options.
+     *
+     * @param   path  The <tt>HTTP URI</tt> of the archive.
+     *
+     * @return  The location of the archive.
+     *
+     * @throws  ResourceException  If the <code>path</code> is not valid.
+     */
+    private static URI toLocation(String path) {
+
+        try {
+            URI uri = new URI(path);
+            return new URI(uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath());
+        }
+        catch (URISyntaxException e) {
+            throw new ResourceException("Not a valid HTTP URI=" + path);
+        }
+    }
+
+    /**
+     * @see  AbstractArchivePathItem#newArchive(String)
+     */
+    @Override public Archive newArchive(String path) {
+        URI location = toLocation(path);
+        HttpOptions options = new HttpOptions(path.contains("?") ? Strings.substringAfter(path, "?") : null);
+        HttpSource source = new HttpSource(new HttpConnectionPool(options), location);
+
+        if (Paths.isExtension(location.getPath(), "tar")) {
+            return new TarRandomAccessArchive(location.toASCIIString(), source);
+        }
+
+        return new ZipRandomAccessArchive(location.toASCIIString(), source);
+    }
+
+    /**
+     * @see  AbstractArchivePathItem#toURL(String)
+     */
+    @Override protected String toURL(String path) {
+        URI location = toLocation(path);
+        return (Paths.isExtension(location.getPath(), "tar") ? "tar:" : "jar:") + location.toASCIIString() + "!/";
+    }
+
+    /**
+     * @see  AbstractArchivePathItem#newResource(String)
+     */
+    @Override public Resource newResource(String relativePath) {
+        return new HttpArchiveResource(this, relativePath);
+    }
+} // end class HttpArchivePathItem
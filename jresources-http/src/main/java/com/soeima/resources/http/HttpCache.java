@@ -0,0 +1,396 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.util.collections.ReferenceValueMap;
+import com.soeima.resources.util.collections.ReferenceValueMap.ReferenceType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the bodies of <tt>HTTP</tt> responses that carry an <code>ETag</code> or <code>Last-Modified</code> header.
+ * A cached body is revalidated with a conditional request, which the server answers with <code>304 Not
+ * Modified</code> and no body if it has not changed. The cached bodies are softly referenced, so they are dropped when
+ * memory runs low.
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class HttpCache {
+
+    /** Sends the requests. */
+    private HttpConnectionPool pool;
+
+    /** The time, in milliseconds, during which a cached body is used without revalidating it. */
+    private long revalidate;
+
+    /** The maximum size of a body that is cached, unless caching is required. */
+    private long maxEntrySize;
+
+    /** The cached bodies according to their <tt>URI</tt>. */
+    private ConcurrentMap<String, CachedBody> bodies;
+
+    /**
+     * Creates a new {@link HttpCache} object.
+     *
+     * @param  pool     Sends the requests.
+     * @param  options  The options specifying the revalidation interval and the maximum size of a cached body.
+     */
+    public HttpCache(HttpConnectionPool pool, HttpOptions options) {
+        this.pool = pool;
+        revalidate = options.getRevalidate();
+        maxEntrySize = options.getCacheMaxEntrySize();
+        bodies = new ReferenceValueMap<String, CachedBody>(ReferenceType.Soft);
+    }
+
+    /**
+     * Returns the body of the resource at the given <code>uri</code>, from the cache if it is still valid. Small
+     * bodies are cached and large ones are streamed from the server.
+     *
+     * @param   uri  The <tt>URI</tt> of the resource.
+     *
+     * @return  The body of the resource or <code>null</code> if there is no such resource.
+     *
+     * @throws  IOException  If the resource cannot be fetched.
+     */
+    public InputStream open(URI uri) throws IOException {
+        CachedBody cached = getFresh(uri);
+
+        if (cached != null) {
+            return new ByteArrayInputStream(cached.getBytes());
+        }
+
+        cached = bodies.get(uri.toString());
+
+        HttpCall call = newConditionalGet(uri, cached);
+        boolean streaming = false;
+
+        try {
+            int status = call.getStatus();
+
+            if ((status == HttpURLConnection.HTTP_NOT_MODIFIED) && (cached != null)) {
+                cached.setValidated(System.currentTimeMillis());
+                return new ByteArrayInputStream(cached.getBytes());
+            }
+
+            if (isMissing(uri, status)) {
+                return null;
+            }
+
+            long length = call.getContentLength();
+
+            if (!hasValidators(call) || (length < 0) || (length > maxEntrySize)) {
+
+                // The body has changed, so the one cached before must not be revalidated any longer.
+                if (cached != null) {
+                    bodies.remove(uri.toString(), cached);
+                }
+
+                streaming = true;
+                return call.getInputStream();
+            }
+
+            return new ByteArrayInputStream(store(uri, call).getBytes());
+        }
+        finally {
+
+            if (!streaming) {
+                call.close();
+            }
+        }
+    } // end method open
+
+    /**
+     * Returns the body of the resource at the given <code>uri</code>, from the cache if it is still valid, and caches
+     * it whatever its size.
+     *
+     * @param   uri  The <tt>URI</tt> of the resource.
+     *
+     * @return  The cached body, which is the same object for as long as the resource does not change, or <code>
+     *          null</code> if there is no such resource.
+     *
+     * @throws  IOException  If the resource cannot be fetched.
+     */
+    public CachedBody fetch(URI uri) throws IOException {
+        CachedBody cached = getFresh(uri);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        cached = bodies.get(uri.toString());
+
+        HttpCall call = newConditionalGet(uri, cached);
+
+        try {
+            int status = call.getStatus();
+
+            if ((status == HttpURLConnection.HTTP_NOT_MODIFIED) && (cached != null)) {
+                cached.setValidated(System.currentTimeMillis());
+                return cached;
+            }
+
+            return isMissing(uri, status) ? null : store(uri, call);
+        }
+        finally {
+            call.close();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the resource at the given <code>uri</code> exists. Only the headers of the resource
+     * are requested, unless its body is cached and still valid.
+     *
+     * @param   uri  The <tt>URI</tt> of the resource.
+     *
+     * @return  <code>true</code> if the resource exists; <code>false</code> otherwise.
+     *
+     * @throws  IOException  If the server cannot be reached.
+     */
+    public boolean exists(URI uri) throws IOException {
+
+        if (getFresh(uri) != null) {
+            return true;
+        }
+
+        HttpCall call = pool.open(uri, "HEAD");
+        int status;
+
+        try {
+            status = call.getStatus();
+        }
+        finally {
+            call.close();
+        }
+
+        // Not every server answers HEAD requests.
+        if ((status == HttpURLConnection.HTTP_BAD_METHOD) || (status == HttpURLConnection.HTTP_NOT_IMPLEMENTED)) {
+            InputStream is = open(uri);
+
+            if (is == null) {
+                return false;
+            }
+
+            is.close();
+            return true;
+        }
+
+        return status == HttpURLConnection.HTTP_OK;
+    } // end method exists
+
+    /**
+     * Returns the cached body of the resource at the given <code>uri</code>, provided it has been validated within the
+     * revalidation interval.
+     *
+     * @param   uri  The <tt>URI</tt> of the resource.
+     *
+     * @return  The cached body or <code>null</code> if there is none or it must be revalidated.
+     */
+    private CachedBody getFresh(URI uri) {
+        CachedBody cached = bodies.get(uri.toString());
+        return ((cached != null) && isFresh(cached)) ? cached : null;
+    }
+
+    /**
+     * Returns <code>true</code> if the given cached <code>body</code> has been validated within the revalidation
+     * interval, and can therefore be used without asking the server.
+     *
+     * @param   body  The cached body.
+     *
+     * @return  <code>true</code> if the body is still valid; <code>false</code> if it must be revalidated.
+     */
+    public boolean isFresh(CachedBody body) {
+        return (System.currentTimeMillis() - body.getValidated()) < revalidate;
+    }
+
+    /**
+     * Prepares a <code>GET</code> request that is only answered with a body if the resource differs from the given
+     * <code>cached</code> body.
+     *
+     * @param   uri     The <tt>URI</tt> of the resource.
+     * @param   cached  The cached body or <code>null</code> if the resource is not cached.
+     *
+     * @return  A new call.
+     *
+     * @throws  IOException  If the connection cannot be opened.
+     */
+    private HttpCall newConditionalGet(URI uri, CachedBody cached) throws IOException {
+        HttpCall call = pool.open(uri, "GET");
+
+        if (cached != null) {
+
+            if (cached.getETag() != null) {
+                call.setHeader("If-None-Match", cached.getETag());
+            }
+
+            if (cached.getLastModified() != null) {
+                call.setHeader("If-Modified-Since", cached.getLastModified());
+            }
+        }
+
+        return call;
+    }
+
+    /**
+     * Returns <code>true</code> if the given <code>status</code> denotes a missing resource, which is then dropped
+     * from the cache.
+     *
+     * @param   uri     The <tt>URI</tt> of the resource.
+     * @param   status  The status code of the response.
+     *
+     * @return  <code>true</code> if the resource does not exist; <code>false</code> if its body has been returned.
+     *
+     * @throws  IOException  If the status code denotes neither.
+     */
+    private boolean isMissing(URI uri, int status) throws IOException {
+
+        if ((status == HttpURLConnection.HTTP_NOT_FOUND) || (status == HttpURLConnection.HTTP_GONE)) {
+            bodies.remove(uri.toString());
+            return true;
+        }
+
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Unexpected HTTP status=" + status + " for=" + uri);
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the response of the given <code>call</code> can be revalidated.
+     *
+     * @param   call  The call.
+     *
+     * @return  <code>true</code> if the response carries a validator; <code>false</code> otherwise.
+     */
+    private static boolean hasValidators(HttpCall call) {
+        return (call.getHeader("ETag") != null) || (call.getHeader("Last-Modified") != null);
+    }
+
+    /**
+     * Reads the body of the response of the given <code>call</code> and caches it if it can be revalidated.
+     *
+     * @param   uri   The <tt>URI</tt> of the resource.
+     * @param   call  The call.
+     *
+     * @return  The body.
+     *
+     * @throws  IOException  If the body cannot be read.
+     */
+    private CachedBody store(URI uri, HttpCall call) throws IOException {
+        CachedBody body =
+            new CachedBody(call.getBytes(), call.getHeader("ETag"), call.getHeader("Last-Modified"),
+                           System.currentTimeMillis());
+
+        if (hasValidators(call)) {
+            bodies.put(uri.toString(), body);
+        }
+        else {
+            bodies.remove(uri.toString());
+        }
+
+        return body;
+    }
+
+    /**
+     * The cached body of a response along with its validators.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    static class CachedBody {
+
+        /** The body. */
+        private byte[] bytes;
+
+        /** The entity tag of the body or <code>null</code> if it has none. */
+        private String etag;
+
+        /** The modification time of the body, as sent by the server, or <code>null</code> if it has none. */
+        private String lastModified;
+
+        /** The time at which the body was last validated. */
+        private volatile long validated;
+
+        /**
+         * Creates a new {@link CachedBody} object.
+         *
+         * @param  bytes         The body.
+         * @param  etag          The entity tag of the body or <code>null</code>.
+         * @param  lastModified  The modification time of the body or <code>null</code>.
+         * @param  validated     The time at which the body was fetched.
+         */
+        public CachedBody(byte[] bytes, String etag, String lastModified, long validated) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validated = validated;
+        }
+
+        /**
+         * Returns the body.
+         *
+         * @return  The body, which must not be modified.
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the entity tag of the body.
+         *
+         * @return  The entity tag or <code>null</code> if the body has none.
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * Returns the modification time of the body, as sent by the server.
+         *
+         * @return  The modification time or <code>null</code> if the body has none.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the time at which the body was last validated.
+         *
+         * @return  The time at which the body was last validated.
+         */
+        public long getValidated() {
+            return validated;
+        }
+
+        /**
+         * Sets the time at which the body was last validated.
+         *
+         * @param  validated  The time at which the body was validated.
+         */
+        public void setValidated(long validated) {
+            this.validated = validated;
+        }
+    } // end class CachedBody
+} // end class HttpCache
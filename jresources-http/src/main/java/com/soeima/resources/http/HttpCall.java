@@ -0,0 +1,238 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.util.IOUtil;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * A single <tt>HTTP</tt> request and its response. Closing the call consumes whatever remains of a small response body,
+ * so that the underlying connection can be kept alive, and gives the permit of the call back to its pool.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class HttpCall implements Closeable {
+
+    /** The largest remainder of a response body that is consumed in order to keep the connection alive. */
+    private static final int MaxDrain = 65536;
+
+    /** The pool that handed out this call. */
+    private HttpConnectionPool pool;
+
+    /** The underlying connection. */
+    private HttpURLConnection connection;
+
+    /** The response body as returned by the connection or <code>null</code> if it has not been opened. */
+    private InputStream stream;
+
+    /** The response body handed out to the caller or <code>null</code> if it has not been accessed. */
+    private InputStream body;
+
+    /** Indicates if the request has been sent, which happens once the response is first accessed. */
+    private volatile boolean sent;
+
+    /** Indicates if this call has been closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@link HttpCall} object.
+     *
+     * @param  pool        The pool that handed out the call.
+     * @param  connection  The underlying connection.
+     */
+    HttpCall(HttpConnectionPool pool, HttpURLConnection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    /**
+     * Sets a request header. This method must be called before the response is accessed.
+     *
+     * @param  name   The name of the header.
+     * @param  value  The value of the header.
+     */
+    public void setHeader(String name, String value) {
+        connection.setRequestProperty(name, value);
+    }
+
+    /**
+     * Returns the status code of the response, sending the request first if required.
+     *
+     * @return  The status code.
+     *
+     * @throws  IOException  If the request cannot be sent.
+     */
+    public int getStatus() throws IOException {
+        sent = true;
+        return connection.getResponseCode();
+    }
+
+    /**
+     * Returns the value of the response header with the given <code>name</code>.
+     *
+     * @param   name  The name of the header.
+     *
+     * @return  The value of the header or <code>null</code> if it is not present.
+     */
+    public String getHeader(String name) {
+        sent = true;
+        return connection.getHeaderField(name);
+    }
+
+    /**
+     * Returns the value of the <code>Content-Length</code> response header.
+     *
+     * @return  The length of the response body or <code>-1</code> if it is unknown.
+     */
+    public long getContentLength() {
+        String length = getHeader("Content-Length");
+
+        try {
+            return (length == null) ? -1 : Long.parseLong(length.trim());
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the response body. Closing the returned stream closes this call.
+     *
+     * @return  The response body.
+     *
+     * @throws  IOException  If the response body cannot be opened.
+     */
+    public synchronized InputStream getInputStream() throws IOException {
+
+        if (body == null) {
+            body = new FilterInputStream(openStream()) {
+
+                /**
+                 * @see  FilterInputStream#close()
+                 */
+                @Override public void close() {
+                    HttpCall.this.close();
+                }
+            };
+        }
+
+        return body;
+    }
+
+    /**
+     * Returns the whole response body and closes this call.
+     *
+     * @return  The response body.
+     *
+     * @throws  IOException  If the response body cannot be read.
+     */
+    public byte[] getBytes() throws IOException {
+
+        try {
+            return IOUtil.toByteArray(getInputStream());
+        }
+        finally {
+            close();
+        }
+    }
+
+    /**
+     * Opens the response body as returned by the connection, which is the error stream for error responses.
+     *
+     * @return  The response body.
+     *
+     * @throws  IOException  If the response body cannot be opened.
+     */
+    private synchronized InputStream openStream() throws IOException {
+
+        if (stream == null) {
+            stream = (getStatus() < 400) ? connection.getInputStream() : connection.getErrorStream();
+
+            if (stream == null) {
+                stream = new ByteArrayInputStream(new byte[0]);
+            }
+        }
+
+        return stream;
+    }
+
+    /**
+     * @see  Closeable#close()
+     */
+    @Override public void close() {
+
+        synchronized (this) {
+
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+        }
+
+        try {
+
+            // A request that has not been sent is dropped rather than sent only to be drained.
+            if (sent) {
+                drain(openStream());
+            }
+        }
+        catch (IOException e) {
+
+            // The connection cannot be reused.
+            connection.disconnect();
+        }
+        finally {
+            pool.release();
+        }
+    }
+
+    /**
+     * Consumes and closes what remains of the given response body, provided it is small enough to be worth keeping the
+     * connection alive for. Otherwise the connection is dropped.
+     *
+     * @param   is  The response body.
+     *
+     * @throws  IOException  If the response body cannot be read.
+     */
+    private void drain(InputStream is) throws IOException {
+        byte[] buffer = new byte[8192];
+        long drained = 0;
+
+        try {
+
+            for (int n = is.read(buffer); n != -1; n = is.read(buffer)) {
+                drained += n;
+
+                if (drained > MaxDrain) {
+                    connection.disconnect();
+                    return;
+                }
+            }
+        }
+        finally {
+            is.close();
+        }
+    }
+} // end class HttpCall
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of requests sent to an <tt>HTTP</tt> server at once. The connections themselves are kept alive by
+ * the <tt>HTTP</tt> support of the platform, which reuses a connection once the response it carried has been fully
+ * consumed, so bounding the concurrent requests also bounds the number of persistent connections.
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class HttpConnectionPool {
+
+    /** Hands out a permit for each request under way. */
+    private Semaphore permits;
+
+    /** The time, in milliseconds, to wait for a request to be let through and for its connection to be established. */
+    private int connectTimeout;
+
+    /** The time, in milliseconds, to wait for data from the server. */
+    private int readTimeout;
+
+    /**
+     * Creates a new {@link HttpConnectionPool} object.
+     *
+     * @param  options  The options specifying the size of the pool and the timeouts.
+     */
+    public HttpConnectionPool(HttpOptions options) {
+        permits = new Semaphore(Math.max(1, options.getMaxConnections()), true);
+        connectTimeout = options.getConnectTimeout();
+        readTimeout = options.getReadTimeout();
+    }
+
+    /**
+     * Prepares a request to the given <code>uri</code>, waiting until fewer than the maximum number of requests are
+     * under way, for no longer than the connection timeout. The request is sent once its response is first accessed.
+     *
+     * @param   uri     The <tt>URI</tt> of the requested resource.
+     * @param   method  The request method.
+     *
+     * @return  A new call, which must be {@link HttpCall#close() closed} to give its connection back.
+     *
+     * @throws  IOException  If the connection cannot be opened or the wait times out or is interrupted.
+     */
+    public HttpCall open(URI uri, String method) throws IOException {
+
+        try {
+
+            // A timeout of zero waits forever, as it does for the connection itself.
+            if (connectTimeout <= 0) {
+                permits.acquire();
+            }
+            else if (!permits.tryAcquire(connectTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SocketTimeoutException("Timed out waiting for an HTTP connection to uri=" + uri);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an HTTP connection.");
+        }
+
+        try {
+            HttpURLConnection connection = (HttpURLConnection)uri.toURL().openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setUseCaches(false);
+            connection.setInstanceFollowRedirects(true);
+            return new HttpCall(this, connection);
+        }
+        catch (IOException e) {
+            permits.release();
+            throw e;
+        }
+        catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    } // end method open
+
+    /**
+     * Gives back the permit of a call that has been closed.
+     */
+    void release() {
+        permits.release();
+    }
+} // end class HttpConnectionPool
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.util.Strings;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the options of an {@link HttpPathItem}. The options are specified as the query part of the <tt>HTTP URL</tt>,
+ * e.g., <code>http://host:8080/repository?index=true&amp;maxConnections=8</code>, and are not sent to the server.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class HttpOptions {
+
+    /** The maximum number of requests that are sent to the server at once. */
+    public static final String MaxConnections = "maxConnections";
+
+    /** The time, in milliseconds, to wait for a connection to the server to be established. */
+    public static final String ConnectTimeout = "connectTimeout";
+
+    /** The time, in milliseconds, to wait for data from the server. */
+    public static final String ReadTimeout = "readTimeout";
+
+    /** Indicates if the lookups are to be answered from the index file published at the base <tt>URL</tt>. */
+    public static final String Index = "index";
+
+    /** The time, in milliseconds, during which a cached response is used without revalidating it. */
+    public static final String Revalidate = "revalidate";
+
+    /** The maximum size, in bytes, of a response body that is cached in memory. */
+    public static final String CacheMaxEntrySize = "cacheMaxEntrySize";
+
+    /** The option values according to their respective names. */
+    private Map<String, String> options;
+
+    /**
+     * Creates a new {@link HttpOptions} object.
+     *
+     * @param   query  The <tt>URL</tt> query containing the options, which may be <code>null</code>.
+     *
+     * @throws  ResourceException  If the <code>query</code> contains a malformed option.
+     */
+    public HttpOptions(String query) {
+        options = new HashMap<String, String>();
+
+        for (String option : Strings.split(query, "&")) {
+
+            if (!option.contains("=")) {
+                throw new ResourceException("Not a valid HTTP option=" + option);
+            }
+
+            options.put(Strings.substringBefore(option, "="), Strings.substringAfter(option, "="));
+        }
+    }
+
+    /**
+     * Returns the maximum number of requests that are sent to the server at once. Further requests wait until a
+     * response has been consumed, so at most this many connections are kept alive for reuse.
+     *
+     * <p>By default this method returns <code>4</code>.</p>
+     *
+     * @return  The maximum number of concurrent requests.
+     */
+    public int getMaxConnections() {
+        return (int)getLong(MaxConnections, 4);
+    }
+
+    /**
+     * Returns the time, in milliseconds, to wait for a connection to the server to be established. A request also waits
+     * no longer than this for one of the {@link #getMaxConnections() connections} to be free.
+     *
+     * <p>By default this method returns <code>10000</code>.</p>
+     *
+     * @return  The connection timeout.
+     */
+    public int getConnectTimeout() {
+        return (int)getLong(ConnectTimeout, 10000);
+    }
+
+    /**
+     * Returns the time, in milliseconds, to wait for data from the server.
+     *
+     * <p>By default this method returns <code>30000</code>.</p>
+     *
+     * @return  The read timeout.
+     */
+    public int getReadTimeout() {
+        return (int)getLong(ReadTimeout, 30000);
+    }
+
+    /**
+     * Returns <code>true</code> if the lookups are to be answered from the index file published at the base <tt>
+     * URL</tt>, which is generated by <code>ResourceIndexGenerator</code>. Since <tt>HTTP</tt> cannot list directories,
+     * lookups by extension and recursive lookups only find resources through the index.
+     *
+     * <p>By default this method returns <code>false</code>.</p>
+     *
+     * @return  <code>true</code> if the published index is used; <code>false</code> otherwise.
+     */
+    public boolean isIndex() {
+        return getBoolean(Index, false);
+    }
+
+    /**
+     * Returns the time, in milliseconds, during which a cached response is used without revalidating it with the
+     * server.
+     *
+     * <p>By default this method returns <code>0</code>, meaning cached responses are revalidated every time.</p>
+     *
+     * @return  The revalidation interval of the cached responses.
+     */
+    public long getRevalidate() {
+        return getLong(Revalidate, 0);
+    }
+
+    /**
+     * Returns the maximum size, in bytes, of a response body that is cached in memory. Larger bodies are streamed.
+     *
+     * <p>By default this method returns <code>1048576</code>, i.e., 1MB.</p>
+     *
+     * @return  The maximum size of a cached response body.
+     */
+    public long getCacheMaxEntrySize() {
+        return getLong(CacheMaxEntrySize, 1048576);
+    }
+
+    /**
+     * Returns the value of the option with the given <code>name</code> as a <code>long</code>.
+     *
+     * @param   name          The name of the option.
+     * @param   defaultValue  The value to return if the option has not been specified.
+     *
+     * @return  The value of the option.
+     *
+     * @throws  ResourceException  If the option value is not a number.
+     */
+    protected long getLong(String name, long defaultValue) {
+        String value = options.get(name);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ResourceException("Not a valid value for HTTP option " + name + "=" + value);
+        }
+    }
+
+    /**
+     * Returns the value of the option with the given <code>name</code> as a <code>boolean</code>.
+     *
+     * @param   name          The name of the option.
+     * @param   defaultValue  The value to return if the option has not been specified.
+     *
+     * @return  The value of the option.
+     */
+    protected boolean getBoolean(String name, boolean defaultValue) {
+        String value = options.get(name);
+        return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+    }
+} // end class HttpOptions
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.AbstractPathItem;
+import com.soeima.resources.IndexedPathItem;
+import com.soeima.resources.PathItem;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceBatch;
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.ResourceFilter;
+import com.soeima.resources.ResourceNameFilter;
+import com.soeima.resources.http.HttpCache.CachedBody;
+import com.soeima.resources.index.IndexEntry;
+import com.soeima.resources.index.ResourceIndex;
+import com.soeima.resources.util.Paths;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link PathItem} for resources served by an <tt>HTTP</tt> or <tt>HTTPS</tt> server. The requests are sent over
+ * persistent connections and the bodies of small resources are cached and revalidated with conditional requests.
+ *
+ * <p>Since <tt>HTTP</tt> has no directory listing, a resource can only be found by its exact name unless the server
+ * publishes an index file at the root of the tree, as written by the {@link
+ * com.soeima.resources.index.ResourceIndexGenerator}, and the <code>index</code> option is enabled. The index file is
+ * then revalidated like any other cached resource, so it is only downloaded again once it has changed.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class HttpPathItem extends AbstractPathItem implements IndexedPathItem {
+
+    /** The <tt>URI</tt> of the root of the tree, without the options and ending with a slash. */
+    private URI baseURI;
+
+    /** The options specified in the <tt>URI</tt> query. */
+    private HttpOptions options;
+
+    /** Caches the bodies of the resources. */
+    private HttpCache cache;
+
+    /** The last index file parsed or <code>null</code> if none has been parsed. */
+    private volatile ParsedIndex parsedIndex;
+
+    /**
+     * Creates a new {@link HttpPathItem} object.
+     *
+     * @param   path  The <tt>HTTP</tt> or <tt>HTTPS</tt> <tt>URI</tt> of the root of the tree.
+     *
+     * @throws  ResourceException  If the <code>path</code> is not valid.
+     */
+    public HttpPathItem(String path) {
+        super(path);
+
+        try {
+            URI uri = new URI(path);
+            String basePath = uri.getRawPath();
+
+            if ((basePath == null) || !basePath.endsWith("/")) {
+                basePath = (basePath == null) ? "/" : (basePath + "/");
+            }
+
+            baseURI = new URI(uri.getScheme() + "://" + uri.getRawAuthority() + basePath);
+            options = new HttpOptions(uri.getQuery());
+        }
+        catch (URISyntaxException e) {
+            throw new ResourceException("Not a valid HTTP URI=" + path);
+        }
+
+        cache = new HttpCache(new HttpConnectionPool(options), options);
+    }
+
+    /**
+     * Returns the <tt>URI</tt> of the resource with the given <code>name</code>.
+     *
+     * @param   name  The name of the resource relative to the root of the tree.
+     *
+     * @return  The <tt>URI</tt> of the resource.
+     *
+     * @throws  ResourceException  If the <code>name</code> cannot be part of a <tt>URI</tt>.
+     */
+    URI toURI(String name) {
+
+        try {
+            String path = Paths.stripLeadingSlash(Paths.normalize(name, '/'));
+            return baseURI.resolve(new URI(null, null, path, null).getRawPath());
+        }
+        catch (URISyntaxException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * @see  PathItem#findResourcesForExtension(String, RecursionType)
+     */
+    @Override public List<Resource> findResourcesForExtension(String extension, RecursionType recursionType) {
+        ResourceIndex index = getIndex();
+        List<Resource> resources = new ArrayList<Resource>();
+
+        if (index == null) {
+            return resources;
+        }
+
+        for (IndexEntry entry : index.getEntries()) {
+            String name = entry.getName();
+
+            if (((recursionType == RecursionType.Recursive) || (name.indexOf('/') < 0))
+                    && Paths.isExtension(name, extension)) {
+                resources.add(new HttpResource(this, name));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * Only the resources listed by the index of the server can be found, since there is no other way to list them.
+     *
+     * @see  AbstractPathItem#findResources(ResourceFilter, RecursionType)
+     */
+    @Override protected List<Resource> findResources(ResourceFilter filter, RecursionType recursionType) {
+        ResourceIndex index = getIndex();
+        List<Resource> resources = new ArrayList<Resource>();
+
+        if (index == null) {
+            return resources;
+        }
+
+        for (IndexEntry entry : index.getEntries()) {
+            String name = entry.getName();
+
+            if (((recursionType == RecursionType.Recursive) || (name.indexOf('/') < 0)) && filter.accept(name)) {
+                resources.add(new HttpResource(this, name));
+            }
+        }
+
+        return resources;
+    }
+
+    /**
+     * @see  AbstractPathItem#findResources(String, RecursionType, int)
+     */
+    @Override protected List<Resource> findResources(String name, RecursionType recursionType, int amount) {
+        ResourceIndex index = getIndex();
+        List<Resource> resources = new ArrayList<Resource>();
+
+        if (index == null) {
+
+            try {
+
+                // Without an index, only the exact name can be looked up.
+                if ((amount != 0) && cache.exists(toURI(name))) {
+                    resources.add(new HttpResource(this, Paths.stripLeadingSlash(Paths.normalize(name, '/'))));
+                }
+
+                return resources;
+            }
+            catch (IOException e) {
+                throw new ResourceException(e);
+            }
+        }
+
+        for (IndexEntry entry : index.getEntries()) {
+
+            if (resources.size() == amount) {
+                break;
+            }
+
+            boolean matches =
+                (recursionType == RecursionType.Recursive) ? Paths.endsWithNormalized(entry.getName(), name)
+                                                           : Paths.equalsNormalized(entry.getName(),
+                                                                                    Paths.stripLeadingSlash(name));
+
+            if (matches) {
+                resources.add(new HttpResource(this, entry.getName()));
+            }
+        }
+
+        return resources;
+    } // end method findResources
+
+    /**
+     * With an index, matches every entry of the index against all of the requested names in a single pass, so the
+     * index file is only revalidated once for the whole batch.
+     *
+     * @see  AbstractPathItem#findResources(ResourceBatch)
+     */
+    @Override protected void findResources(ResourceBatch batch) {
+        ResourceIndex index = getIndex();
+
+        if (index == null) {
+            super.findResources(batch);
+            return;
+        }
+
+        for (IndexEntry entry : index.getEntries()) {
+
+            if (batch.matches(entry.getName())) {
+                batch.add(entry.getName(), new HttpResource(this, entry.getName()));
+            }
+        }
+    }
+
+    /**
+     * Returns the index file published at the root of the tree, which is only parsed again once it has changed.
+     *
+     * @return  The index or <code>null</code> if the index is disabled or has not been published.
+     *
+     * @throws  ResourceException  If an error occurs while fetching the index file.
+     */
+    private ResourceIndex getIndex() {
+
+        if (!options.isIndex()) {
+            return null;
+        }
+
+        try {
+            CachedBody body = cache.fetch(toURI(ResourceIndex.FileName));
+
+            if (body == null) {
+                parsedIndex = null;
+                return null;
+            }
+
+            ParsedIndex parsed = parsedIndex;
+
+            // The cache hands back the same body for as long as the index file has not changed.
+            if ((parsed == null) || (parsed.getBody() != body)) {
+                parsed = new ParsedIndex(body, ResourceIndex.read(new ByteArrayInputStream(body.getBytes())));
+                parsedIndex = parsed;
+            }
+
+            return parsed.getIndex();
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+    } // end method getIndex
+
+    /**
+     * The filter is only published while the index file it was built from needs no revalidation, so a lookup that it
+     * rules out could not have found a newer index file either.
+     *
+     * @see  IndexedPathItem#getNameFilter()
+     */
+    @Override public ResourceNameFilter getNameFilter() {
+        ParsedIndex parsed = parsedIndex;
+        return ((parsed != null) && cache.isFresh(parsed.getBody())) ? parsed.getNameFilter() : null;
+    }
+
+    /**
+     * Fetches and parses the index file published at the root of the tree.
+     *
+     * @see  IndexedPathItem#index()
+     */
+    @Override public void index() {
+        getIndex();
+    }
+
+    /**
+     * Returns the contents of the resource with the given <code>name</code>. The stream must be closed to give its
+     * connection back to the pool.
+     *
+     * @see  PathItem#getInputStream(String)
+     */
+    @Override public InputStream getInputStream(String name) {
+
+        try {
+            return cache.open(toURI(name));
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * Returns the <tt>URI</tt> of the root of the tree, without the options.
+     *
+     * @see  PathItem#getURI()
+     */
+    @Override public URI getURI() {
+        return baseURI;
+    }
+
+    /**
+     * An index file along with the cached body it was parsed from.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private static class ParsedIndex {
+
+        /** The cached body of the index file. */
+        private CachedBody body;
+
+        /** The parsed index. */
+        private ResourceIndex index;
+
+        /** The filter of the names listed by the index. */
+        private ResourceNameFilter nameFilter;
+
+        /**
+         * Creates a new {@link ParsedIndex} object.
+         *
+         * @param  body   The cached body of the index file.
+         * @param  index  The parsed index.
+         */
+        public ParsedIndex(CachedBody body, ResourceIndex index) {
+            this.body = body;
+            this.index = index;
+
+            List<String> names = new ArrayList<String>();
+
+            for (IndexEntry entry : index.getEntries()) {
+                names.add(entry.getName());
+            }
+
+            nameFilter = new ResourceNameFilter(names);
+        }
+
+        /**
+         * Returns the cached body of the index file.
+         *
+         * @return  The cached body.
+         */
+        public CachedBody getBody() {
+            return body;
+        }
+
+        /**
+         * Returns the parsed index.
+         *
+         * @return  The parsed index.
+         */
+        public ResourceIndex getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the filter of the names listed by the index.
+         *
+         * @return  The filter.
+         */
+        public ResourceNameFilter getNameFilter() {
+            return nameFilter;
+        }
+    } // end class ParsedIndex
+} // end class HttpPathItem
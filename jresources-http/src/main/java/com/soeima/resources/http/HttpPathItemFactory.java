@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.PathItem;
+import com.soeima.resources.PathItemFactory;
+import com.soeima.resources.extensions.annotations.ResourceExtension;
+
+/**
+ * Loads resources from <tt>HTTP</tt> and <tt>HTTPS</tt> servers, either from remote trees or from remote <tt>Jar</tt>,
+ * <tt>ZIP</tt> and <tt>tar</tt> archives.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+@ResourceExtension(
+                   description = "Loads resources from HTTP and HTTPS servers.",
+                   displayName = "HTTP Resource Extension",
+                   name = "jresources-http"
+                  )
+public class HttpPathItemFactory implements PathItemFactory {
+
+    /**
+     * Creates a new {@link HttpPathItemFactory} object.
+     */
+    public HttpPathItemFactory() {
+    }
+
+    /**
+     * @see  PathItemFactory#pathItem(String)
+     */
+    @Override public PathItem pathItem(String path) {
+
+        if (path.startsWith("http:") || path.startsWith("https:")) {
+            return HttpArchivePathItem.isArchive(path) ? new HttpArchivePathItem(path) : new HttpPathItem(path);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.archive.random.RandomAccessSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+/**
+ * A {@link RandomAccessSource} backed by a resource on an <tt>HTTP</tt> server, which serves each positional read with
+ * a single <code>Range</code> request. Each request carries the entity tag the server sent along with the length of
+ * the resource in an <code>If-Range</code> header, so a resource that changes while it is being read is detected
+ * rather than read inconsistently.
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class HttpSource implements RandomAccessSource {
+
+    /** Sends the requests. */
+    private HttpConnectionPool pool;
+
+    /** The <tt>URI</tt> of the resource. */
+    private URI uri;
+
+    /** The length of the resource or <code>-1</code> if it has not been fetched yet. */
+    private long length;
+
+    /** The entity tag of the resource or <code>null</code> if the server sent none. */
+    private String etag;
+
+    /**
+     * Creates a new {@link HttpSource} object.
+     *
+     * @param  pool  Sends the requests.
+     * @param  uri   The <tt>URI</tt> of the resource.
+     */
+    public HttpSource(HttpConnectionPool pool, URI uri) {
+        this.pool = pool;
+        this.uri = uri;
+        length = -1;
+    }
+
+    /**
+     * @see  RandomAccessSource#length()
+     */
+    @Override public synchronized long length() throws IOException {
+
+        if (length < 0) {
+            HttpCall call = pool.open(uri, "HEAD");
+
+            try {
+                int status = call.getStatus();
+
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unexpected HTTP status=" + status + " for=" + uri);
+                }
+
+                if (call.getContentLength() < 0) {
+                    throw new IOException("Unknown length of=" + uri);
+                }
+
+                etag = call.getHeader("ETag");
+                length = call.getContentLength();
+            }
+            finally {
+                call.close();
+            }
+        }
+
+        return length;
+    } // end method length
+
+    /**
+     * @see  RandomAccessSource#read(long, byte[], int, int)
+     */
+    @Override public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+
+        if (position >= length()) {
+            return -1;
+        }
+
+        if (length == 0) {
+            return 0;
+        }
+
+        HttpCall call = pool.open(uri, "GET");
+
+        try {
+            call.setHeader("Range", "bytes=" + position + "-" + (position + length - 1));
+
+            if (etag != null) {
+                call.setHeader("If-Range", etag);
+            }
+
+            int status = call.getStatus();
+
+            if (status == 416) {
+                return -1;
+            }
+
+            // A full response means that the server ignores ranges or that the resource has changed.
+            if (status != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Unexpected HTTP status=" + status + " for range request to=" + uri);
+            }
+
+            InputStream is = call.getInputStream();
+            int read = 0;
+
+            for (int n; (read < length) && ((n = is.read(buffer, offset + read, length - read)) != -1);) {
+                read += n;
+            }
+
+            return (read == 0) ? -1 : read;
+        }
+        finally {
+            call.close();
+        }
+    } // end method read
+
+    /**
+     * The connections are shared with the path item, so there is nothing to close.
+     *
+     * @see  Closeable#close()
+     */
+    @Override public void close() {
+    }
+} // end class HttpSource
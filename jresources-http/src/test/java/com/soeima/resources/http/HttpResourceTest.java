@@ -0,0 +1,315 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceLoader;
+import com.soeima.resources.index.ResourceIndexGenerator;
+import com.soeima.resources.jar.ZipArchiver;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * Provides unit tests for the {@link HttpResource}, with the lookups being answered from a published index file.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class HttpResourceTest extends AbstractResourceTest {
+
+    /** The name of the remote <tt>ZIP</tt> archive. */
+    private static final String ZipName = "archive.zip";
+
+    /** The <tt>HTTP</tt> test server. */
+    private static HttpTestServer httpServer;
+
+    /**
+     * Creates a new {@link HttpResourceTest} object.
+     */
+    public HttpResourceTest() {
+        super();
+    }
+
+    /**
+     * Archives the test directory, publishes its index and starts serving it.
+     *
+     * @throws  IOException  If the server cannot be started.
+     */
+    @BeforeClass public static void setUp() throws IOException {
+        AbstractResourceTest.setUp("http-resource-test");
+
+        File zip = File.createTempFile("http-archive", ".zip");
+        ZipArchiver archiver = new ZipArchiver();
+        archiver.setPath(zip.getPath());
+        archiver.archive(getTestDirPath());
+
+        if (!zip.renameTo(new File(getTestDir(), ZipName))) {
+            throw new IOException("Cannot move test archive=" + zip);
+        }
+
+        ResourceIndexGenerator.generate(getTestDir());
+        httpServer = new HttpTestServer(getTestDir(), "/repo");
+        httpServer.start();
+    }
+
+    /**
+     * @see  AbstractResourceTest#tearDown()
+     */
+    @AfterClass public static void tearDown() {
+        AbstractResourceTest.tearDown();
+        httpServer.stop();
+    }
+
+    /**
+     * @see  AbstractResourceTest#toURL(String)
+     */
+    @Override protected String toURL(String path) {
+        return path;
+    }
+
+    /**
+     * @see  AbstractResourceTest#toSafeURL(String)
+     */
+    @Override protected String toSafeURL(String path) {
+        return Strings.substringBefore(path, "?");
+    }
+
+    /**
+     * Returns the <tt>URL</tt> of the served test directory, without any options.
+     *
+     * @return  The <tt>URL</tt> of the test directory.
+     */
+    private static String getServerPath() {
+        return "http://localhost:" + httpServer.getPort() + "/repo";
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return getServerPath() + "?" + HttpOptions.Index + "=true";
+    }
+
+    /**
+     * Tests that cached resources and the index file are revalidated rather than downloaded again.
+     */
+    @Test public void testRevalidation() {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(getResourcePath());
+
+        String relativePath = Paths.join("a", TEST_FILE_RESOURCE1);
+        Resource resource = rl.getResource(relativePath);
+        assertNotNull(resource);
+
+        byte[] expected = resource.getBytes();
+        int notModified = httpServer.getNotModified();
+
+        resource = rl.getResource(relativePath);
+        assertNotNull(resource);
+        assertArrayEquals(expected, resource.getBytes());
+
+        // Both the index file and the resource have been revalidated.
+        assertEquals(notModified + 2, httpServer.getNotModified());
+    }
+
+    /**
+     * Tests that the exact name of a resource is looked up when no index is used.
+     */
+    @Test public void testWithoutIndex() {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(getServerPath());
+        assertNotNull(rl.getResource(Paths.join("c", TEST_FILE_RESOURCE2)));
+        assertNull(rl.getResource(TEST_FILE_RESOURCE2));
+        assertTrue(rl.getResourcesForExtension("file").isEmpty());
+    }
+
+    /**
+     * Tests that the requests are sent over persistent connections.
+     */
+    @Test public void testKeepAlive() {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(getResourcePath());
+
+        for (int i = 0; i < 10; i++) {
+            Resource resource = rl.getResource(TEST_FILE_RESOURCE1);
+            assertNotNull(resource);
+            assertNotNull(resource.getBytes());
+        }
+
+        assertTrue(httpServer.getConnections() < httpServer.getRequests());
+    }
+
+    /**
+     * Tests that a request waiting for a connection gives up once the connection timeout elapses.
+     *
+     * @throws  IOException  If a connection cannot be opened.
+     */
+    @Test(timeout = 10000)
+    public void testConnectionWaitTimeout() throws IOException {
+        HttpConnectionPool pool =
+            new HttpConnectionPool(new HttpOptions(HttpOptions.MaxConnections + "=1&" + HttpOptions.ConnectTimeout
+                                                   + "=200"));
+        URI uri = URI.create(getResourcePath());
+        HttpCall call = pool.open(uri, "GET");
+
+        try {
+            pool.open(uri, "GET").close();
+            fail("The pool has a single connection, which is in use.");
+        }
+        catch (IOException e) {
+            // Expected.
+        }
+
+        call.close();
+        pool.open(uri, "GET").close();
+    }
+
+    /**
+     * Tests that closing a call whose response was never accessed does not send its request.
+     *
+     * @throws  IOException  If the call cannot be opened.
+     */
+    @Test public void testUnusedCall() throws IOException {
+        HttpConnectionPool pool = new HttpConnectionPool(new HttpOptions(null));
+        int requests = httpServer.getRequests();
+        pool.open(URI.create(getResourcePath()), "GET").close();
+        assertEquals(requests, httpServer.getRequests());
+    }
+
+    /**
+     * Tests that a body which is streamed because it grew too large drops the body cached before, so that it is not
+     * revalidated once the resource is back to its former contents.
+     *
+     * @throws  IOException  If the resource cannot be read.
+     */
+    @Test public void testStaleBodyDropped() throws IOException {
+        HttpOptions options = new HttpOptions(HttpOptions.Revalidate + "=0&" + HttpOptions.CacheMaxEntrySize + "=16");
+        HttpCache cache = new HttpCache(new HttpConnectionPool(options), options);
+        File file = new File(getTestDir(), "stale.tmp");
+        URI uri = URI.create(getServerPath() + "/stale.tmp");
+        byte[] small = "small".getBytes();
+        byte[] large = new byte[64];
+
+        try {
+            write(file, small);
+            long modified = file.lastModified();
+            assertArrayEquals(small, read(cache.open(uri)));
+
+            write(file, large);
+            file.setLastModified(modified + 10000);
+            assertArrayEquals(large, read(cache.open(uri)));
+
+            // Same validators as the body cached first.
+            write(file, small);
+            file.setLastModified(modified);
+
+            int notModified = httpServer.getNotModified();
+            assertArrayEquals(small, read(cache.open(uri)));
+            assertEquals(notModified, httpServer.getNotModified());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests reading the entries of a remote <tt>ZIP</tt> archive with <code>Range</code> requests.
+     *
+     * @throws  IOException  If the contents cannot be compared.
+     */
+    @Test public void testRemoteZip() throws IOException {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(getServerPath() + "/" + ZipName);
+
+        String relativePath = Paths.join("a", "a", TEST_FILE_RESOURCE2);
+        int ranges = httpServer.getRanges();
+        Resource resource = rl.getResource(Paths.normalize(relativePath, '/'));
+        assertNotNull(resource);
+        assertTrue(resource instanceof HttpArchiveResource);
+        assertEquals("jar:" + getServerPath() + "/" + ZipName + "!/a/a/" + TEST_FILE_RESOURCE2,
+                     resource.getURI().toASCIIString());
+
+        FileInputStream is = new FileInputStream(new File(getTestDir(), relativePath));
+
+        try {
+            assertArrayEquals(IOUtil.toByteArray(is), resource.getBytes());
+        }
+        finally {
+            IOUtil.close(is);
+        }
+
+        assertTrue(httpServer.getRanges() > ranges);
+        assertNull(rl.getResource("foo"));
+    }
+
+    /**
+     * Reads and closes the given stream.
+     *
+     * @param   is  The stream to read.
+     *
+     * @return  The contents of the stream.
+     *
+     * @throws  IOException  If the stream cannot be read.
+     */
+    private static byte[] read(InputStream is) throws IOException {
+        assertNotNull(is);
+
+        try {
+            return IOUtil.toByteArray(is);
+        }
+        finally {
+            IOUtil.close(is);
+        }
+    }
+
+    /**
+     * Replaces the contents of the given file.
+     *
+     * @param   file      The file to write.
+     * @param   contents  The new contents of the file.
+     *
+     * @throws  IOException  If the file cannot be written.
+     */
+    private static void write(File file, byte[] contents) throws IOException {
+        FileOutputStream os = new FileOutputStream(file);
+
+        try {
+            os.write(contents);
+        }
+        finally {
+            IOUtil.close(os);
+        }
+    }
+} // end class HttpResourceTest
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.http;
+
+import com.soeima.resources.util.IOUtil;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides a simple <tt>HTTP</tt> server based on the <tt>HTTP</tt> server bundled with the platform, which serves the
+ * files of a local directory. It answers conditional and <code>Range</code> requests and counts the requests and
+ * connections it serves.
+ *
+ * <p>Note that this server is used only for unit test purposes.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class HttpTestServer {
+
+    /** The <tt>HTTP</tt> server. */
+    private HttpServer http;
+
+    /** Handles the requests. */
+    private ExecutorService executor;
+
+    /** The directory containing the served files. */
+    private File root;
+
+    /** The path under which the files are served. */
+    private String context;
+
+    /** The number of requests served. */
+    private AtomicInteger requests;
+
+    /** The number of requests answered with <code>304 Not Modified</code>. */
+    private AtomicInteger notModified;
+
+    /** The number of requests answered with a part of a file. */
+    private AtomicInteger ranges;
+
+    /** The client ports the requests came from, one for each connection. */
+    private Set<Integer> ports;
+
+    /**
+     * Creates a new {@link HttpTestServer} object.
+     *
+     * @param  root     The directory containing the files to serve.
+     * @param  context  The path under which the files are served, e.g., <code>/repo</code>.
+     */
+    public HttpTestServer(File root, String context) {
+        this.root = root;
+        this.context = context;
+        requests = new AtomicInteger();
+        notModified = new AtomicInteger();
+        ranges = new AtomicInteger();
+        ports = Collections.synchronizedSet(new HashSet<Integer>());
+    }
+
+    /**
+     * Starts the server on a free port.
+     *
+     * @throws  IOException  If the server cannot be started.
+     */
+    public void start() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+        http = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        http.createContext(context, new FileHandler());
+        http.setExecutor(executor);
+        http.start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        http.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return  The port.
+     */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests served.
+     *
+     * @return  The number of requests.
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of requests answered with <code>304 Not Modified</code>.
+     *
+     * @return  The number of requests answered without a body.
+     */
+    public int getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * Returns the number of requests answered with a part of a file.
+     *
+     * @return  The number of <code>Range</code> requests.
+     */
+    public int getRanges() {
+        return ranges.get();
+    }
+
+    /**
+     * Returns the number of connections the requests came over.
+     *
+     * @return  The number of connections.
+     */
+    public int getConnections() {
+        return ports.size();
+    }
+
+    /**
+     * Serves the files of the {@link #root} directory.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private class FileHandler implements HttpHandler {
+
+        /**
+         * @see  HttpHandler#handle(HttpExchange)
+         */
+        @Override public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            ports.add(exchange.getRemoteAddress().getPort());
+
+            try {
+                File file = new File(root, exchange.getRequestURI().getPath().substring(context.length()));
+
+                if (!file.isFile()) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+
+                long length = file.length();
+                String etag = "\"" + length + "-" + file.lastModified() + "\"";
+                Headers request = exchange.getRequestHeaders();
+                Headers response = exchange.getResponseHeaders();
+                response.set("ETag", etag);
+                response.set("Last-Modified", formatDate(file.lastModified()));
+                response.set("Accept-Ranges", "bytes");
+
+                if (etag.equals(request.getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+
+                long start = 0;
+                long end = length - 1;
+                boolean partial = false;
+                String range = request.getFirst("Range");
+                String ifRange = request.getFirst("If-Range");
+
+                if ((range != null) && range.startsWith("bytes=") && ((ifRange == null) || ifRange.equals(etag))) {
+                    String[] bounds = range.substring("bytes=".length()).split("-");
+                    start = Long.parseLong(bounds[0]);
+                    end = Math.min(end, Long.parseLong(bounds[1]));
+
+                    if (start >= length) {
+                        exchange.sendResponseHeaders(416, -1);
+                        return;
+                    }
+
+                    partial = true;
+                    ranges.incrementAndGet();
+                    response.set("Content-Range", "bytes " + start + "-" + end + "/" + length);
+                }
+
+                long size = end - start + 1;
+                int status = partial ? 206 : 200;
+
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    response.set("Content-Length", Long.toString(size));
+                    exchange.sendResponseHeaders(status, -1);
+                    return;
+                }
+
+                exchange.sendResponseHeaders(status, size);
+                write(file, start, size, exchange.getResponseBody());
+            }
+            finally {
+                exchange.close();
+            }
+        } // end method handle
+
+        /**
+         * Formats the given <code>time</code> as an <tt>HTTP</tt> date.
+         *
+         * @param   time  The time in milliseconds.
+         *
+         * @return  The formatted date.
+         */
+        private String formatDate(long time) {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format.format(new Date(time));
+        }
+
+        /**
+         * Writes <code>size</code> bytes of the given <code>file</code>, starting at <code>start</code>, to the output
+         * stream.
+         *
+         * @param   file   The file.
+         * @param   start  The position of the first byte to write.
+         * @param   size   The number of bytes to write.
+         * @param   os     The output stream.
+         *
+         * @throws  IOException  If the file cannot be read.
+         */
+        private void write(File file, long start, long size, OutputStream os) throws IOException {
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+
+            try {
+                byte[] buffer = new byte[(int)size];
+                input.seek(start);
+                input.readFully(buffer);
+                os.write(buffer);
+            }
+            finally {
+                IOUtil.close(input, os);
+            }
+        }
+    } // end class FileHandler
+} // end class HttpTestServer
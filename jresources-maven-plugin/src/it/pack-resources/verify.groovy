@@ -0,0 +1,22 @@
+import java.io.DataInputStream
+
+// Every pack starts with the JRPK magic number.
+def checkPack(File pack) {
+    assert pack.isFile() : "Missing pack: " + pack
+    def is = new DataInputStream(new FileInputStream(pack))
+
+    try {
+        assert is.readInt() == 0x4a52504b : "Not a pack: " + pack
+    }
+    finally {
+        is.close()
+    }
+}
+
+checkPack(new File(basedir, "target/pack-resources-1.0.pack"))
+checkPack(new File(basedir, "target/packs/junit-4.10.pack"))
+
+def pack = new File(basedir, "target/pack-resources-1.0.pack").getText("ISO-8859-1")
+assert pack.contains("config/settings.properties")
+assert pack.contains("readme.txt")
+return true
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.maven;
+
+import com.soeima.resources.PathItem;
+import com.soeima.resources.file.FilePathItem;
+import com.soeima.resources.jar.JarPathItem;
+import com.soeima.resources.pack.PackWriter;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs the resources of a project, along with the resources of selected dependencies, into {@link
+ * com.soeima.resources.pack.Pack}s at build time. A pack carries its own index, so it is served by a <code>
+ * PackPathItem</code> without scanning or indexing anything at startup.
+ *
+ * <p>The resources of the project are packed into <code>${project.build.finalName}.pack</code>, which is attached to
+ * the project with the <code>pack</code> type. Each selected dependency, given as <code>groupId:artifactId</code>, is
+ * packed into its own <code>artifactId-version.pack</code> within the {@link #dependencyDirectory}.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+@Mojo(
+      name = "pack",
+      defaultPhase = LifecyclePhase.PACKAGE,
+      requiresDependencyResolution = ResolutionScope.RUNTIME,
+      threadSafe = true
+     )
+public class PackMojo extends AbstractMojo {
+
+    /** The type of the attached packs. */
+    public static final String Type = "pack";
+
+    /** The project being built. */
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /** Attaches the pack to the project. */
+    @Component private MavenProjectHelper projectHelper;
+
+    /** The directory whose contents are packed, which defaults to the compiled classes and resources. */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", property = "jresources.resourcesDirectory")
+    private File resourcesDirectory;
+
+    /** The pack holding the resources of the project. */
+    @Parameter(
+               defaultValue = "${project.build.directory}/${project.build.finalName}.pack",
+               property = "jresources.outputFile"
+              )
+    private File outputFile;
+
+    /** The dependencies to pack, each given as <code>groupId:artifactId</code>. */
+    @Parameter private List<String> dependencies;
+
+    /** The directory holding the packs of the dependencies. */
+    @Parameter(defaultValue = "${project.build.directory}/packs", property = "jresources.dependencyDirectory")
+    private File dependencyDirectory;
+
+    /** Whether the pack holding the resources of the project is attached to the project. */
+    @Parameter(defaultValue = "true", property = "jresources.attach")
+    private boolean attach;
+
+    /** Whether the data of byte-identical resources is written only once within each pack. */
+    @Parameter(defaultValue = "true", property = "jresources.deduplicate")
+    private boolean deduplicate;
+
+    /** Whether packing is skipped altogether. */
+    @Parameter(defaultValue = "false", property = "jresources.skip")
+    private boolean skip;
+
+    /**
+     * Creates a new {@link PackMojo} object.
+     */
+    public PackMojo() {
+    }
+
+    /**
+     * @see  org.apache.maven.plugin.Mojo#execute()
+     */
+    @Override public void execute() throws MojoExecutionException {
+
+        if (skip) {
+            getLog().info("Skipping resource packing.");
+            return;
+        }
+
+        if (resourcesDirectory.isDirectory()) {
+            pack(new FilePathItem(resourcesDirectory), outputFile);
+
+            if (attach) {
+                projectHelper.attachArtifact(project, Type, null, outputFile);
+            }
+        }
+        else {
+            getLog().info("No resources to pack in=" + resourcesDirectory);
+        }
+
+        for (Artifact artifact : getSelectedDependencies()) {
+            File pack = new File(dependencyDirectory, artifact.getArtifactId() + "-" + artifact.getVersion() + ".pack");
+            pack(new JarPathItem(artifact.getFile().getAbsolutePath()), pack);
+        }
+    }
+
+    /**
+     * Returns the resolved dependencies selected by {@link #dependencies}.
+     *
+     * @return  The selected dependencies.
+     *
+     * @throws  MojoExecutionException  If a selected dependency is not a resolved dependency of the project.
+     */
+    private List<Artifact> getSelectedDependencies() throws MojoExecutionException {
+        List<Artifact> selected = new ArrayList<Artifact>();
+
+        if (dependencies == null) {
+            return selected;
+        }
+
+        for (String dependency : dependencies) {
+            Artifact match = null;
+
+            for (Artifact artifact : project.getArtifacts()) {
+
+                if (dependency.equals(artifact.getGroupId() + ":" + artifact.getArtifactId())) {
+                    match = artifact;
+                    break;
+                }
+            }
+
+            if ((match == null) || (match.getFile() == null) || !match.getFile().isFile()) {
+                throw new MojoExecutionException("Not a resolved dependency of the project=" + dependency);
+            }
+
+            selected.add(match);
+        }
+
+        return selected;
+    } // end method getSelectedDependencies
+
+    /**
+     * Packs all of the resources of the given <code>pathItem</code> into the given <code>pack</code> file.
+     *
+     * @param   pathItem  The path item to pack.
+     * @param   pack      The pack file.
+     *
+     * @throws  MojoExecutionException  If the pack cannot be written.
+     */
+    private void pack(PathItem pathItem, File pack) throws MojoExecutionException {
+        File directory = pack.getParentFile();
+
+        if ((directory != null) && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new MojoExecutionException("Cannot create directory=" + directory);
+        }
+
+        getLog().info("Packing " + pathItem.getPath() + " into " + pack);
+
+        try {
+            long saved = PackWriter.write(pathItem, pack, deduplicate);
+
+            if (saved > 0) {
+                getLog().info("Deduplication saved " + saved + " bytes in " + pack);
+            }
+        }
+        catch (IOException e) {
+            throw new MojoExecutionException("Cannot write pack=" + pack, e);
+        }
+    }
+} // end class PackMojo
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.connection.channel.direct.Session;
+import net.schmizz.sshj.connection.channel.direct.Session.Command;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.FileMode;
+import net.schmizz.sshj.sftp.PathComponents;
+import net.schmizz.sshj.sftp.RemoteResourceFilter;
+import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lists a whole remote tree with a single <code>find</code> command run over an <tt>SSH</tt> exec channel, rather than
+ * with one <tt>SFTP</tt> round trip per directory. The output of the command is parsed as it is streamed and the
+ * resulting listings are served locally.
+ *
+ * <p>The command requires a shell and <tt>GNU</tt> <code>find</code> on the remote server. If it is not available,
+ * {@link #list(SSHClient, String, int)} returns <code>null</code> and the tree must be walked over <tt>SFTP</tt>
+ * instead.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/10
+ */
+class ExecLister implements RemoteLister {
+
+    /** The format of each entry printed by <code>find</code>: type, size, modification time and path. */
+    private static final String Format = "%y %s %T@ %p\\0";
+
+    /** The entries of each listed directory according to its absolute remote path. */
+    private Map<String, List<RemoteResourceInfo>> directories;
+
+    /** The modification time of each listed directory according to its absolute remote path. */
+    private Map<String, Long> mtimes;
+
+    /**
+     * Creates a new {@link ExecLister} object.
+     */
+    private ExecLister() {
+        directories = new HashMap<String, List<RemoteResourceInfo>>();
+        mtimes = new HashMap<String, Long>();
+    }
+
+    /**
+     * Lists the remote tree starting at <code>rootPath</code>.
+     *
+     * @param   ssh       The connected <tt>SSH</tt> client.
+     * @param   rootPath  The absolute remote path where the tree starts.
+     * @param   timeout   The time, in seconds, to wait for the command to exit once its output has been read.
+     *
+     * @return  The listings of the remote tree or <code>null</code> if the remote server cannot run the command.
+     *
+     * @throws  IOException  If an error occurs while communicating with the remote server.
+     */
+    public static ExecLister list(SSHClient ssh, String rootPath, int timeout) throws IOException {
+        ExecLister lister = new ExecLister();
+        Session session = ssh.startSession();
+        InputStream is = null;
+
+        try {
+            Command command = session.exec("find " + quote(rootPath) + " -printf '" + Format + "'");
+            is = new BufferedInputStream(command.getInputStream());
+
+            for (String entry = readEntry(is); entry != null; entry = readEntry(is)) {
+
+                if (!lister.add(rootPath, entry)) {
+                    return null;
+                }
+            }
+
+            command.join(timeout, TimeUnit.SECONDS);
+
+            Integer status = command.getExitStatus();
+            return ((status != null) && (status == 0) && lister.mtimes.containsKey(rootPath)) ? lister : null;
+        }
+        finally {
+            IOUtil.close(is, session);
+        }
+    } // end method list
+
+    /**
+     * Quotes the given <code>path</code> for the remote shell.
+     *
+     * @param   path  The path to quote.
+     *
+     * @return  The quoted path.
+     */
+    private static String quote(String path) {
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+
+    /**
+     * Reads the next <code>NUL</code> terminated entry printed by <code>find</code>.
+     *
+     * @param   is  The output of <code>find</code>.
+     *
+     * @return  The next entry or <code>null</code> if there are no more entries.
+     *
+     * @throws  IOException  If the output cannot be read.
+     */
+    private static String readEntry(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        int b;
+
+        while (((b = is.read()) != -1) && (b != 0)) {
+            os.write(b);
+        }
+
+        return ((b == -1) && (os.size() == 0)) ? null : os.toString("UTF-8");
+    }
+
+    /**
+     * Adds an entry printed by <code>find</code> to the listings.
+     *
+     * @param   rootPath  The absolute remote path where the tree starts.
+     * @param   entry     The entry.
+     *
+     * @return  <code>true</code> if the entry has been added; <code>false</code> if it is not well formed.
+     */
+    private boolean add(String rootPath, String entry) {
+        String[] fields = entry.split(" ", 4);
+
+        if ((fields.length != 4) || (fields[0].length() != 1)) {
+            return false;
+        }
+
+        FileMode.Type type = toType(fields[0].charAt(0));
+        long size;
+        long mtime;
+
+        try {
+            size = Long.parseLong(fields[1]);
+            int dot = fields[2].indexOf('.');
+            mtime = Long.parseLong((dot < 0) ? fields[2] : fields[2].substring(0, dot));
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+
+        String relativePath = Paths.stripParentPath(fields[3], rootPath);
+
+        if (relativePath.length() == 0) {
+            mtimes.put(rootPath, mtime);
+            return true;
+        }
+
+        int slash = relativePath.lastIndexOf('/');
+        String parent = (slash < 0) ? rootPath : Paths.join(rootPath, '/', relativePath.substring(0, slash));
+        PathComponents components = new PathComponents(parent, relativePath.substring(slash + 1), "/");
+        FileAttributes attributes =
+            new FileAttributes.Builder().withType(type).withSize(size).withAtimeMtime(mtime, mtime).build();
+        getEntries(parent).add(new RemoteResourceInfo(components, attributes));
+
+        if (type == FileMode.Type.DIRECTORY) {
+            getEntries(components.getPath());
+            mtimes.put(components.getPath(), mtime);
+        }
+
+        return true;
+    } // end method add
+
+    /**
+     * Returns the file type denoted by the given <code>find</code> type character.
+     *
+     * @param   type  The type character printed by <code>find</code>.
+     *
+     * @return  The file type.
+     */
+    private static FileMode.Type toType(char type) {
+
+        switch (type) {
+
+            case 'f':
+                return FileMode.Type.REGULAR;
+
+            case 'd':
+                return FileMode.Type.DIRECTORY;
+
+            case 'l':
+                return FileMode.Type.SYMKLINK;
+
+            default:
+                return FileMode.Type.UNKNOWN;
+        }
+    }
+
+    /**
+     * Returns the mutable entries of the directory with the given <code>path</code>, creating them if required.
+     *
+     * @param   path  The absolute remote path of the directory.
+     *
+     * @return  The entries of the directory.
+     */
+    private List<RemoteResourceInfo> getEntries(String path) {
+        List<RemoteResourceInfo> entries = directories.get(path);
+
+        if (entries == null) {
+            entries = new ArrayList<RemoteResourceInfo>();
+            directories.put(path, entries);
+        }
+
+        return entries;
+    }
+
+    /**
+     * @see  RemoteLister#ls(String, RemoteResourceFilter)
+     */
+    @Override public List<RemoteResourceInfo> ls(String path, RemoteResourceFilter filter) {
+        List<RemoteResourceInfo> entries = directories.get(path);
+
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+
+        List<RemoteResourceInfo> accepted = new ArrayList<RemoteResourceInfo>();
+
+        for (RemoteResourceInfo entry : entries) {
+
+            if ((filter == null) || filter.accept(entry)) {
+                accepted.add(entry);
+            }
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Returns the absolute remote paths of all of the listed directories.
+     *
+     * @return  The paths of the listed directories.
+     */
+    public Set<String> getDirectories() {
+        return Collections.unmodifiableSet(mtimes.keySet());
+    }
+
+    /**
+     * Returns the modification time of the listed directory with the given <code>path</code>.
+     *
+     * @param   path  The absolute remote path of the directory.
+     *
+     * @return  The modification time of the directory.
+     */
+    public long getMtime(String path) {
+        return mtimes.get(path);
+    }
+} // end class ExecLister
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.index.IndexEntry;
+import com.soeima.resources.index.ResourceIndex;
+import com.soeima.resources.util.Paths;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.FileMode;
+import net.schmizz.sshj.sftp.PathComponents;
+import net.schmizz.sshj.sftp.RemoteResourceFilter;
+import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the remote directory listings from a {@link ResourceIndex} published at the root of the remote tree, so that
+ * the whole tree is described by downloading a single file. The directories are not listed in the index itself and are
+ * derived from the paths of the indexed files.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/11
+ */
+class IndexLister implements RemoteLister {
+
+    /** The entries of each indexed directory according to its absolute remote path. */
+    private Map<String, List<RemoteResourceInfo>> directories;
+
+    /** The size of the index file this lister has been built from. */
+    private long size;
+
+    /** The modification time, in seconds, of the index file this lister has been built from. */
+    private long mtime;
+
+    /**
+     * Creates a new {@link IndexLister} object.
+     *
+     * @param  rootPath    The absolute remote path of the indexed directory.
+     * @param  index       The published index.
+     * @param  attributes  The attributes of the index file.
+     */
+    public IndexLister(String rootPath, ResourceIndex index, FileAttributes attributes) {
+        size = attributes.getSize();
+        mtime = attributes.getMtime();
+        directories = new HashMap<String, List<RemoteResourceInfo>>();
+        directories.put(rootPath, new ArrayList<RemoteResourceInfo>());
+
+        for (IndexEntry entry : index.getEntries()) {
+            add(rootPath, entry);
+        }
+    }
+
+    /**
+     * Adds the given index <code>entry</code> to the listings, along with any of its parent directories not yet listed.
+     *
+     * @param  rootPath  The absolute remote path of the indexed directory.
+     * @param  entry     The index entry.
+     */
+    private void add(String rootPath, IndexEntry entry) {
+        String parent = rootPath;
+        String name = entry.getName();
+
+        for (int slash = name.indexOf('/'); slash >= 0; slash = name.indexOf('/')) {
+            String directory = name.substring(0, slash);
+            String path = Paths.join(parent, '/', directory);
+            name = name.substring(slash + 1);
+
+            if (!directories.containsKey(path)) {
+                directories.put(path, new ArrayList<RemoteResourceInfo>());
+                directories.get(parent).add(newInfo(parent, directory, FileMode.Type.DIRECTORY, 0, mtime));
+            }
+
+            parent = path;
+        }
+
+        long seconds = entry.getMtime() / 1000;
+        directories.get(parent).add(newInfo(parent, name, FileMode.Type.REGULAR, entry.getSize(), seconds));
+    }
+
+    /**
+     * Creates the description of a remote entry.
+     *
+     * @param   parent  The absolute remote path of the parent directory.
+     * @param   name    The name of the entry.
+     * @param   type    The type of the entry.
+     * @param   length  The size of the entry.
+     * @param   time    The modification time, in seconds, of the entry.
+     *
+     * @return  The description of the entry.
+     */
+    private static RemoteResourceInfo newInfo(String parent, String name, FileMode.Type type, long length,
+                                              long time) {
+        FileAttributes attributes =
+            new FileAttributes.Builder().withType(type).withSize(length).withAtimeMtime(time, time).build();
+        return new RemoteResourceInfo(new PathComponents(parent, name, "/"), attributes);
+    }
+
+    /**
+     * Returns <code>true</code> if this lister has been built from the index file with the given <code>
+     * attributes</code>.
+     *
+     * @param   attributes  The current attributes of the index file.
+     *
+     * @return  <code>true</code> if the index file has not changed; <code>false</code> otherwise.
+     */
+    public boolean isCurrent(FileAttributes attributes) {
+        return (attributes.getSize() == size) && (attributes.getMtime() == mtime);
+    }
+
+    /**
+     * @see  RemoteLister#ls(String, RemoteResourceFilter)
+     */
+    @Override public List<RemoteResourceInfo> ls(String path, RemoteResourceFilter filter) {
+        List<RemoteResourceInfo> entries = directories.get(path);
+
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+
+        List<RemoteResourceInfo> accepted = new ArrayList<RemoteResourceInfo>();
+
+        for (RemoteResourceInfo entry : entries) {
+
+            if ((filter == null) || filter.accept(entry)) {
+                accepted.add(entry);
+            }
+        }
+
+        return accepted;
+    }
+} // end class IndexLister
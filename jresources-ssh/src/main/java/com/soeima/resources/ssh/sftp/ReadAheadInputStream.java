@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import net.schmizz.concurrent.Promise;
+import net.schmizz.sshj.sftp.PacketType;
+import net.schmizz.sshj.sftp.Response;
+import net.schmizz.sshj.sftp.SFTPException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An input stream that keeps several read requests outstanding on a {@link ReadAheadRemoteFile}, so that the transfer
+ * of a file is not bound by the round trip time of each individual read.
+ *
+ * <p>The responses are consumed in the order the requests were sent. If the server returns less data than requested,
+ * the missing bytes are requested again before any of the data that follows them is consumed.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/06
+ */
+class ReadAheadInputStream extends InputStream {
+
+    /** The file being read. */
+    private ReadAheadRemoteFile file;
+
+    /** The maximum number of outstanding read requests. */
+    private int maxRequests;
+
+    /** The number of bytes requested by each read request. */
+    private int windowSize;
+
+    /** The time, in seconds, to wait for each response. */
+    private int timeout;
+
+    /** The outstanding read requests in file order. */
+    private LinkedList<ReadRequest> requests;
+
+    /** The file offset of the next read request. */
+    private long requestOffset;
+
+    /** Indicates if the end of the file has been reached. */
+    private boolean eof;
+
+    /** The data of the current response. */
+    private byte[] data;
+
+    /** The position of the next byte within {@link #data}. */
+    private int position;
+
+    /** The position past the last byte within {@link #data}. */
+    private int limit;
+
+    /**
+     * Creates a new {@link ReadAheadInputStream} object.
+     *
+     * @param  file         The file to read.
+     * @param  maxRequests  The maximum number of outstanding read requests.
+     * @param  windowSize   The number of bytes requested by each read request.
+     * @param  timeout      The time, in seconds, to wait for each response.
+     */
+    public ReadAheadInputStream(ReadAheadRemoteFile file, int maxRequests, int windowSize, int timeout) {
+        this.file = file;
+        this.maxRequests = Math.max(1, maxRequests);
+        this.windowSize = Math.max(1, windowSize);
+        this.timeout = timeout;
+        requests = new LinkedList<ReadRequest>();
+    }
+
+    /**
+     * @see  InputStream#read()
+     */
+    @Override public int read() throws IOException {
+
+        if ((position == limit) && !nextResponse()) {
+            return -1;
+        }
+
+        return data[position++] & 0xff;
+    }
+
+    /**
+     * @see  InputStream#read(byte[], int, int)
+     */
+    @Override public int read(byte[] buffer, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if ((position == limit) && !nextResponse()) {
+            return -1;
+        }
+
+        int count = Math.min(len, limit - position);
+        System.arraycopy(data, position, buffer, off, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * @see  InputStream#available()
+     */
+    @Override public int available() throws IOException {
+        return limit - position;
+    }
+
+    /**
+     * Waits for the response to the oldest outstanding read request and makes its data current.
+     *
+     * @return  <code>true</code> if data is available; <code>false</code> if the end of the file has been reached.
+     *
+     * @throws  IOException  If the data cannot be read.
+     */
+    private boolean nextResponse() throws IOException {
+
+        while (!eof) {
+            sendRequests();
+
+            ReadRequest request = requests.removeFirst();
+            Response response = request.getResponse().retrieve(timeout, TimeUnit.SECONDS);
+
+            if (response.getType() == PacketType.STATUS) {
+                response.ensureStatusIs(Response.StatusCode.EOF);
+
+                // The responses to any subsequent requests would only report the end of the file too.
+                eof = true;
+                requests.clear();
+                break;
+            }
+
+            int length = response.ensurePacketTypeIs(PacketType.DATA).readUInt32AsInt();
+
+            if (length < request.getLength()) {
+
+                // Short read: request the remainder ahead of everything else.
+                long offset = request.getOffset() + length;
+                int remainder = request.getLength() - length;
+                requests.addFirst(new ReadRequest(offset, remainder, file.asyncRead(offset, remainder)));
+            }
+
+            if (length > 0) {
+                data = response.array();
+                position = response.rpos();
+                limit = position + length;
+                return true;
+            }
+        } // end while
+
+        return false;
+    } // end method nextResponse
+
+    /**
+     * Sends read requests until the maximum number of outstanding requests is reached.
+     *
+     * @throws  IOException  If a request cannot be sent.
+     */
+    private void sendRequests() throws IOException {
+
+        while (requests.size() < maxRequests) {
+            requests.add(new ReadRequest(requestOffset, windowSize, file.asyncRead(requestOffset, windowSize)));
+            requestOffset += windowSize;
+        }
+    }
+
+    /**
+     * An outstanding read request.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/06
+     */
+    private static class ReadRequest {
+
+        /** The file offset where the read starts. */
+        private long offset;
+
+        /** The number of bytes requested. */
+        private int length;
+
+        /** The promise of the response. */
+        private Promise<Response, SFTPException> response;
+
+        /**
+         * Creates a new {@link ReadRequest} object.
+         *
+         * @param  offset    The file offset where the read starts.
+         * @param  length    The number of bytes requested.
+         * @param  response  The promise of the response.
+         */
+        public ReadRequest(long offset, int length, Promise<Response, SFTPException> response) {
+            this.offset = offset;
+            this.length = length;
+            this.response = response;
+        }
+
+        /**
+         * Returns the file offset where the read starts.
+         *
+         * @return  The file offset where the read starts.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the number of bytes requested.
+         *
+         * @return  The number of bytes requested.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Returns the promise of the response.
+         *
+         * @return  The promise of the response.
+         */
+        public Promise<Response, SFTPException> getResponse() {
+            return response;
+        }
+    } // end class ReadRequest
+} // end class ReadAheadInputStream
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import net.schmizz.concurrent.Promise;
+import net.schmizz.sshj.sftp.PacketType;
+import net.schmizz.sshj.sftp.RemoteFile;
+import net.schmizz.sshj.sftp.Response;
+import net.schmizz.sshj.sftp.SFTPException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link RemoteFile} whose reads can be issued asynchronously.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/06
+ */
+class ReadAheadRemoteFile extends RemoteFile {
+
+    /** The engine used to send the asynchronous requests. */
+    private ReadAheadSFTPEngine engine;
+
+    /**
+     * Creates a new {@link ReadAheadRemoteFile} object.
+     *
+     * @param  engine  The engine used to send the requests.
+     * @param  path    The remote path of the file.
+     * @param  handle  The handle of the opened file.
+     */
+    public ReadAheadRemoteFile(ReadAheadSFTPEngine engine, String path, String handle) {
+        super(engine, path, handle);
+        this.engine = engine;
+    }
+
+    /**
+     * Requests <code>length</code> bytes, starting at <code>fileOffset</code>, without waiting for the response.
+     *
+     * @param   fileOffset  The offset within the file where the read starts.
+     * @param   length      The number of bytes to read.
+     *
+     * @return  The promise of the response to the read request.
+     *
+     * @throws  IOException  If the request cannot be sent.
+     */
+    public Promise<Response, SFTPException> asyncRead(long fileOffset, int length) throws IOException {
+        return engine.request(newRequest(PacketType.READ).putUInt64(fileOffset).putUInt32(length));
+    }
+
+    /**
+     * Returns an input stream that keeps up to <code>maxRequests</code> read requests of <code>windowSize</code> bytes
+     * outstanding.
+     *
+     * @param   maxRequests  The maximum number of outstanding read requests.
+     * @param   windowSize   The number of bytes requested by each read request.
+     *
+     * @return  A read-ahead input stream for this file.
+     */
+    public InputStream getReadAheadInputStream(int maxRequests, int windowSize) {
+        return new ReadAheadInputStream(this, maxRequests, windowSize, engine.getTimeout());
+    }
+} // end class ReadAheadRemoteFile
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import net.schmizz.concurrent.Promise;
+import net.schmizz.sshj.common.SSHException;
+import net.schmizz.sshj.connection.channel.direct.SessionFactory;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.OpenMode;
+import net.schmizz.sshj.sftp.PacketType;
+import net.schmizz.sshj.sftp.RemoteFile;
+import net.schmizz.sshj.sftp.Request;
+import net.schmizz.sshj.sftp.Response;
+import net.schmizz.sshj.sftp.SFTPEngine;
+import net.schmizz.sshj.sftp.SFTPException;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * An {@link SFTPEngine} that is able to send requests without waiting for their responses, which allows several read
+ * requests to be outstanding at the same time.
+ *
+ * <p>Files opened by this engine are {@link ReadAheadRemoteFile}s.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/06
+ */
+class ReadAheadSFTPEngine extends SFTPEngine {
+
+    /**
+     * Creates a new {@link ReadAheadSFTPEngine} object.
+     *
+     * @param   sessionFactory  The factory of the session that is to carry the <tt>SFTP</tt> subsystem.
+     *
+     * @throws  SSHException  If the <tt>SFTP</tt> subsystem cannot be started.
+     */
+    public ReadAheadSFTPEngine(SessionFactory sessionFactory) throws SSHException {
+        super(sessionFactory);
+    }
+
+    /**
+     * Sends the given <code>request</code> without waiting for its response.
+     *
+     * @param   request  The request to send.
+     *
+     * @return  The promise of the response to the <code>request</code>.
+     *
+     * @throws  IOException  If the request cannot be sent.
+     */
+    public Promise<Response, SFTPException> request(Request request) throws IOException {
+        reader.expectResponseTo(request);
+        transmit(request);
+        return request.getResponsePromise();
+    }
+
+    /**
+     * @see  SFTPEngine#open(String, Set, FileAttributes)
+     */
+    @Override public RemoteFile open(String path, Set<OpenMode> modes, FileAttributes fa) throws IOException {
+        String handle =
+            doRequest(newRequest(PacketType.OPEN).putString(path).putUInt32(OpenMode.toMask(modes))
+                      .putFileAttributes(fa)).ensurePacketTypeIs(PacketType.HANDLE).readString();
+        return new ReadAheadRemoteFile(this, path, handle);
+    }
+} // end class ReadAheadSFTPEngine
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import net.schmizz.sshj.sftp.RemoteResourceFilter;
+import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Lists the contents of remote directories, either directly through an <tt>SFTP</tt> session or from a local copy of
+ * the remote listings.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/02
+ */
+interface RemoteLister {
+
+    /**
+     * Lists the contents of the remote directory at the given <code>path</code>.
+     *
+     * @param   path    The absolute remote path of the directory to list.
+     * @param   filter  The filter used to select the entries to return.
+     *
+     * @return  The entries of the directory accepted by the <code>filter</code>.
+     *
+     * @throws  IOException  If an error occurs while listing the directory.
+     */
+    List<RemoteResourceInfo> ls(String path, RemoteResourceFilter filter) throws IOException;
+}
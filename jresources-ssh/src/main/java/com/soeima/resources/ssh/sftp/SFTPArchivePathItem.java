@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.PathItem;
+import com.soeima.resources.Resource;
+import com.soeima.resources.archive.cache.AbstractArchivePathItem;
+import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.archive.random.TarRandomAccessArchive;
+import com.soeima.resources.archive.random.ZipRandomAccessArchive;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+import java.net.URI;
+
+/**
+ * A {@link PathItem} for <tt>Jar</tt>, <tt>ZIP</tt> and <tt>tar</tt> archives stored on a remote server, which are
+ * read in place over <tt>SFTP</tt> rather than downloaded. Only the parts of the archive describing its entries are
+ * fetched when the archive is opened, and each resource is then read from its own byte range of the remote file.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public class SFTPArchivePathItem extends AbstractArchivePathItem {
+
+    /**
+     * Creates a new {@link SFTPArchivePathItem} object.
+     *
+     * @param  path  The <tt>SFTP URI</tt> of the archive.
+     */
+    public SFTPArchivePathItem(String path) {
+        super(path);
+    }
+
+    /**
+     * Returns <code>true</code> if the given <tt>SFTP</tt> <code>path</code> denotes an archive supported by this path
+     * item.
+     *
+     * @param   path  The <tt>SFTP URI</tt>.
+     *
+     * @return  <code>true</code> if the path denotes a supported archive; <code>false</code> otherwise.
+     */
+    public static boolean isArchive(String path) {
+        return Paths.isExtension(Strings.substringBefore(path, "?"), "jar", "zip", "tar");
+    }
+
+    /**
+     * Returns <code>true</code> if the remote file denoted by the given <code>location</code> is a <tt>tar</tt>
+     * archive.
+     *
+     * @param   location  The location of the remote file.
+     *
+     * @return  <code>true</code> for a <tt>tar</tt> archive; <code>false</code> for a <tt>Jar</tt> or <tt>ZIP</tt>
+     *          archive.
+     */
+    private static boolean isTar(URI location) {
+        return Paths.isExtension(location.getPath(), "tar");
+    }
+
+    /**
+     * @see  AbstractArchivePathItem#newArchive(String)
+     */
+    @Override public Archive newArchive(String path) {
+        SFTPPathItem server = new SFTPPathItem(path);
+        URI location = server.getURI();
+        SFTPSource source = new SFTPSource(server, location.getPath());
+
+        if (isTar(location)) {
+            return new TarRandomAccessArchive(location.toASCIIString(), source);
+        }
+
+        return new ZipRandomAccessArchive(location.toASCIIString(), source);
+    }
+
+    /**
+     * @see  AbstractArchivePathItem#toURL(String)
+     */
+    @Override protected String toURL(String path) {
+        URI location = new SFTPPathItem(path).getURI();
+        return (isTar(location) ? "tar:" : "jar:") + location.toASCIIString() + "!/";
+    }
+
+    /**
+     * @see  AbstractArchivePathItem#newResource(String)
+     */
+    @Override public Resource newResource(String relativePath) {
+        return new SFTPArchiveResource(this, relativePath);
+    }
+} // end class SFTPArchivePathItem
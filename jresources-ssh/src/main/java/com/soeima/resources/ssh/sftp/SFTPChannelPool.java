@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.ssh.util.SSHUtil;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.SFTPClient;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A bounded pool of <tt>SFTP</tt> channels that are all multiplexed over a single <tt>SSH</tt> connection. The channels
+ * are opened on demand and reused once released.
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/07
+ */
+class SFTPChannelPool implements Closeable {
+
+    /** The <tt>SSH</tt> connection carrying the channels. */
+    private SSHClient ssh;
+
+    /** The maximum number of channels. */
+    private int size;
+
+    /** The number of channels opened, or being opened, so far. */
+    private int opened;
+
+    /** The channels that are not currently in use. */
+    private LinkedList<SFTPClient> idle;
+
+    /** All of the channels opened so far. */
+    private List<SFTPClient> channels;
+
+    /**
+     * Creates a new {@link SFTPChannelPool} object.
+     *
+     * @param  ssh   The connected <tt>SSH</tt> client carrying the channels, which is closed along with the pool.
+     * @param  size  The maximum number of channels.
+     */
+    public SFTPChannelPool(SSHClient ssh, int size) {
+        this.ssh = ssh;
+        this.size = Math.max(1, size);
+        idle = new LinkedList<SFTPClient>();
+        channels = new ArrayList<SFTPClient>();
+    }
+
+    /**
+     * Returns the maximum number of channels.
+     *
+     * @return  The maximum number of channels.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns an idle channel, opening a new one if the pool is not yet full, or waits for a channel to be released.
+     *
+     * @return  A channel for the exclusive use of the caller until it is {@link #release(SFTPClient) released}.
+     *
+     * @throws  IOException  If a new channel cannot be opened or the wait is interrupted.
+     */
+    public SFTPClient acquire() throws IOException {
+
+        synchronized (this) {
+
+            while (idle.isEmpty() && (opened >= size)) {
+
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for an SFTP channel.");
+                }
+            }
+
+            if (!idle.isEmpty()) {
+                return idle.removeFirst();
+            }
+
+            opened++;
+        }
+
+        // The channel is opened outside of the lock so that released channels can be handed out meanwhile.
+        SFTPClient sftp = null;
+
+        try {
+            sftp = ssh.newSFTPClient();
+        }
+        finally {
+
+            synchronized (this) {
+
+                if (sftp == null) {
+                    opened--;
+                    notifyAll();
+                }
+                else {
+                    channels.add(sftp);
+                }
+            }
+        }
+
+        return sftp;
+    } // end method acquire
+
+    /**
+     * Returns the given <code>sftp</code> channel to the pool.
+     *
+     * @param  sftp  The channel previously obtained with {@link #acquire()}.
+     */
+    public synchronized void release(SFTPClient sftp) {
+        idle.addFirst(sftp);
+        notifyAll();
+    }
+
+    /**
+     * Closes all of the channels and the underlying <tt>SSH</tt> connection.
+     *
+     * @see  Closeable#close()
+     */
+    @Override public synchronized void close() {
+
+        for (SFTPClient sftp : channels) {
+            SSHUtil.close(sftp);
+        }
+
+        channels.clear();
+        idle.clear();
+        SSHUtil.close(ssh);
+    }
+} // end class SFTPChannelPool
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.ssh.util.SSHUtil;
+import com.soeima.resources.util.DaemonThreadFactory;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.RemoteResourceFilter;
+import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPException;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the remote directory listings of an {@link SFTPPathItem} so that lookups can be answered locally.
+ *
+ * <p>Once the time to live of the listings expires, they are revalidated by fetching the modification time of each
+ * remote directory; only the directories whose modification time has changed are listed again. The revalidation is
+ * either performed by a background thread or, if background refreshing is disabled, by the first lookup that finds the
+ * listings stale.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/02
+ */
+class SFTPDirectoryCache implements RemoteLister {
+
+    /** Revalidates the directory caches in the background. */
+    private static final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jresources-sftp-cache"));
+
+    /** The path item whose remote directories are cached. */
+    private SFTPPathItem pathItem;
+
+    /** The absolute remote path where the cached tree starts. */
+    private String rootPath;
+
+    /** The time, in milliseconds, during which the listings are considered to be valid. */
+    private long ttl;
+
+    /** Indicates if the listings are revalidated in the background. */
+    private boolean backgroundRefresh;
+
+    /** The cached directories according to their absolute remote path or <code>null</code> if not yet listed. */
+    private volatile Map<String, CachedDirectory> directories;
+
+    /** The time at which the {@link #directories} were last validated. */
+    private volatile long validated;
+
+    /** Indicates if the background revalidation has already been scheduled. */
+    private boolean scheduled;
+
+    /**
+     * Creates a new {@link SFTPDirectoryCache} object.
+     *
+     * @param  pathItem           The path item whose remote directories are to be cached.
+     * @param  rootPath           The absolute remote path where the cached tree starts.
+     * @param  ttl                The time, in milliseconds, during which the listings are considered to be valid.
+     * @param  backgroundRefresh  <code>true</code> if the listings are to be revalidated in the background.
+     */
+    public SFTPDirectoryCache(SFTPPathItem pathItem, String rootPath, long ttl, boolean backgroundRefresh) {
+        this.pathItem = pathItem;
+        this.rootPath = rootPath;
+        this.ttl = ttl;
+        this.backgroundRefresh = backgroundRefresh;
+    }
+
+    /**
+     * @see  RemoteLister#ls(String, RemoteResourceFilter)
+     */
+    @Override public List<RemoteResourceInfo> ls(String path, RemoteResourceFilter filter) throws IOException {
+        CachedDirectory directory = getDirectories().get(path);
+
+        if (directory == null) {
+            return Collections.emptyList();
+        }
+
+        List<RemoteResourceInfo> entries = new ArrayList<RemoteResourceInfo>();
+
+        for (RemoteResourceInfo entry : directory.getEntries()) {
+
+            if ((filter == null) || filter.accept(entry)) {
+                entries.add(entry);
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Returns <code>true</code> if the time to live of the cached listings has expired.
+     *
+     * @return  <code>true</code> if the listings are stale; <code>false</code> otherwise.
+     */
+    public boolean isStale() {
+        return (System.currentTimeMillis() - validated) >= ttl;
+    }
+
+    /**
+     * Returns the cached directories, listing or revalidating them first if required.
+     *
+     * @return  The cached directories according to their absolute remote path.
+     *
+     * @throws  IOException  If an error occurs while listing the remote directories.
+     */
+    private Map<String, CachedDirectory> getDirectories() throws IOException {
+        Map<String, CachedDirectory> dirs = directories;
+
+        if ((dirs == null) || (!backgroundRefresh && isStale())) {
+            refresh(false);
+            dirs = directories;
+        }
+
+        return dirs;
+    }
+
+    /**
+     * Lists the remote directories, if this has not been done yet, or revalidates the cached listings.
+     *
+     * @param   force  <code>true</code> if the listings are to be revalidated even if they are not yet stale.
+     *
+     * @throws  IOException  If an error occurs while listing the remote directories.
+     */
+    public synchronized void refresh(boolean force) throws IOException {
+
+        // Another thread may have refreshed the listings while this one was waiting.
+        if (!force && (directories != null) && !isStale()) {
+            return;
+        }
+
+        SSHClient ssh = null;
+        SFTPClient sftp = null;
+
+        try {
+            ssh = pathItem.connect();
+
+            Map<String, CachedDirectory> dirs = (directories == null) ? listByExec(ssh) : null;
+
+            if (dirs == null) {
+                sftp = ssh.newSFTPClient();
+                dirs = revalidate(sftp, directories);
+            }
+
+            directories = dirs;
+            validated = System.currentTimeMillis();
+        }
+        finally {
+            SSHUtil.close(sftp, ssh);
+        }
+
+        if (backgroundRefresh && !scheduled) {
+            scheduler.scheduleWithFixedDelay(new RefreshTask(this), ttl, ttl, TimeUnit.MILLISECONDS);
+            scheduled = true;
+        }
+    } // end method refresh
+
+    /**
+     * Lists the whole remote tree with a single remote command, if the path item allows it.
+     *
+     * @param   ssh  The connected <tt>SSH</tt> client.
+     *
+     * @return  The directory listings according to their absolute remote path or <code>null</code> if the tree must be
+     *          walked over <tt>SFTP</tt> instead.
+     */
+    private Map<String, CachedDirectory> listByExec(SSHClient ssh) {
+        ExecLister lister;
+
+        try {
+            lister = pathItem.listByExec(ssh);
+        }
+        catch (IOException e) {
+            return null;
+        }
+
+        if (lister == null) {
+            return null;
+        }
+
+        Map<String, CachedDirectory> dirs = new HashMap<String, CachedDirectory>();
+
+        for (String path : lister.getDirectories()) {
+            dirs.put(path, new CachedDirectory(lister.getMtime(path), lister.ls(path, null)));
+        }
+
+        return dirs;
+    }
+
+    /**
+     * Walks the remote tree and returns its directory listings. The listings of the <code>previous</code> walk are
+     * reused for all of the directories whose modification time has not changed.
+     *
+     * @param   sftp      The <tt>SFTP</tt> client used to access the remote tree.
+     * @param   previous  The listings of the previous walk or <code>null</code> if there aren't any.
+     *
+     * @return  The directory listings according to their absolute remote path.
+     *
+     * @throws  IOException  If an error occurs while listing the remote directories.
+     */
+    private Map<String, CachedDirectory> revalidate(SFTPClient sftp, Map<String, CachedDirectory> previous)
+        throws IOException {
+        Map<String, CachedDirectory> dirs = new HashMap<String, CachedDirectory>();
+        Stack<PendingDirectory> pending = new Stack<PendingDirectory>();
+        pending.add(new PendingDirectory(rootPath, -1));
+
+        while (!pending.isEmpty()) {
+            PendingDirectory dir = pending.pop();
+            long mtime = dir.getMtime();
+
+            try {
+
+                if (mtime < 0) {
+                    mtime = sftp.mtime(dir.getPath());
+                }
+            }
+            catch (SFTPException e) {
+
+                // The directory has been removed in the meantime.
+                continue;
+            }
+
+            CachedDirectory cached = (previous != null) ? previous.get(dir.getPath()) : null;
+            boolean listed = false;
+
+            if ((cached == null) || (cached.getMtime() != mtime)) {
+                cached = new CachedDirectory(mtime, sftp.ls(dir.getPath()));
+                listed = true;
+            }
+
+            dirs.put(dir.getPath(), cached);
+
+            for (RemoteResourceInfo entry : cached.getEntries()) {
+
+                if (entry.isDirectory()) {
+
+                    // Modification times from a fresh listing are current; older ones must be fetched again.
+                    pending.add(new PendingDirectory(entry.getPath(),
+                                                     listed ? entry.getAttributes().getMtime() : -1));
+                }
+            }
+        } // end while
+
+        return dirs;
+    } // end method revalidate
+
+    /**
+     * Holds the listing of a single remote directory.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/02
+     */
+    private static class CachedDirectory {
+
+        /** The modification time of the directory at the time it was listed. */
+        private long mtime;
+
+        /** The directory entries. */
+        private List<RemoteResourceInfo> entries;
+
+        /**
+         * Creates a new {@link CachedDirectory} object.
+         *
+         * @param  mtime    The modification time of the directory at the time it was listed.
+         * @param  entries  The directory entries.
+         */
+        public CachedDirectory(long mtime, List<RemoteResourceInfo> entries) {
+            this.mtime = mtime;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        /**
+         * Returns the modification time of the directory at the time it was listed.
+         *
+         * @return  The modification time of the directory.
+         */
+        public long getMtime() {
+            return mtime;
+        }
+
+        /**
+         * Returns the directory entries.
+         *
+         * @return  The directory entries.
+         */
+        public List<RemoteResourceInfo> getEntries() {
+            return entries;
+        }
+    } // end class CachedDirectory
+
+    /**
+     * A remote directory that is still to be walked.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/02
+     */
+    private static class PendingDirectory {
+
+        /** The absolute remote path of the directory. */
+        private String path;
+
+        /** The known modification time of the directory or <code>-1</code> if it is unknown. */
+        private long mtime;
+
+        /**
+         * Creates a new {@link PendingDirectory} object.
+         *
+         * @param  path   The absolute remote path of the directory.
+         * @param  mtime  The known modification time of the directory or <code>-1</code> if it is unknown.
+         */
+        public PendingDirectory(String path, long mtime) {
+            this.path = path;
+            this.mtime = mtime;
+        }
+
+        /**
+         * Returns the absolute remote path of the directory.
+         *
+         * @return  The absolute remote path of the directory.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the known modification time of the directory.
+         *
+         * @return  The known modification time of the directory or <code>-1</code> if it is unknown.
+         */
+        public long getMtime() {
+            return mtime;
+        }
+    } // end class PendingDirectory
+
+    /**
+     * Periodically revalidates a directory cache. The cache is only weakly referenced so that the task does not prevent
+     * an unused path item from being garbage collected.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/02
+     */
+    private static class RefreshTask implements Runnable {
+
+        /** The cache to revalidate. */
+        private WeakReference<SFTPDirectoryCache> cache;
+
+        /**
+         * Creates a new {@link RefreshTask} object.
+         *
+         * @param  cache  The cache to revalidate.
+         */
+        public RefreshTask(SFTPDirectoryCache cache) {
+            this.cache = new WeakReference<SFTPDirectoryCache>(cache);
+        }
+
+        /**
+         * @see  Runnable#run()
+         */
+        @Override public void run() {
+            SFTPDirectoryCache directoryCache = cache.get();
+
+            // Throwing suppresses all subsequent executions of this periodic task.
+            if (directoryCache == null) {
+                throw new IllegalStateException("The directory cache has been garbage collected.");
+            }
+
+            try {
+                directoryCache.refresh(true);
+            }
+            catch (IOException e) {
+                // Keep serving the current listings until the next revalidation.
+            }
+        }
+    } // end class RefreshTask
+} // end class SFTPDirectoryCache
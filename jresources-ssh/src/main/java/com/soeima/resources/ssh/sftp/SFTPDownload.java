@@ -0,0 +1,347 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.util.DaemonThreadFactory;
+import com.soeima.resources.util.IOUtil;
+import net.schmizz.sshj.sftp.RemoteFile;
+import net.schmizz.sshj.sftp.SFTPClient;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads a remote file by splitting it into segments that are fetched concurrently, each over its own channel of an
+ * {@link SFTPChannelPool}. The segments are written in place into a preallocated byte array or local file.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/07
+ */
+class SFTPDownload {
+
+    /** Runs the segment transfers of all downloads. */
+    private static final ExecutorService executor =
+        Executors.newCachedThreadPool(new DaemonThreadFactory("jresources-sftp-download"));
+
+    /** The size of the buffer used to copy segments into a local file. */
+    private static final int BufferSize = 32768;
+
+    /** The channels used to fetch the segments. */
+    private SFTPChannelPool pool;
+
+    /** The absolute remote path of the file to download. */
+    private String path;
+
+    /** The size of each segment. */
+    private long segmentSize;
+
+    /**
+     * Creates a new {@link SFTPDownload} object.
+     *
+     * @param  pool         The channels used to fetch the segments, which determine the parallelism.
+     * @param  path         The absolute remote path of the file to download.
+     * @param  segmentSize  The size of each segment, which is capped at <code>Integer.MAX_VALUE</code> bytes.
+     */
+    public SFTPDownload(SFTPChannelPool pool, String path, long segmentSize) {
+        this.pool = pool;
+        this.path = path;
+
+        // A segment is transferred with an int count.
+        this.segmentSize = Math.min(Math.max(1, segmentSize), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Downloads the remote file into a byte array.
+     *
+     * @return  The contents of the remote file.
+     *
+     * @throws  IOException        If an error occurs while downloading the file.
+     * @throws  ResourceException  If the remote file is too large to fit into a byte array.
+     */
+    public byte[] toByteArray() throws IOException {
+        long length = getLength();
+
+        if (length > Integer.MAX_VALUE) {
+            throw new ResourceException("Remote file too large for a byte array=" + path);
+        }
+
+        final byte[] bytes = new byte[(int)length];
+
+        download(length, new SegmentTarget() {
+
+                /**
+                 * @see  SegmentTarget#transfer(RemoteFile, long, int)
+                 */
+                @Override public void transfer(RemoteFile file, long offset, int count) throws IOException {
+                    int done = 0;
+
+                    while (done < count) {
+                        done += read(file, offset + done, bytes, (int)offset + done, count - done);
+                    }
+                }
+            });
+
+        return bytes;
+    }
+
+    /**
+     * Downloads the remote file into the given local <code>file</code>, which is overwritten.
+     *
+     * @param   file  The local file.
+     *
+     * @throws  IOException  If an error occurs while downloading the file.
+     */
+    public void toFile(File file) throws IOException {
+        long length = getLength();
+        RandomAccessFile raf = null;
+
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(length);
+
+            final FileChannel channel = raf.getChannel();
+
+            download(length, new SegmentTarget() {
+
+                    /**
+                     * @see  SegmentTarget#transfer(RemoteFile, long, int)
+                     */
+                    @Override public void transfer(RemoteFile file, long offset, int count) throws IOException {
+                        byte[] buffer = new byte[Math.min(count, BufferSize)];
+                        int done = 0;
+
+                        while (done < count) {
+                            int bytes = read(file, offset + done, buffer, 0, Math.min(buffer.length, count - done));
+                            ByteBuffer source = ByteBuffer.wrap(buffer, 0, bytes);
+
+                            while (source.hasRemaining()) {
+                                channel.write(source, offset + done + source.position());
+                            }
+
+                            done += bytes;
+                        }
+                    }
+                });
+        }
+        finally {
+            IOUtil.close(raf);
+        }
+    } // end method toFile
+
+    /**
+     * Returns the length of the remote file.
+     *
+     * @return  The length of the remote file.
+     *
+     * @throws  IOException  If the remote file cannot be accessed.
+     */
+    private long getLength() throws IOException {
+        SFTPClient sftp = pool.acquire();
+
+        try {
+            return sftp.stat(path).getSize();
+        }
+        finally {
+            pool.release(sftp);
+        }
+    }
+
+    /**
+     * Reads at least one byte of the remote <code>file</code>.
+     *
+     * @param   file        The remote file.
+     * @param   fileOffset  The offset within the remote file where the read starts.
+     * @param   buffer      The buffer into which the data is read.
+     * @param   off         The offset within the <code>buffer</code> where the data is written.
+     * @param   len         The maximum number of bytes to read.
+     *
+     * @return  The number of bytes read.
+     *
+     * @throws  IOException  If the data cannot be read or the remote file has shrunk.
+     */
+    private int read(RemoteFile file, long fileOffset, byte[] buffer, int off, int len) throws IOException {
+        int bytes = file.read(fileOffset, buffer, off, len);
+
+        if (bytes < 0) {
+            throw new EOFException("Remote file shrank during download=" + path);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Transfers all of the segments of the remote file to the given <code>target</code>.
+     *
+     * @param   length  The length of the remote file.
+     * @param   target  Where the segments are transferred to.
+     *
+     * @throws  IOException  If any of the segments cannot be transferred.
+     */
+    private void download(long length, SegmentTarget target) throws IOException {
+        int segments = (int)((length + segmentSize - 1) / segmentSize);
+        int workers = Math.min(pool.getSize(), segments);
+        SegmentWorker worker = new SegmentWorker(length, segments, target);
+
+        // A single worker does not benefit from another thread.
+        if (workers <= 1) {
+
+            if (segments > 0) {
+                worker.call();
+            }
+
+            return;
+        }
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(worker));
+        }
+
+        IOException failure = null;
+
+        for (Future<Void> future : futures) {
+
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                worker.cancel();
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException("Interrupted while downloading=" + path);
+            }
+            catch (ExecutionException e) {
+
+                if (failure == null) {
+                    failure = (e.getCause() instanceof IOException) ? (IOException)e.getCause()
+                                                                    : new IOException(e.getCause().toString());
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    } // end method download
+
+    /**
+     * Transfers segments over a single channel until none are left. The same worker may be run by several threads at
+     * once, each of which claims the next segment that has not yet been transferred.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/07
+     */
+    private class SegmentWorker implements Callable<Void> {
+
+        /** The length of the remote file. */
+        private long length;
+
+        /** The number of segments. */
+        private int segments;
+
+        /** Where the segments are transferred to. */
+        private SegmentTarget target;
+
+        /** The index of the next segment to transfer. */
+        private AtomicInteger next;
+
+        /**
+         * Creates a new {@link SegmentWorker} object.
+         *
+         * @param  length    The length of the remote file.
+         * @param  segments  The number of segments.
+         * @param  target    Where the segments are transferred to.
+         */
+        public SegmentWorker(long length, int segments, SegmentTarget target) {
+            this.length = length;
+            this.segments = segments;
+            this.target = target;
+            next = new AtomicInteger();
+        }
+
+        /**
+         * @see  Callable#call()
+         */
+        @Override public Void call() throws IOException {
+            SFTPClient sftp = pool.acquire();
+            RemoteFile file = null;
+
+            try {
+                file = sftp.open(path);
+
+                for (int segment = next.getAndIncrement(); segment < segments; segment = next.getAndIncrement()) {
+                    long offset = segment * segmentSize;
+                    target.transfer(file, offset, (int)Math.min(segmentSize, length - offset));
+                }
+            }
+            catch (IOException e) {
+
+                // Let the other threads give up too.
+                cancel();
+                throw e;
+            }
+            finally {
+                IOUtil.close(file);
+                pool.release(sftp);
+            }
+
+            return null;
+        }
+
+        /**
+         * Prevents any further segments from being claimed.
+         */
+        public void cancel() {
+            next.set(segments);
+        }
+    } // end class SegmentWorker
+
+    /**
+     * Receives the segments of a download.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/07
+     */
+    private interface SegmentTarget {
+
+        /**
+         * Transfers a segment of the remote <code>file</code>. This method is called concurrently for distinct
+         * segments.
+         *
+         * @param   file    The remote file.
+         * @param   offset  The offset of the segment within the remote file.
+         * @param   count   The length of the segment.
+         *
+         * @throws  IOException  If the segment cannot be transferred.
+         */
+        void transfer(RemoteFile file, long offset, int count) throws IOException;
+    } // end interface SegmentTarget
+} // end class SFTPDownload
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.ResourceException;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Strings;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.SFTPClient;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mirrors remote files into a local directory so that they are not downloaded again, even across restarts.
+ *
+ * <p>Each mirrored file is named after the host, port and path of the remote file along with its size and modification
+ * time, so a remote file that changes is simply mirrored under a new name. Before a mirrored file is served, the
+ * attributes of the remote file are fetched again unless they have been checked within the revalidation interval.</p>
+ *
+ * <p>Whenever a file is added, the least recently used files are evicted until the mirror fits within its maximum
+ * size.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/09
+ */
+class SFTPMirror {
+
+    /** The extension of the files that are still being downloaded. */
+    private static final String PartialExtension = ".part";
+
+    /** Accepts the complete mirrored files. */
+    private static final FileFilter MirroredFiles = new FileFilter() {
+
+        /**
+         * @see  FileFilter#accept(File)
+         */
+        @Override public boolean accept(File file) {
+            return file.isFile() && !file.getName().endsWith(PartialExtension);
+        }
+    };
+
+    /** Orders files from the least to the most recently used. */
+    private static final Comparator<File> UsageOrder = new Comparator<File>() {
+
+        /**
+         * @see  Comparator#compare(Object, Object)
+         */
+        @Override public int compare(File file1, File file2) {
+            long used1 = file1.lastModified();
+            long used2 = file2.lastModified();
+            return (used1 < used2) ? -1 : ((used1 == used2) ? 0 : 1);
+        }
+    };
+
+    /** The path item whose remote files are mirrored. */
+    private SFTPPathItem pathItem;
+
+    /** The options of the path item. */
+    private SFTPOptions options;
+
+    /** The local directory containing the mirrored files. */
+    private File directory;
+
+    /** Identifies the remote server within the names of the mirrored files. */
+    private String server;
+
+    /** The mirrored files according to their absolute remote path, as of their last revalidation. */
+    private Map<String, MirroredFile> mirrored;
+
+    /**
+     * Creates a new {@link SFTPMirror} object.
+     *
+     * @param   pathItem  The path item whose remote files are to be mirrored.
+     * @param   server    Identifies the remote server, e.g., <code>host:port</code>.
+     * @param   options   The options of the path item.
+     *
+     * @throws  ResourceException  If the mirror directory cannot be created.
+     */
+    public SFTPMirror(SFTPPathItem pathItem, String server, SFTPOptions options) {
+        this.pathItem = pathItem;
+        this.server = server;
+        this.options = options;
+        directory = new File(options.getMirror());
+        mirrored = new ConcurrentHashMap<String, MirroredFile>();
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new ResourceException("Cannot create SFTP mirror directory=" + directory);
+        }
+    }
+
+    /**
+     * Returns the local copy of the remote file with the given <code>path</code>, downloading it first if it has not
+     * been mirrored yet or has changed.
+     *
+     * @param   path  The absolute remote path of the file.
+     *
+     * @return  The local copy of the remote file.
+     *
+     * @throws  IOException  If the remote file does not exist or cannot be downloaded.
+     */
+    public File get(String path) throws IOException {
+        MirroredFile file = mirrored.get(path);
+        long now = System.currentTimeMillis();
+
+        if ((file != null) && ((now - file.getValidated()) < options.getMirrorRevalidate())
+                && file.getFile().setLastModified(now)) {
+            return file.getFile();
+        }
+
+        SFTPChannelPool pool = null;
+
+        try {
+            pool = new SFTPChannelPool(pathItem.connect(), options.getDownloadParallelism());
+
+            FileAttributes attributes = stat(pool, path);
+            String prefix = hash(path) + "-";
+            File local = new File(directory, prefix + attributes.getSize() + "-" + attributes.getMtime());
+
+            // A successful touch also marks the file as recently used.
+            if (!local.setLastModified(now)) {
+                fetch(pool, path, local);
+                removeOtherVersions(prefix, local);
+                evict(local);
+            }
+
+            mirrored.put(path, new MirroredFile(local, now));
+            return local;
+        }
+        finally {
+            IOUtil.close(pool);
+        }
+    } // end method get
+
+    /**
+     * Returns the attributes of the remote file with the given <code>path</code>.
+     *
+     * @param   pool  The channels to the remote server.
+     * @param   path  The absolute remote path of the file.
+     *
+     * @return  The attributes of the remote file.
+     *
+     * @throws  IOException  If the remote file does not exist or cannot be accessed.
+     */
+    private FileAttributes stat(SFTPChannelPool pool, String path) throws IOException {
+        SFTPClient sftp = pool.acquire();
+
+        try {
+            FileAttributes attributes = sftp.statExistence(path);
+
+            if (attributes == null) {
+                throw new FileNotFoundException(path);
+            }
+
+            return attributes;
+        }
+        finally {
+            pool.release(sftp);
+        }
+    }
+
+    /**
+     * Downloads the remote file with the given <code>path</code> into the <code>local</code> file. The file is first
+     * downloaded under a temporary name, so an interrupted download never leaves a partial file behind.
+     *
+     * @param   pool   The channels to the remote server.
+     * @param   path   The absolute remote path of the file.
+     * @param   local  The local file.
+     *
+     * @throws  IOException  If the remote file cannot be downloaded.
+     */
+    private void fetch(SFTPChannelPool pool, String path, File local) throws IOException {
+        File partial = File.createTempFile(local.getName() + "-", PartialExtension, directory);
+
+        try {
+            new SFTPDownload(pool, path, options.getDownloadSegmentSize()).toFile(partial);
+
+            // Another thread may have mirrored the same file in the meantime.
+            if (!partial.renameTo(local) && !local.isFile()) {
+                throw new IOException("Cannot move downloaded file to=" + local);
+            }
+        }
+        finally {
+            partial.delete();
+        }
+    }
+
+    /**
+     * Deletes the mirrored copies of the older versions of a remote file.
+     *
+     * @param  prefix   The name prefix shared by all versions of the remote file.
+     * @param  current  The copy of the current version.
+     */
+    private void removeOtherVersions(String prefix, File current) {
+
+        for (File file : directory.listFiles(MirroredFiles)) {
+
+            if (file.getName().startsWith(prefix) && !file.equals(current)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the mirror fits within its maximum size.
+     *
+     * @param  keep  The file that must not be evicted.
+     */
+    private void evict(File keep) {
+        File[] files = directory.listFiles(MirroredFiles);
+        long size = 0;
+
+        for (File file : files) {
+            size += file.length();
+        }
+
+        Arrays.sort(files, UsageOrder);
+
+        for (int i = 0; (i < files.length) && (size > options.getMirrorMaxSize()); i++) {
+
+            long length = files[i].length();
+
+            if (!files[i].equals(keep) && files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Returns the hash identifying the remote file with the given <code>path</code> across all servers.
+     *
+     * @param   path  The absolute remote path of the file.
+     *
+     * @return  A hexadecimal hash.
+     */
+    private String hash(String path) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return Strings.toHex(digest.digest((server + path).getBytes("UTF-8")));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new ResourceException(e);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new ResourceException(e);
+        }
+    }
+
+    /**
+     * A mirrored file along with the time at which the remote file was last checked.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/09
+     */
+    private static class MirroredFile {
+
+        /** The local copy. */
+        private File file;
+
+        /** The time at which the remote file was last checked. */
+        private long validated;
+
+        /**
+         * Creates a new {@link MirroredFile} object.
+         *
+         * @param  file       The local copy.
+         * @param  validated  The time at which the remote file was last checked.
+         */
+        public MirroredFile(File file, long validated) {
+            this.file = file;
+            this.validated = validated;
+        }
+
+        /**
+         * Returns the local copy.
+         *
+         * @return  The local copy.
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the time at which the remote file was last checked.
+         *
+         * @return  The time at which the remote file was last checked.
+         */
+        public long getValidated() {
+            return validated;
+        }
+    } // end class MirroredFile
+} // end class SFTPMirror
@@ -21,23 +21,38 @@ import com.soeima.resources.AbstractPathItem;
 import com.soeima.resources.PathItem;
 import com.soeima.resources.RecursionType;
 import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceBatch;
 import com.soeima.resources.ResourceException;
+import com.soeima.resources.ResourceFilter;
+import com.soeima.resources.index.ResourceIndex;
 import com.soeima.resources.ssh.util.SSHUtil;
+import com.soeima.resources.util.IOUtil;
 import com.soeima.resources.util.Paths;
 import com.soeima.resources.util.Strings;
 import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.FileMode;
 import net.schmizz.sshj.sftp.RemoteFile;
 import net.schmizz.sshj.sftp.RemoteResourceFilter;
 import net.schmizz.sshj.sftp.RemoteResourceInfo;
 import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPEngine;
 import net.schmizz.sshj.transport.verification.PromiscuousVerifier;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Stack;
 
 /**
  * A {@link PathItem} suitable for working with the secure file transfer protocol, or <tt>SFTP</tt>.
@@ -59,6 +74,21 @@ public class SFTPPathItem extends AbstractPathItem {
     /** The root path. */
     private String rootPath;
 
+    /** The options specified in the <tt>SFTP URI</tt> query. */
+    private SFTPOptions options;
+
+    /** Caches the remote directory listings or <code>null</code> if caching is disabled. */
+    private SFTPDirectoryCache directoryCache;
+
+    /** Mirrors the remote files locally or <code>null</code> if mirroring is disabled. */
+    private SFTPMirror mirror;
+
+    /** Indicates if the remote tree is to be listed with a single remote command. */
+    private volatile boolean execListing;
+
+    /** Serves the listings from the last index file downloaded or <code>null</code> if none has been downloaded. */
+    private volatile IndexLister indexLister;
+
     /**
      * Creates a new {@link SFTPPathItem} object.
      *
@@ -88,6 +118,18 @@ public class SFTPPathItem extends AbstractPathItem {
         catch (URISyntaxException e) {
             throw new ResourceException("Not a valid SFTP URI=" + path);
         }
+
+        options = new SFTPOptions(sftpURI.getQuery());
+
+        if (options.getCacheTTL() > 0) {
+            directoryCache = new SFTPDirectoryCache(this, rootPath, options.getCacheTTL(), options.isCacheRefresh());
+        }
+
+        execListing = options.isExecListing();
+
+        if (options.getMirror() != null) {
+            mirror = new SFTPMirror(this, sftpURI.getHost() + ":" + sftpURI.getPort(), options);
+        }
     }
 
     /**
@@ -97,7 +139,7 @@ public class SFTPPathItem extends AbstractPathItem {
      *
      * @throws  IOException  If an error occurs.
      */
-    private SSHClient connect() throws IOException {
+    SSHClient connect() throws IOException {
         SSHClient ssh = new SSHClient();
         ssh.addHostKeyVerifier(new PromiscuousVerifier());
         ssh.connect(sftpURI.getHost(), sftpURI.getPort());
@@ -123,14 +165,34 @@ public class SFTPPathItem extends AbstractPathItem {
 
                     return Paths.isExtension(resource.getName(), extension);
                 }
-            }, -1);
+            }, recursionType, -1);
+    }
+
+    /**
+     * @see  AbstractPathItem#findResources(ResourceFilter, RecursionType)
+     */
+    @Override protected List<Resource> findResources(final ResourceFilter filter, final RecursionType recursionType) {
+        return findResources(new RemoteResourceFilter() {
+
+                /**
+                 * @see  RemoteResourceFilter#accept(RemoteResourceInfo)
+                 */
+                @Override public boolean accept(RemoteResourceInfo resource) {
+
+                    if (resource.isDirectory()) {
+                        return recursionType == RecursionType.Recursive;
+                    }
+
+                    return filter.accept(Paths.stripParentPath(resource.getPath(), rootPath));
+                }
+            }, recursionType, -1);
     }
 
     /**
      * @see  AbstractPathItem#findResources(String, RecursionType, int)
      */
     @Override protected List<Resource> findResources(final String name, final RecursionType recursionType, int amount) {
-        return findResources(new RemoteResourceFilter() {
+        RemoteResourceFilter filter = new RemoteResourceFilter() {
 
                 /**
                  * @see  RemoteResourceFilter#accept(RemoteResourceInfo)
@@ -150,9 +212,87 @@ public class SFTPPathItem extends AbstractPathItem {
 
                     return Paths.endsWithNormalized(path, name);
                 }
-            }, amount);
+            };
+
+        // A non-recursive lookup can only match the one path, which is checked directly unless cached locally.
+        if ((recursionType == RecursionType.NonRecursive) && (directoryCache == null)) {
+            List<Resource> resources = findIndexedResources(filter, amount);
+            return (resources != null) ? resources : statResource(name);
+        }
+
+        return findResources(filter, recursionType, amount);
+    } // end method findResources
+
+    /**
+     * A recursive batch walks the remote tree once and matches every remote file against all of the requested names.
+     *
+     * @see  AbstractPathItem#findResources(ResourceBatch)
+     */
+    @Override protected void findResources(final ResourceBatch batch) {
+
+        if (batch.getRecursionType() == RecursionType.NonRecursive) {
+            super.findResources(batch);
+            return;
+        }
+
+        RemoteResourceFilter filter = new RemoteResourceFilter() {
+
+                /**
+                 * @see  RemoteResourceFilter#accept(RemoteResourceInfo)
+                 */
+                @Override public boolean accept(RemoteResourceInfo resource) {
+                    return resource.isDirectory() || batch.matches(Paths.stripParentPath(resource.getPath(), rootPath));
+                }
+            };
+
+        for (Resource resource : findResources(filter, RecursionType.Recursive, -1)) {
+            batch.add(((SFTPResource)resource).getRelativePath(), resource);
+        }
     }
 
+    /**
+     * Returns the resource with the given <code>name</code>, found by fetching the attributes of its remote path
+     * rather than by listing the directories leading to it.
+     *
+     * @param   name  The name of the resource relative to the {@link #rootPath}.
+     *
+     * @return  A list containing the resource or an empty list if there is no such file.
+     *
+     * @throws  ResourceException  If an error occurs while fetching the attributes.
+     */
+    private List<Resource> statResource(String name) {
+        String path = getRemotePath(name);
+        String relativePath = Paths.stripParentPath(path, rootPath);
+        List<Resource> resources = new ArrayList<Resource>();
+
+        // The name leads out of the remote tree, which a walk of the tree could never find.
+        if ((relativePath.length() == 0) || Paths.split(name).contains("..")) {
+            return resources;
+        }
+
+        SSHClient ssh = null;
+        SFTPClient sftp = null;
+
+        try {
+            ssh = connect();
+            sftp = ssh.newSFTPClient();
+
+            FileAttributes attributes = sftp.statExistence(path);
+
+            if ((attributes != null) && (attributes.getType() != FileMode.Type.DIRECTORY)) {
+                resources.add(new SFTPResource(this, relativePath));
+            }
+
+            return resources;
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+        finally {
+            SSHUtil.close(sftp, ssh);
+        }
+    } // end method statResource
+
     /**
      * @see  PathItem#getInputStream(String)
      */
@@ -161,9 +301,21 @@ public class SFTPPathItem extends AbstractPathItem {
         SFTPClient sftp = null;
 
         try {
+
+            if (mirror != null) {
+                return new FileInputStream(mirror.get(getRemotePath(name)));
+            }
+
             ssh = connect();
-            sftp = ssh.newSFTPClient();
-            return new RemoteInputStream(Paths.normalize(Paths.join(rootPath, name), '/'), ssh, sftp);
+
+            if (options.getReadAhead() > 0) {
+                sftp = new SFTPClient(new ReadAheadSFTPEngine(ssh).init());
+            }
+            else {
+                sftp = ssh.newSFTPClient();
+            }
+
+            return new RemoteInputStream(getRemotePath(name), ssh, sftp, options);
         }
         catch (IOException e) {
         }
@@ -171,68 +323,393 @@ public class SFTPPathItem extends AbstractPathItem {
         return null;
     }
 
+    /**
+     * Returns the contents of the resource with the given <code>name</code>. Files larger than the download segment
+     * size are fetched in segments over several channels in parallel.
+     *
+     * @param   name  The name of the resource.
+     *
+     * @return  The contents of the resource.
+     *
+     * @throws  ResourceException  If the resource cannot be downloaded.
+     */
+    public byte[] getBytes(String name) {
+        SFTPChannelPool pool = null;
+
+        try {
+
+            if (mirror != null) {
+                return readFile(mirror.get(getRemotePath(name)));
+            }
+
+            pool = new SFTPChannelPool(connect(), options.getDownloadParallelism());
+            return newDownload(pool, name).toByteArray();
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+        finally {
+            IOUtil.close(pool);
+        }
+    }
+
+    /**
+     * Downloads the resource with the given <code>name</code> into the local <code>file</code>, which is overwritten.
+     * Files larger than the download segment size are fetched in segments over several channels in parallel.
+     *
+     * @param   name  The name of the resource.
+     * @param   file  The local file.
+     *
+     * @throws  ResourceException  If the resource cannot be downloaded.
+     */
+    public void download(String name, File file) {
+        SFTPChannelPool pool = null;
+
+        try {
+
+            if (mirror != null) {
+                copyFile(mirror.get(getRemotePath(name)), file);
+                return;
+            }
+
+            pool = new SFTPChannelPool(connect(), options.getDownloadParallelism());
+            newDownload(pool, name).toFile(file);
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+        finally {
+            IOUtil.close(pool);
+        }
+    }
+
+    /**
+     * Creates a download of the resource with the given <code>name</code>.
+     *
+     * @param   pool  The channels over which the resource is to be downloaded.
+     * @param   name  The name of the resource.
+     *
+     * @return  A new download.
+     */
+    private SFTPDownload newDownload(SFTPChannelPool pool, String name) {
+        return new SFTPDownload(pool, getRemotePath(name), options.getDownloadSegmentSize());
+    }
+
+    /**
+     * Returns the absolute remote path of the resource with the given <code>name</code>.
+     *
+     * @param   name  The name of the resource.
+     *
+     * @return  The absolute remote path.
+     */
+    private String getRemotePath(String name) {
+        return Paths.normalize(Paths.join(rootPath, name), '/');
+    }
+
+    /**
+     * Reads the whole local <code>file</code> into a byte array.
+     *
+     * @param   file  The local file.
+     *
+     * @return  The contents of the <code>file</code>.
+     *
+     * @throws  IOException  If the <code>file</code> cannot be read.
+     */
+    private static byte[] readFile(File file) throws IOException {
+        FileInputStream is = new FileInputStream(file);
+
+        try {
+            FileChannel channel = is.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+
+            while (buffer.hasRemaining()) {
+
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Mirrored file shrank while reading=" + file);
+                }
+            }
+
+            return buffer.array();
+        }
+        finally {
+            IOUtil.close(is);
+        }
+    }
+
+    /**
+     * Copies the local <code>source</code> file to the <code>target</code> file, leaving the copying to the operating
+     * system where possible.
+     *
+     * @param   source  The file to copy.
+     * @param   target  The file to overwrite.
+     *
+     * @throws  IOException  If the file cannot be copied.
+     */
+    private static void copyFile(File source, File target) throws IOException {
+        FileInputStream is = null;
+        FileOutputStream os = null;
+
+        try {
+            is = new FileInputStream(source);
+            os = new FileOutputStream(target);
+
+            FileChannel channel = is.getChannel();
+            long size = channel.size();
+
+            for (long position = 0; position < size;) {
+                position += channel.transferTo(position, size - position, os.getChannel());
+            }
+        }
+        finally {
+            IOUtil.close(is, os);
+        }
+    }
+
     /**
      * Returns all of the resources that match the given <code>filter</code>. The <code>filter</code> is passed the
      * various remote file-system entries. If <code>amount</code> is a negative value, all matching entries are
      * returned, otherwise only the <code>amount</code> specified is returned.
      *
-     * @param   filter  The filter criteria used to match the resources that are to be returned.
-     * @param   amount  The maximum number of resources to return or a negative value indicating all matching resources.
+     * @param   filter         The filter criteria used to match the resources that are to be returned.
+     * @param   recursionType  Indicates if the <code>filter</code> accepts the subdirectories of the root path.
+     * @param   amount         The maximum number of resources to return or a negative value indicating all matching
+     *                         resources.
      *
      * @return  A list of {@link Resource}s or an empty list if none are found.
      *
      * @throws  ResourceException  If an error occurs while fetching the resources.
      */
-    private List<Resource> findResources(RemoteResourceFilter filter, int amount) {
-        List<Resource> resources = new ArrayList<Resource>();
+    private List<Resource> findResources(RemoteResourceFilter filter, RecursionType recursionType, int amount) {
+        List<Resource> indexed = findIndexedResources(filter, amount);
+
+        if (indexed != null) {
+            return indexed;
+        }
+
+        if (directoryCache != null) {
+
+            try {
+                return findResources(directoryCache, filter, amount);
+            }
+            catch (IOException e) {
+                throw new ResourceException(e);
+            }
+        }
+
+        // Listing the whole tree only pays off if the subdirectories are to be walked anyway.
+        if (execListing && (recursionType == RecursionType.Recursive)) {
+            SSHClient ssh = null;
+
+            try {
+                ssh = connect();
+
+                ExecLister lister = listByExec(ssh);
+
+                if (lister != null) {
+                    return findResources(lister, filter, amount);
+                }
+            }
+            catch (IOException e) {
+                // Fall back to walking the remote tree over SFTP.
+            }
+            finally {
+                SSHUtil.close(ssh);
+            }
+        }
+
+        if (options.getWalkParallelism() > 1) {
+            SFTPChannelPool pool = null;
+
+            try {
+                pool = new SFTPChannelPool(connect(), options.getWalkParallelism());
+                return toResources(new SFTPTreeWalker(pool).walk(rootPath, filter, amount), amount);
+            }
+            catch (IOException e) {
+                throw new ResourceException(e);
+            }
+            finally {
+                IOUtil.close(pool);
+            }
+        }
+
         SSHClient ssh = null;
         SFTPClient sftp = null;
 
         try {
             ssh = connect();
             sftp = ssh.newSFTPClient();
-            Stack<String> paths = new Stack<String>();
-            paths.add(rootPath);
+            return findResources(new SFTPLister(sftp), filter, amount);
+        }
+        catch (IOException e) {
+            throw new ResourceException(e);
+        }
+        finally {
+            SSHUtil.close(sftp, ssh);
+        }
+    } // end method findResources
 
-            while (!paths.isEmpty()) {
+    /**
+     * Returns the resources that match the given <code>filter</code> according to the index file published at the
+     * {@link #rootPath}. Only the attributes of the index file are fetched, unless it has changed since it was last
+     * downloaded.
+     *
+     * @param   filter  The filter criteria used to match the resources that are to be returned.
+     * @param   amount  The maximum number of resources to return or a negative value indicating all matching resources.
+     *
+     * @return  A list of {@link Resource}s or <code>null</code> if the index is disabled or has not been published.
+     *
+     * @throws  ResourceException  If an error occurs while fetching the index file.
+     */
+    private List<Resource> findIndexedResources(RemoteResourceFilter filter, int amount) {
 
-                for (RemoteResourceInfo resource : sftp.ls(paths.pop(), filter)) {
+        if (!options.isIndex()) {
+            return null;
+        }
 
-                    if (resource.isDirectory()) {
-                        paths.add(resource.getPath());
-                        continue;
-                    }
+        SSHClient ssh = null;
+        SFTPClient sftp = null;
+        RemoteFile file = null;
 
-                    resources.add(new SFTPResource(this, Paths.stripParentPath(resource.getPath(), rootPath)));
+        try {
+            ssh = connect();
+            sftp = ssh.newSFTPClient();
 
-                    if (resources.size() == amount) {
-                        break;
-                    }
-                }
+            String path = Paths.join(rootPath, '/', ResourceIndex.FileName);
+            FileAttributes attributes = sftp.statExistence(path);
+
+            if (attributes == null) {
+                indexLister = null;
+                return null;
             }
+
+            IndexLister lister = indexLister;
+
+            if ((lister == null) || !lister.isCurrent(attributes)) {
+                file = sftp.open(path);
+                lister = new IndexLister(rootPath,
+                                         ResourceIndex.read(new BufferedInputStream(file.getInputStream())),
+                                         attributes);
+                indexLister = lister;
+            }
+
+            return findResources(lister, filter, amount);
         }
         catch (IOException e) {
             throw new ResourceException(e);
         }
         finally {
+            IOUtil.close(file);
             SSHUtil.close(sftp, ssh);
         }
+    } // end method findIndexedResources
 
-        return resources;
+    /**
+     * Lists the whole remote tree with a single remote command, provided the remote server has not already been found
+     * unable to run it.
+     *
+     * @param   ssh  The connected <tt>SSH</tt> client.
+     *
+     * @return  The listings of the remote tree or <code>null</code> if the remote server cannot run the command.
+     *
+     * @throws  IOException  If an error occurs while communicating with the remote server.
+     */
+    ExecLister listByExec(SSHClient ssh) throws IOException {
+
+        if (!execListing) {
+            return null;
+        }
+
+        ExecLister lister = ExecLister.list(ssh, rootPath, SFTPEngine.DEFAULT_TIMEOUT);
+
+        // Do not try again on every lookup.
+        if (lister == null) {
+            execListing = false;
+        }
+
+        return lister;
+    }
+
+    /**
+     * Walks the remote tree, starting at the {@link #rootPath}, and returns all of the resources that match the given
+     * <code>filter</code>, sorted by their path as {@link SFTPTreeWalker} does, whatever lists the directories.
+     *
+     * @param   lister  Lists the contents of the remote directories.
+     * @param   filter  The filter criteria used to match the resources that are to be returned.
+     * @param   amount  The maximum number of resources to return or a negative value indicating all matching resources.
+     *
+     * @return  A list of {@link Resource}s or an empty list if none are found.
+     *
+     * @throws  IOException  If an error occurs while listing the remote directories.
+     */
+    private List<Resource> findResources(RemoteLister lister, RemoteResourceFilter filter, int amount)
+        throws IOException {
+        List<RemoteResourceInfo> files = new ArrayList<RemoteResourceInfo>();
+        LinkedList<String> paths = new LinkedList<String>();
+        paths.add(rootPath);
+
+        while (!paths.isEmpty()) {
+            String path = paths.removeFirst();
+
+            // Once enough files have been found, only the directories that may hold earlier files are listed.
+            if (!SFTPTreeWalker.mightPrecede(path, files, amount)) {
+                continue;
+            }
+
+            for (RemoteResourceInfo resource : lister.ls(path, filter)) {
+
+                if (resource.isDirectory()) {
+                    paths.add(resource.getPath());
+                }
+                else {
+                    files.add(resource);
+                }
+            }
+
+            if ((amount >= 0) && (files.size() >= amount)) {
+                Collections.sort(files, SFTPTreeWalker.PathOrder);
+            }
+        }
+
+        Collections.sort(files, SFTPTreeWalker.PathOrder);
+        return toResources(files, amount);
     } // end method findResources
 
+    /**
+     * Returns the resources for the given remote <code>files</code>.
+     *
+     * @param   files   The remote files.
+     * @param   amount  The maximum number of resources to return or a negative value indicating all of them.
+     *
+     * @return  A list of {@link Resource}s in the order of the <code>files</code>.
+     */
+    private List<Resource> toResources(List<RemoteResourceInfo> files, int amount) {
+        List<Resource> resources = new ArrayList<Resource>();
+
+        for (RemoteResourceInfo file : files) {
+
+            if (resources.size() == amount) {
+                break;
+            }
+
+            resources.add(new SFTPResource(this, Paths.stripParentPath(file.getPath(), rootPath)));
+        }
+
+        return resources;
+    }
+
     /**
      * @see  PathItem#getURI()
      */
     @Override public URI getURI() {
 
+        // The options are not part of the location of the resources and are therefore left out.
         try {
             return new URI(sftpURI.getScheme(),
                            null,
                            sftpURI.getHost(),
                            sftpURI.getPort(),
                            sftpURI.getPath(),
-                           sftpURI.getQuery(),
+                           null,
                            sftpURI.getFragment());
         }
         catch (URISyntaxException e) {
@@ -240,6 +717,34 @@ public class SFTPPathItem extends AbstractPathItem {
         }
     }
 
+    /**
+     * Lists the remote directories directly through an <tt>SFTP</tt> session.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/02
+     */
+    private static class SFTPLister implements RemoteLister {
+
+        /** The <tt>SFTP</tt> client. */
+        private SFTPClient sftp;
+
+        /**
+         * Creates a new {@link SFTPLister} object.
+         *
+         * @param  sftp  The <tt>SFTP</tt> client used to list the remote directories.
+         */
+        public SFTPLister(SFTPClient sftp) {
+            this.sftp = sftp;
+        }
+
+        /**
+         * @see  RemoteLister#ls(String, RemoteResourceFilter)
+         */
+        @Override public List<RemoteResourceInfo> ls(String path, RemoteResourceFilter filter) throws IOException {
+            return sftp.ls(path, filter);
+        }
+    } // end class SFTPLister
+
     /**
      * Wraps a {@link RemoteFile} and ensures that it is properly closed when this input stream is also closed.
      *
@@ -266,14 +771,22 @@ public class SFTPPathItem extends AbstractPathItem {
          * @param  fileName  The name of the file to retrieve via <tt>SFTP</tt>.
          * @param  ssh       The backing <tt>SSH</tt> client.
          * @param  sftp      The backing <tt>SFTP</tt> client.
+         * @param  options   The options of the path item the file belongs to.
          */
-        public RemoteInputStream(String fileName, SSHClient ssh, SFTPClient sftp) {
+        public RemoteInputStream(String fileName, SSHClient ssh, SFTPClient sftp, SFTPOptions options) {
             this.ssh = ssh;
             this.sftp = sftp;
 
             try {
                 file = sftp.open(fileName);
-                is = file.getInputStream();
+
+                if (file instanceof ReadAheadRemoteFile) {
+                    is = ((ReadAheadRemoteFile)file).getReadAheadInputStream(options.getReadAhead(),
+                                                                            options.getReadAheadWindow());
+                }
+                else {
+                    is = file.getInputStream();
+                }
             }
             catch (IOException e) {
             }
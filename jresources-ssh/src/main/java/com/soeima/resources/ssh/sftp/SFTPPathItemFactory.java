@@ -22,7 +22,8 @@ import com.soeima.resources.PathItemFactory;
 import com.soeima.resources.extensions.annotations.ResourceExtension;
 
 /**
- * Loads resources using the secure file transfer protocol (<tt>SFTP</tt>).
+ * Loads resources using the secure file transfer protocol (<tt>SFTP</tt>), either from remote directories or from
+ * remote <tt>Jar</tt>, <tt>ZIP</tt> and <tt>tar</tt> archives.
  *
  * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
  * @version  2012/10/09
@@ -46,7 +47,7 @@ public class SFTPPathItemFactory implements PathItemFactory {
     @Override public PathItem pathItem(String path) {
 
         if (path.startsWith("sftp:")) {
-            return new SFTPPathItem(path);
+            return SFTPArchivePathItem.isArchive(path) ? new SFTPArchivePathItem(path) : new SFTPPathItem(path);
         }
 
         return null;
@@ -22,6 +22,7 @@ import com.soeima.resources.PathItem;
 import com.soeima.resources.Resource;
 import com.soeima.resources.ResourceException;
 import com.soeima.resources.util.Paths;
+import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -43,6 +44,37 @@ public class SFTPResource extends AbstractResource {
         super(pathItem, relativePath);
     }
 
+    /**
+     * Returns the contents of this resource. Large resources are downloaded in segments over several channels in
+     * parallel.
+     *
+     * @see  Resource#getBytes()
+     */
+    @Override public byte[] getBytes() {
+        return ((SFTPPathItem)getPathItem()).getBytes(getName());
+    }
+
+    /**
+     * Downloads this resource into the given local <code>file</code>, which is overwritten. Large resources are
+     * downloaded in segments over several channels in parallel.
+     *
+     * @param   file  The local file.
+     *
+     * @throws  ResourceException  If the resource cannot be downloaded.
+     */
+    public void download(File file) {
+        ((SFTPPathItem)getPathItem()).download(getName(), file);
+    }
+
+    /**
+     * Returns the path of this resource relative to the root path of its path item.
+     *
+     * @return  The relative path.
+     */
+    String getRelativePath() {
+        return getName();
+    }
+
     /**
      * @see  Resource#getPath()
      */
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.archive.random.RandomAccessSource;
+import com.soeima.resources.ssh.util.SSHUtil;
+import com.soeima.resources.util.IOUtil;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.RemoteFile;
+import net.schmizz.sshj.sftp.SFTPClient;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A {@link RandomAccessSource} backed by a remote file, which serves each positional read with a single <tt>SFTP</tt>
+ * read request. The connection is opened on the first read and kept open until the source is closed. If a read fails,
+ * the connection is opened again and the read retried once, so a connection dropped by the remote server while idle
+ * does not break the source.
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+class SFTPSource implements RandomAccessSource {
+
+    /** Connects to the remote server. */
+    private SFTPPathItem pathItem;
+
+    /** The absolute remote path of the file. */
+    private String path;
+
+    /** The connection to the remote server or <code>null</code> if it is not open. */
+    private SSHClient ssh;
+
+    /** The <tt>SFTP</tt> channel or <code>null</code> if it is not open. */
+    private SFTPClient sftp;
+
+    /** The open remote file or <code>null</code> if it is not open. */
+    private RemoteFile file;
+
+    /** The length of the remote file or <code>-1</code> if it has not been fetched yet. */
+    private long length;
+
+    /**
+     * Creates a new {@link SFTPSource} object.
+     *
+     * @param  pathItem  Connects to the remote server.
+     * @param  path      The absolute remote path of the file.
+     */
+    public SFTPSource(SFTPPathItem pathItem, String path) {
+        this.pathItem = pathItem;
+        this.path = path;
+        length = -1;
+    }
+
+    /**
+     * Returns the open remote file, connecting to the remote server first if required.
+     *
+     * @return  The open remote file.
+     *
+     * @throws  IOException  If the remote file cannot be opened.
+     */
+    private synchronized RemoteFile getFile() throws IOException {
+
+        if (file == null) {
+
+            try {
+                ssh = pathItem.connect();
+                sftp = ssh.newSFTPClient();
+                file = sftp.open(path);
+            }
+            catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        return file;
+    }
+
+    /**
+     * @see  RandomAccessSource#length()
+     */
+    @Override public synchronized long length() throws IOException {
+
+        if (length < 0) {
+            length = getFile().length();
+        }
+
+        return length;
+    }
+
+    /**
+     * @see  RandomAccessSource#read(long, byte[], int, int)
+     */
+    @Override public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        RemoteFile current = getFile();
+
+        try {
+            return current.read(position, buffer, offset, length);
+        }
+        catch (IOException e) {
+            reopen(current);
+            return getFile().read(position, buffer, offset, length);
+        }
+    }
+
+    /**
+     * Closes the connection if the given remote <code>failed</code> file is still the current one, so that the next
+     * read opens a new connection.
+     *
+     * @param  failed  The remote file a read has failed on.
+     */
+    private synchronized void reopen(RemoteFile failed) {
+
+        if (file == failed) {
+            close();
+        }
+    }
+
+    /**
+     * @see  Closeable#close()
+     */
+    @Override public synchronized void close() {
+        IOUtil.close(file);
+        SSHUtil.close(sftp, ssh);
+        file = null;
+        sftp = null;
+        ssh = null;
+    }
+} // end class SFTPSource
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.util.DaemonThreadFactory;
+import net.schmizz.sshj.sftp.RemoteResourceFilter;
+import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import net.schmizz.sshj.sftp.SFTPClient;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Walks a remote tree by listing several directories at once, each over its own channel of an {@link SFTPChannelPool}.
+ * As soon as a listing completes, the subdirectories it contains are handed to the next free channel, so the number of
+ * round trips is bound by the depth of the tree rather than by the number of its directories.
+ *
+ * <p>The files found are returned sorted by their path, so the result does not depend on the order in which the
+ * listings complete. This is the same order in which {@link SFTPPathItem} returns the files it finds by walking the
+ * tree directory by directory.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/08
+ */
+class SFTPTreeWalker {
+
+    /** Runs the directory listings of all walks. */
+    private static final ExecutorService executor =
+        Executors.newCachedThreadPool(new DaemonThreadFactory("jresources-sftp-walk"));
+
+    /** Orders remote entries by their path. */
+    static final Comparator<RemoteResourceInfo> PathOrder = new Comparator<RemoteResourceInfo>() {
+
+        /**
+         * @see  Comparator#compare(Object, Object)
+         */
+        @Override public int compare(RemoteResourceInfo info1, RemoteResourceInfo info2) {
+            return info1.getPath().compareTo(info2.getPath());
+        }
+    };
+
+    /** The channels over which the directories are listed, which bound the number of concurrent listings. */
+    private SFTPChannelPool pool;
+
+    /**
+     * Creates a new {@link SFTPTreeWalker} object.
+     *
+     * @param  pool  The channels over which the directories are to be listed.
+     */
+    public SFTPTreeWalker(SFTPChannelPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Walks the remote tree starting at <code>rootPath</code> and returns the files accepted by the given <code>
+     * filter</code>. Only the directories accepted by the <code>filter</code> are walked.
+     *
+     * <p>If <code>amount</code> is not negative, no further directories are listed once that many files have been
+     * found and none of the remaining directories can hold a file that sorts before them. The first <code>
+     * amount</code> files returned are therefore always the same, while more files may be returned, since the listings
+     * already under way are still collected.</p>
+     *
+     * @param   rootPath  The absolute remote path where the walk starts.
+     * @param   filter    The filter criteria used to match the entries.
+     * @param   amount    The number of files after which the walk stops or a negative value to walk the whole tree.
+     *
+     * @return  The matching files sorted by their path.
+     *
+     * @throws  IOException  If an error occurs while listing the remote directories.
+     */
+    public List<RemoteResourceInfo> walk(String rootPath, RemoteResourceFilter filter, int amount)
+        throws IOException {
+        CompletionService<List<RemoteResourceInfo>> listings =
+            new ExecutorCompletionService<List<RemoteResourceInfo>>(executor);
+        LinkedList<String> pending = new LinkedList<String>();
+        List<RemoteResourceInfo> files = new ArrayList<RemoteResourceInfo>();
+        int listing = 0;
+        pending.add(rootPath);
+
+        try {
+
+            while (!pending.isEmpty() || (listing > 0)) {
+
+                while (!pending.isEmpty() && (listing < pool.getSize())) {
+                    String path = pending.removeFirst();
+
+                    if (mightPrecede(path, files, amount)) {
+                        listings.submit(new ListTask(path, filter));
+                        listing++;
+                    }
+                }
+
+                if (listing == 0) {
+                    break;
+                }
+
+                Future<List<RemoteResourceInfo>> future = listings.take();
+                listing--;
+
+                for (RemoteResourceInfo entry : getListing(future)) {
+
+                    if (entry.isDirectory()) {
+                        pending.add(entry.getPath());
+                    }
+                    else {
+                        files.add(entry);
+                    }
+                }
+
+                // Once enough files have been found, only the directories that may hold earlier files are listed.
+                if ((amount >= 0) && (files.size() >= amount)) {
+                    Collections.sort(files, PathOrder);
+                }
+            } // end while
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while walking=" + rootPath);
+        }
+        finally {
+
+            // Do not hand the channels back to the caller while listings are still using them.
+            for (; listing > 0; listing--) {
+
+                try {
+                    listings.take();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        Collections.sort(files, PathOrder);
+        return files;
+    } // end method walk
+
+    /**
+     * Returns <code>true</code> if the directory at the given <code>path</code> may hold a file that sorts before the
+     * first <code>amount</code> of the given <code>files</code>, i.e., if it still has to be listed.
+     *
+     * @param   path    The absolute remote path of the directory.
+     * @param   files   The files found so far, which must be sorted by their path once there are <code>amount</code>
+     *                  of them.
+     * @param   amount  The number of files wanted or a negative value to walk the whole tree.
+     *
+     * @return  <code>true</code> if the directory has to be listed; <code>false</code> otherwise.
+     */
+    static boolean mightPrecede(String path, List<RemoteResourceInfo> files, int amount) {
+
+        if ((amount < 0) || (files.size() < amount)) {
+            return true;
+        }
+
+        if (amount == 0) {
+            return false;
+        }
+
+        // Every path within the directory starts with this prefix and therefore sorts after it.
+        String prefix = path.endsWith("/") ? path : (path + "/");
+        return prefix.compareTo(files.get(amount - 1).getPath()) < 0;
+    }
+
+    /**
+     * Returns the result of a completed listing.
+     *
+     * @param   future  The completed listing.
+     *
+     * @return  The entries of the listed directory.
+     *
+     * @throws  IOException           If the directory could not be listed.
+     * @throws  InterruptedException  If the current thread has been interrupted.
+     */
+    private List<RemoteResourceInfo> getListing(Future<List<RemoteResourceInfo>> future) throws IOException,
+                                                                                                 InterruptedException {
+
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+
+            throw new IOException(e.getCause().toString());
+        }
+    }
+
+    /**
+     * Lists a single remote directory over a pooled channel.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/08
+     */
+    private class ListTask implements Callable<List<RemoteResourceInfo>> {
+
+        /** The absolute remote path of the directory. */
+        private String path;
+
+        /** The filter criteria used to match the entries. */
+        private RemoteResourceFilter filter;
+
+        /**
+         * Creates a new {@link ListTask} object.
+         *
+         * @param  path    The absolute remote path of the directory.
+         * @param  filter  The filter criteria used to match the entries.
+         */
+        public ListTask(String path, RemoteResourceFilter filter) {
+            this.path = path;
+            this.filter = filter;
+        }
+
+        /**
+         * @see  Callable#call()
+         */
+        @Override public List<RemoteResourceInfo> call() throws IOException {
+            SFTPClient sftp = pool.acquire();
+
+            try {
+                return sftp.ls(path, filter);
+            }
+            finally {
+                pool.release(sftp);
+            }
+        }
+    } // end class ListTask
+} // end class SFTPTreeWalker
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceLoader;
+import com.soeima.resources.jar.ZipArchiver;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Provides unit tests for the {@link SFTPArchiveResource}, reading remote archives in place.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/12
+ */
+public class SFTPArchiveResourceTest extends SFTPResourceTest {
+
+    /** The name of the remote <tt>ZIP</tt> archive. */
+    private static final String ZipName = "archive.zip";
+
+    /** The name of the remote <tt>tar</tt> archive. */
+    private static final String TarName = "archive.tar";
+
+    /**
+     * Creates a new {@link SFTPArchiveResourceTest} object.
+     */
+    public SFTPArchiveResourceTest() {
+        super();
+    }
+
+    /**
+     * Archives the test directory into the remote archives.
+     *
+     * @throws  IOException  If the <tt>tar</tt> archive cannot be written.
+     */
+    @BeforeClass public static void createArchives() throws IOException {
+        File zip = File.createTempFile("sftp-archive", ".zip");
+        ZipArchiver archiver = new ZipArchiver();
+        archiver.setPath(zip.getPath());
+        archiver.archive(getTestDirPath());
+
+        if (!zip.renameTo(new File(getTestDir(), ZipName))) {
+            throw new IOException("Cannot move test archive=" + zip);
+        }
+
+        String[] names = {
+            TEST_FILE_RESOURCE1,
+            Paths.join("a", "a", TEST_FILE_RESOURCE2),
+            Paths.join("c", TEST_FILE_RESOURCE2)
+        };
+        TarArchiveOutputStream os = new TarArchiveOutputStream(new FileOutputStream(new File(getTestDir(), TarName)));
+
+        try {
+
+            for (String name : names) {
+                File file = new File(getTestDir(), name);
+                os.putArchiveEntry(new TarArchiveEntry(file, Paths.normalize(name, '/')));
+                os.write(toByteArray(file));
+                os.closeArchiveEntry();
+            }
+        }
+        finally {
+            IOUtil.close(os);
+        }
+    } // end method createArchives
+
+    /**
+     * Tests reading the entries of a remote <tt>ZIP</tt> archive.
+     *
+     * @throws  IOException  If the contents cannot be compared.
+     */
+    @Test public void testRemoteZip() throws IOException {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(Paths.join(getResourcePath(), '/', ZipName));
+
+        String relativePath = Paths.join("a", "a", TEST_FILE_RESOURCE2);
+        Resource resource = rl.getResource(Paths.normalize(relativePath, '/'));
+        assertNotNull(resource);
+        assertTrue(resource instanceof SFTPArchiveResource);
+        assertEquals("jar:" + toSafeURL(Paths.join(getResourcePath(), '/', ZipName)) + "!/a/a/" + TEST_FILE_RESOURCE2,
+                     resource.getURI().toASCIIString());
+        assertContents(relativePath, resource);
+        assertNull(rl.getResource("foo"));
+
+        rl.setRecursionType(RecursionType.Recursive);
+
+        List<Resource> resources = rl.getResourcesForExtension("file");
+        assertEquals(7, resources.size());
+
+        for (Resource r : resources) {
+            assertContents(Strings.substringAfter(r.getURI().toASCIIString(), "!/"), r);
+        }
+    }
+
+    /**
+     * Tests reading the entries of a remote <tt>tar</tt> archive.
+     *
+     * @throws  IOException  If the contents cannot be compared.
+     */
+    @Test public void testRemoteTar() throws IOException {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(Paths.join(getResourcePath(), '/', TarName));
+
+        String relativePath = Paths.join("c", TEST_FILE_RESOURCE2);
+        Resource resource = rl.getResource(Paths.normalize(relativePath, '/'));
+        assertNotNull(resource);
+        assertTrue(resource instanceof SFTPArchiveResource);
+        assertTrue(resource.getURI().toASCIIString().startsWith("tar:sftp:"));
+        assertContents(relativePath, resource);
+        assertNotNull(rl.getResource(TEST_FILE_RESOURCE1));
+        assertNull(rl.getResource(TEST_FILE_RESOURCE2));
+    }
+
+    /**
+     * Asserts that the contents of the given <code>resource</code> match those of the local test file at the given
+     * <code>relativePath</code>.
+     *
+     * @param   relativePath  The path of the local test file.
+     * @param   resource      The resource.
+     *
+     * @throws  IOException  If the contents cannot be compared.
+     */
+    private static void assertContents(String relativePath, Resource resource) throws IOException {
+        InputStream is = resource.getInputStream();
+        assertNotNull(is);
+
+        try {
+            assertArrayEquals(toByteArray(new File(getTestDir(), relativePath)), IOUtil.toByteArray(is));
+        }
+        finally {
+            IOUtil.close(is);
+        }
+    }
+} // end class SFTPArchiveResourceTest
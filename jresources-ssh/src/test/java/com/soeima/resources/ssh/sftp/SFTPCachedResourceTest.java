@@ -0,0 +1,214 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.ResourceLoader;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Runs the {@link SFTPResource} unit tests with the remote directory listings being cached.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/02
+ */
+public class SFTPCachedResourceTest extends SFTPResourceTest {
+
+    /** The name of the file added to the remote tree by the tests. */
+    private static final String AddedName = "added.file";
+
+    /** The remote tree changed by the tests, which is kept apart from the tree the other tests share. */
+    private File tree;
+
+    /** The directory of the remote tree the tests never change. */
+    private File kept;
+
+    /** The directory of the remote tree to which the tests add a file. */
+    private File changed;
+
+    /**
+     * Creates a new {@link SFTPCachedResourceTest} object.
+     */
+    public SFTPCachedResourceTest() {
+        super();
+    }
+
+    /**
+     * Creates the remote tree changed by the tests.
+     *
+     * @throws  IOException  If the tree cannot be written.
+     */
+    @Before public void createTree() throws IOException {
+        tree = new File(getTestDir().getParentFile(), "sftp-cache-test");
+        kept = new File(tree, "kept");
+        changed = new File(tree, "changed");
+        kept.mkdirs();
+        changed.mkdirs();
+        write(new File(kept, TEST_FILE_RESOURCE1));
+        write(new File(changed, TEST_FILE_RESOURCE2));
+    }
+
+    /**
+     * Deletes the remote tree changed by the tests.
+     */
+    @After public void deleteTree() {
+        delete(tree);
+    }
+
+    /**
+     * Tests that the listings are served from the cache until their time to live expires, and that a change to the
+     * remote tree is picked up by the first lookup made after that.
+     *
+     * @throws  Exception  If the remote tree cannot be changed.
+     */
+    @Test(timeout = 10000)
+    public void testExpiry() throws Exception {
+        long ttl = 1000;
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(toResourcePath(tree.getPath()) + "?" + SFTPOptions.CacheTTL + "=" + ttl + "&"
+                   + SFTPOptions.CacheRefresh + "=false");
+
+        long listed = System.currentTimeMillis();
+        assertNull(rl.getResource(Paths.join("changed", '/', AddedName)));
+        addFile();
+
+        // The listings cannot be stale before the time to live has elapsed since they were first fetched.
+        if ((System.currentTimeMillis() - listed) < ttl) {
+            assertNull(rl.getResource(Paths.join("changed", '/', AddedName)));
+        }
+
+        Thread.sleep(ttl + 100);
+        assertNotNull(rl.getResource(Paths.join("changed", '/', AddedName)));
+    }
+
+    /**
+     * Tests that the listings are revalidated by a background thread, the lookups themselves never refreshing them.
+     *
+     * @throws  Exception  If the remote tree cannot be changed.
+     */
+    @Test(timeout = 10000)
+    public void testBackgroundRefresh() throws Exception {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(toResourcePath(tree.getPath()) + "?" + SFTPOptions.CacheTTL + "=200&" + SFTPOptions.CacheRefresh
+                   + "=true");
+        assertNull(rl.getResource(Paths.join("changed", '/', AddedName)));
+        addFile();
+
+        while (rl.getResource(Paths.join("changed", '/', AddedName)) == null) {
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * Tests that a revalidation only lists again the directories whose modification time has changed, the listings of
+     * the others being kept as they are.
+     *
+     * @throws  IOException  If the remote tree cannot be listed or changed.
+     */
+    @Test public void testRevalidation() throws IOException {
+        String rootPath = Paths.leadingSlash(tree.getPath(), '/');
+        String keptPath = Paths.join(rootPath, '/', kept.getName());
+        String changedPath = Paths.join(rootPath, '/', changed.getName());
+        SFTPDirectoryCache cache =
+            new SFTPDirectoryCache(new SFTPPathItem(toResourcePath(tree.getPath())), rootPath, 60000, false);
+
+        Object root = cache.ls(rootPath, null).get(0);
+        Object keptFile = cache.ls(keptPath, null).get(0);
+        assertEquals(1, cache.ls(changedPath, null).size());
+
+        addFile();
+        cache.refresh(true);
+
+        assertSame(root, cache.ls(rootPath, null).get(0));
+        assertSame(keptFile, cache.ls(keptPath, null).get(0));
+        assertEquals(2, cache.ls(changedPath, null).size());
+    }
+
+    /**
+     * Adds a file to the {@link #changed} directory and moves the modification time of the directory forward, so that
+     * the change shows even with the one second resolution of the remote modification times.
+     *
+     * @throws  IOException  If the file cannot be written.
+     */
+    private void addFile() throws IOException {
+        write(new File(changed, AddedName));
+        changed.setLastModified(changed.lastModified() + 10000);
+    }
+
+    /**
+     * Writes the given <code>file</code>, its contents being its name.
+     *
+     * @param   file  The file.
+     *
+     * @throws  IOException  If the file cannot be written.
+     */
+    private static void write(File file) throws IOException {
+        FileOutputStream os = new FileOutputStream(file);
+
+        try {
+            os.write(file.getName().getBytes());
+        }
+        finally {
+            IOUtil.close(os);
+        }
+    }
+
+    /**
+     * Recursively deletes the given <code>file</code>.
+     *
+     * @param  file  The file or directory to delete.
+     */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+
+            for (File child : files) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * @see  AbstractResourceTest#toSafeURL(String)
+     */
+    @Override protected String toSafeURL(String path) {
+        return super.toSafeURL(Strings.substringBefore(path, "?"));
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return super.getResourcePath() + "?" + SFTPOptions.CacheTTL + "=60000";
+    }
+} // end class SFTPCachedResourceTest
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.ssh.util.SSHUtil;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs the {@link SFTPResource} unit tests with the remote tree being listed by a remote command.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/10
+ */
+public class SFTPExecResourceTest extends SFTPResourceTest {
+
+    /**
+     * Creates a new {@link SFTPExecResourceTest} object.
+     */
+    public SFTPExecResourceTest() {
+        super();
+    }
+
+    /**
+     * Tests that the remote tree is listed by the remote command rather than walked over <tt>SFTP</tt>.
+     *
+     * @throws  IOException  If an error occurs while listing the remote tree.
+     */
+    @Test public void testExecListing() throws IOException {
+        String rootPath = Paths.leadingSlash(getTestDirPath(), '/');
+        SSHClient ssh = new SFTPPathItem(getResourcePath()).connect();
+
+        try {
+            ExecLister lister = ExecLister.list(ssh, rootPath, 30);
+            assertNotNull(lister);
+            assertTrue(lister.getDirectories().contains(rootPath));
+
+            List<RemoteResourceInfo> entries = lister.ls(Paths.join(rootPath, '/', "a", "a"), null);
+            assertEquals(2, entries.size());
+
+            for (RemoteResourceInfo entry : entries) {
+                assertTrue(entry.getName().endsWith(".file"));
+                assertTrue(entry.getAttributes().getSize() > 0);
+            }
+        }
+        finally {
+            SSHUtil.close(ssh);
+        }
+    }
+
+    /**
+     * @see  AbstractResourceTest#toSafeURL(String)
+     */
+    @Override protected String toSafeURL(String path) {
+        return super.toSafeURL(Strings.substringBefore(path, "?"));
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return super.getResourcePath() + "?" + SFTPOptions.Listing + "=exec";
+    }
+} // end class SFTPExecResourceTest
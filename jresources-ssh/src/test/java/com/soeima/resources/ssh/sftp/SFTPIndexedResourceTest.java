@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.ResourceLoader;
+import com.soeima.resources.index.ResourceIndexGenerator;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Runs the {@link SFTPResource} unit tests with the lookups being answered from a published index file.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/11
+ */
+public class SFTPIndexedResourceTest extends SFTPResourceTest {
+
+    /**
+     * Creates a new {@link SFTPIndexedResourceTest} object.
+     */
+    public SFTPIndexedResourceTest() {
+        super();
+    }
+
+    /**
+     * Publishes the index of the remote tree.
+     */
+    @BeforeClass public static void generateIndex() {
+        ResourceIndexGenerator.generate(getTestDir());
+    }
+
+    /**
+     * Tests that the lookups only see the files listed by the index, which is downloaded again once it changes.
+     *
+     * @throws  IOException  If the remote file cannot be created.
+     */
+    @Test public void testIndexRefresh() throws IOException {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(getResourcePath());
+
+        String relativePath = Paths.join("d", "unindexed.file");
+        File remoteFile = new File(Paths.join(getTestDirPath(), relativePath));
+        FileOutputStream os = new FileOutputStream(remoteFile);
+
+        try {
+            os.write("File with contents: unindexed.file".getBytes("UTF-8"));
+        }
+        finally {
+            IOUtil.close(os);
+        }
+
+        try {
+            assertNull(rl.getResource(relativePath));
+
+            ResourceIndexGenerator.generate(getTestDir());
+            assertNotNull(rl.getResource(relativePath));
+        }
+        finally {
+            remoteFile.delete();
+            ResourceIndexGenerator.generate(getTestDir());
+        }
+    }
+
+    /**
+     * @see  AbstractResourceTest#toSafeURL(String)
+     */
+    @Override protected String toSafeURL(String path) {
+        return super.toSafeURL(Strings.substringBefore(path, "?"));
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return super.getResourcePath() + "?" + SFTPOptions.Index + "=true";
+    }
+} // end class SFTPIndexedResourceTest
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceLoader;
+import com.soeima.resources.util.Paths;
+import com.soeima.resources.util.Strings;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Runs the {@link SFTPResource} unit tests with the remote files being mirrored locally.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/09
+ */
+public class SFTPMirroredResourceTest extends SFTPResourceTest {
+
+    /** The local mirror directory. */
+    private static final File mirrorDir = new File(System.getProperty("java.io.tmpdir"), "sftp-mirror-test");
+
+    /**
+     * Creates a new {@link SFTPMirroredResourceTest} object.
+     */
+    public SFTPMirroredResourceTest() {
+        super();
+    }
+
+    /**
+     * Deletes the local mirror directory.
+     */
+    @AfterClass public static void deleteMirror() {
+
+        for (File file : mirrorDir.listFiles()) {
+            file.delete();
+        }
+
+        mirrorDir.delete();
+    }
+
+    /**
+     * Tests that a remote file that changes is mirrored again.
+     *
+     * @throws  IOException  If the remote file cannot be changed.
+     */
+    @Test public void testMirrorRevalidation() throws IOException {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(getResourcePath());
+        Resource resource = rl.getResource(TEST_FILE_RESOURCE1);
+        assertNotNull(resource);
+
+        File remoteFile = new File(Paths.join(getTestDirPath(), TEST_FILE_RESOURCE1));
+        byte[] original = toByteArray(remoteFile);
+        assertArrayEquals(original, resource.getBytes());
+        int mirrored = mirrorDir.listFiles().length;
+
+        try {
+            write(remoteFile, "Changed contents");
+            assertArrayEquals(toByteArray(remoteFile), resource.getBytes());
+
+            // The copy of the previous version has been replaced.
+            assertEquals(mirrored, mirrorDir.listFiles().length);
+        }
+        finally {
+            write(remoteFile, new String(original, "UTF-8"));
+        }
+    }
+
+    /**
+     * Overwrites the given local <code>file</code> with the given <code>contents</code>.
+     *
+     * @param   file      The file to overwrite.
+     * @param   contents  The new contents.
+     *
+     * @throws  IOException  If the file cannot be written.
+     */
+    private static void write(File file, String contents) throws IOException {
+        FileOutputStream os = new FileOutputStream(file);
+
+        try {
+            os.write(contents.getBytes("UTF-8"));
+        }
+        finally {
+            os.close();
+        }
+    }
+
+    /**
+     * @see  AbstractResourceTest#toSafeURL(String)
+     */
+    @Override protected String toSafeURL(String path) {
+        return super.toSafeURL(Strings.substringBefore(path, "?"));
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return super.getResourcePath() + "?" + SFTPOptions.Mirror + "=" + mirrorDir.getAbsolutePath();
+    }
+} // end class SFTPMirroredResourceTest
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.ssh.sftp;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.util.Strings;
+
+/**
+ * Runs the {@link SFTPResource} unit tests with the remote files being read ahead.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/06
+ */
+public class SFTPReadAheadResourceTest extends SFTPResourceTest {
+
+    /**
+     * Creates a new {@link SFTPReadAheadResourceTest} object.
+     */
+    public SFTPReadAheadResourceTest() {
+        super();
+    }
+
+    /**
+     * @see  AbstractResourceTest#toSafeURL(String)
+     */
+    @Override protected String toSafeURL(String path) {
+        return super.toSafeURL(Strings.substringBefore(path, "?"));
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return super.getResourcePath() + "?" + SFTPOptions.ReadAhead + "=8&" + SFTPOptions.ReadAheadWindow + "=4";
+    }
+} // end class SFTPReadAheadResourceTest
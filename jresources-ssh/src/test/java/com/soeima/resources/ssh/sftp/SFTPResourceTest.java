@@ -18,10 +18,26 @@
 package com.soeima.resources.ssh.sftp;
 
 import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
+import com.soeima.resources.ResourceLoader;
+import com.soeima.resources.util.IOUtil;
 import com.soeima.resources.util.Paths;
 import com.soeima.resources.util.Strings;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Provides unit tests for the {@link SFTPResource}.
@@ -76,6 +92,17 @@ public class SFTPResourceTest extends AbstractResourceTest {
      * @see  AbstractResourceTest#getResourcePath()
      */
     @Override protected String getResourcePath() {
+        return toResourcePath(getTestDirPath());
+    }
+
+    /**
+     * Returns the search path of the given local directory, as served by the <tt>SSH</tt> test server.
+     *
+     * @param   dirPath  The path of the local directory.
+     *
+     * @return  The search path of the directory, without any options.
+     */
+    protected static String toResourcePath(String dirPath) {
         StringBuilder sb = new StringBuilder();
         sb.append("sftp://");
         sb.append(sshServer.getUser());
@@ -84,7 +111,156 @@ public class SFTPResourceTest extends AbstractResourceTest {
         sb.append("@localhost");
         sb.append(':');
         sb.append(sshServer.getPort());
-        sb.append(Paths.leadingSlash(getTestDirPath(), '/'));
+        sb.append(Paths.leadingSlash(dirPath, '/'));
         return sb.toString();
     }
+
+    /**
+     * Tests downloading a resource in segments over several channels.
+     *
+     * @throws  IOException  If the downloaded contents cannot be compared.
+     */
+    @Test public void testSegmentedDownload() throws IOException {
+        String resourcePath = getResourcePath();
+        resourcePath += (resourcePath.contains("?") ? "&" : "?") + SFTPOptions.DownloadSegmentSize + "=4&"
+            + SFTPOptions.DownloadParallelism + "=3";
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(resourcePath);
+        String relativePath = Paths.join("a", "a", TEST_FILE_RESOURCE2);
+        Resource resource = rl.getResource(relativePath);
+        assertNotNull(resource);
+        assertTrue(resource instanceof SFTPResource);
+
+        byte[] expected = toByteArray(new File(Paths.join(getTestDirPath(), relativePath)));
+        assertArrayEquals(expected, resource.getBytes());
+
+        File file = File.createTempFile("sftp-download", ".file");
+
+        try {
+            ((SFTPResource)resource).download(file);
+            assertArrayEquals(expected, toByteArray(file));
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests downloading a resource with a segment size too large to be counted in an <code>int</code>.
+     *
+     * @throws  IOException  If the downloaded contents cannot be compared.
+     */
+    @Test public void testHugeSegmentSize() throws IOException {
+        String resourcePath = getResourcePath();
+        resourcePath += (resourcePath.contains("?") ? "&" : "?") + SFTPOptions.DownloadSegmentSize + "="
+            + Long.MAX_VALUE;
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(resourcePath);
+        String relativePath = Paths.join("a", "a", TEST_FILE_RESOURCE2);
+        Resource resource = rl.getResource(relativePath);
+        assertNotNull(resource);
+        assertArrayEquals(toByteArray(new File(Paths.join(getTestDirPath(), relativePath))), resource.getBytes());
+    }
+
+    /**
+     * Tests that the resources sharing a name are found in the same order whether the remote tree is walked one
+     * directory at a time, several directories at a time or through the directory cache.
+     */
+    @Test public void testWalkOrder() {
+        List<String> expected = getRelativePaths(getResourcePath());
+        assertEquals(3, expected.size());
+        assertEquals(Paths.join("a", '/', "a", TEST_FILE_RESOURCE2), expected.get(0));
+
+        for (String option : new String[] {SFTPOptions.WalkParallelism + "=1", SFTPOptions.WalkParallelism + "=8",
+                                           SFTPOptions.CacheTTL + "=60000"}) {
+            String resourcePath = getResourcePath();
+            resourcePath += (resourcePath.contains("?") ? "&" : "?") + option;
+            assertEquals(option, expected, getRelativePaths(resourcePath));
+        }
+    }
+
+    /**
+     * Tests that a recursive lookup of a name held by several directories always finds the one whose path sorts first,
+     * however the listings of the walk happen to complete.
+     */
+    @Test public void testRecursiveLookupOrder() {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(getResourcePath());
+        rl.setRecursionType(RecursionType.Recursive);
+
+        for (int i = 0; i < 10; i++) {
+            Resource resource = rl.getResource(TEST_FILE_RESOURCE2);
+            assertNotNull(resource);
+            assertEquals(Paths.join("a", '/', "a", TEST_FILE_RESOURCE2), ((SFTPResource)resource).getRelativePath());
+        }
+    }
+
+    /**
+     * Tests that a non-recursive lookup, which fetches the attributes of the remote path directly, never finds a file
+     * outside of the remote tree.
+     *
+     * @throws  IOException  If the file outside of the remote tree cannot be written.
+     */
+    @Test public void testStat() throws IOException {
+        File outside = new File(getTestDir().getParentFile(), "sftp-outside.file");
+        FileOutputStream os = new FileOutputStream(outside);
+
+        try {
+            os.write("outside".getBytes());
+            os.close();
+
+            ResourceLoader rl = new ResourceLoader();
+            rl.addPath(getResourcePath());
+            assertNotNull(rl.getResource(Paths.join("c", '/', TEST_FILE_RESOURCE2)));
+            assertNull(rl.getResource("missing.file"));
+            assertNull(rl.getResource("../" + outside.getName()));
+            assertNull(rl.getResource("a/../../" + outside.getName()));
+        }
+        finally {
+            IOUtil.close(os);
+            outside.delete();
+        }
+    }
+
+    /**
+     * Returns the relative paths of all of the resources named {@link #TEST_FILE_RESOURCE2} found recursively under the
+     * given <code>resourcePath</code>, in the order in which they are found.
+     *
+     * @param   resourcePath  The search path.
+     *
+     * @return  The relative paths of the resources.
+     */
+    private static List<String> getRelativePaths(String resourcePath) {
+        ResourceLoader rl = new ResourceLoader();
+        rl.addPath(resourcePath);
+        rl.setRecursionType(RecursionType.Recursive);
+
+        List<String> relativePaths = new ArrayList<String>();
+
+        for (Resource resource : rl.getResources(TEST_FILE_RESOURCE2)) {
+            relativePaths.add(((SFTPResource)resource).getRelativePath());
+        }
+
+        return relativePaths;
+    }
+
+    /**
+     * Returns the contents of the given local <code>file</code>.
+     *
+     * @param   file  The local file.
+     *
+     * @return  The contents of the <code>file</code>.
+     *
+     * @throws  IOException  If the <code>file</code> cannot be read.
+     */
+    protected static byte[] toByteArray(File file) throws IOException {
+        FileInputStream is = new FileInputStream(file);
+
+        try {
+            return IOUtil.toByteArray(is);
+        }
+        finally {
+            IOUtil.close(is);
+        }
+    }
 } // end class SFTPResourceTest
@@ -21,18 +21,23 @@ import com.soeima.resources.util.Paths;
 import org.apache.sshd.SshServer;
 import org.apache.sshd.common.NamedFactory;
 import org.apache.sshd.server.Command;
+import org.apache.sshd.server.CommandFactory;
 import org.apache.sshd.server.PasswordAuthenticator;
 import org.apache.sshd.server.command.ScpCommandFactory;
 import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
 import org.apache.sshd.server.session.ServerSession;
 import org.apache.sshd.server.sftp.SftpSubsystem.Factory;
 import org.apache.sshd.server.shell.ProcessShellFactory;
+import org.apache.sshd.server.shell.ProcessShellFactory.TtyOptions;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.EnumSet;
 
 /**
  * Provides a simple <tt>SSH</tt> based on <a href="http://mina.apache.org/sshd/">Apache Mina SSHD</a>.
  *
+ * <p>Besides <tt>SFTP</tt>, the server runs the commands it is sent through <code>/bin/sh</code>.</p>
+ *
  * <p>Note that this server is used only for unit test purposes.</p>
  *
  * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
@@ -118,7 +123,19 @@ public class SSHTestServer {
                                                         "-i",
                                                         "-l"
                                                     }));
-        ssh.setCommandFactory(new ScpCommandFactory());
+        ssh.setCommandFactory(new ScpCommandFactory(new CommandFactory() {
+
+                    /**
+                     * @see  CommandFactory#createCommand(String)
+                     */
+                    @Override public Command createCommand(String command) {
+                        return new ProcessShellFactory(new String[] {
+                                                           "/bin/sh",
+                                                           "-c",
+                                                           command
+                                                       }, EnumSet.noneOf(TtyOptions.class)).create();
+                    }
+                }));
     } // end method init
 
     /**
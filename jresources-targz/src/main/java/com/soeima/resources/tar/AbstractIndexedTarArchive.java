@@ -0,0 +1,233 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.archive.cache.ArchiveEntry;
+import com.soeima.resources.compress.AbstractCompressArchive;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.utils.CountingInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides common base functionality for compressed <tt>tar</tt> {@link Archive archives} whose contents can be
+ * decompressed starting from positions other than their start.
+ *
+ * <p>While the archive is read from its start, the position of the data of each entry is recorded. A single entry is
+ * then read by decompressing the archive from the position of its data rather than from the start.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public abstract class AbstractIndexedTarArchive extends AbstractCompressArchive {
+
+    /** The size of the records of the <tt>tar</tt> archive. */
+    private static final int RecordSize = 512;
+
+    /** The position, within the <tt>tar</tt> archive, of the data of the entries read so far according to their name. */
+    private Map<String, Long> offsets;
+
+    /**
+     * Creates a new {@link AbstractIndexedTarArchive} object.
+     *
+     * @param  path  The path to the compressed <tt>tar</tt> archive.
+     */
+    public AbstractIndexedTarArchive(String path) {
+        super(path);
+        offsets = new ConcurrentHashMap<String, Long>();
+    }
+
+    /**
+     * @see  AbstractCompressArchive#newArchiveInputStream(InputStream)
+     */
+    @Override protected ArchiveInputStream newArchiveInputStream(InputStream is) {
+        return new IndexingTarInputStream(new CountingInputStream(newDecompressingInputStream(is)));
+    }
+
+    /**
+     * Returns a new input stream which decompresses the whole <tt>tar</tt> archive from the given <code>is</code>.
+     *
+     * @param   is  The compressed archive.
+     *
+     * @return  A new input stream over the <tt>tar</tt> archive.
+     */
+    protected abstract InputStream newDecompressingInputStream(InputStream is);
+
+    /**
+     * Returns a new input stream over the <tt>tar</tt> archive starting at the given <code>offset</code>, which only
+     * needs to decompress the data up to <code>offset + size</code>.
+     *
+     * @param   offset  The position of the first byte to read within the <tt>tar</tt> archive.
+     * @param   size    The number of bytes that are going to be read.
+     *
+     * @return  A new input stream positioned at the given <code>offset</code> or <code>null</code> if the archive
+     *          cannot be read from that position yet.
+     *
+     * @throws  IOException  If the archive cannot be read.
+     */
+    protected abstract InputStream newInputStream(long offset, long size) throws IOException;
+
+    /**
+     * Reads the data of the given <code>entry</code> straight from its position when it has already been recorded,
+     * otherwise reads the archive from its start.
+     *
+     * @see  AbstractCompressArchive#getInputStream(ArchiveEntry)
+     */
+    @Override public InputStream getInputStream(ArchiveEntry entry) {
+        Long offset = offsets.get(entry.getName());
+
+        if (offset != null) {
+
+            try {
+                InputStream is = newInputStream(offset, entry.size());
+
+                if (is != null) {
+                    return new EntryInputStream(is, entry.size());
+                }
+            }
+            catch (IOException e) {
+            }
+        }
+
+        return super.getInputStream(entry);
+    }
+
+    /**
+     * A <tt>tar</tt> input stream which records the position of the data of each entry it reads.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private class IndexingTarInputStream extends TarArchiveInputStream {
+
+        /** Counts the bytes of the <tt>tar</tt> archive read so far. */
+        private CountingInputStream counter;
+
+        /**
+         * Creates a new {@link IndexingTarInputStream} object. Both the blocks and records are kept to a single record,
+         * so that the counted bytes end exactly at the data of the entry last read.
+         *
+         * @param  counter  The <tt>tar</tt> archive.
+         */
+        public IndexingTarInputStream(CountingInputStream counter) {
+            super(counter, RecordSize, RecordSize);
+            this.counter = counter;
+        }
+
+        /**
+         * @see  TarArchiveInputStream#getNextTarEntry()
+         */
+        @Override public TarArchiveEntry getNextTarEntry() throws IOException {
+            TarArchiveEntry entry = super.getNextTarEntry();
+
+            if ((entry != null) && !entry.isDirectory()) {
+                offsets.put(entry.getName(), counter.getBytesRead());
+            }
+
+            return entry;
+        }
+    } // end class IndexingTarInputStream
+
+    /**
+     * Reads the data of a single entry and closes the underlying stream once closed itself.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private static class EntryInputStream extends FilterInputStream {
+
+        /** The number of bytes of the entry left to read. */
+        private long remaining;
+
+        /**
+         * Creates a new {@link EntryInputStream} object.
+         *
+         * @param  is    The stream positioned at the data of the entry.
+         * @param  size  The size of the entry.
+         */
+        public EntryInputStream(InputStream is, long size) {
+            super(is);
+            remaining = size;
+        }
+
+        /**
+         * @see  FilterInputStream#read()
+         */
+        @Override public int read() throws IOException {
+
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int b = super.read();
+
+            if (b >= 0) {
+                remaining--;
+            }
+
+            return b;
+        }
+
+        /**
+         * @see  FilterInputStream#read(byte[], int, int)
+         */
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int n = super.read(b, off, (int)Math.min(len, remaining));
+
+            if (n > 0) {
+                remaining -= n;
+            }
+
+            return n;
+        }
+
+        /**
+         * @see  FilterInputStream#skip(long)
+         */
+        @Override public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        /**
+         * @see  FilterInputStream#available()
+         */
+        @Override public int available() throws IOException {
+            return (int)Math.min(super.available(), remaining);
+        }
+
+        /**
+         * @see  FilterInputStream#markSupported()
+         */
+        @Override public boolean markSupported() {
+            return false;
+        }
+    } // end class EntryInputStream
+} // end class AbstractIndexedTarArchive
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import com.soeima.resources.util.IOUtil;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * A single compressed block of a <tt>bzip2</tt> stream. The blocks of a <tt>bzip2</tt> stream do not depend on each
+ * other, so each block can be decompressed on its own by wrapping it into a stream of its own.
+ *
+ * <p>Blocks are not aligned on byte boundaries, so the bits of a block are shifted to start at the first bit of its
+ * {@link #getData() data}.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class BZip2Block {
+
+    /** The 48-bit magic number that starts each block. */
+    public static final long BlockMagic = 0x314159265359L;
+
+    /** The 48-bit magic number that ends each stream. */
+    public static final long EndMagic = 0x177245385090L;
+
+    /** The number of bits of the magic numbers. */
+    public static final int MagicBits = 48;
+
+    /** The position, in bits from the start of the compressed input, at which this block starts. */
+    private long bitOffset;
+
+    /** The number of bits of this block. */
+    private long bitLength;
+
+    /** The bits of this block, starting with its magic number. */
+    private byte[] data;
+
+    /** The block size level of the stream containing this block, from <code>1</code> to <code>9</code>. */
+    private int level;
+
+    /**
+     * Creates a new {@link BZip2Block} object.
+     *
+     * @param  bitOffset  The position, in bits from the start of the compressed input, at which the block starts.
+     * @param  bitLength  The number of bits of the block.
+     * @param  data       The bits of the block, starting with its magic number.
+     * @param  level      The block size level of the stream containing the block.
+     */
+    public BZip2Block(long bitOffset, long bitLength, byte[] data, int level) {
+        this.bitOffset = bitOffset;
+        this.bitLength = bitLength;
+        this.data = data;
+        this.level = level;
+    }
+
+    /**
+     * Returns the position, in bits from the start of the compressed input, at which this block starts.
+     *
+     * @return  The position of this block.
+     */
+    public long getBitOffset() {
+        return bitOffset;
+    }
+
+    /**
+     * Returns the number of bits of this block.
+     *
+     * @return  The number of bits of this block.
+     */
+    public long getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Returns the bits of this block, starting with its magic number. Any bits past the {@link #getBitLength() length}
+     * of the block in the last byte are undefined.
+     *
+     * @return  The bits of this block.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the block size level of the stream containing this block.
+     *
+     * @return  The block size level, from <code>1</code> to <code>9</code>.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns a new block made of this block immediately followed by the given <code>next</code> block. Blocks are
+     * found by looking for their magic number, which the compressed bits of a block may happen to contain as well, so
+     * a block that fails to decompress is merged with the one that follows it.
+     *
+     * @param   next  The block that immediately follows this one.
+     *
+     * @return  The merged block.
+     */
+    public BZip2Block append(BZip2Block next) {
+        long length = bitLength + next.bitLength;
+        byte[] merged = new byte[(int)((length + 7) / 8)];
+        System.arraycopy(data, 0, merged, 0, (int)(bitLength / 8));
+        copyBits(data, bitLength - (bitLength % 8), merged, bitLength - (bitLength % 8), bitLength % 8);
+        copyBits(next.data, 0, merged, bitLength, next.bitLength);
+        return new BZip2Block(bitOffset, length, merged, level);
+    }
+
+    /**
+     * Decompresses this block.
+     *
+     * @return  The decompressed contents of this block.
+     *
+     * @throws  IOException  If the block is not well formed.
+     */
+    public byte[] decompress() throws IOException {
+
+        // A stream holding this single block: its header, the block and the end of stream marker followed by the CRC
+        // of the stream, which for a single block is the CRC of the block itself.
+        long length = 32 + bitLength + MagicBits + 32;
+        byte[] stream = new byte[(int)((length + 7) / 8)];
+        stream[0] = 'B';
+        stream[1] = 'Z';
+        stream[2] = 'h';
+        stream[3] = (byte)('0' + level);
+        System.arraycopy(data, 0, stream, 4, (int)(bitLength / 8));
+
+        long position = 32 + bitLength;
+        copyBits(data, bitLength - (bitLength % 8), stream, position - (bitLength % 8), bitLength % 8);
+        writeBits(stream, position, EndMagic, MagicBits);
+        writeBits(stream, position + MagicBits, readBits(data, MagicBits, 32), 32);
+
+        return IOUtil.toByteArray(new BZip2CompressorInputStream(new ByteArrayInputStream(stream)));
+    }
+
+    /**
+     * Reads <code>count</code> bits, most significant first, starting at the given bit <code>position</code> of the
+     * <code>buffer</code>.
+     *
+     * @param   buffer    The buffer.
+     * @param   position  The position of the first bit.
+     * @param   count     The number of bits to read, at most <code>64</code>.
+     *
+     * @return  The bits read.
+     */
+    private static long readBits(byte[] buffer, long position, int count) {
+        long value = 0;
+
+        for (int i = 0; i < count; i++) {
+            long bit = position + i;
+            value = (value << 1) | ((buffer[(int)(bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+        }
+
+        return value;
+    }
+
+    /**
+     * Writes the <code>count</code> low bits of the given <code>value</code>, most significant first, starting at the
+     * given bit <code>position</code> of the <code>buffer</code>.
+     *
+     * @param  buffer    The buffer.
+     * @param  position  The position of the first bit.
+     * @param  value     The bits to write.
+     * @param  count     The number of bits to write, at most <code>64</code>.
+     */
+    private static void writeBits(byte[] buffer, long position, long value, int count) {
+
+        for (int i = 0; i < count; i++) {
+            long bit = position + i;
+            int index = (int)(bit >>> 3);
+            int mask = 0x80 >>> (bit & 7);
+
+            if (((value >>> (count - 1 - i)) & 1) != 0) {
+                buffer[index] |= mask;
+            }
+            else {
+                buffer[index] &= ~mask;
+            }
+        }
+    }
+
+    /**
+     * Copies <code>count</code> bits from the <code>source</code>, starting at bit <code>sourcePosition</code>, to the
+     * <code>target</code>, starting at bit <code>targetPosition</code>.
+     *
+     * @param  source          The source buffer.
+     * @param  sourcePosition  The position of the first bit to copy.
+     * @param  target          The target buffer.
+     * @param  targetPosition  The position of the first bit to write.
+     * @param  count           The number of bits to copy.
+     */
+    private static void copyBits(byte[] source, long sourcePosition, byte[] target, long targetPosition, long count) {
+
+        for (long copied = 0; copied < count;) {
+            int n = (int)Math.min(56, count - copied);
+            writeBits(target, targetPosition + copied, readBits(source, sourcePosition + copied, n), n);
+            copied += n;
+        }
+    }
+} // end class BZip2Block
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records where each block of a <tt>bzip2</tt> file starts, both within the compressed file and within the
+ * decompressed data, so that the data at any decompressed position can later be read by decompressing the file from
+ * the block containing it rather than from its start.
+ *
+ * <p>Blocks are recorded in order as the file is decompressed, so the index covers the decompressed data up to the
+ * last block decompressed so far.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class BZip2BlockIndex {
+
+    /** The recorded blocks, in order. */
+    private List<IndexedBlock> blocks;
+
+    /** The number of decompressed bytes covered by the recorded blocks. */
+    private long length;
+
+    /**
+     * Creates a new {@link BZip2BlockIndex} object.
+     */
+    public BZip2BlockIndex() {
+        blocks = new ArrayList<IndexedBlock>();
+    }
+
+    /**
+     * Records the given <code>block</code>, unless it does not directly follow the blocks recorded so far.
+     *
+     * @param  block   The decompressed block.
+     * @param  offset  The position, within the decompressed data, of the first byte of the block.
+     * @param  size    The number of decompressed bytes of the block.
+     */
+    public synchronized void add(BZip2Block block, long offset, long size) {
+
+        if ((offset == length) && (size > 0)) {
+            blocks.add(new IndexedBlock(block.getBitOffset(), block.getLevel(), offset));
+            length += size;
+        }
+    }
+
+    /**
+     * Returns the recorded block containing the decompressed byte at the given <code>offset</code>.
+     *
+     * @param   offset  The position within the decompressed data.
+     *
+     * @return  The block or <code>null</code> if the position is not covered by the recorded blocks.
+     */
+    public synchronized IndexedBlock find(long offset) {
+
+        if ((offset < 0) || (offset >= length)) {
+            return null;
+        }
+
+        int low = 0;
+        int high = blocks.size() - 1;
+
+        // Find the last block starting at or before the offset.
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if (blocks.get(middle).getOffset() <= offset) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+
+        return blocks.get(low);
+    }
+
+    /**
+     * Returns the number of recorded blocks holding the decompressed bytes between the given positions.
+     *
+     * @param   from  The position, within the decompressed data, of the first byte.
+     * @param   to    The position, within the decompressed data, right after the last byte.
+     *
+     * @return  The number of blocks or <code>-1</code> if the bytes are not all covered by the recorded blocks.
+     */
+    public synchronized int count(long from, long to) {
+        IndexedBlock first = find(from);
+
+        if ((first == null) || (to > length)) {
+            return -1;
+        }
+
+        int blocksCount = 0;
+
+        for (int i = blocks.indexOf(first); (i < blocks.size()) && (blocks.get(i).getOffset() < to); i++) {
+            blocksCount++;
+        }
+
+        return Math.max(1, blocksCount);
+    }
+
+    /**
+     * A block recorded by a {@link BZip2BlockIndex}.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    public static class IndexedBlock {
+
+        /** The position, in bits from the start of the compressed file, at which the block starts. */
+        private long bitOffset;
+
+        /** The block size level of the stream containing the block. */
+        private int level;
+
+        /** The position, within the decompressed data, of the first byte of the block. */
+        private long offset;
+
+        /**
+         * Creates a new {@link IndexedBlock} object.
+         *
+         * @param  bitOffset  The position, in bits from the start of the compressed file, of the block.
+         * @param  level      The block size level of the stream containing the block.
+         * @param  offset     The position, within the decompressed data, of the first byte of the block.
+         */
+        public IndexedBlock(long bitOffset, int level, long offset) {
+            this.bitOffset = bitOffset;
+            this.level = level;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the position, in bits from the start of the compressed file, at which the block starts.
+         *
+         * @return  The position of the block within the compressed file.
+         */
+        public long getBitOffset() {
+            return bitOffset;
+        }
+
+        /**
+         * Returns the block size level of the stream containing the block.
+         *
+         * @return  The block size level.
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * Returns the position, within the decompressed data, of the first byte of the block.
+         *
+         * @return  The position of the block within the decompressed data.
+         */
+        public long getOffset() {
+            return offset;
+        }
+    } // end class IndexedBlock
+} // end class BZip2BlockIndex
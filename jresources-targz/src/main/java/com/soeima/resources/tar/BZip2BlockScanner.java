@@ -0,0 +1,263 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits compressed <tt>bzip2</tt> input into its {@link BZip2Block blocks} without decompressing it, by looking for
+ * the magic numbers that start each block and end each stream. Concatenated streams, such as those written by parallel
+ * <tt>bzip2</tt> compressors, are split as well.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class BZip2BlockScanner implements Closeable {
+
+    /** The mask of the bits of the magic numbers. */
+    private static final long MagicMask = (1L << BZip2Block.MagicBits) - 1;
+
+    /** The compressed input. */
+    private InputStream is;
+
+    /** The bytes of the compressed input that are still required. */
+    private byte[] buffer;
+
+    /** The position, within the compressed input, of the first byte of the {@link #buffer}. */
+    private long base;
+
+    /** The number of bytes in the {@link #buffer}. */
+    private int count;
+
+    /** The position, within the compressed input, of the next byte to scan. */
+    private long position;
+
+    /** The last bytes scanned. */
+    private long window;
+
+    /** The position, in bits, before which no magic number is looked for. */
+    private long searchFrom;
+
+    /** The position, in bits, of the block being scanned or <code>-1</code> if there is none. */
+    private long blockStart;
+
+    /** The block size level of the current stream or <code>0</code> if the header of the next stream is expected. */
+    private int level;
+
+    /** Indicates if at least one stream has been found. */
+    private boolean started;
+
+    /**
+     * Creates a new {@link BZip2BlockScanner} object which scans the given compressed input from its start.
+     *
+     * @param  is  The compressed input.
+     */
+    public BZip2BlockScanner(InputStream is) {
+        this(is, 0, 0);
+    }
+
+    /**
+     * Creates a new {@link BZip2BlockScanner} object which scans the given compressed input from the block starting at
+     * the given bit position of a stream.
+     *
+     * @param  is         The compressed input, positioned at the byte containing the first bit of the block.
+     * @param  bitOffset  The position, in bits from the start of the whole compressed input, of the block.
+     * @param  level      The block size level of the stream containing the block.
+     */
+    public BZip2BlockScanner(InputStream is, long bitOffset, int level) {
+        this.is = is;
+        this.level = level;
+        buffer = new byte[1 << 16];
+        base = bitOffset / 8;
+        position = base;
+        searchFrom = bitOffset;
+        blockStart = -1;
+        started = level > 0;
+    }
+
+    /**
+     * Returns the next block of the compressed input.
+     *
+     * @return  The next block or <code>null</code> if there are no more blocks.
+     *
+     * @throws  IOException  If the compressed input cannot be read or is not well formed.
+     */
+    public BZip2Block next() throws IOException {
+
+        while (true) {
+
+            if ((level == 0) && !readHeader()) {
+                return null;
+            }
+
+            int b = read(position);
+
+            if (b < 0) {
+                throw new EOFException("Truncated bzip2 stream.");
+            }
+
+            position++;
+            window = (window << 8) | b;
+
+            // Look for a magic number ending within the last byte, from the earliest possible start.
+            for (int shift = 7; shift >= 0; shift--) {
+                long start = (position * 8) - BZip2Block.MagicBits - shift;
+                long magic = (window >>> shift) & MagicMask;
+
+                if ((start < searchFrom) || ((magic != BZip2Block.BlockMagic) && (magic != BZip2Block.EndMagic))) {
+                    continue;
+                }
+
+                BZip2Block block = (blockStart < 0) ? null : cut(blockStart, start);
+
+                if (magic == BZip2Block.BlockMagic) {
+                    blockStart = start;
+                    searchFrom = start + BZip2Block.MagicBits;
+                }
+                else {
+
+                    // The stream ends with the CRC of the stream, padded to a whole byte.
+                    blockStart = -1;
+                    level = 0;
+                    position = (start + BZip2Block.MagicBits + 32 + 7) / 8;
+                }
+
+                if (block != null) {
+                    return block;
+                }
+
+                break;
+            } // end for
+        } // end while
+    } // end method next
+
+    /**
+     * Reads the header of the next stream, at the current position.
+     *
+     * @return  <code>true</code> if a stream follows; <code>false</code> if the compressed input ends.
+     *
+     * @throws  IOException  If the compressed input cannot be read or the first stream has no valid header.
+     */
+    private boolean readHeader() throws IOException {
+        int b = read(position);
+        int z = read(position + 1);
+        int h = read(position + 2);
+        int digit = read(position + 3);
+
+        if ((b != 'B') || (z != 'Z') || (h != 'h') || (digit < '1') || (digit > '9')) {
+
+            // Whatever follows the last stream is ignored, as the bzip2 tool does.
+            if (started) {
+                return false;
+            }
+
+            throw new IOException("Not a bzip2 stream.");
+        }
+
+        started = true;
+        level = digit - '0';
+        position += 4;
+        searchFrom = position * 8;
+        window = 0;
+        return true;
+    }
+
+    /**
+     * Returns the byte at the given <code>position</code> of the compressed input, reading it if required.
+     *
+     * @param   position  The position of the byte, which must not precede the bytes still in the {@link #buffer}.
+     *
+     * @return  The byte or <code>-1</code> if the compressed input ends before it.
+     *
+     * @throws  IOException  If the compressed input cannot be read.
+     */
+    private int read(long position) throws IOException {
+
+        while (position >= (base + count)) {
+
+            if (count == buffer.length) {
+                compact();
+            }
+
+            int n = is.read(buffer, count, buffer.length - count);
+
+            if (n < 0) {
+                return -1;
+            }
+
+            count += n;
+        }
+
+        return buffer[(int)(position - base)] & 0xff;
+    }
+
+    /**
+     * Makes room in the full {@link #buffer} by dropping the bytes that are no longer required, or by growing it if
+     * they all are.
+     */
+    private void compact() {
+        long keep = Math.min((blockStart < 0) ? position : (blockStart / 8), base + count);
+        int drop = (int)(keep - base);
+
+        if (drop == 0) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, count);
+            buffer = grown;
+            return;
+        }
+
+        System.arraycopy(buffer, drop, buffer, 0, count - drop);
+        count -= drop;
+        base = keep;
+    }
+
+    /**
+     * Returns the block made of the bits between the given positions.
+     *
+     * @param   start  The position, in bits, of the first bit of the block.
+     * @param   end    The position, in bits, right after the last bit of the block.
+     *
+     * @return  The block.
+     */
+    private BZip2Block cut(long start, long end) {
+        long length = end - start;
+        byte[] data = new byte[(int)((length + 7) / 8)];
+        int from = (int)((start / 8) - base);
+        int shift = (int)(start % 8);
+
+        for (int i = 0; i < data.length; i++) {
+            int high = buffer[from + i] & 0xff;
+            int low = ((from + i + 1) < count) ? (buffer[from + i + 1] & 0xff) : 0;
+            data[i] = (byte)((high << shift) | (low >>> (8 - shift)));
+        }
+
+        return new BZip2Block(start, length, data, level);
+    }
+
+    /**
+     * Closes the compressed input.
+     *
+     * @see  Closeable#close()
+     */
+    @Override public void close() throws IOException {
+        is.close();
+    }
+} // end class BZip2BlockScanner
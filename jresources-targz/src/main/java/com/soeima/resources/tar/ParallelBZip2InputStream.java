@@ -0,0 +1,347 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import com.soeima.resources.util.DaemonThreadFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses <tt>bzip2</tt> input by decompressing several of its blocks at once. The compressed input is split into
+ * blocks as it is read and each block is handed to a shared pool, with one thread per processor, while the decompressed
+ * blocks are returned in order. Decompression therefore scales with the number of processors rather than running on a
+ * single thread.
+ *
+ * <p>Concatenated streams are decompressed as a single stream.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ParallelBZip2InputStream extends InputStream {
+
+    /** The number of blocks decompressed at once by each stream. */
+    private static final int Parallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Decompresses the blocks of all streams. */
+    private static final ExecutorService executor =
+        Executors.newFixedThreadPool(Parallelism, new DaemonThreadFactory("jresources-bzip2"));
+
+    /** Splits the compressed input into blocks. */
+    private BZip2BlockScanner scanner;
+
+    /** Records the decompressed blocks or <code>null</code> if they are not recorded. */
+    private BZip2BlockIndex index;
+
+    /** The number of blocks still to be decompressed or a negative value to decompress all blocks. */
+    private int remaining;
+
+    /** The blocks being decompressed, in order. */
+    private LinkedList<PendingBlock> pending;
+
+    /** The position, within the decompressed data, of the first byte of the {@link #current} block. */
+    private long offset;
+
+    /** The decompressed contents of the current block. */
+    private byte[] current;
+
+    /** The position of the next byte to read within the {@link #current} block. */
+    private int position;
+
+    /** Indicates if all of the blocks have been handed to the pool. */
+    private boolean scanned;
+
+    /**
+     * Creates a new {@link ParallelBZip2InputStream} object.
+     *
+     * @param  is  The compressed input.
+     */
+    public ParallelBZip2InputStream(InputStream is) {
+        this(new BZip2BlockScanner(is), null, 0, -1);
+    }
+
+    /**
+     * Creates a new {@link ParallelBZip2InputStream} object.
+     *
+     * @param  scanner  Splits the compressed input into blocks.
+     * @param  index    Records the decompressed blocks or <code>null</code> if they are not to be recorded.
+     * @param  offset   The position, within the whole decompressed data, of the first block of the <code>
+     *                  scanner</code>.
+     * @param  blocks   The number of blocks to decompress or a negative value to decompress all of them.
+     */
+    ParallelBZip2InputStream(BZip2BlockScanner scanner, BZip2BlockIndex index, long offset, int blocks) {
+        this.scanner = scanner;
+        this.index = index;
+        this.offset = offset;
+        remaining = blocks;
+        pending = new LinkedList<PendingBlock>();
+        current = new byte[0];
+    }
+
+    /**
+     * @see  InputStream#read()
+     */
+    @Override public int read() throws IOException {
+        return fill() ? (current[position++] & 0xff) : -1;
+    }
+
+    /**
+     * @see  InputStream#read(byte[], int, int)
+     */
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * @see  InputStream#skip(long)
+     */
+    @Override public long skip(long n) throws IOException {
+
+        if ((n <= 0) || !fill()) {
+            return 0;
+        }
+
+        int skipped = (int)Math.min(n, current.length - position);
+        position += skipped;
+        return skipped;
+    }
+
+    /**
+     * @see  InputStream#available()
+     */
+    @Override public int available() {
+        return current.length - position;
+    }
+
+    /**
+     * Makes sure that the {@link #current} block has bytes left to read, moving on to the next blocks if required.
+     *
+     * @return  <code>true</code> if there are bytes left to read; <code>false</code> if the input has been fully read.
+     *
+     * @throws  IOException  If the compressed input cannot be read or is not well formed.
+     */
+    private boolean fill() throws IOException {
+
+        while (position == current.length) {
+            submit();
+
+            if (pending.isEmpty()) {
+                return false;
+            }
+
+            PendingBlock next = pending.removeFirst();
+            offset += current.length;
+            current = decompress(next);
+            position = 0;
+        }
+
+        return true;
+    }
+
+    /**
+     * Hands blocks to the pool until as many blocks as there are processors are being decompressed.
+     *
+     * @throws  IOException  If the compressed input cannot be read or is not well formed.
+     */
+    private void submit() throws IOException {
+
+        while (!scanned && (remaining != 0) && (pending.size() < Parallelism)) {
+            BZip2Block block = scanner.next();
+
+            if (block == null) {
+                scanned = true;
+            }
+            else {
+                pending.add(new PendingBlock(block));
+
+                if (remaining > 0) {
+                    remaining--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the decompressed contents of the given <code>pendingBlock</code> and records it. A block that fails to
+     * decompress may have been cut short by bits that look like the start of a block, so it is merged with the blocks
+     * that follow it until it decompresses or there are no more blocks. The merged blocks are not counted against the
+     * number of blocks to decompress, since they are recorded as a single block.
+     *
+     * @param   pendingBlock  The block being decompressed.
+     *
+     * @return  The decompressed contents of the block.
+     *
+     * @throws  IOException  If the block is not well formed.
+     */
+    private byte[] decompress(PendingBlock pendingBlock) throws IOException {
+        BZip2Block block = pendingBlock.getBlock();
+        byte[] contents;
+
+        try {
+            contents = pendingBlock.get();
+        }
+        catch (IOException e) {
+            contents = null;
+
+            while (contents == null) {
+                BZip2Block next;
+
+                if (pending.isEmpty()) {
+                    next = scanned ? null : scanner.next();
+                }
+                else {
+                    next = pending.removeFirst().cancel();
+
+                    if (remaining >= 0) {
+                        remaining++;
+                    }
+                }
+
+                if ((next == null) || (next.getBitOffset() != (block.getBitOffset() + block.getBitLength()))) {
+                    throw e;
+                }
+
+                block = block.append(next);
+
+                try {
+                    contents = block.decompress();
+                }
+                catch (IOException merged) {
+                }
+            }
+        } // end try-catch
+
+        if (index != null) {
+            index.add(block, offset, contents.length);
+        }
+
+        return contents;
+    } // end method decompress
+
+    /**
+     * Closes the compressed input and abandons the blocks still being decompressed.
+     *
+     * @see  InputStream#close()
+     */
+    @Override public void close() throws IOException {
+
+        for (PendingBlock pendingBlock : pending) {
+            pendingBlock.cancel();
+        }
+
+        pending.clear();
+        scanned = true;
+        scanner.close();
+    }
+
+    /**
+     * A block handed to the pool for decompression.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private static class PendingBlock {
+
+        /** The block. */
+        private BZip2Block block;
+
+        /** The decompression of the block. */
+        private Future<byte[]> future;
+
+        /**
+         * Creates a new {@link PendingBlock} object and hands the given <code>block</code> to the pool.
+         *
+         * @param  block  The block to decompress.
+         */
+        public PendingBlock(final BZip2Block block) {
+            this.block = block;
+            future = executor.submit(new Callable<byte[]>() {
+
+                        /**
+                         * @see  Callable#call()
+                         */
+                        @Override public byte[] call() throws IOException {
+                            return block.decompress();
+                        }
+                    });
+        }
+
+        /**
+         * Returns the block.
+         *
+         * @return  The block.
+         */
+        public BZip2Block getBlock() {
+            return block;
+        }
+
+        /**
+         * Waits for the block to be decompressed.
+         *
+         * @return  The decompressed contents of the block.
+         *
+         * @throws  IOException  If the block is not well formed or the current thread has been interrupted.
+         */
+        public byte[] get() throws IOException {
+
+            try {
+                return future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decompressing bzip2 block.");
+            }
+            catch (ExecutionException e) {
+
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException)e.getCause();
+                }
+
+                throw new IOException(e.getCause().toString());
+            }
+        }
+
+        /**
+         * Abandons the decompression of the block.
+         *
+         * @return  The block.
+         */
+        public BZip2Block cancel() {
+            future.cancel(false);
+            return block;
+        }
+    } // end class PendingBlock
+} // end class ParallelBZip2InputStream
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import com.soeima.resources.util.DaemonThreadFactory;
+import com.soeima.resources.util.IOUtil;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses an <tt>xz</tt> file by decompressing several of its blocks at once. The blocks are located with the
+ * index stored in the file and each block is handed to a shared pool, with one thread per processor, while the
+ * decompressed blocks are returned in order.
+ *
+ * <p>A file made of a single block, or of blocks too large to be held in memory several at a time, is decompressed on
+ * the current thread instead.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class ParallelXZInputStream extends InputStream {
+
+    /** The number of blocks decompressed at once by each stream. */
+    private static final int Parallelism = Runtime.getRuntime().availableProcessors();
+
+    /** The decompressed size of the largest blocks that are decompressed in parallel. */
+    private static final long MaxBlockSize = 32 * 1024 * 1024;
+
+    /** Decompresses the blocks of all streams. */
+    private static final ExecutorService executor =
+        Executors.newFixedThreadPool(Parallelism, new DaemonThreadFactory("jresources-xz"));
+
+    /** The <tt>xz</tt> file. */
+    private File file;
+
+    /** The blocks of the file or <code>null</code> if the file has not been opened yet. */
+    private XZBlockIndex index;
+
+    /** Decompresses the whole file when its blocks are not decompressed in parallel. */
+    private InputStream sequential;
+
+    /** The index of the next block to hand to the pool. */
+    private int next;
+
+    /** The blocks being decompressed, in order. */
+    private LinkedList<Future<byte[]>> pending;
+
+    /** The decompressed contents of the current block. */
+    private byte[] current;
+
+    /** The position of the next byte to read within the {@link #current} block. */
+    private int position;
+
+    /** The decoders that are not currently decompressing a block. */
+    private LinkedList<SeekableXZInputStream> decoders;
+
+    /** Indicates if this stream has been closed. */
+    private boolean closed;
+
+    /**
+     * Creates a new {@link ParallelXZInputStream} object. The file is only opened once it is first read.
+     *
+     * @param  file  The <tt>xz</tt> file.
+     */
+    public ParallelXZInputStream(File file) {
+        this.file = file;
+        pending = new LinkedList<Future<byte[]>>();
+        decoders = new LinkedList<SeekableXZInputStream>();
+        current = new byte[0];
+    }
+
+    /**
+     * @see  InputStream#read()
+     */
+    @Override public int read() throws IOException {
+        open();
+
+        if (sequential != null) {
+            return sequential.read();
+        }
+
+        return fill() ? (current[position++] & 0xff) : -1;
+    }
+
+    /**
+     * @see  InputStream#read(byte[], int, int)
+     */
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+        open();
+
+        if (sequential != null) {
+            return sequential.read(b, off, len);
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * @see  InputStream#skip(long)
+     */
+    @Override public long skip(long n) throws IOException {
+        open();
+
+        if (sequential != null) {
+            return sequential.skip(n);
+        }
+
+        if ((n <= 0) || !fill()) {
+            return 0;
+        }
+
+        int skipped = (int)Math.min(n, current.length - position);
+        position += skipped;
+        return skipped;
+    }
+
+    /**
+     * @see  InputStream#available()
+     */
+    @Override public int available() throws IOException {
+        return (sequential != null) ? sequential.available() : (current.length - position);
+    }
+
+    /**
+     * Reads the index of the file, unless it has already been read, and decides whether its blocks are decompressed in
+     * parallel.
+     *
+     * @throws  IOException  If the file cannot be read or is not a well formed <tt>xz</tt> file.
+     */
+    private void open() throws IOException {
+
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+
+        if (index == null) {
+            index = XZBlockIndex.read(file);
+
+            if ((index.size() < 2) || (index.getLargestSize() > MaxBlockSize)) {
+                sequential = new SeekableXZInputStream(new SeekableFileInputStream(file));
+            }
+        }
+    }
+
+    /**
+     * Makes sure that the {@link #current} block has bytes left to read, moving on to the next blocks if required.
+     *
+     * @return  <code>true</code> if there are bytes left to read; <code>false</code> if the file has been fully read.
+     *
+     * @throws  IOException  If a block cannot be decompressed.
+     */
+    private boolean fill() throws IOException {
+
+        while (position == current.length) {
+
+            while ((next < index.size()) && (pending.size() < Parallelism)) {
+                pending.add(executor.submit(new DecompressTask(next++)));
+            }
+
+            if (pending.isEmpty()) {
+                return false;
+            }
+
+            current = get(pending.removeFirst());
+            position = 0;
+        }
+
+        return true;
+    }
+
+    /**
+     * Waits for a block to be decompressed.
+     *
+     * @param   future  The decompression of the block.
+     *
+     * @return  The decompressed contents of the block.
+     *
+     * @throws  IOException  If the block cannot be decompressed or the current thread has been interrupted.
+     */
+    private byte[] get(Future<byte[]> future) throws IOException {
+
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing xz block of=" + file);
+        }
+        catch (ExecutionException e) {
+
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+
+            throw new IOException(e.getCause().toString());
+        }
+    }
+
+    /**
+     * Returns an idle decoder of the file, opening a new one if there is none.
+     *
+     * @return  A decoder for the exclusive use of the caller until it is {@link #release(SeekableXZInputStream)
+     *          released}.
+     *
+     * @throws  IOException  If the file cannot be opened.
+     */
+    private SeekableXZInputStream acquire() throws IOException {
+
+        synchronized (decoders) {
+
+            if (!decoders.isEmpty()) {
+                return decoders.removeFirst();
+            }
+        }
+
+        return new SeekableXZInputStream(new SeekableFileInputStream(file));
+    }
+
+    /**
+     * Returns the given <code>decoder</code> to the idle decoders, or closes it if this stream has been closed.
+     *
+     * @param  decoder  The decoder previously obtained with {@link #acquire()}.
+     */
+    private void release(SeekableXZInputStream decoder) {
+
+        synchronized (decoders) {
+
+            if (!closed) {
+                decoders.addFirst(decoder);
+                return;
+            }
+        }
+
+        IOUtil.close(decoder);
+    }
+
+    /**
+     * Abandons the blocks still being decompressed and closes the decoders.
+     *
+     * @see  InputStream#close()
+     */
+    @Override public void close() throws IOException {
+
+        for (Future<byte[]> future : pending) {
+            future.cancel(false);
+        }
+
+        pending.clear();
+        IOUtil.close(sequential);
+
+        synchronized (decoders) {
+            closed = true;
+
+            for (SeekableXZInputStream decoder : decoders) {
+                IOUtil.close(decoder);
+            }
+
+            decoders.clear();
+        }
+    }
+
+    /**
+     * Decompresses a single block with an idle decoder.
+     *
+     * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+     * @version  2013/05/13
+     */
+    private class DecompressTask implements Callable<byte[]> {
+
+        /** The index of the block. */
+        private int block;
+
+        /**
+         * Creates a new {@link DecompressTask} object.
+         *
+         * @param  block  The index of the block.
+         */
+        public DecompressTask(int block) {
+            this.block = block;
+        }
+
+        /**
+         * @see  Callable#call()
+         */
+        @Override public byte[] call() throws IOException {
+            SeekableXZInputStream decoder = acquire();
+
+            try {
+                byte[] contents = new byte[(int)index.getSize(block)];
+                decoder.seek(index.getOffset(block));
+
+                for (int read = 0; read < contents.length;) {
+                    int n = decoder.read(contents, read, contents.length - read);
+
+                    if (n < 0) {
+                        throw new EOFException("Truncated xz block of=" + file);
+                    }
+
+                    read += n;
+                }
+
+                return contents;
+            }
+            finally {
+                release(decoder);
+            }
+        }
+    } // end class DecompressTask
+} // end class ParallelXZInputStream
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.util.IOUtil;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Implements a <tt>bzip2</tt> compressed <tt>tar</tt> {@link Archive}, whose blocks are decompressed in parallel by a
+ * {@link ParallelBZip2InputStream}.
+ *
+ * <p>While the archive is read from its start, the compressed blocks are recorded. A single entry is then read by
+ * decompressing only the blocks holding its data, rather than the whole archive up to the entry.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class TarBz2Archive extends AbstractIndexedTarArchive {
+
+    /** The compressed blocks read so far. */
+    private BZip2BlockIndex blocks;
+
+    /**
+     * Creates a new {@link TarBz2Archive} object.
+     *
+     * @param  path  The path to the <tt>tar.bz2</tt> archive.
+     */
+    public TarBz2Archive(String path) {
+        super(path);
+        blocks = new BZip2BlockIndex();
+    }
+
+    /**
+     * @see  AbstractIndexedTarArchive#newDecompressingInputStream(InputStream)
+     */
+    @Override protected InputStream newDecompressingInputStream(InputStream is) {
+        return new ParallelBZip2InputStream(new BZip2BlockScanner(is), blocks, 0, -1);
+    }
+
+    /**
+     * Decompresses only the recorded blocks holding the requested bytes.
+     *
+     * @see  AbstractIndexedTarArchive#newInputStream(long, long)
+     */
+    @Override protected InputStream newInputStream(long offset, long size) throws IOException {
+        int count = blocks.count(offset, offset + size);
+
+        if (count <= 0) {
+            return null;
+        }
+
+        BZip2BlockIndex.IndexedBlock block = blocks.find(offset);
+        InputStream is = new FileInputStream(getPath());
+
+        try {
+            skipFully(is, block.getBitOffset() / 8);
+            is = new ParallelBZip2InputStream(new BZip2BlockScanner(is, block.getBitOffset(), block.getLevel()), null,
+                                              block.getOffset(), count);
+            skipFully(is, offset - block.getOffset());
+            return is;
+        }
+        catch (IOException e) {
+            IOUtil.close(is);
+            throw e;
+        }
+    }
+
+    /**
+     * Skips exactly <code>n</code> bytes of the given input stream.
+     *
+     * @param   is  The input stream.
+     * @param   n   The number of bytes to skip.
+     *
+     * @throws  IOException  If the input stream ends before <code>n</code> bytes have been skipped.
+     */
+    private static void skipFully(InputStream is, long n) throws IOException {
+
+        while (n > 0) {
+            long skipped = is.skip(n);
+
+            if (skipped <= 0) {
+
+                if (is.read() < 0) {
+                    throw new IOException("Unexpected end of archive.");
+                }
+
+                skipped = 1;
+            }
+
+            n -= skipped;
+        }
+    }
+} // end class TarBz2Archive
@@ -44,6 +44,15 @@ public class TarPathItem extends AbstractArchivePathItem {
      * @see  AbstractArchivePathItem#newArchive(String)
      */
     @Override public Archive newArchive(String path) {
+
+        if (Paths.isExtension(path, "bz2", "tbz2")) {
+            return new TarBz2Archive(path);
+        }
+
+        if (Paths.isExtension(path, "xz", "txz")) {
+            return new TarXzArchive(path);
+        }
+
         return new TarArchive(path);
     }
 
@@ -20,6 +20,7 @@ package com.soeima.resources.tar;
 import com.soeima.resources.PathItem;
 import com.soeima.resources.PathItemFactory;
 import com.soeima.resources.extensions.annotations.ResourceExtension;
+import com.soeima.resources.util.Paths;
 import com.soeima.resources.util.Strings;
 
 /**
@@ -50,7 +51,12 @@ public class TarPathItemFactory implements PathItemFactory {
             return new TarPathItem(Strings.substringBetween(path, ":/", "!/"));
         }
 
-        if (path.endsWith(".tar")) {
+        // Archives accessed through other protocols are left to the extensions handling those protocols.
+        if (path.contains("://") && !path.startsWith("file:")) {
+            return null;
+        }
+
+        if (Paths.isExtension(path, "tar", "tar.bz2", "tbz2", "tar.xz", "txz")) {
             return new TarPathItem(path);
         }
 
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import com.soeima.resources.archive.cache.Archive;
+import com.soeima.resources.util.IOUtil;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Implements an <tt>xz</tt> compressed <tt>tar</tt> {@link Archive}, whose blocks are decompressed in parallel by a
+ * {@link ParallelXZInputStream}.
+ *
+ * <p>A single entry is read by seeking to its data through the block index of the <tt>xz</tt> file, so only the blocks
+ * holding the data of the entry are decompressed.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class TarXzArchive extends AbstractIndexedTarArchive {
+
+    /**
+     * Creates a new {@link TarXzArchive} object.
+     *
+     * @param  path  The path to the <tt>tar.xz</tt> archive.
+     */
+    public TarXzArchive(String path) {
+        super(path);
+    }
+
+    /**
+     * Reads the blocks straight from the file, since each of them is decompressed by its own decoder.
+     *
+     * @see  AbstractIndexedTarArchive#newDecompressingInputStream(InputStream)
+     */
+    @Override protected InputStream newDecompressingInputStream(InputStream is) {
+        IOUtil.close(is);
+        return new ParallelXZInputStream(new File(getPath()));
+    }
+
+    /**
+     * @see  AbstractIndexedTarArchive#newInputStream(long, long)
+     */
+    @Override protected InputStream newInputStream(long offset, long size) throws IOException {
+        SeekableXZInputStream is = new SeekableXZInputStream(new SeekableFileInputStream(getPath()));
+
+        try {
+            is.seek(offset);
+            return is;
+        }
+        catch (IOException e) {
+            IOUtil.close(is);
+            throw e;
+        }
+    }
+} // end class TarXzArchive
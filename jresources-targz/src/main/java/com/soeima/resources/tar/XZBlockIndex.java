@@ -0,0 +1,315 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The blocks of an <tt>xz</tt> file, as recorded by the index stored at the end of each of its streams. The index gives
+ * the decompressed size of every block, so the decompressed data can be split along block boundaries without
+ * decompressing anything.
+ *
+ * <p>Concatenated streams and stream padding are supported. The integrity checks of the index are left to the decoder
+ * that later decompresses the blocks.</p>
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+class XZBlockIndex {
+
+    /** The size of the header and footer of a stream. */
+    private static final int HeaderSize = 12;
+
+    /** The magic bytes starting a stream. */
+    private static final byte[] HeaderMagic = { (byte)0xfd, '7', 'z', 'X', 'Z', 0 };
+
+    /** The magic bytes ending a stream. */
+    private static final byte[] FooterMagic = { 'Y', 'Z' };
+
+    /** The position, within the decompressed data, of the first byte of each block. */
+    private List<Long> offsets;
+
+    /** The decompressed size of each block. */
+    private List<Long> sizes;
+
+    /** The decompressed size of the largest block. */
+    private long largestSize;
+
+    /**
+     * Creates a new {@link XZBlockIndex} object.
+     *
+     * @param  sizes  The decompressed size of each block, in order.
+     */
+    private XZBlockIndex(List<Long> sizes) {
+        this.sizes = new ArrayList<Long>(sizes);
+        offsets = new ArrayList<Long>(sizes.size());
+        long offset = 0;
+
+        for (long size : sizes) {
+            offsets.add(offset);
+            offset += size;
+            largestSize = Math.max(largestSize, size);
+        }
+    }
+
+    /**
+     * Reads the indexes of all of the streams of the given <tt>xz</tt> <code>file</code>.
+     *
+     * @param   file  The <tt>xz</tt> file.
+     *
+     * @return  The blocks of the file.
+     *
+     * @throws  IOException  If the file cannot be read or is not a well formed <tt>xz</tt> file.
+     */
+    public static XZBlockIndex read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            LinkedList<Long> sizes = new LinkedList<Long>();
+            long position = raf.length();
+
+            // The streams are read backwards, since each of them can only be located from its footer.
+            while (position > 0) {
+                position = skipPadding(raf, position);
+
+                if (position > 0) {
+                    position = readStream(raf, position, sizes);
+                }
+            }
+
+            return new XZBlockIndex(sizes);
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the position of the end of the stream preceding the stream padding that ends at the given <code>
+     * position</code>.
+     *
+     * @param   raf       The <tt>xz</tt> file.
+     * @param   position  The position right after the stream padding.
+     *
+     * @return  The position of the end of the preceding stream or <code>0</code> if there is none.
+     *
+     * @throws  IOException  If the file cannot be read or is not a well formed <tt>xz</tt> file.
+     */
+    private static long skipPadding(RandomAccessFile raf, long position) throws IOException {
+
+        while ((position >= 4) && (read(raf, position - 4, 4) == 0)) {
+            position -= 4;
+        }
+
+        if ((position % 4) != 0) {
+            throw new IOException("Malformed xz stream padding.");
+        }
+
+        return position;
+    }
+
+    /**
+     * Reads the index of the stream ending at the given <code>position</code> and adds the decompressed sizes of its
+     * blocks in front of the given <code>sizes</code>.
+     *
+     * @param   raf       The <tt>xz</tt> file.
+     * @param   position  The position right after the footer of the stream.
+     * @param   sizes     The decompressed sizes of the blocks of the streams that follow the stream.
+     *
+     * @return  The position of the start of the stream.
+     *
+     * @throws  IOException  If the file cannot be read or is not a well formed <tt>xz</tt> file.
+     */
+    private static long readStream(RandomAccessFile raf, long position, LinkedList<Long> sizes) throws IOException {
+        byte[] footer = readFully(raf, position - HeaderSize, HeaderSize);
+
+        if ((footer[10] != FooterMagic[0]) || (footer[11] != FooterMagic[1])) {
+            throw new IOException("Malformed xz stream footer.");
+        }
+
+        long backwardSize =
+            (footer[4] & 0xffL) | ((footer[5] & 0xffL) << 8) | ((footer[6] & 0xffL) << 16) | ((footer[7] & 0xffL) << 24);
+        long indexSize = (backwardSize + 1) * 4;
+        long indexStart = position - HeaderSize - indexSize;
+
+        if ((indexStart < HeaderSize) || (indexSize > Integer.MAX_VALUE)) {
+            throw new IOException("Malformed xz stream footer.");
+        }
+
+        byte[] index = readFully(raf, indexStart, (int)indexSize);
+
+        if (index[0] != 0) {
+            throw new IOException("Malformed xz index.");
+        }
+
+        int[] cursor = { 1 };
+        long records = readNumber(index, cursor);
+        List<Long> streamSizes = new ArrayList<Long>();
+        long blocksSize = 0;
+
+        for (long i = 0; i < records; i++) {
+            long unpaddedSize = readNumber(index, cursor);
+            streamSizes.add(readNumber(index, cursor));
+            blocksSize += (unpaddedSize + 3) & ~3L;
+        }
+
+        long start = indexStart - blocksSize - HeaderSize;
+
+        if ((start < 0) || !startsWith(readFully(raf, start, HeaderMagic.length), HeaderMagic)) {
+            throw new IOException("Malformed xz stream header.");
+        }
+
+        sizes.addAll(0, streamSizes);
+        return start;
+    } // end method readStream
+
+    /**
+     * Reads a variable length integer of the index.
+     *
+     * @param   index   The index.
+     * @param   cursor  Holds the position of the integer, which is moved past it.
+     *
+     * @return  The integer.
+     *
+     * @throws  IOException  If the integer is not well formed.
+     */
+    private static long readNumber(byte[] index, int[] cursor) throws IOException {
+        long number = 0;
+
+        for (int i = 0; i < 9; i++) {
+
+            if (cursor[0] >= index.length) {
+                break;
+            }
+
+            int b = index[cursor[0]++] & 0xff;
+            number |= (long)(b & 0x7f) << (i * 7);
+
+            if ((b & 0x80) == 0) {
+                return number;
+            }
+        }
+
+        throw new IOException("Malformed xz index.");
+    }
+
+    /**
+     * Reads up to <code>8</code> bytes as an integer.
+     *
+     * @param   raf       The <tt>xz</tt> file.
+     * @param   position  The position of the bytes.
+     * @param   length    The number of bytes to read.
+     *
+     * @return  The bytes as an integer.
+     *
+     * @throws  IOException  If the file cannot be read.
+     */
+    private static long read(RandomAccessFile raf, long position, int length) throws IOException {
+        long value = 0;
+
+        for (byte b : readFully(raf, position, length)) {
+            value = (value << 8) | (b & 0xff);
+        }
+
+        return value;
+    }
+
+    /**
+     * Reads exactly <code>length</code> bytes at the given <code>position</code>.
+     *
+     * @param   raf       The <tt>xz</tt> file.
+     * @param   position  The position of the bytes.
+     * @param   length    The number of bytes to read.
+     *
+     * @return  The bytes.
+     *
+     * @throws  IOException  If the file cannot be read.
+     */
+    private static byte[] readFully(RandomAccessFile raf, long position, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        raf.seek(position);
+        raf.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Indicates whether the given <code>bytes</code> start with the given <code>prefix</code>.
+     *
+     * @param   bytes   The bytes.
+     * @param   prefix  The prefix.
+     *
+     * @return  <code>true</code> if the bytes start with the prefix; <code>false</code> otherwise.
+     */
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+
+        for (int i = 0; i < prefix.length; i++) {
+
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of blocks.
+     *
+     * @return  The number of blocks.
+     */
+    public int size() {
+        return sizes.size();
+    }
+
+    /**
+     * Returns the position, within the decompressed data, of the first byte of the block with the given <code>
+     * index</code>.
+     *
+     * @param   index  The index of the block.
+     *
+     * @return  The position of the block.
+     */
+    public long getOffset(int index) {
+        return offsets.get(index);
+    }
+
+    /**
+     * Returns the decompressed size of the block with the given <code>index</code>.
+     *
+     * @param   index  The index of the block.
+     *
+     * @return  The decompressed size of the block.
+     */
+    public long getSize(int index) {
+        return sizes.get(index);
+    }
+
+    /**
+     * Returns the decompressed size of the largest block.
+     *
+     * @return  The decompressed size of the largest block.
+     */
+    public long getLargestSize() {
+        return largestSize;
+    }
+} // end class XZBlockIndex
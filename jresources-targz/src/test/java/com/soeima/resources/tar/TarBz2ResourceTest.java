@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Implements unit tests for the {@link TarResource} backed by a <tt>bzip2</tt> compressed <tt>tar</tt> archive.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class TarBz2ResourceTest extends AbstractResourceTest {
+
+    /** The path to the <tt>tar.bz2</tt> file. */
+    private static String tarPath;
+
+    /**
+     * Creates a new {@link TarBz2ResourceTest} object.
+     */
+    public TarBz2ResourceTest() {
+    }
+
+    /**
+     * @see  AbstractResourceTest#setUp(String)
+     */
+    @BeforeClass public static void setUp() {
+        AbstractResourceTest.setUp("tar-bz2-resource-test");
+        TarArchiver archiver = new TarArchiver();
+        archiver.setPath(Paths.join(getTestDirPath(), "tar-bz2-resource-test.tar"));
+        archiver.archive(getTestDirPath());
+        tarPath = archiver.getPath() + ".bz2";
+        OutputStream os = null;
+
+        try {
+            os = new BZip2CompressorOutputStream(new FileOutputStream(tarPath));
+            os.write(IOUtil.toByteArray(new FileInputStream(archiver.getPath())));
+        }
+        catch (IOException e) {
+            fail("Cannot compress test archive due to: " + e.getMessage());
+        }
+        finally {
+            IOUtil.close(os);
+        }
+    }
+
+    /**
+     * @see  AbstractResourceTest#toURL(String)
+     */
+    @Override protected String toURL(String path) {
+        String url =
+            Paths.isExtension(path, "bz2")
+            ? ("tar:file:/" + path + "!/")
+            : ("tar:file:/" + Paths.getParentPath(path) + "!/" + Paths.getBaseName(path));
+        return Paths.normalize(url, '/');
+    }
+
+    /**
+     * Tests that entries spanning many blocks of several concatenated streams are read back intact, both while the
+     * archive is read from its start and when each entry is then read on its own.
+     */
+    @Test public void testManyBlocks() throws IOException {
+        String path = Paths.join(getTestDirPath(), "many-blocks.tar.bz2");
+        byte[][] contents = new byte[4][];
+        Random random = new Random(5);
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        TarArchiveOutputStream taos = new TarArchiveOutputStream(tar);
+
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = new byte[150000 + (i * 1000)];
+
+            for (int j = 0; j < contents[i].length; j++) {
+                contents[i][j] = (byte)('a' + random.nextInt(16));
+            }
+
+            TarArchiveEntry entry = new TarArchiveEntry("blocks/entry" + i + ".block");
+            entry.setSize(contents[i].length);
+            taos.putArchiveEntry(entry);
+            taos.write(contents[i]);
+            taos.closeArchiveEntry();
+        }
+
+        taos.close();
+
+        // Split the archive across two streams with the smallest blocks.
+        byte[] bytes = tar.toByteArray();
+        int half = bytes.length / 2;
+        FileOutputStream fos = new FileOutputStream(path);
+
+        try {
+            BZip2CompressorOutputStream first = new BZip2CompressorOutputStream(fos, 1);
+            first.write(bytes, 0, half);
+            first.finish();
+
+            BZip2CompressorOutputStream second = new BZip2CompressorOutputStream(fos, 1);
+            second.write(bytes, half, bytes.length - half);
+            second.finish();
+        }
+        finally {
+            IOUtil.close(fos);
+        }
+
+        TarPathItem pathItem = new TarPathItem(path);
+        List<Resource> resources = pathItem.findResourcesForExtension("block", RecursionType.Recursive);
+        assertEquals(contents.length, resources.size());
+
+        for (int pass = 0; pass < 2; pass++) {
+
+            for (int i = contents.length - 1; i >= 0; i--) {
+                Resource resource = pathItem.findResource("blocks/entry" + i + ".block", RecursionType.Recursive);
+                assertArrayEquals(contents[i], resource.getBytes());
+            }
+        }
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return tarPath;
+    }
+} // end class TarBz2ResourceTest
@@ -18,8 +18,14 @@
 package com.soeima.resources.tar;
 
 import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
 import com.soeima.resources.util.Paths;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import org.junit.BeforeClass;
+import org.junit.Test;
+import java.util.List;
 
 /**
  * Implements unit tests for the {@link TarResource}.
@@ -60,6 +66,20 @@ public class TarResourceTest extends AbstractResourceTest {
         return Paths.normalize(url, '/');
     }
 
+    /**
+     * Tests that reading many resources in bulk returns the same contents as reading them one by one.
+     */
+    @Test public void testReadAll() {
+        TarPathItem pathItem = new TarPathItem(tarPath);
+        List<Resource> resources = pathItem.findResourcesForExtension("file", RecursionType.Recursive);
+        List<byte[]> contents = pathItem.readAll(resources);
+        assertEquals(resources.size(), contents.size());
+
+        for (int i = 0; i < resources.size(); i++) {
+            assertArrayEquals(resources.get(i).getBytes(), contents.get(i));
+        }
+    }
+
     /**
      * @see  AbstractResourceTest#getResourcePath()
      */
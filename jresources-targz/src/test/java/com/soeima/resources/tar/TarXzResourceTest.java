@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012 Marco Soeima
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.soeima.resources.tar;
+
+import com.soeima.resources.AbstractResourceTest;
+import com.soeima.resources.RecursionType;
+import com.soeima.resources.Resource;
+import com.soeima.resources.util.IOUtil;
+import com.soeima.resources.util.Paths;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Implements unit tests for the {@link TarResource} backed by a <tt>xz</tt> compressed <tt>tar</tt> archive.
+ *
+ * @author   <a href="mailto:marco.soeima@gmail.com">Marco Soeima</a>
+ * @version  2013/05/13
+ */
+public class TarXzResourceTest extends AbstractResourceTest {
+
+    /** The path to the <tt>tar.xz</tt> file. */
+    private static String tarPath;
+
+    /**
+     * Creates a new {@link TarXzResourceTest} object.
+     */
+    public TarXzResourceTest() {
+    }
+
+    /**
+     * @see  AbstractResourceTest#setUp(String)
+     */
+    @BeforeClass public static void setUp() {
+        AbstractResourceTest.setUp("tar-xz-resource-test");
+        TarArchiver archiver = new TarArchiver();
+        archiver.setPath(Paths.join(getTestDirPath(), "tar-xz-resource-test.tar"));
+        archiver.archive(getTestDirPath());
+        tarPath = archiver.getPath() + ".xz";
+        OutputStream os = null;
+
+        try {
+            os = new XZOutputStream(new FileOutputStream(tarPath), new LZMA2Options());
+            os.write(IOUtil.toByteArray(new FileInputStream(archiver.getPath())));
+        }
+        catch (IOException e) {
+            fail("Cannot compress test archive due to: " + e.getMessage());
+        }
+        finally {
+            IOUtil.close(os);
+        }
+    }
+
+    /**
+     * @see  AbstractResourceTest#toURL(String)
+     */
+    @Override protected String toURL(String path) {
+        String url =
+            Paths.isExtension(path, "xz")
+            ? ("tar:file:/" + path + "!/")
+            : ("tar:file:/" + Paths.getParentPath(path) + "!/" + Paths.getBaseName(path));
+        return Paths.normalize(url, '/');
+    }
+
+    /**
+     * Tests that entries spanning many blocks of several concatenated streams are read back intact, both while the
+     * archive is read from its start and when each entry is then read on its own.
+     */
+    @Test public void testManyBlocks() throws IOException {
+        String path = Paths.join(getTestDirPath(), "many-blocks.tar.xz");
+        byte[][] contents = new byte[4][];
+        Random random = new Random(5);
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        TarArchiveOutputStream taos = new TarArchiveOutputStream(tar);
+
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = new byte[150000 + (i * 1000)];
+
+            for (int j = 0; j < contents[i].length; j++) {
+                contents[i][j] = (byte)('a' + random.nextInt(16));
+            }
+
+            TarArchiveEntry entry = new TarArchiveEntry("blocks/entry" + i + ".block");
+            entry.setSize(contents[i].length);
+            taos.putArchiveEntry(entry);
+            taos.write(contents[i]);
+            taos.closeArchiveEntry();
+        }
+
+        taos.close();
+
+        // Split the archive into blocks of 64KB across two streams separated by stream padding.
+        byte[] bytes = tar.toByteArray();
+        int half = bytes.length / 2;
+        FileOutputStream fos = new FileOutputStream(path);
+
+        try {
+            XZOutputStream first = new XZOutputStream(fos, new LZMA2Options(1));
+            writeBlocks(first, bytes, 0, half);
+            first.finish();
+            fos.write(new byte[8]);
+
+            XZOutputStream second = new XZOutputStream(fos, new LZMA2Options(1));
+            writeBlocks(second, bytes, half, bytes.length);
+            second.finish();
+        }
+        finally {
+            IOUtil.close(fos);
+        }
+
+        TarPathItem pathItem = new TarPathItem(path);
+        List<Resource> resources = pathItem.findResourcesForExtension("block", RecursionType.Recursive);
+        assertEquals(contents.length, resources.size());
+
+        for (int pass = 0; pass < 2; pass++) {
+
+            for (int i = contents.length - 1; i >= 0; i--) {
+                Resource resource = pathItem.findResource("blocks/entry" + i + ".block", RecursionType.Recursive);
+                assertArrayEquals(contents[i], resource.getBytes());
+            }
+        }
+    }
+
+    /**
+     * Writes the given bytes to the <code>xz</code> stream, ending a block every <code>64KB</code>.
+     *
+     * @param   xz     The <tt>xz</tt> stream.
+     * @param   bytes  The bytes to write.
+     * @param   from   The position of the first byte to write.
+     * @param   to     The position right after the last byte to write.
+     *
+     * @throws  IOException  If the bytes cannot be written.
+     */
+    private static void writeBlocks(XZOutputStream xz, byte[] bytes, int from, int to) throws IOException {
+
+        for (int i = from; i < to; i += 65536) {
+            xz.write(bytes, i, Math.min(65536, to - i));
+            xz.endBlock();
+        }
+    }
+
+    /**
+     * @see  AbstractResourceTest#getResourcePath()
+     */
+    @Override protected String getResourcePath() {
+        return tarPath;
+    }
+} // end class TarXzResourceTest